@@ -40,8 +40,16 @@ public abstract class AbstractLogCompactor {
     protected final LogRemovalListener logRemovalListener;
 
     public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener) {
+        this(conf, new Throttler(conf), logRemovalListener);
+    }
+
+    /**
+     * Create a compactor sharing the given throttler, so that all the compactions
+     * running concurrently are bounded by a single rate limit.
+     */
+    AbstractLogCompactor(ServerConfiguration conf, Throttler throttler, LogRemovalListener logRemovalListener) {
         this.conf = conf;
-        this.throttler = new Throttler(conf);
+        this.throttler = throttler;
         this.logRemovalListener = logRemovalListener;
     }
 
@@ -57,6 +65,19 @@ public abstract class AbstractLogCompactor {
      */
     public void cleanUpAndRecover() {}
 
+    /**
+     * Whether multiple entry logs can be compacted concurrently by this compactor.
+     *
+     * @return true if {@link #compact(EntryLogMetadata)} is safe to call from multiple threads
+     */
+    public boolean supportsConcurrentCompaction() {
+        return false;
+    }
+
+    /**
+     * Rate limiter for compaction and entry log scanning. It is thread safe and is meant to
+     * be shared by all the compactions of a garbage collector.
+     */
     static class Throttler {
         private final RateLimiter rateLimiter;
         private final boolean isThrottleByBytes;
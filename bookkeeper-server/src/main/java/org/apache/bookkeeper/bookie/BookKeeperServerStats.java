@@ -64,6 +64,7 @@ public interface BookKeeperServerStats {
     String WRITE_LAC = "WRITE_LAC";
     String READ_LAC_REQUEST = "READ_LAC_REQUEST";
     String READ_LAC = "READ_LAC";
+    String READ_LAC_BATCH_REQUEST = "READ_LAC_BATCH_REQUEST";
     String GET_BOOKIE_INFO_REQUEST = "GET_BOOKIE_INFO_REQUEST";
     String GET_BOOKIE_INFO = "GET_BOOKIE_INFO";
     String GET_LIST_OF_ENTRIES_OF_LEDGER = "GET_LIST_OF_ENTRIES_OF_LEDGER";
@@ -156,6 +157,8 @@ public interface BookKeeperServerStats {
     String MINOR_COMPACTION_COUNT = "MINOR_COMPACTION_COUNT";
     String ACTIVE_LEDGER_COUNT = "ACTIVE_LEDGER_COUNT";
     String DELETED_LEDGER_COUNT = "DELETED_LEDGER_COUNT";
+    String ENTRY_LOG_USAGE_COUNT = "ENTRY_LOG_USAGE_COUNT";
+    String ENTRY_LOG_USAGE_BYTES = "ENTRY_LOG_USAGE_BYTES";
 
     // Index Related Counters
     String INDEX_INMEM_ILLEGAL_STATE_RESET = "INDEX_INMEM_ILLEGAL_STATE_RESET";
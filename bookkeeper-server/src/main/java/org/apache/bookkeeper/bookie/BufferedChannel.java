@@ -145,6 +145,45 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
         }
     }
 
+    /**
+     * Append {@code length} bytes of {@code src}, starting at {@code srcPosition}. The bytes are
+     * transferred directly from file to file, instead of being copied through the write buffer.
+     *
+     * @param src the file channel to read the bytes from
+     * @param srcPosition the position of the first byte to transfer in {@code src}
+     * @param length the number of bytes to transfer
+     * @return the position where the transferred bytes begin
+     * @throws IOException if the transfer fails or {@code src} has less than {@code length} bytes
+     */
+    public long transferFrom(FileChannel src, long srcPosition, long length) throws IOException {
+        long startPosition;
+        boolean shouldForceWrite = false;
+        synchronized (this) {
+            // write out the buffered bytes first, so that the file channel is at the current position
+            flush();
+            startPosition = position;
+            long transferred = 0;
+            while (transferred < length) {
+                long bytes = src.transferTo(srcPosition + transferred, length - transferred, fileChannel);
+                if (bytes <= 0) {
+                    throw new IOException("Short transfer at position " + (srcPosition + transferred)
+                            + " : transferred " + transferred + " of " + length + " bytes");
+                }
+                transferred += bytes;
+            }
+            position += length;
+            writeBufferStartPosition.set(fileChannel.position());
+            if (doRegularFlushes) {
+                unpersistedBytes.addAndGet(length);
+                shouldForceWrite = unpersistedBytes.get() >= unpersistedBytesBound;
+            }
+        }
+        if (shouldForceWrite) {
+            forceWrite(false);
+        }
+        return startPosition;
+    }
+
     /**
      * Get the position where the next write operation will begin writing from.
      * @return
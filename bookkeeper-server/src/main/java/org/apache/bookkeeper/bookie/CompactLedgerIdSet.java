@@ -0,0 +1,127 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * An immutable snapshot of a set of ledger ids, stored as a sorted array of primitive longs.
+ *
+ * <p>It takes 8 bytes per ledger, instead of the boxed {@code Long} and tree node per ledger of a
+ * {@code TreeSet<Long>}, which matters for bookies holding millions of ledgers. Lookups are done
+ * with a binary search and range iterations don't allocate.
+ */
+class CompactLedgerIdSet {
+
+    private final long[] ledgerIds;
+    private final int size;
+
+    private CompactLedgerIdSet(long[] ledgerIds, int size) {
+        this.ledgerIds = ledgerIds;
+        this.size = size;
+    }
+
+    /**
+     * Take a snapshot of the given ledger ids.
+     */
+    static CompactLedgerIdSet copyOf(Iterable<Long> ledgers) {
+        long[] ids = new long[1024];
+        int count = 0;
+        boolean sorted = true;
+        for (Long ledgerId : ledgers) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            if (count > 0 && ids[count - 1] >= ledgerId) {
+                sorted = false;
+            }
+            ids[count++] = ledgerId;
+        }
+        if (!sorted) {
+            Arrays.sort(ids, 0, count);
+            count = dedup(ids, count);
+        }
+        return new CompactLedgerIdSet(ids, count);
+    }
+
+    private static int dedup(long[] ids, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        int unique = 1;
+        for (int i = 1; i < count; i++) {
+            if (ids[i] != ids[unique - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return unique;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(long ledgerId) {
+        return Arrays.binarySearch(ledgerIds, 0, size, ledgerId) >= 0;
+    }
+
+    /**
+     * Iterate over all the ledger ids, in ascending order.
+     */
+    PrimitiveIterator.OfLong iterator() {
+        return Arrays.stream(ledgerIds, 0, size).iterator();
+    }
+
+    /**
+     * Iterate over the ledger ids between {@code start} and {@code end}, both inclusive, in ascending order.
+     */
+    void forEachInRange(long start, long end, LongConsumer consumer) {
+        for (int i = lowerBound(start); i < size && ledgerIds[i] <= end; i++) {
+            consumer.accept(ledgerIds[i]);
+        }
+    }
+
+    /**
+     * Get a copy of this set without the given ledgers.
+     */
+    CompactLedgerIdSet without(Set<Long> removedLedgers) {
+        if (removedLedgers.isEmpty()) {
+            return this;
+        }
+        long[] ids = new long[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!removedLedgers.contains(ledgerIds[i])) {
+                ids[count++] = ledgerIds[i];
+            }
+        }
+        return new CompactLedgerIdSet(ids, count);
+    }
+
+    private int lowerBound(long ledgerId) {
+        int idx = Arrays.binarySearch(ledgerIds, 0, size, ledgerId);
+        return idx >= 0 ? idx : -(idx + 1);
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.bookkeeper.bookie.BookieException.EntryLogMetadataMapException;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+
+/**
+ * Select the entry logs to compact based on the cost of compacting them.
+ *
+ * <p>Compacting an entry log with usage {@code u} reads the whole log and rewrites the {@code u}
+ * fraction of it which is still alive, to reclaim the {@code 1 - u} remaining fraction. Among the
+ * entry logs below the compaction threshold, the ones with the best benefit/cost ratio
+ * {@code (1 - u) * age / (1 + u)} are compacted first, where the age of an entry log is given by
+ * how many entry logs have been created after it. Older entry logs hold colder data, that is less
+ * likely to be deleted soon, so compacting them is less likely to be wasted.
+ *
+ * <p>When the ledger disks are filling up past the disk usage warn threshold, the compaction
+ * threshold is tightened, so that only the entry logs whose compaction reclaims most of their size
+ * are rewritten.
+ *
+ * <p>The selector also keeps an histogram of the usage of all the entry logs, updated on each
+ * garbage collection and exported as metrics.
+ */
+class CompactionCandidateSelector {
+
+    static final int NUM_BUCKETS = 10;
+
+    // the compaction threshold is reduced down to this fraction of its configured value when disks are full
+    static final double MIN_THRESHOLD_RATIO = 0.5;
+
+    private final LedgerDirsManager ledgerDirsManager;
+    private final float diskUsageWarnThreshold;
+    private final float diskUsageThreshold;
+
+    // number of entry logs and remaining bytes per usage bucket, as of the last garbage collection
+    private final AtomicLongArray entryLogCounts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLongArray entryLogRemainingBytes = new AtomicLongArray(NUM_BUCKETS);
+
+    CompactionCandidateSelector(ServerConfiguration conf, LedgerDirsManager ledgerDirsManager) {
+        this.ledgerDirsManager = ledgerDirsManager;
+        this.diskUsageWarnThreshold = conf.getDiskUsageWarnThreshold();
+        this.diskUsageThreshold = conf.getDiskUsageThreshold();
+    }
+
+    /**
+     * Select the entry logs to compact, ordered from the most to the least profitable one.
+     *
+     * @param entryLogMetaMap metadata of all the entry logs
+     * @param threshold usage below which an entry log is compacted
+     * @param lastEntryLogId id of the last entry log created, used to compute the age of the entry logs
+     * @return the entry logs to compact
+     */
+    List<EntryLogMetadata> selectCandidates(EntryLogMetadataMap entryLogMetaMap,
+                                            double threshold,
+                                            long lastEntryLogId) throws EntryLogMetadataMapException {
+        List<Candidate> candidates = new ArrayList<>();
+        entryLogMetaMap.forEach((entryLogId, meta) -> {
+            if (meta.getUsage() < threshold) {
+                // the metadata instance may be recycled once this callback returns
+                candidates.add(new Candidate(meta.copy(), costBenefit(meta, lastEntryLogId)));
+            }
+        });
+
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        List<EntryLogMetadata> selected = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            selected.add(candidate.meta);
+        }
+        return selected;
+    }
+
+    /**
+     * Tighten the compaction threshold according to the disk pressure.
+     *
+     * @param threshold configured compaction threshold
+     * @return the threshold to use for the current compaction
+     */
+    double adjustThreshold(double threshold) {
+        return threshold * (1 - (1 - MIN_THRESHOLD_RATIO) * getDiskPressure());
+    }
+
+    /**
+     * Get how close the most used ledger disk is to be full, from 0 when its usage is below the
+     * warn threshold to 1 when it reaches the disk usage threshold.
+     */
+    double getDiskPressure() {
+        if (diskUsageThreshold <= diskUsageWarnThreshold) {
+            return 0;
+        }
+        float maxUsage = 0;
+        for (Float usage : ledgerDirsManager.getDiskUsages().values()) {
+            maxUsage = Math.max(maxUsage, usage);
+        }
+        if (maxUsage <= diskUsageWarnThreshold) {
+            return 0;
+        }
+        return Math.min(1.0, (maxUsage - diskUsageWarnThreshold) / (diskUsageThreshold - diskUsageWarnThreshold));
+    }
+
+    void updateHistogram(long[] counts, long[] remainingBytes) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            entryLogCounts.set(i, counts[i]);
+            entryLogRemainingBytes.set(i, remainingBytes[i]);
+        }
+    }
+
+    long getEntryLogCount(int bucketIndex) {
+        return entryLogCounts.get(bucketIndex);
+    }
+
+    long getEntryLogRemainingBytes(int bucketIndex) {
+        return entryLogRemainingBytes.get(bucketIndex);
+    }
+
+    /**
+     * Calculate the index of the usage bucket, the last bucket will have the 1.0 if added.
+     */
+    static int bucketIndex(double usage) {
+        return Math.min(NUM_BUCKETS - 1, (int) Math.floor(usage * NUM_BUCKETS));
+    }
+
+    static double costBenefit(EntryLogMetadata meta, long lastEntryLogId) {
+        double usage = meta.getUsage();
+        long age = Math.max(1L, lastEntryLogId - meta.getEntryLogId());
+        return (1 - usage) * age / (1 + usage);
+    }
+
+    private static class Candidate {
+        final EntryLogMetadata meta;
+        final double score;
+
+        Candidate(EntryLogMetadata meta, double score) {
+            this.meta = meta;
+            this.score = score;
+        }
+    }
+}
@@ -35,31 +35,60 @@ import org.slf4j.LoggerFactory;
  * This is the basic entry log compactor to compact entry logs.
  * The compaction is done by scanning the old entry log file, copy the active ledgers to the
  * current entry logger and remove the old entry log when the scan is over.
+ *
+ * <p>With zero copy compaction, only the entry headers of the old entry log are read. Runs of
+ * adjacent active entries are transferred from file to file into the current entry logger.
  */
 public class EntryLogCompactor extends AbstractLogCompactor {
     private static final Logger LOG = LoggerFactory.getLogger(EntryLogCompactor.class);
 
-    final CompactionScannerFactory scannerFactory = new CompactionScannerFactory();
+    // maximum number of bytes transferred at once by zero copy compaction
+    static final int MAX_TRANSFER_RUN_BYTES = 8 * 1024 * 1024;
+
     final EntryLogger entryLogger;
     final CompactableLedgerStorage ledgerStorage;
+    final EntryLocationsUpdater locationsUpdater = new EntryLocationsUpdater();
     private final int maxOutstandingRequests;
+    private final boolean zeroCopyEnabled;
+    // whether a run of entries transferred at once can span several ledgers
+    private final boolean multiLedgerRuns;
 
     public EntryLogCompactor(
             ServerConfiguration conf,
             EntryLogger entryLogger,
             CompactableLedgerStorage ledgerStorage,
             LogRemovalListener logRemover) {
-        super(conf, logRemover);
+        this(conf, entryLogger, ledgerStorage, new Throttler(conf), logRemover);
+    }
+
+    EntryLogCompactor(
+            ServerConfiguration conf,
+            EntryLogger entryLogger,
+            CompactableLedgerStorage ledgerStorage,
+            Throttler throttler,
+            LogRemovalListener logRemover) {
+        super(conf, throttler, logRemover);
         this.maxOutstandingRequests = conf.getCompactionMaxOutstandingRequests();
+        this.zeroCopyEnabled = conf.isCompactionZeroCopyEnabled();
+        // with an entry log per ledger, the entries of each ledger go to a different entry log
+        this.multiLedgerRuns = !conf.isEntryLogPerLedgerEnabled();
         this.entryLogger = entryLogger;
         this.ledgerStorage = ledgerStorage;
     }
 
     @Override
     public boolean compact(EntryLogMetadata entryLogMeta) {
+        // each compaction owns its scanner state, so that several entry logs can be compacted concurrently
+        CompactionScannerFactory scannerFactory = new CompactionScannerFactory();
         try {
-            entryLogger.scanEntryLog(entryLogMeta.getEntryLogId(),
-                scannerFactory.newScanner(entryLogMeta));
+            if (zeroCopyEnabled) {
+                EntryRunTransferScanner scanner = scannerFactory.newTransferScanner(entryLogMeta);
+                entryLogger.scanEntryLogLocations(entryLogMeta.getEntryLogId(), scanner);
+                scanner.transfer();
+            } else {
+                entryLogger.scanEntryLog(entryLogMeta.getEntryLogId(),
+                    scannerFactory.newScanner(entryLogMeta));
+            }
             scannerFactory.flush();
             LOG.info("Removing entry log {} after compaction", entryLogMeta.getEntryLogId());
             logRemovalListener.removeEntryLog(entryLogMeta.getEntryLogId());
@@ -76,6 +105,11 @@ public class EntryLogCompactor extends AbstractLogCompactor {
         return true;
     }
 
+    @Override
+    public boolean supportsConcurrentCompaction() {
+        return true;
+    }
+
     /**
      * A scanner wrapper to check whether a ledger is alive in an entry log file.
      */
@@ -106,6 +140,10 @@ public class EntryLogCompactor extends AbstractLogCompactor {
             };
         }
 
+        EntryRunTransferScanner newTransferScanner(final EntryLogMetadata meta) {
+            return new EntryRunTransferScanner(meta, this);
+        }
+
         void flush() throws IOException {
             if (offsets.isEmpty()) {
                 if (LOG.isDebugEnabled()) {
@@ -114,14 +152,129 @@ public class EntryLogCompactor extends AbstractLogCompactor {
                 return;
             }
 
-            // Before updating the index, we want to wait until all the compacted entries are flushed into the
-            // entryLog
             try {
-                entryLogger.flush();
-                ledgerStorage.updateEntriesLocations(offsets);
-                ledgerStorage.flushEntriesLocationsIndex();
+                locationsUpdater.update(offsets);
             } finally {
-                offsets.clear();
+                offsets = new ArrayList<EntryLocation>();
+            }
+        }
+    }
+
+    /**
+     * A scanner coalescing adjacent active entries into runs, which are transferred at once.
+     */
+    class EntryRunTransferScanner implements EntryLogger.EntryLogLocationScanner {
+        private final EntryLogMetadata meta;
+        private final CompactionScannerFactory scannerFactory;
+
+        // current run of adjacent entries
+        private long runOffset = -1L;
+        private int runLength = 0;
+        private long runLedgerId = -1L;
+        private EntryLogMetadata runLedgersSize = new EntryLogMetadata(-1L);
+        private final List<EntryLocation> runEntries = new ArrayList<>();
+
+        EntryRunTransferScanner(EntryLogMetadata meta, CompactionScannerFactory scannerFactory) {
+            this.meta = meta;
+            this.scannerFactory = scannerFactory;
+        }
+
+        @Override
+        public boolean accept(long ledgerId) {
+            return meta.containsLedger(ledgerId);
+        }
+
+        @Override
+        public void process(long ledgerId, long entryId, long offset, int entrySize) throws IOException {
+            // the throttler is acquired with the same permits as when the entry is read
+            throttler.acquire(entrySize);
+
+            int size = 4 + entrySize;
+            if (!runEntries.isEmpty()
+                    && (offset != runOffset + runLength
+                        || runLength + size > MAX_TRANSFER_RUN_BYTES
+                        || (!multiLedgerRuns && ledgerId != runLedgerId))) {
+                transfer();
+            }
+            if (runEntries.isEmpty()) {
+                runOffset = offset;
+                runLedgerId = ledgerId;
+            }
+            // keep the position of the entry relative to the start of the run
+            runEntries.add(new EntryLocation(ledgerId, entryId, offset - runOffset));
+            runLedgersSize.addLedgerSize(ledgerId, size);
+            runLength += size;
+        }
+
+        /**
+         * Transfer the current run of entries into the current entry log.
+         */
+        void transfer() throws IOException {
+            if (runEntries.isEmpty()) {
+                return;
+            }
+            if (scannerFactory.offsets.size() > maxOutstandingRequests) {
+                scannerFactory.flush();
+            }
+            long runLocation = entryLogger.transferEntriesForCompaction(meta.getEntryLogId(), runOffset,
+                    runLength, runLedgerId, runLedgersSize);
+            for (EntryLocation entry : runEntries) {
+                // the location of an entry points right after its size header
+                scannerFactory.offsets.add(new EntryLocation(entry.getLedger(), entry.getEntry(),
+                        runLocation + entry.getLocation() + 4));
+            }
+            runEntries.clear();
+            runLedgersSize = new EntryLogMetadata(-1L);
+            runLength = 0;
+        }
+    }
+
+    /**
+     * Group the index updates of the compactions running concurrently.
+     *
+     * <p>Before updating the index we need to wait until all the compacted entries are flushed into the
+     * entry log. Each flush of the entry logger and of the locations index is expensive, so the offsets
+     * handed over while another update is in progress are accumulated and applied together by the next
+     * update, instead of each compaction doing its own flush.
+     */
+    class EntryLocationsUpdater {
+        private final Object updateLock = new Object();
+        private Batch current = new Batch();
+
+        private class Batch {
+            final List<EntryLocation> offsets = new ArrayList<>();
+            // guarded by updateLock
+            boolean done = false;
+            IOException failure = null;
+        }
+
+        void update(List<EntryLocation> offsets) throws IOException {
+            Batch batch;
+            synchronized (this) {
+                current.offsets.addAll(offsets);
+                batch = current;
+            }
+
+            synchronized (updateLock) {
+                if (!batch.done) {
+                    synchronized (this) {
+                        if (current == batch) {
+                            current = new Batch();
+                        }
+                    }
+                    try {
+                        entryLogger.flush();
+                        ledgerStorage.updateEntriesLocations(batch.offsets);
+                        ledgerStorage.flushEntriesLocationsIndex();
+                    } catch (IOException e) {
+                        batch.failure = e;
+                        throw e;
+                    } finally {
+                        batch.done = true;
+                    }
+                } else if (batch.failure != null) {
+                    throw new IOException("Failed to update entries locations", batch.failure);
+                }
             }
         }
     }
@@ -24,6 +24,7 @@ package org.apache.bookkeeper.bookie;
 import io.netty.buffer.ByteBuf;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 import org.apache.bookkeeper.bookie.EntryLogger.BufferedLogChannel;
@@ -36,6 +37,14 @@ interface EntryLogManager {
      */
     long addEntry(long ledger, ByteBuf entry, boolean rollLog) throws IOException;
 
+    /*
+     * append a run of entries, stored contiguously (size header included) in the
+     * given file channel, to the entrylog of the given ledger and return the position
+     * of the run in the entrylog. entriesMetadata holds the size of the run per ledger.
+     */
+    long transferEntries(long ledger, FileChannel src, long srcPosition, int length,
+                         EntryLogMetadata entriesMetadata) throws IOException;
+
     /*
      * gets the active logChannel with the given entryLogId. null if it is
      * not existing.
@@ -29,6 +29,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.util.concurrent.FastThreadLocal;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.bookie.EntryLogger.BufferedLogChannel;
@@ -82,6 +83,20 @@ abstract class EntryLogManagerBase implements EntryLogManager {
         return (logChannel.getLogId() << 32L) | pos;
     }
 
+    /*
+     * This method should be guarded by a lock, so callers of this method
+     * should be in the right scope of the lock.
+     */
+    @Override
+    public long transferEntries(long ledger, FileChannel src, long srcPosition, int length,
+                                EntryLogMetadata entriesMetadata) throws IOException {
+        BufferedLogChannel logChannel = getCurrentLogForLedgerForAddEntry(ledger, length, true);
+        long pos = logChannel.transferFrom(src, srcPosition, length);
+        entriesMetadata.getLedgersMap().forEach(logChannel::registerWrittenEntry);
+
+        return (logChannel.getLogId() << 32L) | pos;
+    }
+
     boolean reachEntryLogLimit(BufferedLogChannel logChannel, long size) {
         if (logChannel == null) {
             return false;
@@ -27,6 +27,7 @@ import static org.apache.bookkeeper.bookie.EntryLogger.UNASSIGNED_LEDGERID;
 import io.netty.buffer.ByteBuf;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -87,6 +88,12 @@ class EntryLogManagerForSingleEntryLog extends EntryLogManagerBase {
         return super.addEntry(ledger, entry, rollLog);
     }
 
+    @Override
+    public synchronized long transferEntries(long ledger, FileChannel src, long srcPosition, int length,
+                                             EntryLogMetadata entriesMetadata) throws IOException {
+        return super.transferEntries(ledger, src, srcPosition, length, entriesMetadata);
+    }
+
     @Override
     synchronized BufferedLogChannel getCurrentLogForLedgerForAddEntry(long ledgerId, int entrySize,
             boolean rollLog) throws IOException {
@@ -104,6 +104,18 @@ public class EntryLogMetadata {
         });
     }
 
+    /**
+     * Create a copy of this metadata, which remains valid after a recyclable
+     * instance has been recycled.
+     */
+    public EntryLogMetadata copy() {
+        EntryLogMetadata metadata = new EntryLogMetadata(entryLogId);
+        metadata.totalSize = totalSize;
+        metadata.remainingSize = remainingSize;
+        ledgersMap.forEach(metadata.ledgersMap::put);
+        return metadata;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
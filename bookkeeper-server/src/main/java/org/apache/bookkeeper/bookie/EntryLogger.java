@@ -54,6 +54,7 @@ import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongPredicate;
 
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.NullStatsLogger;
@@ -313,6 +314,36 @@ public class EntryLogger {
         void process(long ledgerId, long offset, ByteBuf entry) throws IOException;
     }
 
+    /**
+     * Scan the location of the entries in a entry log file, without reading their payload.
+     */
+    public interface EntryLogLocationScanner {
+        /**
+         * Tests whether or not the entries belongs to the specified ledger
+         * should be processed.
+         *
+         * @param ledgerId
+         *          Ledger ID.
+         * @return true if and only the entries of the ledger should be scanned.
+         */
+        boolean accept(long ledgerId);
+
+        /**
+         * Process the location of an entry.
+         *
+         * @param ledgerId
+         *          Ledger ID.
+         * @param entryId
+         *          Entry ID.
+         * @param offset
+         *          File offset of the size header of this entry.
+         * @param entrySize
+         *          Size of the entry, not including its size header.
+         * @throws IOException
+         */
+        void process(long ledgerId, long entryId, long offset, int entrySize) throws IOException;
+    }
+
     /**
      * Entry Log Listener.
      */
@@ -989,8 +1020,79 @@ public class EntryLogger {
      * @throws IOException
      */
     public void scanEntryLog(long entryLogId, EntryLogScanner scanner) throws IOException {
-        // Buffer where to read the entrySize (4 bytes) and the ledgerId (8 bytes)
-        ByteBuf headerBuffer = Unpooled.buffer(4 + 8);
+        // Start with a reasonably sized buffer size
+        ByteBuf data = allocator.directBuffer(1024 * 1024);
+        try {
+            // the header holds the entrySize (4 bytes) and the ledgerId (8 bytes)
+            scanEntryHeaders(entryLogId, 4 + 8, scanner::accept, (bc, offset, entrySize, ledgerId, header) -> {
+                // read the entry
+                data.clear();
+                if (entrySize <= 0) {
+                    LOG.warn("bad read for ledger entry from entryLog {}@{} (entry size {})",
+                            entryLogId, offset + 4, entrySize);
+                    return false;
+                }
+                data.capacity(entrySize);
+                int rc = readFromLogChannel(entryLogId, bc, data, offset + 4);
+                if (rc != entrySize) {
+                    LOG.warn("Short read for ledger entry from entryLog {}@{} ({} != {})",
+                            entryLogId, offset + 4, rc, entrySize);
+                    return false;
+                }
+                // process the entry
+                scanner.process(ledgerId, offset, data);
+                return true;
+            });
+        } finally {
+            data.release();
+        }
+    }
+
+    /**
+     * Scan the location of the entries of an entry log, reading only the header of each entry.
+     *
+     * @param entryLogId Entry Log Id
+     * @param scanner Entry Log Location Scanner
+     * @throws IOException
+     */
+    public void scanEntryLogLocations(long entryLogId, EntryLogLocationScanner scanner) throws IOException {
+        // the header holds the entrySize (4 bytes), the ledgerId (8 bytes) and the entryId (8 bytes)
+        scanEntryHeaders(entryLogId, 4 + 8 + 8, scanner::accept, (bc, offset, entrySize, ledgerId, header) -> {
+            if (entrySize < 16) {
+                LOG.warn("bad read for ledger entry from entryLog {}@{} (entry size {})",
+                        entryLogId, offset + 4, entrySize);
+                return false;
+            }
+            scanner.process(ledgerId, header.getLong(12), offset, entrySize);
+            return true;
+        });
+    }
+
+    /**
+     * Process the header of an entry found by {@link #scanEntryHeaders}.
+     */
+    private interface EntryHeaderProcessor {
+        /**
+         * @param bc the channel of the entry log
+         * @param offset the offset of the size header of the entry
+         * @param entrySize the size of the entry, not including its size header
+         * @param ledgerId the ledger of the entry
+         * @param header the header read, starting with the size header
+         * @return whether to go on with the next entries
+         */
+        boolean process(BufferedReadChannel bc, long offset, int entrySize, long ledgerId, ByteBuf header)
+                throws IOException;
+    }
+
+    /**
+     * Walk through the entries of an entry log, reading the header of each of them. The padding of the ledgers
+     * map and the entries of the ledgers not accepted are skipped.
+     *
+     * @param headerSize the bytes to read at the start of each entry, including its size header and ledger id
+     */
+    private void scanEntryHeaders(long entryLogId, int headerSize, LongPredicate accept,
+                                  EntryHeaderProcessor processor) throws IOException {
+        ByteBuf headerBuffer = Unpooled.buffer(headerSize);
         BufferedReadChannel bc;
         // Get the BufferedChannel for the current entry log file
         try {
@@ -1003,57 +1105,54 @@ public class EntryLogger {
         // the header where all of the ledger entries are.
         long pos = LOGFILE_HEADER_SIZE;
 
-        // Start with a reasonably sized buffer size
-        ByteBuf data = allocator.directBuffer(1024 * 1024);
-
-        try {
-
-            // Read through the entry log file and extract the ledger ID's.
-            while (true) {
-                // Check if we've finished reading the entry log file.
-                if (pos >= bc.size()) {
-                    break;
-                }
-                if (readFromLogChannel(entryLogId, bc, headerBuffer, pos) != headerBuffer.capacity()) {
-                    LOG.warn("Short read for entry size from entrylog {}", entryLogId);
-                    return;
-                }
-                long offset = pos;
-                pos += 4;
-                int entrySize = headerBuffer.readInt();
-                long ledgerId = headerBuffer.readLong();
-                headerBuffer.clear();
-
-                if (ledgerId == INVALID_LID || !scanner.accept(ledgerId)) {
-                    // skip this entry
-                    pos += entrySize;
-                    continue;
-                }
-                // read the entry
-                data.clear();
-                if (entrySize <= 0) {
-                    LOG.warn("bad read for ledger entry from entryLog {}@{} (entry size {})",
-                            entryLogId, pos, entrySize);
+        // Read through the entry log file and extract the ledger ID's.
+        while (pos < bc.size()) {
+            headerBuffer.clear();
+            int rc = readFromLogChannel(entryLogId, bc, headerBuffer, pos);
+            if (rc < 4 + 8) {
+                LOG.warn("Short read for entry header from entrylog {}", entryLogId);
+                return;
+            }
+            int entrySize = headerBuffer.getInt(0);
+            long ledgerId = headerBuffer.getLong(4);
+            if (ledgerId != INVALID_LID && accept.test(ledgerId)) {
+                if (rc != headerSize) {
+                    LOG.warn("Short read for entry header from entrylog {}", entryLogId);
                     return;
                 }
-                data.capacity(entrySize);
-                int rc = readFromLogChannel(entryLogId, bc, data, pos);
-                if (rc != entrySize) {
-                    LOG.warn("Short read for ledger entry from entryLog {}@{} ({} != {})",
-                            entryLogId, pos, rc, entrySize);
+                if (!processor.process(bc, pos, entrySize, ledgerId, headerBuffer)) {
                     return;
                 }
-                // process the entry
-                scanner.process(ledgerId, offset, data);
-
-                // Advance position to the next entry
-                pos += entrySize;
             }
-        } finally {
-            data.release();
+
+            // Advance position to the next entry
+            pos += 4 + entrySize;
         }
     }
 
+    /**
+     * Append a run of entries, stored contiguously in an entry log along with their size header,
+     * to the current entry log. The bytes are transferred from file to file, without reading them.
+     *
+     * @param srcEntryLogId id of the entry log containing the entries
+     * @param srcOffset offset of the size header of the first entry of the run
+     * @param length length of the run, including the size headers
+     * @param ledgerId ledger of the first entry of the run
+     * @param entriesMetadata size of the run per ledger
+     * @return the location of the size header of the first entry in the current entry log
+     * @throws IOException
+     */
+    long transferEntriesForCompaction(long srcEntryLogId, long srcOffset, int length, long ledgerId,
+                                      EntryLogMetadata entriesMetadata) throws IOException {
+        // make sure the file channel of the source entry log is opened
+        getChannelForLogId(srcEntryLogId);
+        FileChannel src = logid2FileChannel.get(srcEntryLogId);
+        if (src == null) {
+            throw new IOException("Entry log " + srcEntryLogId + " has been closed");
+        }
+        return entryLogManager.transferEntries(ledgerId, src, srcOffset, length, entriesMetadata);
+    }
+
     public EntryLogMetadata getEntryLogMetadata(long entryLogId) throws IOException {
         // First try to extract the EntryLogMetadata from the index, if there's no index then fallback to scanning the
         // entry log
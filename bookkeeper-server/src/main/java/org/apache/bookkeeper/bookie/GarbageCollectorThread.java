@@ -28,6 +28,10 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -35,7 +39,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Supplier;
 
 import lombok.Getter;
 
@@ -92,6 +95,17 @@ public class GarbageCollectorThread extends SafeRunnable {
     final EntryLogger entryLogger;
     final AbstractLogCompactor compactor;
 
+    // Executor used to compact several entry logs concurrently, null when compacting one log at a time
+    private final ExecutorService compactionExecutor;
+
+    // Executor used to extract the metadata of several entry logs concurrently, null when extracting serially
+    private final ExecutorService metadataExtractionExecutor;
+
+    final boolean useCostBasedCompaction;
+    // check the ledgers of the entry logs against a snapshot of the active ledgers, instead of one by one
+    final boolean bulkLedgerChecks;
+    final CompactionCandidateSelector candidateSelector;
+
     // Stats loggers for garbage collection operations
     private final GarbageCollectorStats gcStats;
 
@@ -175,6 +189,11 @@ public class GarbageCollectorThread extends SafeRunnable {
             () -> totalEntryLogSize,
             () -> garbageCollector.getNumActiveLedgers()
         );
+        this.useCostBasedCompaction = conf.getUseCostBasedCompaction();
+        this.bulkLedgerChecks = conf.isGcBulkLedgerChecksEnabled();
+        this.candidateSelector = new CompactionCandidateSelector(conf, ledgerDirsManager);
+        gcStats.registerEntryLogUsageHistogram(CompactionCandidateSelector.NUM_BUCKETS,
+                candidateSelector::getEntryLogCount, candidateSelector::getEntryLogRemainingBytes);
 
         this.garbageCleaner = ledgerId -> {
             try {
@@ -199,6 +218,9 @@ public class GarbageCollectorThread extends SafeRunnable {
 
         boolean isForceAllowCompaction = conf.isForceAllowCompaction();
 
+        // the throttler is shared by the metadata extraction and all the compactions
+        this.throttler = new AbstractLogCompactor.Throttler(conf);
+
         AbstractLogCompactor.LogRemovalListener remover = new AbstractLogCompactor.LogRemovalListener() {
             @Override
             public void removeEntryLog(long logToRemove) {
@@ -215,10 +237,20 @@ public class GarbageCollectorThread extends SafeRunnable {
         if (conf.getUseTransactionalCompaction()) {
             this.compactor = new TransactionalEntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
         } else {
-            this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
+            this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, throttler, remover);
         }
 
-        this.throttler = new AbstractLogCompactor.Throttler(conf);
+        int compactionParallelism = conf.getCompactionParallelism();
+        if (compactionParallelism > 1 && compactor.supportsConcurrentCompaction()) {
+            this.compactionExecutor = Executors.newFixedThreadPool(compactionParallelism,
+                    new DefaultThreadFactory("GarbageCollectorThread-compaction"));
+        } else {
+            if (compactionParallelism > 1) {
+                LOG.warn("Concurrent compaction is not supported by {}, compacting one entry log at a time",
+                        compactor.getClass().getSimpleName());
+            }
+            this.compactionExecutor = null;
+        }
         if (minorCompactionInterval > 0 && minorCompactionThreshold > 0) {
             if (minorCompactionThreshold > 1.0f) {
                 throw new IOException("Invalid minor compaction threshold "
@@ -266,6 +298,17 @@ public class GarbageCollectorThread extends SafeRunnable {
                + minorCompactionThreshold + ", interval=" + minorCompactionInterval);
         LOG.info("Major Compaction : enabled=" + enableMajorCompaction + ", threshold="
                + majorCompactionThreshold + ", interval=" + majorCompactionInterval);
+        LOG.info("Compaction parallelism : {}", compactionExecutor == null ? 1 : compactionParallelism);
+        LOG.info("Cost based compaction : enabled={}", useCostBasedCompaction);
+        LOG.info("Bulk ledger checks : enabled={}", bulkLedgerChecks);
+
+        int metadataExtractionThreads = conf.getGcEntryLogMetadataExtractionThreads();
+        if (metadataExtractionThreads > 1) {
+            this.metadataExtractionExecutor = Executors.newFixedThreadPool(metadataExtractionThreads,
+                    new DefaultThreadFactory("GarbageCollectorThread-metadata-extraction"));
+        } else {
+            this.metadataExtractionExecutor = null;
+        }
 
         lastMinorCompactionTime = lastMajorCompactionTime = System.currentTimeMillis();
     }
@@ -471,11 +514,27 @@ public class GarbageCollectorThread extends SafeRunnable {
     private void doGcEntryLogs() throws EntryLogMetadataMapException {
         // Get a cumulative count, don't update until complete
         AtomicLong totalEntryLogSizeAcc = new AtomicLong(0L);
+        long[] usageCounts = new long[CompactionCandidateSelector.NUM_BUCKETS];
+        long[] usageRemainingBytes = new long[CompactionCandidateSelector.NUM_BUCKETS];
+
+        // The ledgers of the entry logs in the map were all created before this snapshot, so a ledger
+        // missing from it has been deleted.
+        CompactLedgerIdSet activeLedgers = null;
+        if (bulkLedgerChecks) {
+            try {
+                activeLedgers = CompactLedgerIdSet.copyOf(ledgerStorage.getActiveLedgersInRange(0, Long.MAX_VALUE));
+            } catch (IOException e) {
+                LOG.warn("Failed to get the active ledgers from ledger storage, checking them one by one", e);
+            }
+        }
+        final CompactLedgerIdSet activeLedgersSnapshot = activeLedgers;
 
         // Loop through all of the entry logs and remove the non-active ledgers.
         entryLogMetaMap.forEach((entryLogId, meta) -> {
             try {
-                boolean modified = removeIfLedgerNotExists(meta);
+                boolean modified = activeLedgersSnapshot != null
+                        ? removeIfLedgerNotActive(meta, activeLedgersSnapshot)
+                        : removeIfLedgerNotExists(meta);
                 if (meta.isEmpty()) {
                     // This means the entry log is not associated with any active
                     // ledgers anymore.
@@ -494,10 +553,16 @@ public class GarbageCollectorThread extends SafeRunnable {
                 LOG.warn("Failed to remove ledger from entry-log metadata {}", entryLogId, e);
             }
            totalEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
+            if (!meta.isEmpty()) {
+                int bucketIndex = CompactionCandidateSelector.bucketIndex(meta.getUsage());
+                usageCounts[bucketIndex]++;
+                usageRemainingBytes[bucketIndex] += meta.getRemainingSize();
+            }
         });
 
         this.totalEntryLogSize = totalEntryLogSizeAcc.get();
         this.numActiveEntryLogs = entryLogMetaMap.size();
+        candidateSelector.updateHistogram(usageCounts, usageRemainingBytes);
     }
 
     private boolean removeIfLedgerNotExists(EntryLogMetadata meta) throws EntryLogMetadataMapException {
@@ -519,6 +584,20 @@ public class GarbageCollectorThread extends SafeRunnable {
         return modified.getValue();
     }
 
+    private boolean removeIfLedgerNotActive(EntryLogMetadata meta, CompactLedgerIdSet activeLedgers)
+            throws EntryLogMetadataMapException {
+        MutableBoolean modified = new MutableBoolean(false);
+        meta.removeLedgerIf((entryLogLedger) -> {
+            boolean exist = activeLedgers.contains(entryLogLedger);
+            if (!exist) {
+                modified.setTrue();
+            }
+            return !exist;
+        });
+
+        return modified.getValue();
+    }
+
     /**
      * Compact entry logs if necessary.
      *
@@ -530,6 +609,10 @@ public class GarbageCollectorThread extends SafeRunnable {
      */
     @VisibleForTesting
     void doCompactEntryLogs(double threshold, long maxTimeMillis) throws EntryLogMetadataMapException {
+        if (useCostBasedCompaction) {
+            doCostBasedCompaction(threshold, maxTimeMillis);
+            return;
+        }
         LOG.info("Do compaction to compact those files lower than {}", threshold);
 
         final int numBuckets = 10;
@@ -539,6 +622,8 @@ public class GarbageCollectorThread extends SafeRunnable {
         long start = System.currentTimeMillis();
         MutableLong end = new MutableLong(start);
         MutableLong timeDiff = new MutableLong(0);
+        List<EntryLogMetadata> candidates = new ArrayList<>();
+        List<Integer> candidateBuckets = new ArrayList<>();
 
         entryLogMetaMap.forEach((entryLogId, meta) -> {
             int bucketIndex = calculateUsageIndex(numBuckets, meta.getUsage());
@@ -559,11 +644,25 @@ public class GarbageCollectorThread extends SafeRunnable {
                         meta.getEntryLogId(), meta.getUsage(), threshold);
             }
 
+            if (compactionExecutor != null) {
+                // compacted later on, along with the other candidates. the metadata instance
+                // may be recycled once this callback returns, so keep a copy of it
+                candidates.add(meta.copy());
+                candidateBuckets.add(bucketIndex);
+                return;
+            }
+
             long priorRemainingSize = meta.getRemainingSize();
             compactEntryLog(meta);
             gcStats.getReclaimedSpaceViaCompaction().add(meta.getTotalSize() - priorRemainingSize);
             compactedBuckets[bucketIndex]++;
         });
+        boolean[] compacted = compactEntryLogsConcurrently(candidates, start, maxTimeMillis);
+        for (int i = 0; i < compacted.length; i++) {
+            if (compacted[i]) {
+                compactedBuckets[candidateBuckets.get(i)]++;
+            }
+        }
         if (LOG.isDebugEnabled()) {
             if (!running) {
                 LOG.debug("Compaction exited due to gc not running");
@@ -577,6 +676,93 @@ public class GarbageCollectorThread extends SafeRunnable {
                 entryLogUsageBuckets, compactedBuckets);
     }
 
+    /**
+     * Compact the entry logs below the threshold, by decreasing benefit/cost ratio.
+     *
+     * @see CompactionCandidateSelector
+     */
+    private void doCostBasedCompaction(double threshold, long maxTimeMillis) throws EntryLogMetadataMapException {
+        long start = System.currentTimeMillis();
+        double adjustedThreshold = candidateSelector.adjustThreshold(threshold);
+        if (adjustedThreshold < threshold) {
+            LOG.info("Ledger disks almost full, compaction threshold tightened from {} to {}",
+                    threshold, adjustedThreshold);
+        }
+        List<EntryLogMetadata> candidates = candidateSelector.selectCandidates(entryLogMetaMap,
+                adjustedThreshold, entryLogger.getLastLogId());
+        LOG.info("Do cost based compaction of {} entry logs lower than {}", candidates.size(), adjustedThreshold);
+
+        if (compactionExecutor != null) {
+            compactEntryLogsConcurrently(candidates, start, maxTimeMillis);
+            return;
+        }
+        for (EntryLogMetadata meta : candidates) {
+            if (!running || (maxTimeMillis > 0 && System.currentTimeMillis() - start >= maxTimeMillis)) {
+                LOG.info("Cost based compaction stopped, running={}, elapsed={}ms",
+                        running, System.currentTimeMillis() - start);
+                break;
+            }
+            long priorRemainingSize = meta.getRemainingSize();
+            compactEntryLog(meta);
+            gcStats.getReclaimedSpaceViaCompaction().add(meta.getTotalSize() - priorRemainingSize);
+        }
+    }
+
+    /**
+     * Compact the given entry logs using the compaction executor.
+     *
+     * <p>The compacting flag is held for the whole batch, so shutdown waits until all the
+     * compactions in flight are done. Entry logs not started yet when the time limit is
+     * reached or the gc is stopped are skipped.
+     *
+     * @return whether each of the entry logs was compacted
+     */
+    private boolean[] compactEntryLogsConcurrently(List<EntryLogMetadata> candidates, long start,
+                                                   long maxTimeMillis) {
+        boolean[] compacted = new boolean[candidates.size()];
+        if (candidates.isEmpty()) {
+            return compacted;
+        }
+        if (!compacting.compareAndSet(false, true)) {
+            return compacted;
+        }
+
+        try {
+            LOG.info("Compacting {} entry logs concurrently", candidates.size());
+            List<Future<?>> futures = new ArrayList<>(candidates.size());
+            for (int i = 0; i < candidates.size(); i++) {
+                EntryLogMetadata meta = candidates.get(i);
+                int index = i;
+                futures.add(compactionExecutor.submit(() -> {
+                    if (!running || (maxTimeMillis > 0 && System.currentTimeMillis() - start >= maxTimeMillis)) {
+                        return;
+                    }
+                    long priorRemainingSize = meta.getRemainingSize();
+                    try {
+                        compacted[index] = compactor.compact(meta);
+                    } catch (Exception e) {
+                        LOG.error("Failed to compact entry log {} due to unexpected error",
+                                meta.getEntryLogId(), e);
+                    }
+                    gcStats.getReclaimedSpaceViaCompaction().add(meta.getTotalSize() - priorRemainingSize);
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOG.error("Unexpected error while compacting entry logs", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for entry log compactions to complete");
+        } finally {
+            compacting.set(false);
+        }
+        return compacted;
+    }
+
     /**
      * Calculate the index for the batch based on the usage between 0 and 1.
      *
@@ -610,6 +796,12 @@ public class GarbageCollectorThread extends SafeRunnable {
         this.running = false;
         // Interrupt GC executor thread
         gcExecutor.shutdownNow();
+        if (compactionExecutor != null) {
+            compactionExecutor.shutdownNow();
+        }
+        if (metadataExtractionExecutor != null) {
+            metadataExtractionExecutor.shutdownNow();
+        }
         try {
             entryLogMetaMap.close();
         } catch (Exception e) {
@@ -664,6 +856,10 @@ public class GarbageCollectorThread extends SafeRunnable {
      * Method to read in all of the entry logs (those that we haven't done so yet),
      * and find the set of ledger ID's that make up each entry log file.
      *
+     * <p>The entry logs already in the entry log metadata map are skipped, so with a persistent
+     * map only the entry logs created since the last run need to be read after a restart. The
+     * metadata of the new entry logs is extracted by the metadata extraction threads, if any.
+     *
      * @throws EntryLogMetadataMapException
      */
     protected void extractMetaFromEntryLogs() throws EntryLogMetadataMapException {
@@ -671,11 +867,12 @@ public class GarbageCollectorThread extends SafeRunnable {
         // to a new one. We scan entry logs as follows:
         // - entryLogPerLedgerEnabled is false: Extract it for every entry log except for the current one (un-flushed).
         // - entryLogPerLedgerEnabled is true: Scan all flushed entry logs up to the highest known id.
-        Supplier<Long> finalEntryLog = () -> conf.isEntryLogPerLedgerEnabled() ? entryLogger.getLastLogId() :
+        long finalEntryLog = conf.isEntryLogPerLedgerEnabled() ? entryLogger.getLastLogId() :
                 entryLogger.getLeastUnflushedLogId();
-        boolean hasExceptionWhenScan = false;
-        boolean increaseScannedLogId = true;
-        for (long entryLogId = scannedLogId; entryLogId < finalEntryLog.get(); entryLogId++) {
+        // first entry log which will have to be looked at again during next gc run
+        long firstPendingLogId = finalEntryLog;
+        List<Long> entryLogsToExtract = new ArrayList<>();
+        for (long entryLogId = scannedLogId; entryLogId < finalEntryLog; entryLogId++) {
             // Comb the current entry log file if it has not already been extracted.
             if (entryLogMetaMap.containsKey(entryLogId)) {
                 continue;
@@ -692,16 +889,28 @@ public class GarbageCollectorThread extends SafeRunnable {
             if (conf.isEntryLogPerLedgerEnabled() && !entryLogger.isFlushedEntryLog(entryLogId)) {
                 LOG.info("Entry log {} not flushed (entryLogPerLedgerEnabled). Starting next iteration at this point.",
                         entryLogId);
-                increaseScannedLogId = false;
+                firstPendingLogId = Math.min(firstPendingLogId, entryLogId);
                 continue;
             }
+            entryLogsToExtract.add(entryLogId);
+        }
 
-            LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
+        List<Future<EntryLogMetadata>> extractions = new ArrayList<>(entryLogsToExtract.size());
+        if (metadataExtractionExecutor != null && entryLogsToExtract.size() > 1) {
+            for (long entryLogId : entryLogsToExtract) {
+                extractions.add(metadataExtractionExecutor.submit(() -> extractEntryLogMetadata(entryLogId)));
+            }
+        }
 
+        for (int i = 0; i < entryLogsToExtract.size(); i++) {
+            long entryLogId = entryLogsToExtract.get(i);
             try {
-                // Read through the entry log file and extract the entry log meta
-                EntryLogMetadata entryLogMeta = entryLogger.getEntryLogMetadata(entryLogId, throttler);
-                removeIfLedgerNotExists(entryLogMeta);
+                EntryLogMetadata entryLogMeta;
+                if (extractions.isEmpty()) {
+                    entryLogMeta = extractEntryLogMetadata(entryLogId);
+                } else {
+                    entryLogMeta = getExtractedEntryLogMetadata(extractions.get(i));
+                }
                 if (entryLogMeta.isEmpty()) {
                     entryLogger.removeEntryLog(entryLogId);
                     // remove it from entrylogmetadata-map if it is present in
@@ -711,18 +920,45 @@ public class GarbageCollectorThread extends SafeRunnable {
                     entryLogMetaMap.put(entryLogId, entryLogMeta);
                 }
             } catch (IOException e) {
-                hasExceptionWhenScan = true;
+                // if scan failed on some entry log, we don't move 'scannedLogId' past it, so that
+                // it is scanned again during next gc run
+                firstPendingLogId = Math.min(firstPendingLogId, entryLogId);
                 LOG.warn("Premature exception when processing " + entryLogId
                          + " recovery will take care of the problem", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                firstPendingLogId = Math.min(firstPendingLogId, entryLogId);
+                LOG.warn("Interrupted while extracting entry log metadata from entryLogId: {}", entryLogId);
+                extractions.forEach(extraction -> extraction.cancel(true));
+                break;
             }
+        }
 
-            // if scan failed on some entry log, we don't move 'scannedLogId' to next id
-            // if scan succeed, we don't need to scan it again during next gc run,
-            // we move 'scannedLogId' to next id (unless entryLogPerLedgerEnabled is true
-            // and we have found and un-flushed entry log already).
-            if (!hasExceptionWhenScan && (!conf.isEntryLogPerLedgerEnabled() || increaseScannedLogId)) {
-                ++scannedLogId;
+        // the entry logs before the first pending one are either extracted, garbage collected
+        // or already known, so we don't need to look at them again.
+        scannedLogId = Math.max(scannedLogId, firstPendingLogId);
+    }
+
+    private EntryLogMetadata extractEntryLogMetadata(long entryLogId)
+            throws IOException, EntryLogMetadataMapException {
+        LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
+        // Read through the entry log file and extract the entry log meta
+        EntryLogMetadata entryLogMeta = entryLogger.getEntryLogMetadata(entryLogId, throttler);
+        removeIfLedgerNotExists(entryLogMeta);
+        return entryLogMeta;
+    }
+
+    private static EntryLogMetadata getExtractedEntryLogMetadata(Future<EntryLogMetadata> extraction)
+            throws IOException, EntryLogMetadataMapException, InterruptedException {
+        try {
+            return extraction.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof EntryLogMetadataMapException) {
+                throw (EntryLogMetadataMapException) e.getCause();
             }
+            throw new IOException(e.getCause());
         }
     }
 
@@ -26,8 +26,10 @@ import static org.apache.bookkeeper.common.concurrent.FutureUtils.result;
 import com.google.common.collect.Sets;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NavigableSet;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeSet;
@@ -69,6 +71,13 @@ import org.slf4j.LoggerFactory;
  * <b>globalActiveLedgers</b>, do garbage collection on them.
  * </ul>
  * </p>
+ *
+ * <p>
+ * When bulk ledger checks are enabled, <b>bkActiveLedgers</b> is kept as a compact sorted array of
+ * ledger ids, and the ledgers missing from the metadata store are verified with concurrent metadata
+ * reads, bounded by the max concurrent requests of the garbage collection, instead of one blocking
+ * read at a time.
+ * </p>
  */
 public class ScanAndCompareGarbageCollector implements GarbageCollector {
 
@@ -85,6 +94,7 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
     private int activeLedgerCounter;
     private StatsLogger statsLogger;
     private final int maxConcurrentRequests;
+    private final boolean bulkLedgerChecks;
 
     public ScanAndCompareGarbageCollector(LedgerManager ledgerManager, CompactableLedgerStorage ledgerStorage,
             ServerConfiguration conf, StatsLogger statsLogger) throws IOException {
@@ -104,6 +114,7 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
                 enableGcOverReplicatedLedger, gcOverReplicatedLedgerIntervalMillis, maxConcurrentRequests);
 
         verifyMetadataOnGc = conf.getVerifyMetadataOnGC();
+        bulkLedgerChecks = conf.isGcBulkLedgerChecksEnabled();
 
         this.activeLedgerCounter = 0;
     }
@@ -120,6 +131,11 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
             return;
         }
 
+        if (bulkLedgerChecks) {
+            bulkGc(garbageCleaner);
+            return;
+        }
+
         try {
             // Get a set of all ledgers on the bookie
             NavigableSet<Long> bkActiveLedgers = Sets.newTreeSet(ledgerStorage.getActiveLedgersInRange(0,
@@ -133,12 +149,15 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
                 LOG.info("Start removing over-replicated ledgers. activeLedgerCounter={}", activeLedgerCounter);
 
                 // remove all the overreplicated ledgers from the local bookie
-                Set<Long> overReplicatedLedgers = removeOverReplicatedledgers(bkActiveLedgers, garbageCleaner);
+                Set<Long> overReplicatedLedgers = removeOverReplicatedledgers(
+                        bkActiveLedgers.stream().mapToLong(Long::longValue).iterator(), bkActiveLedgers.size(),
+                        garbageCleaner);
                 if (overReplicatedLedgers.isEmpty()) {
                     LOG.info("No over-replicated ledgers found.");
                 } else {
                     LOG.info("Removed over-replicated ledgers: {}", overReplicatedLedgers);
                 }
+                bkActiveLedgers.removeAll(overReplicatedLedgers);
                 lastOverReplicatedLedgerGcTimeMillis = System.currentTimeMillis();
             }
 
@@ -216,11 +235,130 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
         }
     }
 
-    private Set<Long> removeOverReplicatedledgers(Set<Long> bkActiveledgers, final GarbageCleaner garbageCleaner)
-            throws Exception {
-        final Set<Long> overReplicatedLedgers = Sets.newHashSet();
+    private void bulkGc(GarbageCleaner garbageCleaner) {
+        try {
+            // Get a snapshot of all ledgers on the bookie
+            CompactLedgerIdSet bkActiveLedgers = CompactLedgerIdSet.copyOf(
+                    ledgerStorage.getActiveLedgersInRange(0, Long.MAX_VALUE));
+            this.activeLedgerCounter = bkActiveLedgers.size();
+
+            long curTime = System.currentTimeMillis();
+            boolean checkOverreplicatedLedgers = (enableGcOverReplicatedLedger && curTime
+                    - lastOverReplicatedLedgerGcTimeMillis > gcOverReplicatedLedgerIntervalMillis);
+            if (checkOverreplicatedLedgers) {
+                LOG.info("Start removing over-replicated ledgers. activeLedgerCounter={}", activeLedgerCounter);
+
+                // remove all the overreplicated ledgers from the local bookie
+                Set<Long> overReplicatedLedgers = removeOverReplicatedledgers(bkActiveLedgers.iterator(),
+                        bkActiveLedgers.size(), garbageCleaner);
+                if (overReplicatedLedgers.isEmpty()) {
+                    LOG.info("No over-replicated ledgers found.");
+                } else {
+                    LOG.info("Removed over-replicated ledgers: {}", overReplicatedLedgers);
+                }
+                bkActiveLedgers = bkActiveLedgers.without(overReplicatedLedgers);
+                lastOverReplicatedLedgerGcTimeMillis = System.currentTimeMillis();
+            }
+
+            // Diff the ledgers on the bookie against each range of ledgers on the metadata store
+            long zkOpTimeoutMs = this.conf.getZkTimeout() * 2;
+            LedgerRangeIterator ledgerRangeIterator = ledgerManager.getLedgerRanges(zkOpTimeoutMs);
+            List<Long> missingLedgers = new ArrayList<>();
+            long start;
+            long end = -1;
+            boolean done = false;
+            while (!done) {
+                start = end + 1;
+                Set<Long> ledgersInMetadata;
+                if (ledgerRangeIterator.hasNext()) {
+                    LedgerRange lRange = ledgerRangeIterator.next();
+                    ledgersInMetadata = lRange.getLedgers();
+                    end = lRange.end();
+                } else {
+                    ledgersInMetadata = new TreeSet<>();
+                    end = Long.MAX_VALUE;
+                    done = true;
+                }
+
+                bkActiveLedgers.forEachInRange(start, end, bkLid -> {
+                    if (!ledgersInMetadata.contains(bkLid)) {
+                        missingLedgers.add(bkLid);
+                    }
+                });
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Active in bookie {}, missing in metadata {}", activeLedgerCounter, missingLedgers);
+            }
+            if (verifyMetadataOnGc) {
+                verifyAndCleanMissingLedgers(missingLedgers, garbageCleaner, zkOpTimeoutMs);
+            } else {
+                for (Long bkLid : missingLedgers) {
+                    garbageCleaner.clean(bkLid);
+                }
+            }
+        } catch (Throwable t) {
+            // ignore exception, collecting garbage next time
+            LOG.warn("Exception when iterating over the metadata", t);
+        }
+    }
+
+    /**
+     * Double check the metadata of the ledgers missing from the ledger ranges, issuing up to
+     * {@code maxConcurrentRequests} metadata reads at a time, and clean the ledgers which don't
+     * exist anymore or no longer include this bookie.
+     */
+    private void verifyAndCleanMissingLedgers(List<Long> missingLedgers, GarbageCleaner garbageCleaner,
+                                              long zkOpTimeoutMs) throws InterruptedException {
+        final Semaphore semaphore = new Semaphore(this.maxConcurrentRequests);
+        final CountDownLatch latch = new CountDownLatch(missingLedgers.size());
+        for (final Long bkLid : missingLedgers) {
+            if (!semaphore.tryAcquire(zkOpTimeoutMs, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Time-out while fetching metadata of the ledgers missing in metadata list,"
+                        + " skipping the remaining ones until next gc");
+                return;
+            }
+            ledgerManager.readLedgerMetadata(bkLid).whenComplete((metadata, exception) -> {
+                try {
+                    int rc = BKException.getExceptionCode(exception);
+                    if (rc == BKException.Code.OK && metadata != null && metadata.getValue() != null) {
+                        // check bookie should be part of ensembles in one
+                        // of the segment else ledger should be deleted from
+                        // local storage
+                        boolean isBookieInEnsembles = metadata.getValue().getAllEnsembles().values().stream()
+                                .anyMatch(ensemble -> ensemble != null && ensemble.contains(selfBookieAddress));
+                        if (!isBookieInEnsembles) {
+                            garbageCleaner.clean(bkLid);
+                        }
+                    } else if (rc == BKException.Code.NoSuchLedgerExistsOnMetadataServerException) {
+                        garbageCleaner.clean(bkLid);
+                    } else {
+                        LOG.warn("Ledger {} Missing in metadata list, but ledgerManager returned rc: {}.",
+                                bkLid, rc);
+                    }
+                } finally {
+                    semaphore.release();
+                    latch.countDown();
+                }
+            });
+        }
+        if (!latch.await(zkOpTimeoutMs, TimeUnit.MILLISECONDS)) {
+            LOG.warn("Time-out while fetching metadata of the ledgers missing in metadata list");
+        }
+    }
+
+    /**
+     * Remove the ledgers of the bookie which are no longer in their ensembles.
+     *
+     * @param bkActiveLedgers the ledgers of the bookie
+     * @param numLedgers the number of ledgers of the bookie
+     * @return the ledgers removed
+     */
+    private Set<Long> removeOverReplicatedledgers(PrimitiveIterator.OfLong bkActiveLedgers, int numLedgers,
+                                                  final GarbageCleaner garbageCleaner) throws Exception {
+        final Set<Long> overReplicatedLedgers = Sets.newConcurrentHashSet();
         final Semaphore semaphore = new Semaphore(this.maxConcurrentRequests);
-        final CountDownLatch latch = new CountDownLatch(bkActiveledgers.size());
+        final CountDownLatch latch = new CountDownLatch(numLedgers);
         // instantiate zookeeper client to initialize ledger manager
 
         @Cleanup
@@ -232,7 +370,8 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
         @Cleanup
         LedgerUnderreplicationManager lum = lmf.newLedgerUnderreplicationManager();
 
-        for (final Long ledgerId : bkActiveledgers) {
+        while (bkActiveLedgers.hasNext()) {
+            final long ledgerId = bkActiveLedgers.nextLong();
             try {
                 // check ledger ensembles before creating lock nodes.
                 // this is to reduce the number of lock node creations and deletions in ZK.
@@ -294,7 +433,6 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
             }
         }
         latch.await();
-        bkActiveledgers.removeAll(overReplicatedLedgers);
         return overReplicatedLedgers;
     }
 
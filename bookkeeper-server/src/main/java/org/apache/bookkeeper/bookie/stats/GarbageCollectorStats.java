@@ -25,12 +25,15 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ACTIVE_LEDGER_C
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.DELETED_LEDGER_COUNT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_LOG_USAGE_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_LOG_USAGE_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MAJOR_COMPACTION_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MINOR_COMPACTION_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.RECLAIMED_COMPACTION_SPACE_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.RECLAIMED_DELETION_SPACE_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.THREAD_RUNTIME;
 
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
 import lombok.Getter;
 import org.apache.bookkeeper.stats.Counter;
@@ -148,4 +151,44 @@ public class GarbageCollectorStats {
         statsLogger.registerGauge(ACTIVE_LEDGER_COUNT, activeLedgerCountGauge);
     }
 
+    /**
+     * Register the gauges of the entry log usage histogram, one per usage bucket. Buckets are
+     * labeled with the upper bound of their usage range, as a percentage.
+     *
+     * @param numBuckets number of usage buckets, each covering an equal range of usage
+     * @param entryLogCountSupplier number of entry logs in a bucket
+     * @param remainingBytesSupplier number of remaining bytes of the entry logs in a bucket
+     */
+    public void registerEntryLogUsageHistogram(int numBuckets,
+                                               IntFunction<Long> entryLogCountSupplier,
+                                               IntFunction<Long> remainingBytesSupplier) {
+        for (int i = 0; i < numBuckets; i++) {
+            final int bucketIndex = i;
+            StatsLogger bucketStatsLogger = statsLogger.scopeLabel("usage",
+                    String.valueOf((bucketIndex + 1) * 100 / numBuckets));
+            bucketStatsLogger.registerGauge(ENTRY_LOG_USAGE_COUNT, new Gauge<Long>() {
+                @Override
+                public Long getDefaultValue() {
+                    return 0L;
+                }
+
+                @Override
+                public Long getSample() {
+                    return entryLogCountSupplier.apply(bucketIndex);
+                }
+            });
+            bucketStatsLogger.registerGauge(ENTRY_LOG_USAGE_BYTES, new Gauge<Long>() {
+                @Override
+                public Long getDefaultValue() {
+                    return 0L;
+                }
+
+                @Override
+                public Long getSample() {
+                    return remainingBytesSupplier.apply(bucketIndex);
+                }
+            });
+        }
+    }
+
 }
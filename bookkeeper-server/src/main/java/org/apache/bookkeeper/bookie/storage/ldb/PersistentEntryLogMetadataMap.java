@@ -57,24 +57,12 @@ public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
             return new ByteArrayOutputStream();
         }
     };
-    private static final FastThreadLocal<ByteArrayInputStream> bais = new FastThreadLocal<ByteArrayInputStream>() {
-        @Override
-        protected ByteArrayInputStream initialValue() {
-            return new ByteArrayInputStream(new byte[1]);
-        }
-    };
     private static final FastThreadLocal<DataOutputStream> dataos = new FastThreadLocal<DataOutputStream>() {
         @Override
         protected DataOutputStream initialValue() {
             return new DataOutputStream(baos.get());
         }
     };
-    private static final FastThreadLocal<DataInputStream> datais = new FastThreadLocal<DataInputStream>() {
-        @Override
-        protected DataInputStream initialValue() {
-            return new DataInputStream(bais.get());
-        }
-    };
 
     public PersistentEntryLogMetadataMap(String metadataPath, ServerConfiguration conf) throws IOException {
         log.info("Loading persistent entrylog metadata-map from {}/{}", metadataPath, METADATA_CACHE);
@@ -139,20 +127,10 @@ public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
                 }
                 Entry<byte[], byte[]> entry = iterator.next();
                 long entryLogId = ArrayUtil.getLong(entry.getKey(), 0);
-                ByteArrayInputStream localBais = bais.get();
-                DataInputStream localDatais = datais.get();
-                if (localBais.available() < entry.getValue().length) {
-                    localBais.close();
-                    localDatais.close();
-                    ByteArrayInputStream newBais = new ByteArrayInputStream(entry.getValue());
-                    bais.set(newBais);
-                    datais.set(new DataInputStream(newBais));
-                } else {
-                    localBais.read(entry.getValue(), 0, entry.getValue().length);
-                }
-                localBais.reset();
-                localDatais.reset();
-                EntryLogMetadataRecyclable metadata = EntryLogMetadata.deserialize(datais.get());
+                // deserialize from the value of the current record, the stream is
+                // only a view over the array so there is nothing to close
+                EntryLogMetadataRecyclable metadata = EntryLogMetadata.deserialize(
+                        new DataInputStream(new ByteArrayInputStream(entry.getValue())));
                 try {
                     action.accept(entryLogId, metadata);
                 } finally {
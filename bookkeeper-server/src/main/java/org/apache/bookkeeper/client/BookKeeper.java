@@ -65,6 +65,7 @@ import org.apache.bookkeeper.client.api.LedgersIterator;
 import org.apache.bookkeeper.client.api.ListLedgersResult;
 import org.apache.bookkeeper.client.api.ListLedgersResultBuilder;
 import org.apache.bookkeeper.client.api.OpenBuilder;
+import org.apache.bookkeeper.client.api.OpenLedgersBuilder;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorBuilder;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
@@ -121,6 +122,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     // The stats logger for this client.
     private final StatsLogger statsLogger;
     private final BookKeeperClientStats clientStats;
+    private final WriteThrottler writeThrottler;
+    private final ReadReplicaSelector readReplicaSelector;
     private final double bookieQuarantineRatio;
 
     // whether the event loop group is one we created, or is owned by whoever
@@ -441,6 +444,9 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         // initialize stats logger
         this.statsLogger = rootStatsLogger.scope(BookKeeperClientStats.CLIENT_SCOPE);
         this.clientStats = BookKeeperClientStats.newInstance(this.statsLogger);
+        this.writeThrottler = new WriteThrottler(internalConf.throttleValue, conf.getThrottleMaxOutstandingAddBytes(),
+                conf.getThrottleMaxDelayedAdds(), scheduler, clientStats.getWriteThrottleWaitLogger());
+        this.readReplicaSelector = new ReadReplicaSelector(conf.getLatencyAwareReadDecayMillis());
 
         // initialize metadata driver
         try {
@@ -498,7 +504,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         }
 
         BookieAddressResolver bookieAddressResolver =
-                new DefaultBookieAddressResolver(metadataDriver.getRegistrationClient());
+                new DefaultBookieAddressResolver(metadataDriver.getRegistrationClient(),
+                        conf.getUseReplicationEndpoint());
         if (dnsResolver != null) {
             dnsResolver.setBookieAddressResolver(bookieAddressResolver);
         }
@@ -541,6 +548,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
 
         this.bookieQuarantineRatio = conf.getBookieQuarantineRatio();
         scheduleBookieHealthCheckIfEnabled(conf);
+        scheduleReadLatencyPruningIfEnabled(conf);
     }
 
     /**
@@ -552,6 +560,8 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         internalConf = ClientInternalConf.fromConfig(conf);
         statsLogger = NullStatsLogger.INSTANCE;
         clientStats = BookKeeperClientStats.newInstance(statsLogger);
+        writeThrottler = new WriteThrottler(0, 0, 0, null, clientStats.getWriteThrottleWaitLogger());
+        readReplicaSelector = new ReadReplicaSelector(conf.getLatencyAwareReadDecayMillis());
         scheduler = null;
         requestTimer = null;
         metadataDriver = null;
@@ -615,6 +625,20 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         }
     }
 
+    void scheduleReadLatencyPruningIfEnabled(ClientConfiguration conf) {
+        if (conf.isLatencyAwareReadEnabled()) {
+            long periodMillis = Math.max(conf.getLatencyAwareReadDecayMillis(), 1)
+                    * ReadReplicaSelector.STALE_AFTER_DECAYS;
+            scheduler.scheduleAtFixedRate(new SafeRunnable() {
+
+                @Override
+                public void safeRun() {
+                    readReplicaSelector.prune(bookieWatcher::isBookieUnavailable);
+                }
+                    }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
     void checkForFaultyBookies() {
         List<BookieId> faultyBookies = bookieClient.getFaultyBookies();
         if (faultyBookies.isEmpty()) {
@@ -1496,6 +1520,11 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         return new LedgerOpenOp.OpenBuilderImpl(this);
     }
 
+    @Override
+    public OpenLedgersBuilder newOpenLedgersOp() {
+        return new LedgerBatchOpenOp.OpenLedgersBuilderImpl(this);
+    }
+
     @Override
     public DeleteBuilder newDeleteLedgerOp() {
         return new LedgerDeleteOp.DeleteBuilderImpl(this);
@@ -1654,6 +1683,16 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return clientStats;
             }
 
+            @Override
+            public WriteThrottler getWriteThrottler() {
+                return writeThrottler;
+            }
+
+            @Override
+            public ReadReplicaSelector getReadReplicaSelector() {
+                return readReplicaSelector;
+            }
+
             @Override
             public boolean isClientClosed() {
                 return BookKeeper.this.isClosed();
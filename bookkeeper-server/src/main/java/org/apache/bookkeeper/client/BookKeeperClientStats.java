@@ -63,6 +63,8 @@ public interface BookKeeperClientStats {
     String LAC_UPDATE_MISSES = "LAC_UPDATE_MISSES";
     String GET_BOOKIE_INFO_OP = "GET_BOOKIE_INFO";
     String SPECULATIVE_READ_COUNT = "SPECULATIVE_READ_COUNT";
+    String SPECULATIVE_READ_WINS = "SPECULATIVE_READ_WINS";
+    String SPECULATIVE_READ_LOSSES = "SPECULATIVE_READ_LOSSES";
     String READ_REQUESTS_REORDERED = "READ_REQUESTS_REORDERED";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_OP = "GET_LIST_OF_ENTRIES_OF_LEDGER";
 
@@ -86,6 +88,10 @@ public interface BookKeeperClientStats {
 
     String NETTY_EXCEPTION_CNT = "NETTY_EXCEPTION_CNT";
     String CLIENT_CHANNEL_WRITE_WAIT = "CLIENT_CHANNEL_WRITE_WAIT";
+    String WRITE_THROTTLE_WAIT = "WRITE_THROTTLE_WAIT";
+    String ADD_UNCOMPRESSED_BYTES = "ADD_UNCOMPRESSED_BYTES";
+    String ADD_COMPRESSED_BYTES = "ADD_COMPRESSED_BYTES";
+    String ADD_COMPRESSION_RATIO = "ADD_COMPRESSION_RATIO";
     String CLIENT_CONNECT_TIMER = "CLIENT_CONNECT_TIMER";
     String ADD_OP_OUTSTANDING = "ADD_OP_OUTSTANDING";
     String READ_OP_OUTSTANDING = "READ_OP_OUTSTANDING";
@@ -121,11 +127,17 @@ public interface BookKeeperClientStats {
     Counter getReadOpDmCounter();
     Counter getAddOpUrCounter();
     Counter getSpeculativeReadCounter();
+    Counter getSpeculativeReadWinsCounter();
+    Counter getSpeculativeReadLossesCounter();
     Counter getEnsembleBookieDistributionCounter(String bookie);
     Counter getEnsembleChangeCounter();
     Counter getLacUpdateHitsCounter();
     Counter getLacUpdateMissesCounter();
     OpStatsLogger getClientChannelWriteWaitLogger();
+    OpStatsLogger getWriteThrottleWaitLogger();
+    Counter getAddUncompressedBytesCounter();
+    Counter getAddCompressedBytesCounter();
+    OpStatsLogger getAddCompressionRatioLogger();
     OpStatsLogger getWriteDelayedDueToNotEnoughFaultDomainsLatency();
     Counter getWriteDelayedDueToNotEnoughFaultDomains();
     Counter getWriteTimedOutDueToNotEnoughFaultDomains();
@@ -43,5 +43,7 @@ public interface ClientContext {
     OrderedExecutor getMainWorkerPool();
     OrderedScheduler getScheduler();
     BookKeeperClientStats getClientStats();
+    WriteThrottler getWriteThrottler();
+    ReadReplicaSelector getReadReplicaSelector();
     boolean isClientClosed();
 }
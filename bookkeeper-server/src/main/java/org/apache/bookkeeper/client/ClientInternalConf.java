@@ -36,12 +36,21 @@ class ClientInternalConf {
     final Optional<SpeculativeRequestExecutionPolicy> readLACSpeculativeRequestPolicy;
 
     final int explicitLacInterval;
+    final boolean explicitLacBatchingEnabled;
     final long waitForWriteSetMs;
     final long addEntryQuorumTimeoutNanos;
     final boolean enableParallelRecoveryRead;
     final boolean enableReorderReadSequence;
+    final boolean enableLatencyAwareRead;
     final boolean enableStickyReads;
     final int recoveryReadBatchSize;
+    final int recoveryReadWindowSize;
+    final int streamReaderMaxOutstandingEntries;
+    final long streamReaderMaxOutstandingBytes;
+    final long streamReaderLongPollTimeoutMillis;
+    final int batchedWriterMaxRecords;
+    final int batchedWriterMaxBytes;
+    final long batchedWriterMaxDelayMillis;
     final int throttleValue;
     final int bookieFailureHistoryExpirationMSec;
     final int maxAllowedEnsembleChanges;
@@ -66,9 +75,18 @@ class ClientInternalConf {
     private ClientInternalConf(ClientConfiguration conf,
                                FeatureProvider featureProvider) {
         this.explicitLacInterval = conf.getExplictLacInterval();
+        this.explicitLacBatchingEnabled = conf.getExplicitLacBatchingEnabled();
         this.enableReorderReadSequence = conf.isReorderReadSequenceEnabled();
+        this.enableLatencyAwareRead = conf.isLatencyAwareReadEnabled();
         this.enableParallelRecoveryRead = conf.getEnableParallelRecoveryRead();
         this.recoveryReadBatchSize = conf.getRecoveryReadBatchSize();
+        this.recoveryReadWindowSize = Math.max(conf.getRecoveryReadWindowSize(), 1);
+        this.streamReaderMaxOutstandingEntries = Math.max(conf.getStreamReaderMaxOutstandingEntries(), 1);
+        this.streamReaderMaxOutstandingBytes = conf.getStreamReaderMaxOutstandingBytes();
+        this.streamReaderLongPollTimeoutMillis = conf.getStreamReaderLongPollTimeoutMillis();
+        this.batchedWriterMaxRecords = Math.max(conf.getBatchedWriterMaxRecords(), 1);
+        this.batchedWriterMaxBytes = Math.max(conf.getBatchedWriterMaxBytes(), 1);
+        this.batchedWriterMaxDelayMillis = conf.getBatchedWriterMaxDelayMillis();
         this.waitForWriteSetMs = conf.getWaitTimeoutOnBackpressureMillis();
         this.addEntryQuorumTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getAddEntryQuorumTimeout());
         this.throttleValue = conf.getThrottleValue();
@@ -84,7 +102,15 @@ class ClientInternalConf {
         this.enableStickyReads = conf.isStickyReadsEnabled();
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
 
-        if (conf.getFirstSpeculativeReadTimeout() > 0) {
+        if (conf.getFirstSpeculativeReadTimeout() > 0 && conf.getSpeculativeReadTimeoutPercentile() > 0) {
+            this.readSpeculativeRequestPolicy =
+                    Optional.of(new PercentileSpeculativeRequestExecutionPolicy(
+                                        conf.getFirstSpeculativeReadTimeout(),
+                                        conf.getMaxSpeculativeReadTimeout(),
+                                        conf.getSpeculativeReadTimeoutBackoffMultiplier(),
+                                        conf.getSpeculativeReadTimeoutPercentile(),
+                                        conf.getSpeculativeReadMaxRatio()));
+        } else if (conf.getFirstSpeculativeReadTimeout() > 0) {
             this.readSpeculativeRequestPolicy =
                     Optional.of(new DefaultSpeculativeRequestExecutionPolicy(
                                         conf.getFirstSpeculativeReadTimeout(),
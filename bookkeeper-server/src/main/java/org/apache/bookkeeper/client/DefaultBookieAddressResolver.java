@@ -32,17 +32,36 @@ import org.apache.bookkeeper.proto.BookieAddressResolver;
 public class DefaultBookieAddressResolver implements BookieAddressResolver {
 
     private final RegistrationClient registrationClient;
+    private final boolean useReplicationEndpoint;
 
     public DefaultBookieAddressResolver(RegistrationClient registrationClient) {
+        this(registrationClient, false);
+    }
+
+    /**
+     * @param useReplicationEndpoint resolve the bookies to their replication endpoint, for the bookies
+     *                               publishing one
+     */
+    public DefaultBookieAddressResolver(RegistrationClient registrationClient, boolean useReplicationEndpoint) {
         this.registrationClient = registrationClient;
+        this.useReplicationEndpoint = useReplicationEndpoint;
     }
 
     @Override
     public BookieSocketAddress resolve(BookieId bookieId) {
         try {
             BookieServiceInfo info = FutureUtils.result(registrationClient.getBookieServiceInfo(bookieId)).getValue();
-            BookieServiceInfo.Endpoint endpoint = info.getEndpoints()
-                    .stream().filter(e -> e.getProtocol().equals("bookie-rpc")).findAny().orElse(null);
+            BookieServiceInfo.Endpoint endpoint = null;
+            if (useReplicationEndpoint) {
+                endpoint = info.getEndpoints()
+                        .stream().filter(e -> BookieServiceInfo.REPLICATION_ENDPOINT_PROTOCOL.equals(e.getProtocol()))
+                        .findAny().orElse(null);
+            }
+            if (endpoint == null) {
+                endpoint = info.getEndpoints()
+                        .stream().filter(e -> e.getProtocol().equals("bookie-rpc"))
+                        .findAny().orElse(null);
+            }
             if (endpoint == null) {
                 throw new Exception("bookie " + bookieId + " does not publish a bookie-rpc endpoint");
             }
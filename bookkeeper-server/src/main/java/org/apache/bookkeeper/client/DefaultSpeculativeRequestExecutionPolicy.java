@@ -71,7 +71,29 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
     @Override
     public ScheduledFuture<?> initiateSpeculativeRequest(final ScheduledExecutorService scheduler,
             final SpeculativeRequestExecutor requestExecutor) {
-        return scheduleSpeculativeRead(scheduler, requestExecutor, firstSpeculativeRequestTimeout);
+        return scheduleSpeculativeRead(scheduler, requestExecutor, getFirstSpeculativeRequestTimeout());
+    }
+
+    /**
+     * Get the timeout of the first speculative request, in milliseconds.
+     */
+    protected int getFirstSpeculativeRequestTimeout() {
+        return firstSpeculativeRequestTimeout;
+    }
+
+    /**
+     * Acquire a permit to issue a speculative request.
+     *
+     * @return true if the speculative request can be issued
+     */
+    protected boolean tryAcquireSpeculativeRequest() {
+        return true;
+    }
+
+    /**
+     * Release the permit of a speculative request which was not issued.
+     */
+    protected void releaseSpeculativeRequest() {
     }
 
     private ScheduledFuture<?> scheduleSpeculativeRead(final ScheduledExecutorService scheduler,
@@ -81,6 +103,13 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
             return scheduler.schedule(new Runnable() {
                 @Override
                 public void run() {
+                    if (!tryAcquireSpeculativeRequest()) {
+                        if (LOG.isTraceEnabled()) {
+                            LOG.trace("Skipped speculative request for {}, too many speculative requests",
+                                    requestExecutor);
+                        }
+                        return;
+                    }
                     ListenableFuture<Boolean> issueNextRequest = requestExecutor.issueSpeculativeRequest();
                     Futures.addCallback(issueNextRequest, new FutureCallback<Boolean>() {
                         // we want this handler to run immediately after we push the big red button!
@@ -91,6 +120,8 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
                                         Math.min(maxSpeculativeRequestTimeout,
                                         Math.round((float) speculativeRequestTimeout * backoffMultiplier)));
                             } else {
+                                // the request completed, or there is no replica left to try
+                                releaseSpeculativeRequest();
                                 if (LOG.isTraceEnabled()) {
                                     LOG.trace("Stopped issuing speculative requests for {}, "
                                         + "speculativeReadTimeout = {}", requestExecutor, speculativeRequestTimeout);
@@ -100,6 +131,7 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
 
                         @Override
                         public void onFailure(Throwable thrown) {
+                            releaseSpeculativeRequest();
                             LOG.warn("Failed to issue speculative request for {}, speculativeReadTimeout = {} : ",
                                     requestExecutor, speculativeRequestTimeout, thrown);
                         }
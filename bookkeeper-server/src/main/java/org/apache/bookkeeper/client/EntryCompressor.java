@@ -0,0 +1,294 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.compression.Snappy;
+import io.netty.util.concurrent.FastThreadLocal;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.apache.bookkeeper.client.api.CompressionType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compress the entries of a compressed ledger, and decompress them once read.
+ *
+ * <p>An entry of a compressed ledger starts with a byte telling how it's compressed. A compressed entry
+ * follows with its length before compression, then its compressed content. An entry too small to be
+ * compressed, or which doesn't get smaller, is stored as is after the first byte.
+ */
+class EntryCompressor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntryCompressor.class);
+
+    private static final byte UNCOMPRESSED = 0;
+    private static final byte SNAPPY = 1;
+    private static final byte DEFLATE = 2;
+
+    private static final int HEADER_LENGTH = 1 + Integer.BYTES;
+
+    // smaller entries are not worth compressing
+    private static final int MIN_COMPRESSED_LENGTH = 64;
+
+    // the snappy codec of netty compresses blocks of up to 64KB
+    private static final int SNAPPY_BLOCK_LENGTH = 32 * 1024;
+
+    private static final FastThreadLocal<Deflater> DEFLATER = new FastThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+    };
+
+    private static final FastThreadLocal<Inflater> INFLATER = new FastThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    private final CompressionType compressionType;
+    private final ByteBufAllocator allocator;
+    private final Counter uncompressedBytesCounter;
+    private final Counter compressedBytesCounter;
+    private final OpStatsLogger compressionRatioStats;
+
+    private EntryCompressor(CompressionType compressionType, ByteBufAllocator allocator,
+                            BookKeeperClientStats clientStats) {
+        this.compressionType = compressionType;
+        this.allocator = allocator;
+        this.uncompressedBytesCounter = clientStats.getAddUncompressedBytesCounter();
+        this.compressedBytesCounter = clientStats.getAddCompressedBytesCounter();
+        this.compressionRatioStats = clientStats.getAddCompressionRatioLogger();
+    }
+
+    /**
+     * Get the compressor of a ledger.
+     *
+     * @return the compressor, or null if the ledger is not compressed
+     */
+    static EntryCompressor forLedger(long ledgerId, LedgerMetadata metadata, ByteBufAllocator allocator,
+                                     BookKeeperClientStats clientStats) {
+        byte[] value = metadata.getCustomMetadata().get(CompressionType.CUSTOM_METADATA_KEY);
+        if (value == null) {
+            return null;
+        }
+        String name = new String(value, StandardCharsets.UTF_8);
+        CompressionType compressionType;
+        try {
+            compressionType = CompressionType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            // the entries can still be read, as each of them tells how it's compressed
+            LOG.warn("Unknown compression {} of ledger {}, the entries added won't be compressed", name, ledgerId);
+            compressionType = CompressionType.NONE;
+        }
+        return new EntryCompressor(compressionType, allocator, clientStats);
+    }
+
+    /**
+     * Compress the content of an entry to add.
+     *
+     * @param data the content of the entry, released
+     * @return the compressed entry
+     */
+    ByteBuf compress(ByteBuf data) {
+        int length = data.readableBytes();
+        ByteBuf compressed = null;
+        if (length >= MIN_COMPRESSED_LENGTH) {
+            switch (compressionType) {
+            case SNAPPY:
+                compressed = compressSnappy(data, length);
+                break;
+            case DEFLATE:
+                compressed = compressDeflate(data, length);
+                break;
+            default:
+                break;
+            }
+        }
+
+        ByteBuf entry;
+        if (compressed != null) {
+            data.release();
+            entry = compressed;
+        } else {
+            ByteBuf header = allocator.buffer(1);
+            header.writeByte(UNCOMPRESSED);
+            entry = allocator.compositeBuffer(2).addComponents(true, header, data);
+        }
+        uncompressedBytesCounter.add(length);
+        compressedBytesCounter.add(entry.readableBytes());
+        if (length > 0) {
+            compressionRatioStats.registerSuccessfulValue(entry.readableBytes() * 100L / length);
+        }
+        return entry;
+    }
+
+    /**
+     * @return the compressed entry, or null if it's not smaller than the entry stored as is
+     */
+    private ByteBuf compressSnappy(ByteBuf data, int length) {
+        ByteBuf out = allocator.buffer(HEADER_LENGTH + length);
+        out.writeByte(SNAPPY);
+        out.writeInt(length);
+        Snappy snappy = new Snappy();
+        // the blocks are compressed one by one, each after its compressed length
+        for (int offset = 0; offset < length; offset += SNAPPY_BLOCK_LENGTH) {
+            int blockLength = Math.min(SNAPPY_BLOCK_LENGTH, length - offset);
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            snappy.encode(data.slice(data.readerIndex() + offset, blockLength), out, blockLength);
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - Integer.BYTES);
+            if (out.readableBytes() > length) {
+                out.release();
+                return null;
+            }
+            snappy.reset();
+        }
+        return out;
+    }
+
+    private ByteBuf compressDeflate(ByteBuf data, int length) {
+        byte[] input;
+        int offset;
+        if (data.hasArray()) {
+            input = data.array();
+            offset = data.arrayOffset() + data.readerIndex();
+        } else {
+            input = ByteBufUtil.getBytes(data);
+            offset = 0;
+        }
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(input, offset, length);
+        deflater.finish();
+        ByteBuf out = allocator.heapBuffer(HEADER_LENGTH + length);
+        out.writeByte(DEFLATE);
+        out.writeInt(length);
+        // the compressed content has to fit in the size of the entry stored as is
+        int compressedLength = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(),
+                length + 1 - HEADER_LENGTH);
+        if (!deflater.finished()) {
+            out.release();
+            return null;
+        }
+        out.writerIndex(out.writerIndex() + compressedLength);
+        return out;
+    }
+
+    /**
+     * Decompress the content of an entry read.
+     *
+     * @param entry the content of the entry, left to the caller
+     * @return the entry itself past its first byte if it's not compressed, or a new buffer with the decompressed
+     *         content
+     * @throws IOException if the entry is not a valid compressed entry
+     */
+    ByteBuf decompress(ByteBuf entry) throws IOException {
+        if (!entry.isReadable()) {
+            throw new IOException("Empty entry in a compressed ledger");
+        }
+        byte type = entry.getByte(entry.readerIndex());
+        if (type == UNCOMPRESSED) {
+            return entry.skipBytes(1);
+        }
+        if (entry.readableBytes() < HEADER_LENGTH) {
+            throw new IOException("Truncated compressed entry of " + entry.readableBytes() + " bytes");
+        }
+        int length = entry.getInt(entry.readerIndex() + 1);
+        if (length < 0) {
+            throw new IOException("Invalid length of compressed entry " + length);
+        }
+        ByteBuf compressed = entry.slice(entry.readerIndex() + HEADER_LENGTH, entry.readableBytes() - HEADER_LENGTH);
+        switch (type) {
+        case SNAPPY:
+            return decompressSnappy(compressed, length);
+        case DEFLATE:
+            return decompressDeflate(compressed, length);
+        default:
+            throw new IOException("Unknown compression " + type + " of entry");
+        }
+    }
+
+    private ByteBuf decompressSnappy(ByteBuf compressed, int length) throws IOException {
+        ByteBuf out = allocator.buffer(length);
+        try {
+            Snappy snappy = new Snappy();
+            while (compressed.isReadable()) {
+                if (compressed.readableBytes() < Integer.BYTES) {
+                    throw new IOException("Truncated block of compressed entry");
+                }
+                int blockLength = compressed.readInt();
+                if (blockLength < 0 || blockLength > compressed.readableBytes()) {
+                    throw new IOException("Invalid length of compressed block " + blockLength);
+                }
+                snappy.decode(compressed.readSlice(blockLength), out);
+                snappy.reset();
+            }
+            if (out.readableBytes() != length) {
+                throw new IOException("Decompressed " + out.readableBytes() + " bytes rather than " + length);
+            }
+            return out;
+        } catch (DecompressionException | IndexOutOfBoundsException | IOException e) {
+            out.release();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    private ByteBuf decompressDeflate(ByteBuf compressed, int length) throws IOException {
+        byte[] input;
+        int offset;
+        if (compressed.hasArray()) {
+            input = compressed.array();
+            offset = compressed.arrayOffset() + compressed.readerIndex();
+        } else {
+            input = ByteBufUtil.getBytes(compressed);
+            offset = 0;
+        }
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(input, offset, compressed.readableBytes());
+        ByteBuf out = allocator.heapBuffer(length);
+        try {
+            int decompressedLength = inflater.inflate(out.array(), out.arrayOffset(), length);
+            if (decompressedLength != length || !inflater.finished()) {
+                throw new IOException("Decompressed " + decompressedLength + " bytes rather than " + length);
+            }
+            out.writerIndex(length);
+            return out;
+        } catch (DataFormatException | IOException e) {
+            out.release();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+}
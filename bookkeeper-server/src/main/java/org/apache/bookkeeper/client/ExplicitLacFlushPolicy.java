@@ -20,11 +20,13 @@
  */
 package org.apache.bookkeeper.client;
 
+import java.util.List;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.bookkeeper.client.SyncCallbackUtils.LastAddConfirmedCallback;
+import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.util.ByteBufList;
 import org.apache.bookkeeper.util.SafeRunnable;
 import org.slf4j.Logger;
@@ -132,6 +134,10 @@ interface ExplicitLacFlushPolicy {
          * Make a LastAddUpdate request.
          */
         void asyncExplicitLacFlush(final long explicitLac) {
+            if (clientCtx.getConf().explicitLacBatchingEnabled) {
+                queueExplicitLac(explicitLac);
+                return;
+            }
             final LastAddConfirmedCallback cb = LastAddConfirmedCallback.INSTANCE;
             final PendingWriteLacOp op = new PendingWriteLacOp(lh, clientCtx, lh.getCurrentEnsemble(), cb, null);
             op.setLac(explicitLac);
@@ -154,6 +160,35 @@ interface ExplicitLacFlushPolicy {
             }
         }
 
+        /**
+         * Queue the LAC for the bookies, to be piggybacked on the adds sent to them or batched with the LACs of
+         * other ledgers.
+         */
+        private void queueExplicitLac(final long explicitLac) {
+            try {
+                clientCtx.getMainWorkerPool().submit(new SafeRunnable() {
+                    @Override
+                    public void safeRun() {
+                        ByteBufList toSend = lh.macManager
+                                .computeDigestAndPackageForSendingLac(explicitLac);
+                        List<BookieId> ensemble = lh.getCurrentEnsemble();
+                        DistributionSchedule.WriteSet writeSet = lh.distributionSchedule.getWriteSet(explicitLac);
+                        try {
+                            for (int i = 0; i < writeSet.size(); i++) {
+                                clientCtx.getBookieClient().queueLac(ensemble.get(writeSet.get(i)), lh.ledgerId,
+                                        lh.ledgerKey, explicitLac, toSend);
+                            }
+                        } finally {
+                            writeSet.recycle();
+                            toSend.release();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Failed to queue the explicit LAC {} of ledger {}", explicitLac, lh.getId());
+            }
+        }
+
         @Override
         public void stopExplicitLacFlush() {
             scheduledFuture.cancel(true);
@@ -0,0 +1,287 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.BookKeeper.DigestType.fromApiDigestType;
+import static org.apache.bookkeeper.util.SafeRunnable.safeRun;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.bookkeeper.client.AsyncCallback.ReadLastConfirmedCallback;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.OpenLedgersBuilder;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Open many ledgers at once.
+ *
+ * <p>The metadata of the ledgers is read concurrently, within a window of outstanding reads, and each ledger
+ * is then opened as by {@link LedgerOpenOp}. The LastAddConfirmed of the ledgers opened without recovery is
+ * read once all the metadata is read, with {@link BookieClient#readLacBatch} for all the ledgers stored on each
+ * bookie, which sends a single request if the batching of the reads is enabled. The responses of each ledger
+ * are handed over to its own {@link PendingReadLacOp}.
+ *
+ * <p>The operation succeeds once all the ledgers are opened. On the first failure, no more ledgers are opened,
+ * and the ledgers already opened are closed once the outstanding opens complete.
+ */
+class LedgerBatchOpenOp {
+
+    static final Logger LOG = LoggerFactory.getLogger(LedgerBatchOpenOp.class);
+
+    private static final int MAX_OUTSTANDING_METADATA_READS = 1000;
+
+    private final BookKeeper bk;
+    private final List<Long> ledgerIds;
+    private final boolean recovery;
+    private final DigestType digestType;
+    private final byte[] password;
+    private final CompletableFuture<Map<Long, ReadHandle>> future = new CompletableFuture<>();
+
+    // guarded by this
+    private int nextLedgerIndex = 0;
+    private int outstandingMetadataReads = 0;
+    private int outstandingOpens = 0;
+    private boolean lacReadsSent = false;
+    private int failureRc = BKException.Code.OK;
+    private final Map<Long, LedgerHandle> handles = new HashMap<>();
+    private final Map<BookieId, List<LacRead>> lacReads = new HashMap<>();
+
+    LedgerBatchOpenOp(BookKeeper bk, List<Long> ledgerIds, boolean recovery, DigestType digestType,
+                      byte[] password) {
+        this.bk = bk;
+        this.ledgerIds = ledgerIds;
+        this.recovery = recovery;
+        this.digestType = digestType;
+        this.password = password;
+    }
+
+    CompletableFuture<Map<Long, ReadHandle>> initiate() {
+        if (ledgerIds.isEmpty()) {
+            future.complete(Collections.emptyMap());
+        } else {
+            readMetadata();
+        }
+        return future;
+    }
+
+    /**
+     * Read the metadata of the next ledgers if the window allows, or the LastAddConfirmed of the ledgers once all
+     * the metadata is read.
+     */
+    private void readMetadata() {
+        List<BatchedOpenOp> ops = new ArrayList<>();
+        Map<BookieId, List<LacRead>> toRead = null;
+        synchronized (this) {
+            while (failureRc == BKException.Code.OK && nextLedgerIndex < ledgerIds.size()
+                    && outstandingMetadataReads < MAX_OUTSTANDING_METADATA_READS) {
+                ops.add(new BatchedOpenOp(ledgerIds.get(nextLedgerIndex++)));
+                outstandingMetadataReads++;
+                outstandingOpens++;
+            }
+            if (outstandingMetadataReads == 0 && !lacReadsSent) {
+                lacReadsSent = true;
+                toRead = new HashMap<>(lacReads);
+                lacReads.clear();
+            }
+        }
+
+        for (BatchedOpenOp op : ops) {
+            op.startTime = MathUtils.nowInNano();
+            bk.getLedgerManager().readLedgerMetadata(op.ledgerId)
+                .whenComplete((metadata, exception) -> {
+                    op.metadataReadComplete(metadata, exception);
+                    metadataReadComplete();
+                });
+        }
+        if (toRead != null) {
+            readLacs(toRead);
+        }
+    }
+
+    private void metadataReadComplete() {
+        synchronized (this) {
+            outstandingMetadataReads--;
+        }
+        readMetadata();
+    }
+
+    private void readLacs(Map<BookieId, List<LacRead>> toRead) {
+        BookieClient bookieClient = bk.getClientCtx().getBookieClient();
+        for (Map.Entry<BookieId, List<LacRead>> entry : toRead.entrySet()) {
+            Map<Long, LacRead> readsOfLedgers = new HashMap<>();
+            for (LacRead read : entry.getValue()) {
+                readsOfLedgers.put(read.op.lh.ledgerId, read);
+            }
+            List<Long> ids = new ArrayList<>(readsOfLedgers.keySet());
+            // the responses of a batch are notified together, so hand them over to the threads of the ledgers
+            bookieClient.readLacBatch(entry.getKey(), ids, (rc, ledgerId, lacBuffer, lastEntryBuffer, ctx) -> {
+                LacRead read = readsOfLedgers.get(ledgerId);
+                if (read == null) {
+                    return;
+                }
+                bk.getMainWorkerPool().executeOrdered(ledgerId, safeRun(() ->
+                        read.op.readLacComplete(rc, ledgerId, lacBuffer, lastEntryBuffer, read.bookieIndex)));
+            }, null);
+        }
+    }
+
+    private void openComplete(int rc, LedgerHandle lh, Object ctx) {
+        long ledgerId = (Long) ctx;
+        boolean done;
+        synchronized (this) {
+            outstandingOpens--;
+            if (BKException.Code.OK == rc) {
+                handles.put(ledgerId, lh);
+            } else if (BKException.Code.OK == failureRc) {
+                LOG.warn("Failed to open ledger {} of a batch of {} ledgers : {}", ledgerId, ledgerIds.size(),
+                        BKException.getMessage(rc));
+                failureRc = rc;
+            }
+            done = outstandingOpens == 0
+                    && (BKException.Code.OK != failureRc || nextLedgerIndex == ledgerIds.size());
+        }
+        if (!done) {
+            return;
+        }
+
+        if (BKException.Code.OK == failureRc) {
+            future.complete(Collections.unmodifiableMap(handles));
+        } else {
+            handles.values().forEach(LedgerHandle::closeAsync);
+            future.completeExceptionally(BKException.create(failureRc));
+        }
+    }
+
+    /**
+     * The open of a ledger of the batch, which reads the LastAddConfirmed along with the other ledgers.
+     */
+    private class BatchedOpenOp extends LedgerOpenOp {
+
+        BatchedOpenOp(long ledgerId) {
+            super(LedgerBatchOpenOp.this.bk, LedgerBatchOpenOp.this.bk.getClientCtx().getClientStats(), ledgerId,
+                  fromApiDigestType(digestType), password, LedgerBatchOpenOp.this::openComplete, ledgerId);
+            this.doRecovery = recovery;
+        }
+
+        @Override
+        void readLastConfirmed(ReadLastConfirmedCallback cb) {
+            List<BookieId> ensemble = lh.getCurrentEnsemble();
+            PendingReadLacOp op = new PendingReadLacOp(lh, bk.getClientCtx().getBookieClient(), ensemble,
+                    (rc, lac) -> cb.readLastConfirmedComplete(rc, lac, null));
+            synchronized (LedgerBatchOpenOp.this) {
+                for (int i = 0; i < ensemble.size(); i++) {
+                    lacReads.computeIfAbsent(ensemble.get(i), k -> new ArrayList<>()).add(new LacRead(op, i));
+                }
+            }
+        }
+    }
+
+    /**
+     * The read of the LastAddConfirmed of a ledger from a bookie of its ensemble.
+     */
+    private static class LacRead {
+        final PendingReadLacOp op;
+        final int bookieIndex;
+
+        LacRead(PendingReadLacOp op, int bookieIndex) {
+            this.op = op;
+            this.bookieIndex = bookieIndex;
+        }
+    }
+
+    static final class OpenLedgersBuilderImpl implements OpenLedgersBuilder {
+
+        private final BookKeeper bk;
+        private Collection<Long> ledgerIds = Collections.emptyList();
+        private boolean recovery = false;
+        private byte[] password;
+        private DigestType digestType = DigestType.CRC32;
+
+        OpenLedgersBuilderImpl(BookKeeper bookkeeper) {
+            this.bk = bookkeeper;
+        }
+
+        @Override
+        public OpenLedgersBuilder withLedgerIds(Collection<Long> ledgerIds) {
+            this.ledgerIds = ledgerIds;
+            return this;
+        }
+
+        @Override
+        public OpenLedgersBuilder withRecovery(boolean recovery) {
+            this.recovery = recovery;
+            return this;
+        }
+
+        @Override
+        public OpenLedgersBuilder withPassword(byte[] password) {
+            this.password = Arrays.copyOf(password, password.length);
+            return this;
+        }
+
+        @Override
+        public OpenLedgersBuilder withDigestType(DigestType digestType) {
+            this.digestType = digestType;
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<Map<Long, ReadHandle>> execute() {
+            List<Long> ids = new ArrayList<>(new LinkedHashSet<>(ledgerIds));
+            for (long ledgerId : ids) {
+                if (ledgerId < 0) {
+                    LOG.error("invalid ledgerId {} < 0", ledgerId);
+                    return failed(BKException.Code.NoSuchLedgerExistsOnMetadataServerException);
+                }
+            }
+
+            ReentrantReadWriteLock closeLock = bk.getCloseLock();
+            closeLock.readLock().lock();
+            try {
+                if (bk.isClosed()) {
+                    return failed(BKException.Code.ClientClosedException);
+                }
+                return new LedgerBatchOpenOp(bk, ids, recovery, digestType, password).initiate();
+            } finally {
+                closeLock.readLock().unlock();
+            }
+        }
+
+        private static CompletableFuture<Map<Long, ReadHandle>> failed(int rc) {
+            CompletableFuture<Map<Long, ReadHandle>> future = new CompletableFuture<>();
+            future.completeExceptionally(BKException.create(rc));
+            return future;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.BatchedWriter;
+import org.apache.bookkeeper.client.api.RecordPosition;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link BatchedWriter} over a write handle.
+ *
+ * <p>The records are copied into the buffer of the current batch, and their lengths into its index. The
+ * batches are appended to the handle in order, as an entry made of the header and the buffer of the records,
+ * in the format of {@link RecordBatchFormat}.
+ */
+class LedgerBatchedWriter implements BatchedWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerBatchedWriter.class);
+
+    private final WriteHandle handle;
+    private final ByteBufAllocator allocator;
+    private final ScheduledExecutorService scheduler;
+    private final int maxRecords;
+    private final int maxBytes;
+    private final long maxDelayMillis;
+
+    // guarded by this
+    private Batch currentBatch = null;
+    private CompletableFuture<Void> lastAppend = FutureUtils.Void();
+    private boolean closed = false;
+
+    LedgerBatchedWriter(WriteHandle handle, ClientContext clientCtx) {
+        this.handle = handle;
+        this.allocator = clientCtx.getByteBufAllocator();
+        this.scheduler = clientCtx.getScheduler();
+        this.maxRecords = clientCtx.getConf().batchedWriterMaxRecords;
+        this.maxBytes = clientCtx.getConf().batchedWriterMaxBytes;
+        this.maxDelayMillis = clientCtx.getConf().batchedWriterMaxDelayMillis;
+    }
+
+    @Override
+    public synchronized CompletableFuture<RecordPosition> writeAsync(ByteBuf record) {
+        if (closed) {
+            record.release();
+            return FutureUtils.exception(BKException.create(BKException.Code.IllegalOpException));
+        }
+        int length = record.readableBytes();
+        if (currentBatch != null && currentBatch.payload.readableBytes() + length > maxBytes) {
+            appendCurrentBatch();
+        }
+        if (currentBatch == null) {
+            currentBatch = newBatch(length);
+        }
+        CompletableFuture<RecordPosition> future = currentBatch.add(record);
+        if (currentBatch.futures.size() >= maxRecords || currentBatch.payload.readableBytes() >= maxBytes) {
+            appendCurrentBatch();
+        }
+        return future;
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> flushAsync() {
+        if (currentBatch != null) {
+            appendCurrentBatch();
+        }
+        return lastAppend;
+    }
+
+    @Override
+    public CompletableFuture<Void> closeAsync() {
+        synchronized (this) {
+            closed = true;
+        }
+        return flushAsync();
+    }
+
+    private Batch newBatch(int firstRecordLength) {
+        Batch batch = new Batch(allocator.buffer(Math.max(firstRecordLength, Math.min(maxBytes, 1024))));
+        if (maxDelayMillis > 0) {
+            try {
+                batch.flushTask = scheduler.schedule(() -> flushIfCurrent(batch), maxDelayMillis,
+                        TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Could not schedule the flush of a batch of records to ledger {}, shutting down",
+                        handle.getId());
+            }
+        }
+        return batch;
+    }
+
+    private synchronized void flushIfCurrent(Batch batch) {
+        if (currentBatch == batch) {
+            appendCurrentBatch();
+        }
+    }
+
+    /**
+     * Append the current batch to the handle. The batches are appended in order, as called under the lock.
+     */
+    private void appendCurrentBatch() {
+        Batch batch = currentBatch;
+        currentBatch = null;
+        if (batch.flushTask != null) {
+            batch.flushTask.cancel(false);
+        }
+
+        ByteBuf header = allocator.buffer(RecordBatchFormat.MAX_HEADER_LENGTH + batch.lengths.readableBytes());
+        RecordBatchFormat.writeHeader(header, batch.futures.size(), batch.lengths);
+        batch.lengths.release();
+        CompositeByteBuf entry = allocator.compositeBuffer(2);
+        entry.addComponents(true, header, batch.payload);
+
+        CompletableFuture<Long> append = handle.appendAsync(entry);
+        append.whenComplete(batch::complete);
+        lastAppend = append.thenApply(entryId -> null);
+    }
+
+    /**
+     * The records of an entry being packed, and the futures of their positions.
+     */
+    private class Batch {
+        final ByteBuf payload;
+        final ByteBuf lengths;
+        final List<CompletableFuture<RecordPosition>> futures = new ArrayList<>();
+        ScheduledFuture<?> flushTask;
+
+        Batch(ByteBuf payload) {
+            this.payload = payload;
+            this.lengths = allocator.buffer(16);
+        }
+
+        CompletableFuture<RecordPosition> add(ByteBuf record) {
+            RecordBatchFormat.writeVarInt(lengths, record.readableBytes());
+            payload.writeBytes(record);
+            record.release();
+            CompletableFuture<RecordPosition> future = new CompletableFuture<>();
+            futures.add(future);
+            return future;
+        }
+
+        void complete(Long entryId, Throwable cause) {
+            for (int i = 0; i < futures.size(); i++) {
+                if (cause != null) {
+                    futures.get(i).completeExceptionally(cause);
+                } else {
+                    futures.get(i).complete(new RecordPosition(entryId, i));
+                }
+            }
+        }
+    }
+}
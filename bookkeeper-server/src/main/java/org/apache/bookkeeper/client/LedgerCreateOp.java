@@ -22,9 +22,11 @@
 package org.apache.bookkeeper.client;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -36,6 +38,8 @@ import org.apache.bookkeeper.client.BKException.BKNotEnoughBookiesException;
 import org.apache.bookkeeper.client.BookKeeper.DigestType;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncCreateAdvCallback;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncCreateCallback;
+import org.apache.bookkeeper.client.api.BatchedWriter;
+import org.apache.bookkeeper.client.api.CompressionType;
 import org.apache.bookkeeper.client.api.CreateAdvBuilder;
 import org.apache.bookkeeper.client.api.CreateBuilder;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
@@ -286,6 +290,8 @@ class LedgerCreateOp {
         private org.apache.bookkeeper.client.api.DigestType builderDigestType =
             org.apache.bookkeeper.client.api.DigestType.CRC32;
         private Map<String, byte[]> builderCustomMetadata = Collections.emptyMap();
+        private CompressionType builderCompressionType = CompressionType.NONE;
+        private boolean builderRecordBatches = false;
 
         CreateBuilderImpl(BookKeeper bk) {
             this.bk = bk;
@@ -334,6 +340,18 @@ class LedgerCreateOp {
             return this;
         }
 
+        @Override
+        public CreateBuilder withCompressionType(CompressionType compressionType) {
+            this.builderCompressionType = compressionType;
+            return this;
+        }
+
+        @Override
+        public CreateBuilder withRecordBatches(boolean recordBatches) {
+            this.builderRecordBatches = recordBatches;
+            return this;
+        }
+
         @Override
         public CreateAdvBuilder makeAdv() {
             return new CreateAdvBuilderImpl(this);
@@ -376,6 +394,11 @@ class LedgerCreateOp {
                 return false;
             }
 
+            if (builderCompressionType == null) {
+                LOG.error("invalid null compressionType");
+                return false;
+            }
+
             return true;
         }
 
@@ -394,7 +417,7 @@ class LedgerCreateOp {
             }
             LedgerCreateOp op = new LedgerCreateOp(bk, builderEnsembleSize,
                 builderWriteQuorumSize, builderAckQuorumSize, DigestType.fromApiDigestType(builderDigestType),
-                builderPassword, cb, null, builderCustomMetadata, builderWriteFlags,
+                builderPassword, cb, null, customMetadata(), builderWriteFlags,
                 bk.getClientCtx().getClientStats());
             ReentrantReadWriteLock closeLock = bk.getCloseLock();
             closeLock.readLock().lock();
@@ -408,6 +431,24 @@ class LedgerCreateOp {
                 closeLock.readLock().unlock();
             }
         }
+
+        /**
+         * @return the custom metadata of the ledger, with the compression and the batches of records recorded
+         */
+        private Map<String, byte[]> customMetadata() {
+            if (builderCompressionType == CompressionType.NONE && !builderRecordBatches) {
+                return builderCustomMetadata;
+            }
+            Map<String, byte[]> customMetadata = new HashMap<>(builderCustomMetadata);
+            if (builderCompressionType != CompressionType.NONE) {
+                customMetadata.put(CompressionType.CUSTOM_METADATA_KEY,
+                        builderCompressionType.name().getBytes(StandardCharsets.UTF_8));
+            }
+            if (builderRecordBatches) {
+                customMetadata.put(BatchedWriter.CUSTOM_METADATA_KEY, RecordBatchFormat.CUSTOM_METADATA_VALUE);
+            }
+            return customMetadata;
+        }
     }
 
     private static class CreateAdvBuilderImpl implements CreateAdvBuilder {
@@ -453,7 +494,7 @@ class LedgerCreateOp {
             LedgerCreateOp op = new LedgerCreateOp(parent.bk, parent.builderEnsembleSize,
                     parent.builderWriteQuorumSize, parent.builderAckQuorumSize,
                     DigestType.fromApiDigestType(parent.builderDigestType),
-                    parent.builderPassword, cb, null, parent.builderCustomMetadata,
+                    parent.builderPassword, cb, null, parent.customMetadata(),
                     parent.builderWriteFlags,
                     parent.bk.getClientCtx().getClientStats());
             ReentrantReadWriteLock closeLock = parent.bk.getCloseLock();
@@ -28,6 +28,7 @@ import static org.apache.bookkeeper.replication.ReplicationStats.READ_DATA_LATEN
 import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATION_WORKER_SCOPE;
 import static org.apache.bookkeeper.replication.ReplicationStats.WRITE_DATA_LATENCY;
 import com.google.common.util.concurrent.RateLimiter;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -397,10 +398,14 @@ public class LedgerFragmentReplicator {
                 numEntriesRead.inc();
                 numBytesRead.registerSuccessfulValue(dataLength);
 
+                ByteBuf payload = Unpooled.wrappedBuffer(data, 0, data.length);
+                if (lh.entryCompressor != null) {
+                    // the entry was decompressed once read, it's stored compressed again
+                    payload = lh.entryCompressor.compress(payload);
+                }
                 ByteBufList toSend = lh.getDigestManager()
                         .computeDigestAndPackageForSending(entryId,
-                                lh.getLastAddConfirmed(), entry.getLength(),
-                                Unpooled.wrappedBuffer(data, 0, data.length));
+                                lh.getLastAddConfirmed(), entry.getLength(), payload);
                 if (replicationThrottle != null) {
                     updateAverageEntrySize(toSend.readableBytes());
                 }
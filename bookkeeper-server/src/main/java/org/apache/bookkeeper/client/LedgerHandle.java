@@ -67,9 +67,12 @@ import org.apache.bookkeeper.client.SyncCallbackUtils.SyncCloseCallback;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncReadCallback;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncReadLastConfirmedCallback;
 import org.apache.bookkeeper.client.api.BKException.Code;
+import org.apache.bookkeeper.client.api.BatchedWriter;
 import org.apache.bookkeeper.client.api.LastConfirmedAndEntry;
 import org.apache.bookkeeper.client.api.LedgerEntries;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.LedgerRecord;
+import org.apache.bookkeeper.client.api.StreamReader;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.client.api.WriteHandle;
 import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
@@ -100,16 +103,17 @@ public class LedgerHandle implements WriteHandle {
     final ClientContext clientCtx;
 
     final byte[] ledgerKey;
-    private Versioned<LedgerMetadata> versionedMetadata;
+    private volatile Versioned<LedgerMetadata> versionedMetadata;
     final long ledgerId;
-    long lastAddPushed;
+    // updated under the add lock, so that the adds don't contend with the other users of the handle lock
+    volatile long lastAddPushed;
 
     private enum HandleState {
         OPEN,
         CLOSED
     }
 
-    private HandleState handleState = HandleState.OPEN;
+    private volatile HandleState handleState = HandleState.OPEN;
     private final CompletableFuture<Void> closePromise = new CompletableFuture<>();
 
     /**
@@ -136,10 +140,15 @@ public class LedgerHandle implements WriteHandle {
      */
     private int stickyBookieIndex;
 
-    long length;
+    // updated under the add lock
+    volatile long length;
     final DigestManager macManager;
+    // null if the entries of the ledger are not compressed
+    final EntryCompressor entryCompressor;
     final DistributionSchedule distributionSchedule;
+    // throttles the reads, the adds are throttled by the write throttle, without blocking
     final RateLimiter throttler;
+    final WriteThrottler.LedgerThrottle writeThrottle;
     final LoadingCache<BookieId, Long> bookieFailureHistory;
     final BookiesHealthInfo bookiesHealthInfo;
     final EnumSet<WriteFlag> writeFlags;
@@ -163,6 +172,12 @@ public class LedgerHandle implements WriteHandle {
     public static final long INVALID_LEDGER_ID = -0xABCDABCDL;
 
     final Object metadataLock = new Object();
+    /**
+     * Lock assigning the entry ids and the ledger length of the adds, and queuing them in order. The adds
+     * only take this lock, which is also taken by any other change to lastAddPushed or length, or to the
+     * writability of the handle. It is always taken after the handle lock, if both are needed.
+     */
+    final Object addLock = new Object();
     boolean changingEnsemble = false;
     final AtomicInteger numEnsembleChanges = new AtomicInteger(0);
     Queue<PendingAddOp> pendingAddOps;
@@ -209,9 +224,13 @@ public class LedgerHandle implements WriteHandle {
         } else {
             this.throttler = null;
         }
+        WriteThrottler writeThrottler = clientCtx.getWriteThrottler();
+        this.writeThrottle = writeThrottler.isEnabled() ? writeThrottler.newLedgerThrottle(ledgerId) : null;
 
         macManager = DigestManager.instantiate(ledgerId, password, BookKeeper.DigestType.toProtoDigestType(digestType),
                                                clientCtx.getByteBufAllocator(), clientCtx.getConf().useV2WireProtocol);
+        entryCompressor = EntryCompressor.forLedger(ledgerId, metadata, clientCtx.getByteBufAllocator(),
+                                                    clientCtx.getClientStats());
 
         // If the password is empty, pass the same random ledger key which is generated by the hash of the empty
         // password, so that the bookie can avoid processing the keys for each entry
@@ -324,7 +343,7 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddConfirmed() {
+    public long getLastAddConfirmed() {
         return lastAddConfirmed;
     }
 
@@ -336,7 +355,7 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddPushed() {
+    public long getLastAddPushed() {
         return lastAddPushed;
     }
 
@@ -363,17 +382,19 @@ public class LedgerHandle implements WriteHandle {
 
     boolean setLedgerMetadata(Versioned<LedgerMetadata> expected, Versioned<LedgerMetadata> newMetadata) {
         synchronized (this) {
-            // ensure that we only update the metadata if it is the object we expect it to be
-            if (versionedMetadata == expected) {
-                versionedMetadata = newMetadata;
-                LedgerMetadata metadata = versionedMetadata.getValue();
-                if (metadata.isClosed()) {
-                    lastAddConfirmed = lastAddPushed = metadata.getLastEntryId();
-                    length = metadata.getLength();
+            synchronized (addLock) {
+                // ensure that we only update the metadata if it is the object we expect it to be
+                if (versionedMetadata == expected) {
+                    versionedMetadata = newMetadata;
+                    LedgerMetadata metadata = versionedMetadata.getValue();
+                    if (metadata.isClosed()) {
+                        lastAddConfirmed = lastAddPushed = metadata.getLastEntryId();
+                        length = metadata.getLength();
+                    }
+                    return true;
+                } else {
+                    return false;
                 }
-                return true;
-            } else {
-                return false;
             }
         }
     }
@@ -426,9 +447,11 @@ public class LedgerHandle implements WriteHandle {
      * @param delta
      * @return the length of the ledger after the addition
      */
-    synchronized long addToLength(long delta) {
-        this.length += delta;
-        return this.length;
+    long addToLength(long delta) {
+        synchronized (addLock) {
+            this.length += delta;
+            return this.length;
+        }
     }
 
     /**
@@ -437,7 +460,7 @@ public class LedgerHandle implements WriteHandle {
      * @return the length of the ledger in bytes
      */
     @Override
-    public synchronized long getLength() {
+    public long getLength() {
         return this.length;
     }
 
@@ -558,15 +581,17 @@ public class LedgerHandle implements WriteHandle {
                     });
 
                 synchronized (LedgerHandle.this) {
-                    prevHandleState = handleState;
+                    synchronized (addLock) {
+                        prevHandleState = handleState;
 
-                    // drain pending adds first
-                    pendingAdds = drainPendingAddsAndAdjustLength();
+                        // drain pending adds first
+                        pendingAdds = drainPendingAddsAndAdjustLength();
 
-                    // taking the length must occur after draining, as draining changes the length
-                    lastEntry = lastAddPushed = LedgerHandle.this.lastAddConfirmed;
-                    finalLength = LedgerHandle.this.length;
-                    handleState = HandleState.CLOSED;
+                        // taking the length must occur after draining, as draining changes the length
+                        lastEntry = lastAddPushed = LedgerHandle.this.lastAddConfirmed;
+                        finalLength = LedgerHandle.this.length;
+                        handleState = HandleState.CLOSED;
+                    }
                 }
 
                 // error out all pending adds during closing, the callbacks shouldn't be
@@ -1296,16 +1321,44 @@ public class LedgerHandle implements WriteHandle {
         return success;
     }
 
+    /**
+     * Submit an add once it's admitted by the write throttling, without blocking the caller.
+     *
+     * <p>The recovery adds are not throttled: the recovery checks the entry id of each entry read against
+     * the entries already pushed, so they have to be submitted as soon as they are read.
+     */
     protected void doAsyncAddEntry(final PendingAddOp op) {
-        if (throttler != null) {
-            throttler.acquire();
+        if (writeThrottle == null || op.isRecoveryAdd) {
+            submitAddEntry(op);
+            return;
         }
 
+        CompletableFuture<Void> admitted;
+        try {
+            admitted = writeThrottle.acquire(op.entryLength);
+        } catch (BKException e) {
+            op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(), e.getCode()),
+                    LedgerHandle.this, op.getEntryId(), 0, op.ctx);
+            return;
+        }
+        if (clientCtx.getWriteThrottler().isLimitingBytes()) {
+            op.throttledBytes = op.entryLength;
+        }
+        if (admitted.isDone()) {
+            submitAddEntry(op);
+        } else {
+            // the adds are admitted in order, so they are also submitted in order
+            admitted.thenRun(() -> submitAddEntry(op));
+        }
+    }
+
+    protected void submitAddEntry(final PendingAddOp op) {
         boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
+        synchronized (addLock) {
+            // synchronized on addLock to ensure that
             // the ledger isn't closed between checking and
-            // updating lastAddPushed
+            // updating lastAddPushed, and that the adds are
+            // queued in the order of their entry ids
             if (isHandleWritable()) {
                 long entryId = ++lastAddPushed;
                 long currentLedgerLength = addToLength(op.payload.readableBytes());
@@ -1318,6 +1371,7 @@ public class LedgerHandle implements WriteHandle {
         }
 
         if (wasClosed) {
+            op.releaseThrottledBytes();
             // make sure the callback is triggered in main worker pool
             try {
                 clientCtx.getMainWorkerPool().executeOrdered(ledgerId, new SafeRunnable() {
@@ -1353,6 +1407,7 @@ public class LedgerHandle implements WriteHandle {
         try {
             clientCtx.getMainWorkerPool().executeOrdered(ledgerId, op);
         } catch (RejectedExecutionException e) {
+            op.releaseThrottledBytes();
             op.cb.addCompleteWithLatency(
                     BookKeeper.getReturnRc(clientCtx.getBookieClient(), BKException.Code.InterruptedException),
                     LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
@@ -1366,8 +1421,13 @@ public class LedgerHandle implements WriteHandle {
         } else {
             lacUpdateMissesCounter.inc();
         }
-        lastAddPushed = Math.max(lastAddPushed, lac);
-        length = Math.max(length, len);
+        // most of the time, there is nothing to update for a ledger being written
+        if (lac > lastAddPushed || len > length) {
+            synchronized (addLock) {
+                lastAddPushed = Math.max(lastAddPushed, lac);
+                length = Math.max(length, len);
+            }
+        }
     }
 
     /**
@@ -1507,6 +1567,54 @@ public class LedgerHandle implements WriteHandle {
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamReader newStreamReader(long startEntry) {
+        if (startEntry < 0) {
+            throw new IllegalArgumentException("Invalid start entry " + startEntry);
+        }
+        return new LedgerStreamReader(this, clientCtx, startEntry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<LedgerRecord>> readRecordsAsync(long firstEntry, long lastEntry) {
+        boolean recordBatches = RecordBatchFormat.holdsRecordBatches(getLedgerMetadata());
+        return readAsync(firstEntry, lastEntry).thenCompose(entries -> {
+            List<LedgerRecord> records = new ArrayList<>();
+            try {
+                for (org.apache.bookkeeper.client.api.LedgerEntry entry : entries) {
+                    if (!recordBatches) {
+                        RecordBatchFormat.addSingleRecord(entry, records);
+                    } else if (!RecordBatchFormat.unpack(entry, records)) {
+                        LOG.error("Entry {} of ledger {} is not a batch of records", entry.getEntryId(), ledgerId);
+                        records.forEach(LedgerRecord::close);
+                        return FutureUtils.exception(
+                                BKException.create(BKException.Code.UnexpectedConditionException));
+                    }
+                }
+                return FutureUtils.value(records);
+            } finally {
+                entries.close();
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BatchedWriter newBatchedWriter() {
+        if (!RecordBatchFormat.holdsRecordBatches(getLedgerMetadata())) {
+            throw new IllegalStateException("Ledger " + ledgerId + " is not created to hold batches of records");
+        }
+        return new LedgerBatchedWriter(this, clientCtx);
+    }
+
     /**
      * Asynchronous read next entry and the latest last add confirmed.
      * If the next entryId is less than known last add confirmed, the call will read next entry directly.
@@ -1703,7 +1811,9 @@ public class LedgerHandle implements WriteHandle {
             isClosed = metadata.isClosed();
             if (isClosed) {
                 lastAddConfirmed = metadata.getLastEntryId();
-                length = metadata.getLength();
+                synchronized (addLock) {
+                    length = metadata.getLength();
+                }
             }
         }
         if (isClosed) {
@@ -1788,13 +1898,15 @@ public class LedgerHandle implements WriteHandle {
     }
 
     synchronized List<PendingAddOp> drainPendingAddsAndAdjustLength() {
-        PendingAddOp pendingAddOp;
-        List<PendingAddOp> opsDrained = new ArrayList<PendingAddOp>(pendingAddOps.size());
-        while ((pendingAddOp = pendingAddOps.poll()) != null) {
-            addToLength(-pendingAddOp.entryLength);
-            opsDrained.add(pendingAddOp);
+        synchronized (addLock) {
+            PendingAddOp pendingAddOp;
+            List<PendingAddOp> opsDrained = new ArrayList<PendingAddOp>(pendingAddOps.size());
+            while ((pendingAddOp = pendingAddOps.poll()) != null) {
+                addToLength(-pendingAddOp.entryLength);
+                opsDrained.add(pendingAddOp);
+            }
+            return opsDrained;
         }
-        return opsDrained;
     }
 
     void errorOutPendingAdds(int rc, List<PendingAddOp> ops) {
@@ -2049,6 +2161,10 @@ public class LedgerHandle implements WriteHandle {
      * Return a {@link WriteSet} suitable for reading a particular entry.
      * This will include all bookies that are cotna
      */
+    boolean isStickyReadsEnabled() {
+        return stickyBookieIndex != STICKY_READ_BOOKIE_INDEX_UNSET;
+    }
+
     WriteSet getWriteSetForReadOperation(long entryId) {
         if (stickyBookieIndex != STICKY_READ_BOOKIE_INDEX_UNSET) {
             // When sticky reads are enabled we want to make sure to take
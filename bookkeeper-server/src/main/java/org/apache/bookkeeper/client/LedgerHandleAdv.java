@@ -221,14 +221,10 @@ public class LedgerHandleAdv extends LedgerHandle implements WriteAdvHandle {
      * unaltered in the base class.
      */
     @Override
-    protected void doAsyncAddEntry(final PendingAddOp op) {
-        if (throttler != null) {
-            throttler.acquire();
-        }
-
+    protected void submitAddEntry(final PendingAddOp op) {
         boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
+        synchronized (addLock) {
+            // synchronized on addLock to ensure that
             // the ledger isn't closed between checking and
             // updating lastAddPushed
             if (isHandleWritable()) {
@@ -241,6 +237,7 @@ public class LedgerHandleAdv extends LedgerHandle implements WriteAdvHandle {
         }
 
         if (wasClosed) {
+            op.releaseThrottledBytes();
             // make sure the callback is triggered in main worker pool
             try {
                 clientCtx.getMainWorkerPool().submit(new SafeRunnable() {
@@ -271,6 +268,7 @@ public class LedgerHandleAdv extends LedgerHandle implements WriteAdvHandle {
         try {
             clientCtx.getMainWorkerPool().executeOrdered(ledgerId, op);
         } catch (RejectedExecutionException e) {
+            op.releaseThrottledBytes();
             op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
                                                                 BKException.Code.InterruptedException),
                               LedgerHandleAdv.this, op.getEntryId(), 0, op.ctx);
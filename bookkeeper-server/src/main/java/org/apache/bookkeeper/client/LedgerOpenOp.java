@@ -112,13 +112,18 @@ class LedgerOpenOp {
          * Asynchronously read the ledger metadata node.
          */
         bk.getLedgerManager().readLedgerMetadata(ledgerId)
-            .whenComplete((metadata, exception) -> {
-                    if (exception != null) {
-                        openComplete(BKException.getExceptionCode(exception), null);
-                    } else {
-                        openWithMetadata(metadata);
-                    }
-                });
+            .whenComplete(this::metadataReadComplete);
+    }
+
+    /**
+     * Continue the open operation once the metadata of the ledger is read.
+     */
+    void metadataReadComplete(Versioned<LedgerMetadata> metadata, Throwable exception) {
+        if (exception != null) {
+            openComplete(BKException.getExceptionCode(exception), null);
+        } else {
+            openWithMetadata(metadata);
+        }
     }
 
     /**
@@ -222,7 +227,7 @@ class LedgerOpenOp {
                 }
             });
         } else {
-            lh.asyncReadLastConfirmed(new ReadLastConfirmedCallback() {
+            readLastConfirmed(new ReadLastConfirmedCallback() {
                 @Override
                 public void readLastConfirmedComplete(int rc,
                         long lastConfirmed, Object ctx) {
@@ -234,11 +239,18 @@ class LedgerOpenOp {
                         openComplete(BKException.Code.OK, lh);
                     }
                 }
-            }, null);
+            });
 
         }
     }
 
+    /**
+     * Read the LastAddConfirmed of a ledger opened without recovery.
+     */
+    void readLastConfirmed(ReadLastConfirmedCallback cb) {
+        lh.asyncReadLastConfirmed(cb, null);
+    }
+
     void openComplete(int rc, LedgerHandle lh) {
         if (BKException.Code.OK != rc) {
             openOpLogger.registerFailedEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
@@ -19,6 +19,7 @@ package org.apache.bookkeeper.client;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
@@ -33,6 +34,10 @@ import org.slf4j.LoggerFactory;
  * with entry-id of -1 (BookieProtocol.LAST_ADD_CONFIRMED) to all bookies. Then
  * starting from the last confirmed entry (from hints in the ledger entries),
  * it reads forward until it is not able to find a particular entry.
+ *
+ * <p>The entries are read in batches, up to a window of batches being read at
+ * the same time, and each entry is added back as soon as the entries before it
+ * have been read.
  */
 class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
@@ -50,6 +55,11 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     // keep a copy of metadata for recovery.
     LedgerMetadata metadataForRecovery;
 
+    // guarded by this
+    int numOutstandingBatches = 0;
+    long nextEntryToAdd;
+    final TreeMap<Long, ReadResult> readResults = new TreeMap<>();
+
     // EntryListener Hook
     @VisibleForTesting
     ReadEntryListener entryListener = null;
@@ -70,6 +80,48 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
     }
 
+    /**
+     * The range of entries read by a {@link RecoveryReadOp}.
+     */
+    static class RecoveryBatch {
+        final long startEntryId;
+        final long endEntryId;
+        long nextEntryId;
+
+        RecoveryBatch(long startEntryId, long endEntryId) {
+            this.startEntryId = startEntryId;
+            this.endEntryId = endEntryId;
+            this.nextEntryId = startEntryId;
+        }
+    }
+
+    /**
+     * The result of the read of an entry, waiting for the previous entries to be read.
+     */
+    static class ReadResult {
+        final int rc;
+        final LedgerEntry entry;
+
+        ReadResult(int rc, LedgerEntry entry) {
+            this.rc = rc;
+            this.entry = entry;
+        }
+
+        void release() {
+            releaseEntry(entry);
+        }
+    }
+
+    /**
+     * Release the buffer of an entry read but not added back.
+     */
+    private static void releaseEntry(LedgerEntry entry) {
+        if (entry != null && entry.data != null) {
+            entry.data.release();
+            entry.data = null;
+        }
+    }
+
     public LedgerRecoveryOp(LedgerHandle lh, ClientContext clientCtx) {
         readCount = new AtomicLong(0);
         writeCount = new AtomicLong(0);
@@ -119,13 +171,18 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
                                         .lastEntry()
                                         .getKey();
 
-                                lh.lastAddPushed = lh.lastAddConfirmed = Math.max(data.getLastAddConfirmed(),
-                                        (lastEnsembleEntryId - 1));
+                                synchronized (lh.addLock) {
+                                    lh.lastAddPushed = lh.lastAddConfirmed = Math.max(data.getLastAddConfirmed(),
+                                            (lastEnsembleEntryId - 1));
 
-                                lh.length = data.getLength();
+                                    lh.length = data.getLength();
+                                }
                                 lh.pendingAddsSequenceHead = lh.lastAddConfirmed;
                                 startEntryToRead = endEntryToRead = lh.lastAddConfirmed;
                             }
+                            synchronized (LedgerRecoveryOp.this) {
+                                nextEntryToAdd = startEntryToRead + 1;
+                            }
                             // keep a copy of ledger metadata before proceeding
                             // ledger recovery
                             metadataForRecovery = lh.getLedgerMetadata();
@@ -161,13 +218,16 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     }
 
     /**
-     * Try to read past the last confirmed.
+     * Try to read past the last confirmed, keeping up to the configured window of batches outstanding.
      */
-    private void doRecoveryRead() {
-        if (!promise.isDone()) {
+    private synchronized void doRecoveryRead() {
+        while (!promise.isDone() && !readDone
+                && numOutstandingBatches < clientCtx.getConf().recoveryReadWindowSize) {
             startEntryToRead = endEntryToRead + 1;
             endEntryToRead = endEntryToRead + clientCtx.getConf().recoveryReadBatchSize;
-            new RecoveryReadOp(lh, clientCtx, startEntryToRead, endEntryToRead, this, null)
+            numOutstandingBatches++;
+            RecoveryBatch batch = new RecoveryBatch(startEntryToRead, endEntryToRead);
+            new RecoveryReadOp(lh, clientCtx, batch.startEntryId, batch.endEntryId, this, batch)
                 .initiate();
         }
     }
@@ -180,8 +240,45 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             listener.onEntryComplete(rc, lh, entry, ctx);
         }
 
-        // we only trigger recovery add an entry when readDone == false && callbackDone == false
-        if (!promise.isDone() && !readDone && rc == BKException.Code.OK) {
+        synchronized (this) {
+            // the entries of a batch are completed in order, the failed ones without entry
+            RecoveryBatch batch = (RecoveryBatch) ctx;
+            long entryId = batch.nextEntryId++;
+            if (entryId == batch.endEntryId) {
+                numOutstandingBatches--;
+            }
+
+            if (promise.isDone() || readDone) {
+                if (BKException.Code.OK == rc) {
+                    // we are here is because we successfully read an entry but readDone was already set to true.
+                    // this would happen on recovery a ledger than has gaps in the tail.
+                    LOG.warn("Successfully read entry {} for ledger {}, but readDone is already {}",
+                            entryId, lh.getId(), readDone);
+                }
+                releaseEntry(entry);
+                return;
+            }
+
+            // the batches are completed in any order, but the entries are added back in order
+            readResults.put(entryId, new ReadResult(rc, entry));
+            ReadResult result;
+            while (!promise.isDone() && !readDone && (result = readResults.remove(nextEntryToAdd)) != null) {
+                onEntryRead(nextEntryToAdd, result.rc, result.entry);
+                nextEntryToAdd++;
+            }
+
+            if (promise.isDone() || readDone) {
+                // the entries read past the last entry, or after a failure, are not added back
+                readResults.values().forEach(ReadResult::release);
+                readResults.clear();
+            } else {
+                doRecoveryRead();
+            }
+        }
+    }
+
+    private void onEntryRead(long entryId, int rc, LedgerEntry entry) {
+        if (rc == BKException.Code.OK) {
             readCount.incrementAndGet();
             byte[] data = entry.getEntry();
 
@@ -191,20 +288,18 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
              * be added again when processing the call to add it.
              */
             synchronized (lh) {
-                lh.length = entry.getLength() - (long) data.length;
-                // check whether entry id is expected, so we won't overwritten any entries by mistake
-                if (entry.getEntryId() != lh.lastAddPushed + 1) {
-                    LOG.error("Unexpected to recovery add entry {} as entry {} for ledger {}.",
-                            entry.getEntryId(), (lh.lastAddPushed + 1), lh.getId());
-                    rc = BKException.Code.UnexpectedConditionException;
+                synchronized (lh.addLock) {
+                    lh.length = entry.getLength() - (long) data.length;
+                    // check whether entry id is expected, so we won't overwritten any entries by mistake
+                    if (entry.getEntryId() != lh.lastAddPushed + 1) {
+                        LOG.error("Unexpected to recovery add entry {} as entry {} for ledger {}.",
+                                entry.getEntryId(), (lh.lastAddPushed + 1), lh.getId());
+                        rc = BKException.Code.UnexpectedConditionException;
+                    }
                 }
             }
             if (BKException.Code.OK == rc) {
                 lh.asyncRecoveryAddEntry(data, 0, data.length, this, null);
-                if (entry.getEntryId() == endEntryToRead) {
-                    // trigger next batch read
-                    doRecoveryRead();
-                }
                 return;
             }
         }
@@ -219,17 +314,9 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
         }
 
         // otherwise, some other error, we can't handle
-        if (BKException.Code.OK != rc && !promise.isDone()) {
-            LOG.error("Failure {} while reading entries: ({} - {}), ledger: {} while recovering ledger",
-                      BKException.getMessage(rc), startEntryToRead, endEntryToRead, lh.getId());
-            submitCallback(rc);
-        } else if (BKException.Code.OK == rc) {
-            // we are here is because we successfully read an entry but readDone was already set to true.
-            // this would happen on recovery a ledger than has gaps in the tail.
-            LOG.warn("Successfully read entry {} for ledger {}, but readDone is already {}",
-                    entry.getEntryId(), lh.getId(), readDone);
-        }
-        return;
+        LOG.error("Failure {} while reading entry: {}, ledger: {} while recovering ledger",
+                  BKException.getMessage(rc), entryId, lh.getId());
+        submitCallback(rc);
     }
 
     @Override
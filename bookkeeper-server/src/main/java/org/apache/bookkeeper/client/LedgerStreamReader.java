@@ -0,0 +1,297 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.AsyncCallback.ReadLastConfirmedAndEntryCallback;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.StreamReader;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link StreamReader} over a ledger handle.
+ *
+ * <p>The entries are read ahead in batches of {@link ListenerBasedPendingReadOp}, which hand over each entry
+ * as soon as it and the entries before it in the batch are read. The batches may complete out of order, so
+ * the entries are buffered until the entries before them are handed over to the application. The buffers
+ * of the responses are handed over as they are, without copies.
+ *
+ * <p>The entries read ahead are bounded by the max number of outstanding entries, and by the max number of
+ * outstanding bytes, the bytes of the entries being read being estimated from the average size of the
+ * entries already read. Once the reader has caught up with the LastAddConfirmed of a ledger which is not
+ * closed, it waits for the next entry with a long poll read.
+ */
+class LedgerStreamReader implements StreamReader, ReadEntryListener, ReadLastConfirmedAndEntryCallback {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerStreamReader.class);
+
+    private static final int MAX_ENTRIES_PER_READ = 100;
+
+    private final LedgerHandle lh;
+    private final ClientContext clientCtx;
+    private final int maxOutstandingEntries;
+    private final long maxOutstandingBytes;
+    private final long longPollTimeoutMillis;
+
+    // guarded by this
+    private long nextEntryToRead;
+    private long nextEntryToDeliver;
+    private final TreeMap<Long, LedgerEntryImpl> received = new TreeMap<>();
+    private final ArrayDeque<CompletableFuture<org.apache.bookkeeper.client.api.LedgerEntry>> waiters =
+            new ArrayDeque<>();
+    private long bufferedBytes = 0;
+    private long totalReadBytes = 0;
+    private long totalReadEntries = 0;
+    private boolean longPollOutstanding = false;
+    private int failureRc = BKException.Code.OK;
+    private long failedEntryId = Long.MAX_VALUE;
+    private boolean closed = false;
+
+    LedgerStreamReader(LedgerHandle lh, ClientContext clientCtx, long startEntry) {
+        this.lh = lh;
+        this.clientCtx = clientCtx;
+        this.maxOutstandingEntries = clientCtx.getConf().streamReaderMaxOutstandingEntries;
+        this.maxOutstandingBytes = clientCtx.getConf().streamReaderMaxOutstandingBytes;
+        this.longPollTimeoutMillis = clientCtx.getConf().streamReaderLongPollTimeoutMillis;
+        this.nextEntryToRead = startEntry;
+        this.nextEntryToDeliver = startEntry;
+    }
+
+    @Override
+    public synchronized long getNextEntryId() {
+        return nextEntryToDeliver + waiters.size();
+    }
+
+    @Override
+    public CompletableFuture<org.apache.bookkeeper.client.api.LedgerEntry> readNextAsync() {
+        CompletableFuture<org.apache.bookkeeper.client.api.LedgerEntry> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                future.completeExceptionally(BKException.create(BKException.Code.IllegalOpException));
+                return future;
+            }
+            waiters.add(future);
+        }
+        process();
+        return future;
+    }
+
+    @Override
+    public void close() {
+        List<CompletableFuture<org.apache.bookkeeper.client.api.LedgerEntry>> pending;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            received.values().forEach(LedgerEntryImpl::close);
+            received.clear();
+            bufferedBytes = 0;
+            pending = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        pending.forEach(f -> f.completeExceptionally(BKException.create(BKException.Code.IllegalOpException)));
+    }
+
+    @Override
+    public void onEntryComplete(int rc, LedgerHandle lh, LedgerEntry entry, Object ctx) {
+        ReadBatch batch = (ReadBatch) ctx;
+        long entryId;
+        synchronized (this) {
+            entryId = batch.nextEntryId++;
+        }
+        if (onEntryRead(rc, entryId, entry)) {
+            process();
+        }
+    }
+
+    @Override
+    public void readLastConfirmedAndEntryComplete(int rc, long lastConfirmed, LedgerEntry entry, Object ctx) {
+        long entryId = (Long) ctx;
+        synchronized (this) {
+            longPollOutstanding = false;
+        }
+        if (BKException.Code.TimeoutException == rc) {
+            // wait again for the entry
+            process();
+            return;
+        }
+        if (BKException.Code.OK == rc && (entry == null || entry.getEntryId() != entryId)) {
+            // the LastAddConfirmed advanced without the entry, or the ledger is closed
+            if (entry != null) {
+                entry.data.release();
+            }
+            process();
+            return;
+        }
+        synchronized (this) {
+            if (BKException.Code.OK == rc && nextEntryToRead == entryId) {
+                nextEntryToRead++;
+            }
+        }
+        if (onEntryRead(rc, entryId, entry)) {
+            process();
+        }
+    }
+
+    /**
+     * Buffer an entry read, or record the failure of its read.
+     *
+     * @return whether the reader is still open
+     */
+    private synchronized boolean onEntryRead(int rc, long entryId, LedgerEntry entry) {
+        if (closed) {
+            if (entry != null) {
+                entry.data.release();
+            }
+            return false;
+        }
+        if (BKException.Code.OK != rc) {
+            LOG.warn("Failed to read entry {} of ledger {} ahead : {}", entryId, lh.getId(),
+                    BKException.getMessage(rc));
+            if (entryId < failedEntryId) {
+                failureRc = rc;
+                failedEntryId = entryId;
+            }
+            return true;
+        }
+        LedgerEntryImpl entryImpl = LedgerEntryImpl.create(entry.getLedgerId(), entry.getEntryId(),
+                entry.getLength(), entry.data);
+        entry.data = null;
+        received.put(entryId, entryImpl);
+        bufferedBytes += entryImpl.getLength();
+        totalReadBytes += entryImpl.getLength();
+        totalReadEntries++;
+        return true;
+    }
+
+    /**
+     * Hand over the entries waited for, and read the next entries ahead if the window allows.
+     */
+    private void process() {
+        List<CompletableFuture<org.apache.bookkeeper.client.api.LedgerEntry>> completed = new ArrayList<>();
+        List<org.apache.bookkeeper.client.api.LedgerEntry> entries = new ArrayList<>();
+        List<CompletableFuture<org.apache.bookkeeper.client.api.LedgerEntry>> failed = new ArrayList<>();
+        int rc;
+        long longPollEntryId = -1;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            LedgerMetadata metadata = lh.getLedgerMetadata();
+            long lastAvailableEntryId = metadata.isClosed() ? metadata.getLastEntryId() : lh.getLastAddConfirmed();
+            while (!waiters.isEmpty()) {
+                LedgerEntryImpl entry = received.remove(nextEntryToDeliver);
+                if (entry != null) {
+                    bufferedBytes -= entry.getLength();
+                    completed.add(waiters.poll());
+                    entries.add(entry);
+                    nextEntryToDeliver++;
+                } else if (nextEntryToDeliver >= failedEntryId) {
+                    failed.addAll(waiters);
+                    waiters.clear();
+                } else if (metadata.isClosed() && nextEntryToDeliver > metadata.getLastEntryId()) {
+                    // the end of the ledger
+                    completed.add(waiters.poll());
+                    entries.add(null);
+                } else {
+                    break;
+                }
+            }
+
+            // read ahead once the entries handed over have made room in the window
+            if (failureRc == BKException.Code.OK && !longPollOutstanding) {
+                readAhead(lastAvailableEntryId);
+                if (nextEntryToDeliver >= failedEntryId) {
+                    // the client closed before the next entry could be read
+                    failed.addAll(waiters);
+                    waiters.clear();
+                }
+            }
+            rc = failureRc;
+
+            // wait for the next entry once caught up with the LastAddConfirmed
+            if (failureRc == BKException.Code.OK && !longPollOutstanding && !metadata.isClosed()
+                    && nextEntryToRead > lastAvailableEntryId && nextEntryToRead == nextEntryToDeliver) {
+                longPollOutstanding = true;
+                longPollEntryId = nextEntryToRead;
+            }
+        }
+
+        for (int i = 0; i < completed.size(); i++) {
+            completed.get(i).complete(entries.get(i));
+        }
+        for (CompletableFuture<org.apache.bookkeeper.client.api.LedgerEntry> future : failed) {
+            future.completeExceptionally(BKException.create(rc));
+        }
+        if (longPollEntryId >= 0) {
+            lh.asyncReadLastConfirmedAndEntry(longPollEntryId, longPollTimeoutMillis, false, this, longPollEntryId);
+        }
+    }
+
+    private void readAhead(long lastAvailableEntryId) {
+        while (nextEntryToRead <= lastAvailableEntryId) {
+            long outstandingEntries = nextEntryToRead - nextEntryToDeliver;
+            long maxEntries = Math.min(maxOutstandingEntries - outstandingEntries, MAX_ENTRIES_PER_READ);
+            if (totalReadEntries > 0) {
+                long averageEntrySize = Math.max(totalReadBytes / totalReadEntries, 1);
+                long inflightEntries = outstandingEntries - received.size();
+                long availableBytes = maxOutstandingBytes - bufferedBytes - inflightEntries * averageEntrySize;
+                // read at least one entry at a time, whatever its size
+                maxEntries = Math.min(maxEntries, outstandingEntries > 0
+                        ? availableBytes / averageEntrySize : Math.max(availableBytes / averageEntrySize, 1));
+            }
+            if (maxEntries <= 0) {
+                return;
+            }
+            if (clientCtx.isClientClosed()) {
+                if (nextEntryToRead < failedEntryId) {
+                    failureRc = BKException.Code.ClientClosedException;
+                    failedEntryId = nextEntryToRead;
+                }
+                return;
+            }
+
+            long lastEntryId = Math.min(nextEntryToRead + maxEntries - 1, lastAvailableEntryId);
+            new ListenerBasedPendingReadOp(lh, clientCtx, nextEntryToRead, lastEntryId, this,
+                    new ReadBatch(nextEntryToRead), false).submit();
+            nextEntryToRead = lastEntryId + 1;
+        }
+    }
+
+    /**
+     * The entries of a read, handed over in order.
+     */
+    private static class ReadBatch {
+        long nextEntryId;
+
+        ReadBatch(long firstEntryId) {
+            this.nextEntryId = firstEntryId;
+        }
+    }
+}
@@ -64,6 +64,8 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
     Object ctx;
     long entryId;
     int entryLength;
+    // bytes of the outstanding adds of the client held by the add, until its callback
+    int throttledBytes;
 
     DistributionSchedule.AckSet ackSet;
     boolean completed = false;
@@ -98,6 +100,7 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
         op.currentLedgerLength = -1;
         op.payload = payload;
         op.entryLength = payload.readableBytes();
+        op.throttledBytes = 0;
 
         op.completed = false;
         op.ensemble = ensemble;
@@ -260,6 +263,10 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
         checkNotNull(lh);
         checkNotNull(lh.macManager);
 
+        if (lh.entryCompressor != null) {
+            // the length of the ledger stays the length of the entries before compression
+            payload = lh.entryCompressor.compress(payload);
+        }
         this.toSend = lh.macManager.computeDigestAndPackageForSending(
                 entryId, lh.lastAddConfirmed, currentLedgerLength,
                 payload);
@@ -411,6 +418,16 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
         }
     }
 
+    /**
+     * Release the bytes held by the add in the write throttling of the client, once it's completed.
+     */
+    void releaseThrottledBytes() {
+        if (throttledBytes > 0) {
+            clientCtx.getWriteThrottler().releaseBytes(throttledBytes);
+            throttledBytes = 0;
+        }
+    }
+
     void sendAddSuccessCallbacks() {
         lh.sendAddSuccessCallbacks();
     }
@@ -428,6 +445,7 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
         } else {
             clientCtx.getClientStats().getAddOpLogger().registerSuccessfulEvent(latencyNanos, TimeUnit.NANOSECONDS);
         }
+        releaseThrottledBytes();
         cb.addCompleteWithLatency(rc, lh, entryId, qwcLatency, ctx);
         callbackTriggered = true;
 
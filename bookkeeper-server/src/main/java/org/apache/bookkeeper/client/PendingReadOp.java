@@ -23,6 +23,7 @@ package org.apache.bookkeeper.client;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.netty.buffer.ByteBuf;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashSet;
@@ -106,6 +107,9 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             } else {
                 writeSet = lh.getWriteSetForReadOperation(eId);
             }
+            if (clientCtx.getConf().enableLatencyAwareRead && !lh.isStickyReadsEnabled()) {
+                clientCtx.getReadReplicaSelector().reorderReadSequence(ensemble, lh.getBookiesHealthInfo(), writeSet);
+            }
         }
 
         @Override
@@ -148,6 +152,16 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
                 return false;
             }
 
+            if (lh.entryCompressor != null) {
+                try {
+                    content = lh.entryCompressor.decompress(content);
+                } catch (IOException e) {
+                    logErrorAndReattemptRead(bookieIndex, host, "Corrupted compressed entry",
+                            BKException.Code.DigestMatchException);
+                    return false;
+                }
+            }
+
             if (!complete.getAndSet(true)) {
                 rc = BKException.Code.OK;
                 /*
@@ -156,9 +170,16 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
                  */
                 entryImpl.setLength(buffer.getLong(DigestManager.METADATA_LENGTH - 8));
                 entryImpl.setEntryBuf(content);
+                if (content != buffer) {
+                    // the entry owns the decompressed content rather than the buffer read
+                    buffer.release();
+                }
                 writeSet.recycle();
                 return true;
             } else {
+                if (content != buffer) {
+                    content.release();
+                }
                 return false;
             }
         }
@@ -330,6 +351,8 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
     class SequenceReadRequest extends LedgerEntryRequest {
         static final int NOT_FOUND = -1;
         int nextReplicaIndexToReadFrom = 0;
+        // the first replica read speculatively
+        int firstSpeculativeReplica = NOT_FOUND;
 
         final BitSet sentReplicas;
         final BitSet erroredReplicas;
@@ -379,7 +402,12 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             // request to
             if (sentTo.cardinality() == 0) {
                 clientCtx.getClientStats().getSpeculativeReadCounter().inc();
-                return sendNextRead();
+                int replica = nextReplicaIndexToReadFrom;
+                BookieId to = sendNextRead();
+                if (to != null && firstSpeculativeReplica == NOT_FOUND) {
+                    firstSpeculativeReplica = replica;
+                }
+                return to;
             } else {
                 return null;
             }
@@ -443,7 +471,21 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
 
         @Override
         boolean complete(int bookieIndex, BookieId host, ByteBuf buffer) {
+            int replica;
+            int firstSpeculative;
+            synchronized (this) {
+                replica = writeSet.indexOf(bookieIndex);
+                firstSpeculative = firstSpeculativeReplica;
+            }
             boolean completed = super.complete(bookieIndex, host, buffer);
+            if (completed && firstSpeculative != NOT_FOUND) {
+                // whether the speculative read paid off
+                if (replica >= firstSpeculative) {
+                    clientCtx.getClientStats().getSpeculativeReadWinsCounter().inc();
+                } else {
+                    clientCtx.getClientStats().getSpeculativeReadLossesCounter().inc();
+                }
+            }
             if (completed) {
                 int numReplicasTried = getNextReplicaIndexToReadFrom();
                 // Check if any speculative reads were issued and mark any slow bookies before
@@ -548,12 +590,14 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
         final int bookieIndex;
         final BookieId to;
         final LedgerEntryRequest entry;
+        final long sentTimeNanos;
         long lac = LedgerHandle.INVALID_ENTRY_ID;
 
         ReadContext(int bookieIndex, BookieId to, LedgerEntryRequest entry) {
             this.bookieIndex = bookieIndex;
             this.to = to;
             this.entry = entry;
+            this.sentTimeNanos = MathUtils.nowInNano();
         }
 
         @Override
@@ -591,6 +635,16 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
         final ReadContext rctx = (ReadContext) ctx;
         final LedgerEntryRequest entry = rctx.entry;
 
+        long latencyNanos = MathUtils.elapsedNanos(rctx.sentTimeNanos);
+        // the failures are tracked by the failure history of the bookies, but the timeouts tell they're slow
+        if (clientCtx.getConf().enableLatencyAwareRead
+                && (rc == BKException.Code.OK || rc == BKException.Code.TimeoutException)) {
+            clientCtx.getReadReplicaSelector().recordReadLatency(rctx.to, latencyNanos);
+        }
+        if (rc == BKException.Code.OK && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
+            clientCtx.getConf().readSpeculativeRequestPolicy.get().recordResponseLatency(latencyNanos);
+        }
+
         if (rc != BKException.Code.OK) {
             entry.logErrorAndReattemptRead(rctx.bookieIndex, rctx.to, "Error: " + BKException.getMessage(rc), rc);
             return;
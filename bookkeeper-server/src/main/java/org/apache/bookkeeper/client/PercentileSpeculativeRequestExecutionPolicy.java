@@ -0,0 +1,177 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * A {@link SpeculativeRequestExecutionPolicy} issuing the first speculative request at a percentile of the
+ * latency of the responses.
+ *
+ * <p>The latencies are counted in a histogram, over windows of a few seconds. At the end of a window, the
+ * timeout of the first speculative request becomes the percentile of its latencies, up to
+ * {@code maxSpeculativeRequestTimeout}. The next speculative requests back off as with
+ * {@link DefaultSpeculativeRequestExecutionPolicy}, which also provides the first timeout until a window has
+ * enough latencies.
+ *
+ * <p>The speculative requests are capped to a ratio of the requests, so a jump of the latency doesn't
+ * double the load before the percentile catches up.
+ */
+public class PercentileSpeculativeRequestExecutionPolicy extends DefaultSpeculativeRequestExecutionPolicy {
+
+    static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(5);
+    static final int MIN_WINDOW_SAMPLES = 100;
+
+    // the buckets of the latencies are a quarter of a power of two of microseconds wide, up to 2^32 micros
+    private static final int BUCKETS_PER_POWER_OF_TWO = 4;
+    private static final int NUM_BUCKETS = 32 * BUCKETS_PER_POWER_OF_TWO;
+
+    // a speculative request costs a permit, and each request earns the max ratio of a permit
+    static final long PERMIT = 1000;
+    static final long MAX_PERMITS = 100 * PERMIT;
+
+    private final double percentile;
+    private final long permitsPerRequest;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong windowStartNanos = new AtomicLong(MathUtils.nowInNano());
+    private final AtomicLong permits = new AtomicLong(MAX_PERMITS);
+    private volatile int currentFirstSpeculativeRequestTimeout;
+
+    /**
+     * @param firstSpeculativeRequestTimeout timeout of the first speculative request, until the latencies are
+     *                                       known
+     * @param maxSpeculativeRequestTimeout max timeout of a speculative request
+     * @param backoffMultiplier multiplier of the timeout of the next speculative requests
+     * @param percentile percentile of the latency used as timeout of the first speculative request
+     * @param maxRatio max ratio of speculative requests to the requests
+     */
+    public PercentileSpeculativeRequestExecutionPolicy(int firstSpeculativeRequestTimeout,
+            int maxSpeculativeRequestTimeout, float backoffMultiplier, double percentile, double maxRatio) {
+        super(firstSpeculativeRequestTimeout, maxSpeculativeRequestTimeout, backoffMultiplier);
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid value provided for percentile");
+        }
+        this.percentile = percentile;
+        this.permitsPerRequest = Math.round(Math.max(maxRatio, 0) * PERMIT);
+        this.currentFirstSpeculativeRequestTimeout = firstSpeculativeRequestTimeout;
+    }
+
+    @Override
+    public ScheduledFuture<?> initiateSpeculativeRequest(ScheduledExecutorService scheduler,
+                                                         SpeculativeRequestExecutor requestExecutor) {
+        addPermits(permitsPerRequest);
+        return super.initiateSpeculativeRequest(scheduler, requestExecutor);
+    }
+
+    @Override
+    protected int getFirstSpeculativeRequestTimeout() {
+        return currentFirstSpeculativeRequestTimeout;
+    }
+
+    @Override
+    protected boolean tryAcquireSpeculativeRequest() {
+        while (true) {
+            long current = permits.get();
+            if (current < PERMIT) {
+                return false;
+            }
+            if (permits.compareAndSet(current, current - PERMIT)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    protected void releaseSpeculativeRequest() {
+        addPermits(PERMIT);
+    }
+
+    private void addPermits(long added) {
+        permits.accumulateAndGet(added, (current, delta) -> Math.min(current + delta, MAX_PERMITS));
+    }
+
+    @Override
+    public void recordResponseLatency(long latencyNanos) {
+        recordResponseLatency(latencyNanos, MathUtils.nowInNano());
+    }
+
+    @VisibleForTesting
+    void recordResponseLatency(long latencyNanos, long nowNanos) {
+        buckets.incrementAndGet(bucketIndex(TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+
+        long startNanos = windowStartNanos.get();
+        if (nowNanos - startNanos >= WINDOW_NANOS && windowStartNanos.compareAndSet(startNanos, nowNanos)) {
+            endWindow();
+        }
+    }
+
+    /**
+     * Update the timeout from the latencies of the window, and start the next one.
+     */
+    private void endWindow() {
+        long[] counts = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.getAndSet(i, 0);
+            total += counts[i];
+        }
+        if (total < MIN_WINDOW_SAMPLES) {
+            return;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            count += counts[i];
+            if (count >= rank) {
+                long timeoutMillis = TimeUnit.MICROSECONDS.toMillis(bucketUpperBound(i)) + 1;
+                currentFirstSpeculativeRequestTimeout = (int) Math.min(timeoutMillis, maxSpeculativeRequestTimeout);
+                return;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static int bucketIndex(long micros) {
+        if (micros <= 1) {
+            return 0;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        // the two bits following the highest one bit
+        long fraction = exponent >= 2 ? micros >>> (exponent - 2) : micros << (2 - exponent);
+        int index = exponent * BUCKETS_PER_POWER_OF_TWO + (int) (fraction & (BUCKETS_PER_POWER_OF_TWO - 1));
+        return Math.min(index, NUM_BUCKETS - 1);
+    }
+
+    @VisibleForTesting
+    static long bucketUpperBound(int index) {
+        int exponent = index / BUCKETS_PER_POWER_OF_TWO;
+        int fraction = index % BUCKETS_PER_POWER_OF_TWO;
+        return ((long) (BUCKETS_PER_POWER_OF_TWO + fraction + 1) << exponent) / BUCKETS_PER_POWER_OF_TWO;
+    }
+}
@@ -22,6 +22,7 @@ package org.apache.bookkeeper.client;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import io.netty.buffer.ByteBuf;
+import java.io.IOException;
 import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -128,6 +129,16 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
                 return false;
             }
 
+            if (lh.entryCompressor != null) {
+                try {
+                    content = lh.entryCompressor.decompress(content);
+                } catch (IOException e) {
+                    logErrorAndReattemptRead(bookieIndex, host, "Corrupted compressed entry",
+                            BKException.Code.DigestMatchException);
+                    return false;
+                }
+            }
+
             if (!complete.getAndSet(true)) {
                 writeSet.recycle();
                 orderedEnsemble.recycle();
@@ -138,8 +149,15 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
                  */
                 entryImpl.setLength(buffer.getLong(DigestManager.METADATA_LENGTH - 8));
                 entryImpl.setEntryBuf(content);
+                if (content != buffer) {
+                    // the entry owns the decompressed content rather than the buffer read
+                    buffer.release();
+                }
                 return true;
             } else {
+                if (content != buffer) {
+                    content.release();
+                }
                 return false;
             }
         }
@@ -0,0 +1,178 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * Order the replicas of the reads by the latency of the bookies, whatever the placement policy.
+ *
+ * <p>The cost of a bookie is the moving average of the latency of its reads, times its number of pending
+ * requests plus one. The average follows the latency increases right away, and decays exponentially
+ * over time otherwise, so a bookie no longer read from is eventually tried again.
+ *
+ * <p>The first read of an entry goes to the cheapest of two of its healthy replicas picked at random (power
+ * of two choices), so the reads are spread over the fast replicas rather than all sent to the fastest one,
+ * and never to the slowest one. The other healthy replicas follow by cost, then the replicas which failed
+ * recently, in the order of the placement policy.
+ */
+class ReadReplicaSelector {
+
+    // the latency of a bookie not read from for this many decay times weighs nothing anymore
+    static final int STALE_AFTER_DECAYS = 10;
+
+    private final double decayNanos;
+    private final ConcurrentHashMap<BookieId, LatencyEwma> latencies = new ConcurrentHashMap<>();
+
+    ReadReplicaSelector(long decayMillis) {
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(decayMillis, 1));
+    }
+
+    void recordReadLatency(BookieId bookie, long latencyNanos) {
+        latencies.computeIfAbsent(bookie, b -> new LatencyEwma()).update(latencyNanos, MathUtils.nowInNano());
+    }
+
+    /**
+     * Forget the latency of the bookies which left the cluster, and of the bookies not read from for
+     * {@link #STALE_AFTER_DECAYS} decay times, so the latencies are only kept for the bookies in use.
+     *
+     * @param leftCluster whether a bookie left the cluster
+     */
+    void prune(Predicate<BookieId> leftCluster) {
+        prune(leftCluster, MathUtils.nowInNano());
+    }
+
+    @VisibleForTesting
+    void prune(Predicate<BookieId> leftCluster, long nowNanos) {
+        latencies.entrySet().removeIf(e -> leftCluster.test(e.getKey()) || e.getValue().isStale(nowNanos));
+    }
+
+    @VisibleForTesting
+    int getNumLatencies() {
+        return latencies.size();
+    }
+
+    /**
+     * Reorder the replicas of a read.
+     *
+     * @param ensemble the ensemble of the entry
+     * @param bookiesHealthInfo the health of the bookies of the ledger
+     * @param writeSet the replicas of the entry, in the order of the placement policy, reordered in place
+     * @return the reordered write set
+     */
+    DistributionSchedule.WriteSet reorderReadSequence(List<BookieId> ensemble,
+                                                      BookiesHealthInfo bookiesHealthInfo,
+                                                      DistributionSchedule.WriteSet writeSet) {
+        int size = writeSet.size();
+        if (size < 2) {
+            return writeSet;
+        }
+
+        long nowNanos = MathUtils.nowInNano();
+        int[] healthy = new int[size];
+        double[] costs = new double[size];
+        int[] failed = new int[size];
+        int numHealthy = 0;
+        int numFailed = 0;
+        for (int i = 0; i < size; i++) {
+            int bookieIndex = writeSet.get(i);
+            BookieId bookie = ensemble.get(bookieIndex);
+            if (bookiesHealthInfo.getBookieFailureHistory(bookie) >= 0) {
+                failed[numFailed++] = bookieIndex;
+                continue;
+            }
+
+            LatencyEwma latency = latencies.get(bookie);
+            double cost = (latency != null ? latency.get(nowNanos) : 0)
+                    * (bookiesHealthInfo.getBookiePendingRequests(bookie) + 1);
+            // insertion sort by cost, keeping the order of the placement policy for equal costs
+            int j = numHealthy++;
+            while (j > 0 && costs[j - 1] > cost) {
+                healthy[j] = healthy[j - 1];
+                costs[j] = costs[j - 1];
+                j--;
+            }
+            healthy[j] = bookieIndex;
+            costs[j] = cost;
+        }
+        if (numHealthy == 0) {
+            return writeSet;
+        }
+
+        // pick the first replica among two, which is the one ranked first of them
+        int first = 0;
+        if (numHealthy > 2) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int a = random.nextInt(numHealthy);
+            int b = random.nextInt(numHealthy - 1);
+            first = Math.min(a, b < a ? b : b + 1);
+        }
+        int pos = 0;
+        writeSet.set(pos++, healthy[first]);
+        for (int i = 0; i < numHealthy; i++) {
+            if (i != first) {
+                writeSet.set(pos++, healthy[i]);
+            }
+        }
+        for (int i = 0; i < numFailed; i++) {
+            writeSet.set(pos++, failed[i]);
+        }
+        return writeSet;
+    }
+
+    /**
+     * Moving average of the read latency of a bookie, weighted by the time since its last update.
+     */
+    private class LatencyEwma {
+        private double latencyNanos = 0;
+        private long lastUpdateNanos = MathUtils.nowInNano();
+
+        synchronized void update(long sampleNanos, long nowNanos) {
+            if (sampleNanos > latencyNanos) {
+                // react to the slow reads right away
+                latencyNanos = sampleNanos;
+            } else {
+                double weight = decayWeight(nowNanos);
+                latencyNanos = latencyNanos * weight + sampleNanos * (1 - weight);
+            }
+            lastUpdateNanos = Math.max(lastUpdateNanos, nowNanos);
+        }
+
+        synchronized double get(long nowNanos) {
+            return latencyNanos * decayWeight(nowNanos);
+        }
+
+        synchronized boolean isStale(long nowNanos) {
+            return nowNanos - lastUpdateNanos > STALE_AFTER_DECAYS * decayNanos;
+        }
+
+        private double decayWeight(long nowNanos) {
+            return Math.exp(-Math.max(nowNanos - lastUpdateNanos, 0) / decayNanos);
+        }
+    }
+}
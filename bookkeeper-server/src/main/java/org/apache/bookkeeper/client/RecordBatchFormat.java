@@ -0,0 +1,159 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.bookkeeper.client.api.BatchedWriter;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.LedgerRecord;
+
+/**
+ * The format of the entries packing several records, written by {@link LedgerBatchedWriter}.
+ *
+ * <pre>
+ * int    magic
+ * varint number of records
+ * varint length of each record
+ * bytes  records
+ * </pre>
+ *
+ * <p>The ledgers holding such entries are marked in their custom metadata, under
+ * {@link BatchedWriter#CUSTOM_METADATA_KEY}, and only their entries are unpacked. The magic and the index
+ * accounting for all the bytes of an entry are checked, to fail on the entries not written as batches.
+ */
+final class RecordBatchFormat {
+
+    static final int MAGIC = 0x424B5242;
+
+    static final byte[] CUSTOM_METADATA_VALUE = "true".getBytes(StandardCharsets.UTF_8);
+
+    // magic and number of records
+    static final int MAX_HEADER_LENGTH = Integer.BYTES + 5;
+
+    private RecordBatchFormat() {}
+
+    /**
+     * Whether a ledger is created to hold batches of records.
+     */
+    static boolean holdsRecordBatches(LedgerMetadata metadata) {
+        byte[] value = metadata.getCustomMetadata().get(BatchedWriter.CUSTOM_METADATA_KEY);
+        return Arrays.equals(CUSTOM_METADATA_VALUE, value);
+    }
+
+    static void writeHeader(ByteBuf header, int numRecords, ByteBuf lengths) {
+        header.writeInt(MAGIC);
+        writeVarInt(header, numRecords);
+        header.writeBytes(lengths);
+    }
+
+    static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    /**
+     * Read a non negative varint.
+     *
+     * @return the value, or -1 if the varint is truncated or out of range
+     */
+    private static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!buf.isReadable()) {
+                return -1;
+            }
+            byte b = buf.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add an entry which is not a batch as a single record.
+     *
+     * @param entry the entry, left as is
+     * @param records the list to add the record to, holding a reference to the buffer of the entry
+     */
+    static void addSingleRecord(LedgerEntry entry, List<LedgerRecord> records) {
+        records.add(new LedgerRecordImpl(entry.getEntryId(), 0, entry.getEntryBuffer().retainedSlice()));
+    }
+
+    /**
+     * Unpack the records of an entry.
+     *
+     * @param entry the entry, left as is
+     * @param records the list to add the records to, each holding a reference to the buffer of the entry
+     * @return false, without adding records, if the entry is not a batch of records
+     */
+    static boolean unpack(LedgerEntry entry, List<LedgerRecord> records) {
+        ByteBuf buf = entry.getEntryBuffer();
+        int[] lengths = readIndex(buf);
+        if (lengths == null) {
+            return false;
+        }
+        int offset = buf.writerIndex();
+        for (int length : lengths) {
+            offset -= length;
+        }
+        for (int i = 0; i < lengths.length; i++) {
+            records.add(new LedgerRecordImpl(entry.getEntryId(), i, buf.retainedSlice(offset, lengths[i])));
+            offset += lengths[i];
+        }
+        return true;
+    }
+
+    /**
+     * Read the lengths of the records of an entry.
+     *
+     * @return the lengths, or null if the entry is not a batch of records
+     */
+    private static int[] readIndex(ByteBuf entry) {
+        ByteBuf in = entry.duplicate();
+        if (in.readableBytes() < Integer.BYTES + 2 || in.readInt() != MAGIC) {
+            return null;
+        }
+        int numRecords = readVarInt(in);
+        // a record takes at least a byte of the index
+        if (numRecords <= 0 || numRecords > in.readableBytes()) {
+            return null;
+        }
+        int[] lengths = new int[numRecords];
+        long totalLength = 0;
+        for (int i = 0; i < numRecords; i++) {
+            lengths[i] = readVarInt(in);
+            if (lengths[i] < 0) {
+                return null;
+            }
+            totalLength += lengths[i];
+        }
+        return totalLength == in.readableBytes() ? lengths : null;
+    }
+}
@@ -42,4 +42,12 @@ public interface SpeculativeRequestExecutionPolicy {
      */
     ScheduledFuture<?> initiateSpeculativeRequest(ScheduledExecutorService scheduler,
             SpeculativeRequestExecutor requestExectuor);
+
+    /**
+     * Record the latency of a response to a request, for the policies adapting to it.
+     *
+     * @param latencyNanos the latency of the response, in nanoseconds
+     */
+    default void recordResponseLatency(long latencyNanos) {
+    }
 }
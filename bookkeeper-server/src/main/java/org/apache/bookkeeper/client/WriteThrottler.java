@@ -0,0 +1,268 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Throttle the adds of the ledger handles of a client, without blocking the threads adding the entries.
+ *
+ * <p>An add is admitted once its ledger handle is below its rate of entries per second, and the client
+ * is below its max number of bytes of outstanding adds, shared by all its ledger handles through a
+ * {@link MemoryLimitController}. Otherwise, the add waits in the queue of its ledger handle, whose adds
+ * are admitted in order from the scheduler of the client, as soon as the rate allows or the completed
+ * adds release enough bytes.
+ *
+ * <p>The number of adds waiting in the queue of a ledger handle is bounded, to push back on the callers
+ * adding faster than the throttling allows. Once the queue is full, the next add blocks its caller until
+ * the rate admits an add, like the RateLimiter the throttling used to be. With a max number of bytes, the
+ * adds are admitted as the outstanding adds complete, which may be waiting for the thread of the caller,
+ * so the next add fails with {@link BKException.Code#TooManyRequestsException} rather than blocking.
+ */
+class WriteThrottler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteThrottler.class);
+
+    private static final CompletableFuture<Void> ADMITTED = CompletableFuture.completedFuture(null);
+
+    // the entries not added during the last second can be added in a burst, like with a RateLimiter
+    private static final long MAX_BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long entryIntervalNanos;
+    private final int maxDelayedAdds;
+    private final MemoryLimitController memoryLimitController;
+    private final ScheduledExecutorService scheduler;
+    private final OpStatsLogger throttleWaitStats;
+
+    // ledger handles waiting for bytes to be released, they may be in it more than once
+    private final Queue<LedgerThrottle> waitingForBytes = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param entriesPerSecond max number of entries added per second to a ledger handle, or 0 for unlimited
+     * @param maxOutstandingAddBytes max number of bytes of the outstanding adds of the client, or 0 for
+     *                               unlimited
+     * @param maxDelayedAdds max number of adds waiting to be admitted per ledger handle, or 0 for unlimited
+     * @param scheduler scheduler admitting the delayed adds
+     * @param throttleWaitStats stats of the time waited by the adds to be admitted
+     */
+    WriteThrottler(int entriesPerSecond, long maxOutstandingAddBytes, int maxDelayedAdds,
+                   ScheduledExecutorService scheduler, OpStatsLogger throttleWaitStats) {
+        this.entryIntervalNanos = entriesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / entriesPerSecond : 0;
+        this.maxDelayedAdds = maxDelayedAdds;
+        this.memoryLimitController = maxOutstandingAddBytes > 0
+                ? new MemoryLimitController(maxOutstandingAddBytes) : null;
+        this.scheduler = scheduler;
+        this.throttleWaitStats = throttleWaitStats;
+    }
+
+    boolean isEnabled() {
+        return entryIntervalNanos > 0 || memoryLimitController != null;
+    }
+
+    /**
+     * Whether the adds hold bytes of the client, to be released by {@link #releaseBytes(long)}
+     * once they complete.
+     */
+    boolean isLimitingBytes() {
+        return memoryLimitController != null;
+    }
+
+    LedgerThrottle newLedgerThrottle(long ledgerId) {
+        return new LedgerThrottle(ledgerId);
+    }
+
+    /**
+     * Release the bytes of a completed add, admitting the adds waiting for them.
+     */
+    void releaseBytes(long bytes) {
+        memoryLimitController.releaseMemory(bytes);
+        LedgerThrottle throttle;
+        while ((throttle = waitingForBytes.poll()) != null) {
+            throttle.scheduleAdmit();
+        }
+    }
+
+    /**
+     * The adds of a ledger handle waiting to be admitted. It's also the task admitting them.
+     */
+    class LedgerThrottle implements Runnable {
+        private final long ledgerId;
+
+        // guarded by this
+        private final ArrayDeque<Admission> admissions = new ArrayDeque<>();
+        private long nextFreeNanos = System.nanoTime();
+        private boolean admitScheduled = false;
+        private int numBlockedCallers = 0;
+
+        LedgerThrottle(long ledgerId) {
+            this.ledgerId = ledgerId;
+        }
+
+        /**
+         * Acquire the admission of an add of the given size, after the adds already waiting.
+         *
+         * @return a future completed once the add is admitted, already completed if the add doesn't have to
+         *         wait. The adds are admitted in order, from the scheduler of the client if they waited.
+         * @throws BKException.BKTooManyRequestsException if too many adds are waiting for bytes
+         * @throws BKException.BKInterruptedException if interrupted while blocked, or the add has to wait and
+         *         the client is shutting down
+         */
+        CompletableFuture<Void> acquire(int bytes) throws BKException {
+            long startTimeNanos = MathUtils.nowInNano();
+            Admission admission;
+            synchronized (this) {
+                while (maxDelayedAdds > 0 && admissions.size() >= maxDelayedAdds) {
+                    if (memoryLimitController != null) {
+                        throw new BKException.BKTooManyRequestsException();
+                    }
+                    numBlockedCallers++;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new BKException.BKInterruptedException();
+                    } finally {
+                        numBlockedCallers--;
+                    }
+                }
+                if (admissions.isEmpty() && tryAdmit(bytes) == 0) {
+                    throttleWaitStats.registerSuccessfulEvent(0, TimeUnit.NANOSECONDS);
+                    return ADMITTED;
+                }
+                admission = new Admission(bytes, startTimeNanos);
+                admissions.add(admission);
+                if (!admitScheduled) {
+                    admitScheduled = true;
+                    try {
+                        scheduler.execute(this);
+                    } catch (RejectedExecutionException e) {
+                        admitScheduled = false;
+                        admissions.removeLast();
+                        throw new BKException.BKInterruptedException();
+                    }
+                }
+            }
+            return admission.future;
+        }
+
+        void scheduleAdmit() {
+            synchronized (this) {
+                if (admitScheduled || admissions.isEmpty()) {
+                    return;
+                }
+                admitScheduled = true;
+            }
+            try {
+                scheduler.execute(this);
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Could not admit the adds of ledger {}, shutting down", ledgerId);
+            }
+        }
+
+        /**
+         * Admit an add if the rate and the bytes of the client allow.
+         *
+         * @return 0 if admitted, the nanos to wait for the rate to allow it, or -1 if waiting for bytes
+         */
+        private long tryAdmit(int bytes) {
+            long nowNanos = System.nanoTime();
+            long freeNanos = 0;
+            if (entryIntervalNanos > 0) {
+                freeNanos = Math.max(nextFreeNanos, nowNanos - MAX_BURST_NANOS);
+                if (freeNanos > nowNanos) {
+                    return freeNanos - nowNanos;
+                }
+            }
+            if (memoryLimitController != null && !memoryLimitController.tryReserveMemory(bytes)) {
+                return -1;
+            }
+            if (entryIntervalNanos > 0) {
+                nextFreeNanos = freeNanos + entryIntervalNanos;
+            }
+            return 0;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Admission admission;
+                    synchronized (this) {
+                        admission = admissions.peek();
+                        if (admission == null) {
+                            admitScheduled = false;
+                            return;
+                        }
+                        long waitNanos = tryAdmit(admission.bytes);
+                        if (waitNanos > 0) {
+                            scheduler.schedule(this, waitNanos, TimeUnit.NANOSECONDS);
+                            return;
+                        } else if (waitNanos < 0) {
+                            waitingForBytes.add(this);
+                            // the bytes may have been released before being added to the waiting handles
+                            if (memoryLimitController.tryReserveMemory(0)) {
+                                scheduler.execute(this);
+                            } else {
+                                admitScheduled = false;
+                            }
+                            return;
+                        }
+                    }
+
+                    // the admission is still queued, so the next adds wait for it to be submitted
+                    throttleWaitStats.registerSuccessfulEvent(MathUtils.elapsedNanos(admission.startTimeNanos),
+                            TimeUnit.NANOSECONDS);
+                    admission.future.complete(null);
+                    synchronized (this) {
+                        admissions.poll();
+                        if (numBlockedCallers > 0) {
+                            notifyAll();
+                        }
+                    }
+                }
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Could not admit the adds of ledger {}, shutting down", ledgerId);
+            }
+        }
+    }
+
+    private static class Admission {
+        final int bytes;
+        final long startTimeNanos;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Admission(int bytes, long startTimeNanos) {
+            this.bytes = bytes;
+            this.startTimeNanos = startTimeNanos;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+
+/**
+ * Write small records to a ledger, packing several of them in each entry.
+ *
+ * <p>The records are added to a batch, written as one entry once it reaches a max number of records or bytes,
+ * once its first record has waited for a max delay, or on {@link #flushAsync()}. The entry starts with a
+ * compact index of the lengths of its records, so {@link ReadHandle#readRecordsAsync(long, long)} can unpack
+ * them. The ledger is marked at creation as holding batches of records, rather than guessing from the bytes of
+ * its entries.
+ *
+ * @see WriteHandle#newBatchedWriter()
+ * @since 4.16
+ */
+@Public
+@Unstable
+public interface BatchedWriter extends AutoCloseable {
+
+    /**
+     * The key in the custom metadata of a ledger marking that it holds batches of records.
+     *
+     * @see CreateBuilder#withRecordBatches(boolean)
+     */
+    String CUSTOM_METADATA_KEY = "bk.recordBatches";
+
+    /**
+     * Write a record asynchronously.
+     *
+     * @param record the record to be written. The bytebuf's reference count will be decremented by 1 once the
+     *               record is added to the batch.
+     * @return an handle to the result, in case of success the position of the record in the ledger
+     */
+    CompletableFuture<RecordPosition> writeAsync(ByteBuf record);
+
+    /**
+     * Write a record asynchronously.
+     *
+     * @param record array of bytes to be written
+     * @return an handle to the result, in case of success the position of the record in the ledger
+     */
+    default CompletableFuture<RecordPosition> writeAsync(byte[] record) {
+        return writeAsync(Unpooled.wrappedBuffer(record));
+    }
+
+    /**
+     * Write the current batch without waiting for it to be full.
+     *
+     * @return an handle to the result, completed once all the records written so far are written to the ledger
+     */
+    CompletableFuture<Void> flushAsync();
+
+    /**
+     * Close the writer asynchronously, writing its current batch. The ledger is left open.
+     *
+     * @return an handle to the result, completed once all the records written are written to the ledger
+     */
+    CompletableFuture<Void> closeAsync();
+
+    /**
+     * Close the writer synchronously, writing its current batch. The ledger is left open.
+     */
+    @Override
+    default void close() throws BKException, InterruptedException {
+        FutureUtils.<Void, BKException>result(closeAsync(), BKException.HANDLER);
+    }
+}
@@ -59,6 +59,19 @@ public interface BookKeeper extends AutoCloseable {
      */
     OpenBuilder newOpenLedgerOp();
 
+    /**
+     * Open many existing ledgers at once.
+     *
+     * @return a builder useful to create readable handlers for existing ledgers
+     * @throws UnsupportedOperationException if the client doesn't open many ledgers at once, the BookKeeper
+     *         client does, {@link #newOpenLedgerOp()} opens them one by one
+     * @since 4.16
+     */
+    default OpenLedgersBuilder newOpenLedgersOp() {
+        throw new UnsupportedOperationException("Opening many ledgers at once is not supported by "
+                + getClass().getName());
+    }
+
     /**
      * Delete an existing ledger.
      *
@@ -0,0 +1,59 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+
+/**
+ * Compression of the entries of a ledger.
+ *
+ * <p>The compression of a ledger is stored in its custom metadata, under {@link #CUSTOM_METADATA_KEY}. The
+ * entries are compressed by the client before computing their digest, and decompressed once read, so the
+ * compression is transparent to the applications. An entry which doesn't compress is stored as is.
+ *
+ * @see CreateBuilder#withCompressionType(CompressionType)
+ * @since 4.16
+ */
+@Public
+@Unstable
+public enum CompressionType {
+
+    /**
+     * Entries are not compressed.
+     */
+    NONE,
+
+    /**
+     * Entries are compressed with Snappy, fast with a moderate ratio.
+     */
+    SNAPPY,
+
+    /**
+     * Entries are compressed with Deflate, slower with a better ratio.
+     */
+    DEFLATE;
+
+    /**
+     * The key of the compression in the custom metadata of a ledger, whose value is the name of the compression.
+     */
+    public static final String CUSTOM_METADATA_KEY = "bk.compression";
+}
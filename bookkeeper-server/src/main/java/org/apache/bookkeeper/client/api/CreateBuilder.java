@@ -114,6 +114,35 @@ public interface CreateBuilder extends OpBuilder<WriteHandle> {
      */
     CreateBuilder withDigestType(DigestType digestType);
 
+    /**
+     * Set the compression of the entries. It defaults to {@link CompressionType#NONE}
+     *
+     * @param compressionType the type of compression
+     *
+     * @return the builder itself
+     * @throws UnsupportedOperationException if the builder doesn't support compression, the builders of the
+     *         BookKeeper client do
+     * @since 4.16
+     */
+    default CreateBuilder withCompressionType(CompressionType compressionType) {
+        throw new UnsupportedOperationException("Compression is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Create the ledger to hold the batches of records of {@link WriteHandle#newBatchedWriter()}. It's recorded
+     * in the custom metadata of the ledger, under {@link BatchedWriter#CUSTOM_METADATA_KEY}.
+     *
+     * @param recordBatches whether the ledger holds batches of records
+     *
+     * @return the builder itself
+     * @throws UnsupportedOperationException if the builder doesn't support batches of records, the builders of
+     *         the BookKeeper client do
+     * @since 4.16
+     */
+    default CreateBuilder withRecordBatches(boolean recordBatches) {
+        throw new UnsupportedOperationException("Record batches are not supported by " + getClass().getName());
+    }
+
     /**
      * Switch the ledger into 'Advanced' mode. A ledger used in Advanced mode will explicitly generate the sequence of
      * entry identifiers. Advanced ledgers can be created with a client side defined ledgerId
@@ -20,6 +20,7 @@
  */
 package org.apache.bookkeeper.client.api;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
 import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
@@ -223,4 +224,61 @@ public interface ReadHandle extends Handle {
                 BKException.HANDLER);
     }
 
+    /**
+     * Open a reader of the entries of the ledger, in order from the given entry.
+     *
+     * <p>The reader reads ahead of the application and, with a ledger which is not closed, follows the
+     * LastAddConfirmed to read the entries as they are written.
+     *
+     * @param startEntry
+     *          id of the first entry to read
+     * @return the reader, to be closed once done
+     * @throws UnsupportedOperationException if the handle doesn't provide stream readers, the handles of the
+     *         BookKeeper client do
+     * @since 4.16
+     */
+    default StreamReader newStreamReader(long startEntry) {
+        throw new UnsupportedOperationException("Stream readers are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Read a sequence of entries asynchronously, unpacking the records of the entries written by a
+     * {@link BatchedWriter}.
+     *
+     * <p>The entries of a ledger created with {@link CreateBuilder#withRecordBatches(boolean)} are unpacked,
+     * and the read fails if one of them is not a batch of records. The entries of the other ledgers are
+     * returned as a single record each.
+     *
+     * @param firstEntry
+     *          id of first entry of sequence
+     * @param lastEntry
+     *          id of last entry of sequence, inclusive
+     * @return an handle to the result of the operation, the records in order
+     * @throws UnsupportedOperationException if the handle doesn't unpack records, the handles of the BookKeeper
+     *         client do
+     * @see #readAsync(long, long)
+     * @since 4.16
+     */
+    default CompletableFuture<List<LedgerRecord>> readRecordsAsync(long firstEntry, long lastEntry) {
+        throw new UnsupportedOperationException("Record batches are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Read a sequence of entries synchronously, unpacking the records of the entries written by a
+     * {@link BatchedWriter}.
+     *
+     * @param firstEntry
+     *          id of first entry of sequence
+     * @param lastEntry
+     *          id of last entry of sequence, inclusive
+     * @return the records in order
+     * @see #readRecordsAsync(long, long)
+     * @since 4.16
+     */
+    default List<LedgerRecord> readRecords(long firstEntry, long lastEntry)
+            throws BKException, InterruptedException {
+        return FutureUtils.<List<LedgerRecord>, BKException>result(readRecordsAsync(firstEntry, lastEntry),
+                BKException.HANDLER);
+    }
+
 }
@@ -0,0 +1,87 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+
+/**
+ * The position of a record in a ledger: the entry which contains it, and its index among the records of the
+ * entry.
+ *
+ * @see BatchedWriter
+ * @since 4.16
+ */
+@Public
+@Unstable
+public final class RecordPosition implements Comparable<RecordPosition> {
+
+    private final long entryId;
+    private final int recordIndex;
+
+    public RecordPosition(long entryId, int recordIndex) {
+        this.entryId = entryId;
+        this.recordIndex = recordIndex;
+    }
+
+    /**
+     * The id of the entry which contains the record.
+     *
+     * @return the id of the entry
+     */
+    public long getEntryId() {
+        return entryId;
+    }
+
+    /**
+     * The index of the record among the records of its entry, 0 for an entry which is not a batch of records.
+     *
+     * @return the index of the record in its entry
+     */
+    public int getRecordIndex() {
+        return recordIndex;
+    }
+
+    @Override
+    public int compareTo(RecordPosition other) {
+        int result = Long.compare(entryId, other.entryId);
+        return result != 0 ? result : Integer.compare(recordIndex, other.recordIndex);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof RecordPosition)) {
+            return false;
+        }
+        RecordPosition other = (RecordPosition) obj;
+        return entryId == other.entryId && recordIndex == other.recordIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(entryId) * 31 + recordIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordPosition(" + entryId + ":" + recordIndex + ")";
+    }
+}
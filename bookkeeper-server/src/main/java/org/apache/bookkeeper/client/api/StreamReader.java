@@ -0,0 +1,75 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+
+/**
+ * Read the entries of a ledger in order, from a given entry.
+ *
+ * <p>The reader keeps a window of reads outstanding ahead of the application, bounded in entries and in
+ * bytes, and hands over the entries as soon as they and the entries before them are read. Once it has read
+ * up to the LastAddConfirmed of a ledger which is not closed, it waits for the next entries to be
+ * written with long poll reads.
+ *
+ * @see ReadHandle#newStreamReader(long)
+ * @since 4.16
+ */
+@Public
+@Unstable
+public interface StreamReader extends AutoCloseable {
+
+    /**
+     * Get the id of the entry returned by the next call to {@link #readNextAsync()}.
+     *
+     * @return the id of the next entry to read
+     */
+    long getNextEntryId();
+
+    /**
+     * Read the next entry asynchronously.
+     *
+     * <p>The entry is owned by the caller, which has to close it to release its buffer. The calls complete in
+     * order, so several calls can be pending at a time.
+     *
+     * @return an handle to the next entry, or to null once all the entries of a closed ledger have been read
+     */
+    CompletableFuture<LedgerEntry> readNextAsync();
+
+    /**
+     * Read the next entry synchronously.
+     *
+     * @return the next entry, or null once all the entries of a closed ledger have been read
+     * @see #readNextAsync()
+     */
+    default LedgerEntry readNext() throws BKException, InterruptedException {
+        return FutureUtils.<LedgerEntry, BKException>result(readNextAsync(), BKException.HANDLER);
+    }
+
+    /**
+     * Close the reader, releasing the entries read ahead of the application.
+     */
+    @Override
+    void close();
+}
@@ -142,6 +142,22 @@ public interface WriteHandle extends ReadHandle, ForceableHandle {
      */
     long getLastAddPushed();
 
+    /**
+     * Open a writer packing small records in the entries of the ledger.
+     *
+     * <p>The ledger has to be created with {@link CreateBuilder#withRecordBatches(boolean)}, and its entries are
+     * to be written by batched writers only. They are read with {@link ReadHandle#readRecordsAsync(long, long)}.
+     *
+     * @return the writer, to be closed once done
+     * @throws IllegalStateException if the ledger is not created to hold batches of records
+     * @throws UnsupportedOperationException if the handle doesn't provide batched writers, the handles of the
+     *         BookKeeper client do
+     * @since 4.16
+     */
+    default BatchedWriter newBatchedWriter() {
+        throw new UnsupportedOperationException("Batched writers are not supported by " + getClass().getName());
+    }
+
     /**
      * Asynchronous close the write handle, any adds in flight will return errors.
      *
@@ -135,11 +135,42 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         help = " The latency distribution of waiting time on channel being writable"
     )
     private final OpStatsLogger clientChannelWriteWaitStats;
+    @StatsDoc(
+        name = WRITE_THROTTLE_WAIT,
+        help = "The latency distribution of waiting time on adds being admitted by the write throttling"
+    )
+    private final OpStatsLogger writeThrottleWaitStats;
+    @StatsDoc(
+        name = ADD_UNCOMPRESSED_BYTES,
+        help = "The number of bytes of the entries added to compressed ledgers, before compression"
+    )
+    private final Counter addUncompressedBytesCounter;
+    @StatsDoc(
+        name = ADD_COMPRESSED_BYTES,
+        help = "The number of bytes of the entries added to compressed ledgers, after compression"
+    )
+    private final Counter addCompressedBytesCounter;
+    @StatsDoc(
+        name = ADD_COMPRESSION_RATIO,
+        help = "The distribution of the size of the entries added to compressed ledgers after compression,"
+            + " in percent of their size before compression"
+    )
+    private final OpStatsLogger addCompressionRatioStats;
     @StatsDoc(
         name = SPECULATIVE_READ_COUNT,
         help = "The number of speculative read requests"
     )
     private final Counter speculativeReadCounter;
+    @StatsDoc(
+        name = SPECULATIVE_READ_WINS,
+        help = "The number of reads completed by a replica read after a speculative read was sent"
+    )
+    private final Counter speculativeReadWinsCounter;
+    @StatsDoc(
+        name = SPECULATIVE_READ_LOSSES,
+        help = "The number of reads completed by a replica read before a speculative read was sent"
+    )
+    private final Counter speculativeReadLossesCounter;
 
     @StatsDoc(
         name = WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS_LATENCY,
@@ -182,8 +213,14 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         this.lacUpdateHitsCounter = stats.getCounter(LAC_UPDATE_HITS);
         this.lacUpdateMissesCounter = stats.getCounter(LAC_UPDATE_MISSES);
         this.clientChannelWriteWaitStats = stats.getOpStatsLogger(CLIENT_CHANNEL_WRITE_WAIT);
+        this.writeThrottleWaitStats = stats.getOpStatsLogger(WRITE_THROTTLE_WAIT);
+        this.addUncompressedBytesCounter = stats.getCounter(ADD_UNCOMPRESSED_BYTES);
+        this.addCompressedBytesCounter = stats.getCounter(ADD_COMPRESSED_BYTES);
+        this.addCompressionRatioStats = stats.getOpStatsLogger(ADD_COMPRESSION_RATIO);
 
         speculativeReadCounter = stats.getCounter(SPECULATIVE_READ_COUNT);
+        speculativeReadWinsCounter = stats.getCounter(SPECULATIVE_READ_WINS);
+        speculativeReadLossesCounter = stats.getCounter(SPECULATIVE_READ_LOSSES);
 
         this.writeDelayedDueToNotEnoughFaultDomainsLatency =
                 stats.getOpStatsLogger(WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS_LATENCY);
@@ -257,6 +294,14 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         return speculativeReadCounter;
     }
     @Override
+    public Counter getSpeculativeReadWinsCounter() {
+        return speculativeReadWinsCounter;
+    }
+    @Override
+    public Counter getSpeculativeReadLossesCounter() {
+        return speculativeReadLossesCounter;
+    }
+    @Override
     public Counter getEnsembleChangeCounter() {
         return ensembleChangeCounter;
     }
@@ -273,6 +318,22 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         return clientChannelWriteWaitStats;
     }
     @Override
+    public OpStatsLogger getWriteThrottleWaitLogger() {
+        return writeThrottleWaitStats;
+    }
+    @Override
+    public Counter getAddUncompressedBytesCounter() {
+        return addUncompressedBytesCounter;
+    }
+    @Override
+    public Counter getAddCompressedBytesCounter() {
+        return addCompressedBytesCounter;
+    }
+    @Override
+    public OpStatsLogger getAddCompressionRatioLogger() {
+        return addCompressionRatioStats;
+    }
+    @Override
     public Counter getEnsembleBookieDistributionCounter(String bookie) {
         return stats.scopeLabel(BOOKIE_LABEL, bookie).getCounter(LEDGER_ENSEMBLE_BOOKIE_DISTRIBUTION);
     }
@@ -93,6 +93,7 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     protected static final String STORE_SYSTEMTIME_AS_LEDGER_CREATION_TIME = "storeSystemTimeAsLedgerCreationTime";
 
     protected static final String ENABLE_BUSY_WAIT = "enableBusyWait";
+    protected static final String ENABLE_IO_URING = "enableIoUring";
     protected static final String ENABLE_HEALTH_CHECK = "enableHealthCheck";
 
     // Metastore settings, only being used when LEDGER_MANAGER_FACTORY_CLASS is MSLedgerManagerFactory
@@ -1185,6 +1186,36 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         return getThis();
     }
 
+    /**
+     * Return whether the Netty IO threads use the io_uring transport.
+     *
+     * <p>Default is false
+     *
+     * @return the value of the option
+     */
+    public boolean isIoUringEnabled() {
+        return getBoolean(ENABLE_IO_URING, false);
+    }
+
+    /**
+     * Option to use the Netty io_uring transport for the IO threads, instead of epoll.
+     *
+     * <p>Default is false.
+     *
+     * <p>The io_uring transport requires Linux 5.9 or later, and the netty-incubator-transport-native-io_uring
+     * jar matching the platform on the classpath. If it's not available, the epoll transport is used instead.
+     * The busy-wait setting ({@link #setBusyWaitEnabled(boolean)}) doesn't apply to io_uring IO threads.
+     *
+     * @param ioUringEnabled
+     *            if enabled, use the io_uring transport when it's available
+     *
+     * @see #isIoUringEnabled()
+     */
+    public T setIoUringEnabled(boolean ioUringEnabled) {
+        setProperty(ENABLE_IO_URING, ioUringEnabled);
+        return getThis();
+    }
+
     /**
      * Return the flag indicating whether to limit stats logging.
      *
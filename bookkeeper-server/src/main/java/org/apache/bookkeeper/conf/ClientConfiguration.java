@@ -44,6 +44,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
 
     // Throttle value
     protected static final String THROTTLE = "throttle";
+    protected static final String THROTTLE_MAX_OUTSTANDING_ADD_BYTES = "throttleMaxOutstandingAddBytes";
+    protected static final String THROTTLE_MAX_DELAYED_ADDS = "throttleMaxDelayedAdds";
 
     // Digest Type
     protected static final String DIGEST_TYPE = "digestType";
@@ -93,12 +95,15 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String CLIENT_TCP_NODELAY = "clientTcpNoDelay";
     protected static final String CLIENT_SOCK_KEEPALIVE = "clientSockKeepalive";
     protected static final String CLIENT_SENDBUFFER_SIZE = "clientSendBufferSize";
+    protected static final String CLIENT_FLUSH_CONSOLIDATION_MAX_FLUSHES = "clientFlushConsolidationMaxFlushes";
     protected static final String CLIENT_RECEIVEBUFFER_SIZE = "clientReceiveBufferSize";
     protected static final String CLIENT_WRITEBUFFER_LOW_WATER_MARK = "clientWriteBufferLowWaterMark";
     protected static final String CLIENT_WRITEBUFFER_HIGH_WATER_MARK = "clientWriteBufferHighWaterMark";
     protected static final String CLIENT_CONNECT_TIMEOUT_MILLIS = "clientConnectTimeoutMillis";
     protected static final String CLIENT_TCP_USER_TIMEOUT_MILLIS = "clientTcpUserTimeoutMillis";
     protected static final String NUM_CHANNELS_PER_BOOKIE = "numChannelsPerBookie";
+    protected static final String MAX_NUM_CHANNELS_PER_BOOKIE = "maxNumChannelsPerBookie";
+    protected static final String CHANNEL_POOL_RESIZE_INTERVAL_MILLIS = "channelPoolResizeIntervalMillis";
     protected static final String USE_V2_WIRE_PROTOCOL = "useV2WireProtocol";
     protected static final String NETTY_USE_POOLED_BUFFERS = "nettyUsePooledBuffers";
 
@@ -109,13 +114,24 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String MAX_SPECULATIVE_READ_TIMEOUT = "maxSpeculativeReadTimeout";
     protected static final String SPECULATIVE_READ_TIMEOUT_BACKOFF_MULTIPLIER =
         "speculativeReadTimeoutBackoffMultiplier";
+    protected static final String SPECULATIVE_READ_TIMEOUT_PERCENTILE = "speculativeReadTimeoutPercentile";
+    protected static final String SPECULATIVE_READ_MAX_RATIO = "speculativeReadMaxRatio";
     protected static final String FIRST_SPECULATIVE_READ_LAC_TIMEOUT = "firstSpeculativeReadLACTimeout";
     protected static final String MAX_SPECULATIVE_READ_LAC_TIMEOUT = "maxSpeculativeReadLACTimeout";
     protected static final String SPECULATIVE_READ_LAC_TIMEOUT_BACKOFF_MULTIPLIER =
         "speculativeReadLACTimeoutBackoffMultiplier";
     protected static final String ENABLE_PARALLEL_RECOVERY_READ = "enableParallelRecoveryRead";
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
+    protected static final String RECOVERY_READ_WINDOW_SIZE = "recoveryReadWindowSize";
+    protected static final String STREAM_READER_MAX_OUTSTANDING_ENTRIES = "streamReaderMaxOutstandingEntries";
+    protected static final String STREAM_READER_MAX_OUTSTANDING_BYTES = "streamReaderMaxOutstandingBytes";
+    protected static final String STREAM_READER_LONG_POLL_TIMEOUT_MILLIS = "streamReaderLongPollTimeoutMillis";
+    protected static final String BATCHED_WRITER_MAX_RECORDS = "batchedWriterMaxRecords";
+    protected static final String BATCHED_WRITER_MAX_BYTES = "batchedWriterMaxBytes";
+    protected static final String BATCHED_WRITER_MAX_DELAY_MILLIS = "batchedWriterMaxDelayMillis";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
+    protected static final String LATENCY_AWARE_READ_ENABLED = "latencyAwareReadEnabled";
+    protected static final String LATENCY_AWARE_READ_DECAY_MILLIS = "latencyAwareReadDecayMillis";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
     // Add Parameters
     protected static final String OPPORTUNISTIC_STRIPING = "opportunisticStriping";
@@ -128,6 +144,9 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String TIMEOUT_MONITOR_INTERVAL_SEC = "timeoutMonitorIntervalSec";
     protected static final String TIMEOUT_TASK_INTERVAL_MILLIS = "timeoutTaskIntervalMillis";
     protected static final String EXPLICIT_LAC_INTERVAL = "explicitLacInterval";
+    protected static final String EXPLICIT_LAC_BATCHING_ENABLED = "explicitLacBatchingEnabled";
+    protected static final String EXPLICIT_LAC_BATCH_FLUSH_INTERVAL_MILLIS = "explicitLacBatchFlushIntervalMillis";
+    protected static final String READ_LAC_BATCHING_ENABLED = "readLacBatchingEnabled";
     protected static final String PCBC_TIMEOUT_TIMER_TICK_DURATION_MS = "pcbcTimeoutTimerTickDurationMs";
     protected static final String PCBC_TIMEOUT_TIMER_NUM_TICKS = "pcbcTimeoutTimerNumTicks";
     protected static final String TIMEOUT_TIMER_TICK_DURATION_MS = "timeoutTimerTickDurationMs";
@@ -179,6 +198,7 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
 
     // Role of the client
     protected static final String CLIENT_ROLE = "clientRole";
+    protected static final String USE_REPLICATION_ENDPOINT = "useReplicationEndpoint";
 
     /**
      * This client will act as a standard client.
@@ -236,17 +256,83 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
      * if producing too many requests than the capability of bookie servers can handle.
      * To prevent that from happening, you can set a throttle value here.
      *
+     * <p>The throttle value is the max number of entries added per second to a ledger handle. The adds
+     * over the rate don't block the caller, they are delayed and submitted in order once the rate allows, up to
+     * {@link #setThrottleMaxDelayedAdds(int)} delayed adds per ledger handle.
+     *
      * <p>Setting the throttle value to 0, will disable any throttling.
      *
      * @param throttle
      *          Throttle Value
      * @return client configuration
+     * @see #setThrottleMaxOutstandingAddBytes(long)
+     * @see #setThrottleMaxDelayedAdds(int)
      */
     public ClientConfiguration setThrottleValue(int throttle) {
         this.setProperty(THROTTLE, Integer.toString(throttle));
         return this;
     }
 
+    /**
+     * Get the max number of bytes of the outstanding adds of the client.
+     *
+     * @return the max number of bytes of the outstanding adds
+     * @see #setThrottleMaxOutstandingAddBytes(long)
+     */
+    public long getThrottleMaxOutstandingAddBytes() {
+        return getLong(THROTTLE_MAX_OUTSTANDING_ADD_BYTES, 0);
+    }
+
+    /**
+     * Set the max number of bytes of the outstanding adds of the client, shared by all its ledger handles.
+     *
+     * <p>Once the client has as many bytes of adds in flight, the next adds are delayed, without
+     * blocking the caller, until the outstanding adds complete. Like for the throttle value, the delayed
+     * adds of a ledger handle are submitted in order.
+     *
+     * <p>Setting it to 0, the default, disables the throttling of the adds by bytes.
+     *
+     * @param maxOutstandingAddBytes
+     *          max number of bytes of the outstanding adds
+     * @return client configuration
+     */
+    public ClientConfiguration setThrottleMaxOutstandingAddBytes(long maxOutstandingAddBytes) {
+        setProperty(THROTTLE_MAX_OUTSTANDING_ADD_BYTES, maxOutstandingAddBytes);
+        return this;
+    }
+
+    /**
+     * Get the max number of adds delayed by the throttling per ledger handle.
+     *
+     * @return the max number of adds delayed per ledger handle
+     * @see #setThrottleMaxDelayedAdds(int)
+     */
+    public int getThrottleMaxDelayedAdds() {
+        return getInt(THROTTLE_MAX_DELAYED_ADDS, 5000);
+    }
+
+    /**
+     * Set the max number of adds delayed by the throttling per ledger handle.
+     *
+     * <p>Once a ledger handle has as many adds delayed by the throttle value or by
+     * {@link #setThrottleMaxOutstandingAddBytes(long)}, the next adds are pushed back on the caller, so that
+     * a caller adding faster than the throttling allows doesn't queue up adds until it runs out of memory.
+     * Without a max number of outstanding add bytes, the next add blocks the caller until the throttle value
+     * admits one of the delayed adds. With a max number of outstanding add bytes, the delayed adds may be
+     * waiting for adds to complete on the thread of the caller, so the next add fails with
+     * {@link org.apache.bookkeeper.client.BKException.Code#TooManyRequestsException} instead.
+     *
+     * <p>Setting it to 0 doesn't bound the delayed adds. The default is 5000.
+     *
+     * @param maxDelayedAdds
+     *          max number of adds delayed per ledger handle
+     * @return client configuration
+     */
+    public ClientConfiguration setThrottleMaxDelayedAdds(int maxDelayedAdds) {
+        setProperty(THROTTLE_MAX_DELAYED_ADDS, maxDelayedAdds);
+        return this;
+    }
+
     /**
      * Get autodetection of digest type.
      *
@@ -405,6 +491,31 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the max number of request flushes consolidated into one flush of a channel.
+     *
+     * @return max number of flushes consolidated, 0 when flush consolidation is disabled
+     */
+    public int getClientFlushConsolidationMaxFlushes() {
+        return getInt(CLIENT_FLUSH_CONSOLIDATION_MAX_FLUSHES, 0);
+    }
+
+    /**
+     * Set the max number of request flushes consolidated into one flush of a channel.
+     *
+     * <p>When enabled, the requests written to a bookie during the same event loop tick are
+     * flushed together, reducing the number of write syscalls when issuing many small requests.
+     * High priority requests, such as the ones of ledger recovery, are still flushed right away.
+     *
+     * @param maxFlushes
+     *          max number of flushes consolidated, 0 to disable flush consolidation
+     * @return client configuration
+     */
+    public ClientConfiguration setClientFlushConsolidationMaxFlushes(int maxFlushes) {
+        setProperty(CLIENT_FLUSH_CONSOLIDATION_MAX_FLUSHES, maxFlushes);
+        return this;
+    }
+
     /**
      * Get client netty channel receive buffer size.
      *
@@ -575,6 +686,53 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the max number of channels per bookie.
+     *
+     * <p>If it is larger than {@link #getNumChannelsPerBookie()}, the number of channels used for each
+     * bookie grows up to this value while the channels are congested, and shrinks back down to
+     * {@link #getNumChannelsPerBookie()} once they are not anymore. Otherwise the number of channels is fixed.
+     *
+     * @return max num channels per bookie.
+     */
+    public int getMaxNumChannelsPerBookie() {
+        return getInt(MAX_NUM_CHANNELS_PER_BOOKIE, 0);
+    }
+
+    /**
+     * Set the max number of channels per bookie.
+     *
+     * @param maxNumChannelsPerBookie
+     *          max num channels per bookie.
+     * @return client configuration.
+     */
+    public ClientConfiguration setMaxNumChannelsPerBookie(int maxNumChannelsPerBookie) {
+        setProperty(MAX_NUM_CHANNELS_PER_BOOKIE, maxNumChannelsPerBookie);
+        return this;
+    }
+
+    /**
+     * Get the interval at which the number of channels per bookie is adjusted to the load of the channels,
+     * when {@link #getMaxNumChannelsPerBookie()} is enabled.
+     *
+     * @return channel pool resize interval in milliseconds.
+     */
+    public long getChannelPoolResizeIntervalMillis() {
+        return getLong(CHANNEL_POOL_RESIZE_INTERVAL_MILLIS, 1000);
+    }
+
+    /**
+     * Set the interval at which the number of channels per bookie is adjusted to the load of the channels.
+     *
+     * @param intervalMillis
+     *          channel pool resize interval in milliseconds.
+     * @return client configuration.
+     */
+    public ClientConfiguration setChannelPoolResizeIntervalMillis(long intervalMillis) {
+        setProperty(CHANNEL_POOL_RESIZE_INTERVAL_MILLIS, intervalMillis);
+        return this;
+    }
+
     /**
      * Use older Bookkeeper wire protocol (no protobuf).
      *
@@ -771,6 +929,77 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether the explicit LACs are batched for each bookie, rather than sent with a request for each ledger.
+     *
+     * @return true if the explicit LACs are batched
+     */
+    public boolean getExplicitLacBatchingEnabled() {
+        return getBoolean(EXPLICIT_LAC_BATCHING_ENABLED, false);
+    }
+
+    /**
+     * Enable the batching of the explicit LACs. The explicit LACs to send to a bookie are piggybacked on the
+     * next adds sent to the bookie, and those left are sent in a single request every
+     * {@link #getExplicitLacBatchFlushIntervalMillis()}.
+     *
+     * <p>All the bookies have to support the batched explicit LACs, so it must stay disabled on a cluster with
+     * older bookies: they fail to parse the batch request, its operation being unknown to them, which breaks the
+     * connection, and they drop the LACs piggybacked on the adds.
+     *
+     * @param enabled
+     *          whether to batch the explicit LACs.
+     * @return client configuration.
+     */
+    public ClientConfiguration setExplicitLacBatchingEnabled(boolean enabled) {
+        setProperty(EXPLICIT_LAC_BATCHING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the interval to send the batched explicit LACs which were not piggybacked on adds.
+     *
+     * @return the interval to send the batched explicit LACs, in milliseconds.
+     */
+    public long getExplicitLacBatchFlushIntervalMillis() {
+        return getLong(EXPLICIT_LAC_BATCH_FLUSH_INTERVAL_MILLIS, 100);
+    }
+
+    /**
+     * Set the interval to send the batched explicit LACs which were not piggybacked on adds.
+     *
+     * @param intervalMillis
+     *          the interval to send the batched explicit LACs, in milliseconds.
+     * @return client configuration.
+     */
+    public ClientConfiguration setExplicitLacBatchFlushIntervalMillis(long intervalMillis) {
+        setProperty(EXPLICIT_LAC_BATCH_FLUSH_INTERVAL_MILLIS, intervalMillis);
+        return this;
+    }
+
+    /**
+     * Whether the LACs of many ledgers stored on a bookie are read with a single request.
+     *
+     * @return true if the reads of the LACs are batched
+     */
+    public boolean getReadLacBatchingEnabled() {
+        return getBoolean(READ_LAC_BATCHING_ENABLED, false);
+    }
+
+    /**
+     * Enable the batching of the reads of the LACs, used when opening many ledgers at once. All the bookies
+     * have to support the batched reads: older bookies don't answer them, and misread the requests which
+     * follow on the same connection.
+     *
+     * @param enabled
+     *          whether to batch the reads of the LACs.
+     * @return client configuration.
+     */
+    public ClientConfiguration setReadLacBatchingEnabled(boolean enabled) {
+        setProperty(READ_LAC_BATCHING_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get the tick duration in milliseconds that used for the
      * HashedWheelTimer that used by PCBC to timeout
@@ -995,6 +1224,60 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the percentile of the read latency used as first speculative read timeout.
+     *
+     * @return the percentile of the read latency used as first speculative read timeout, or 0 if disabled.
+     * @see #setSpeculativeReadTimeoutPercentile(double)
+     */
+    public double getSpeculativeReadTimeoutPercentile() {
+        return getDouble(SPECULATIVE_READ_TIMEOUT_PERCENTILE, 0);
+    }
+
+    /**
+     * Set the percentile of the read latency used as first speculative read timeout, such as 95.
+     *
+     * <p>If set, the client tracks the latency of its reads over the last seconds, and sends the first
+     * speculative read of an entry once its read has been outstanding for that percentile of the latency,
+     * up to the max speculative read timeout. The first speculative read timeout is only used until enough
+     * latencies are known. The next speculative reads of the entry back off as usual, and the speculative
+     * reads are capped by {@link #setSpeculativeReadMaxRatio(double)}.
+     *
+     * <p>The default is 0, which uses the first speculative read timeout.
+     *
+     * @param percentile the percentile of the read latency, between 0 and 100
+     * @return client configuration.
+     */
+    public ClientConfiguration setSpeculativeReadTimeoutPercentile(double percentile) {
+        setProperty(SPECULATIVE_READ_TIMEOUT_PERCENTILE, percentile);
+        return this;
+    }
+
+    /**
+     * Get the max ratio of speculative reads to the reads, with percentile speculative read timeouts.
+     *
+     * @return the max ratio of speculative reads to the reads.
+     * @see #setSpeculativeReadMaxRatio(double)
+     */
+    public double getSpeculativeReadMaxRatio() {
+        return getDouble(SPECULATIVE_READ_MAX_RATIO, 0.1);
+    }
+
+    /**
+     * Set the max ratio of speculative reads to the reads, with percentile speculative read timeouts.
+     *
+     * <p>It caps the extra load of the speculative reads when the latency of a cluster jumps, before the
+     * percentile catches up. The default is 0.1, allowing up to one speculative read every ten reads.
+     *
+     * @param ratio the max ratio of speculative reads to the reads
+     * @return client configuration.
+     * @see #setSpeculativeReadTimeoutPercentile(double)
+     */
+    public ClientConfiguration setSpeculativeReadMaxRatio(double ratio) {
+        setProperty(SPECULATIVE_READ_MAX_RATIO, ratio);
+        return this;
+    }
+
     /**
      * Multipler to use when determining time between successive speculative read LAC requests.
      *
@@ -1140,6 +1423,166 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the max number of recovery read batches outstanding at the same time.
+     *
+     * <p>With a window larger than 1, the next batches are read while the entries of the previous
+     * ones are being read and written back, instead of after the last entry of the previous batch
+     * has been read.
+     *
+     * @return recovery read window size.
+     */
+    public int getRecoveryReadWindowSize() {
+        return getInt(RECOVERY_READ_WINDOW_SIZE, 1);
+    }
+
+    /**
+     * Set the max number of recovery read batches outstanding at the same time.
+     *
+     * @param windowSize
+     *          recovery read window size.
+     * @return client configuration.
+     */
+    public ClientConfiguration setRecoveryReadWindowSize(int windowSize) {
+        setProperty(RECOVERY_READ_WINDOW_SIZE, windowSize);
+        return this;
+    }
+
+    /**
+     * Get the max number of entries read ahead of the application by a stream reader.
+     *
+     * @return the max number of entries read ahead by a stream reader.
+     * @see org.apache.bookkeeper.client.api.ReadHandle#newStreamReader(long)
+     */
+    public int getStreamReaderMaxOutstandingEntries() {
+        return getInt(STREAM_READER_MAX_OUTSTANDING_ENTRIES, 1000);
+    }
+
+    /**
+     * Set the max number of entries read ahead of the application by a stream reader, whether they are
+     * being read or waiting for the application.
+     *
+     * @param maxOutstandingEntries
+     *          the max number of entries read ahead by a stream reader.
+     * @return client configuration.
+     */
+    public ClientConfiguration setStreamReaderMaxOutstandingEntries(int maxOutstandingEntries) {
+        setProperty(STREAM_READER_MAX_OUTSTANDING_ENTRIES, maxOutstandingEntries);
+        return this;
+    }
+
+    /**
+     * Get the max number of bytes read ahead of the application by a stream reader.
+     *
+     * @return the max number of bytes read ahead by a stream reader.
+     * @see org.apache.bookkeeper.client.api.ReadHandle#newStreamReader(long)
+     */
+    public long getStreamReaderMaxOutstandingBytes() {
+        return getLong(STREAM_READER_MAX_OUTSTANDING_BYTES, 64 * 1024 * 1024);
+    }
+
+    /**
+     * Set the max number of bytes read ahead of the application by a stream reader.
+     *
+     * <p>The bytes of the entries being read are estimated from the size of the entries already read.
+     *
+     * @param maxOutstandingBytes
+     *          the max number of bytes read ahead by a stream reader.
+     * @return client configuration.
+     */
+    public ClientConfiguration setStreamReaderMaxOutstandingBytes(long maxOutstandingBytes) {
+        setProperty(STREAM_READER_MAX_OUTSTANDING_BYTES, maxOutstandingBytes);
+        return this;
+    }
+
+    /**
+     * Get the timeout of the long poll reads of a stream reader waiting for the next entries.
+     *
+     * @return the timeout of the long poll reads of a stream reader, in milliseconds.
+     */
+    public long getStreamReaderLongPollTimeoutMillis() {
+        return getLong(STREAM_READER_LONG_POLL_TIMEOUT_MILLIS, 10000);
+    }
+
+    /**
+     * Set the timeout of the long poll reads of a stream reader waiting for the next entries to be written,
+     * after which the long poll read is sent again.
+     *
+     * @param timeoutMillis
+     *          the timeout of the long poll reads of a stream reader, in milliseconds.
+     * @return client configuration.
+     */
+    public ClientConfiguration setStreamReaderLongPollTimeoutMillis(long timeoutMillis) {
+        setProperty(STREAM_READER_LONG_POLL_TIMEOUT_MILLIS, timeoutMillis);
+        return this;
+    }
+
+    /**
+     * Get the max number of records packed in an entry by a batched writer.
+     *
+     * @return the max number of records of an entry written by a batched writer.
+     * @see org.apache.bookkeeper.client.api.WriteHandle#newBatchedWriter()
+     */
+    public int getBatchedWriterMaxRecords() {
+        return getInt(BATCHED_WRITER_MAX_RECORDS, 1000);
+    }
+
+    /**
+     * Set the max number of records packed in an entry by a batched writer.
+     *
+     * @param maxRecords
+     *          the max number of records of an entry written by a batched writer.
+     * @return client configuration.
+     */
+    public ClientConfiguration setBatchedWriterMaxRecords(int maxRecords) {
+        setProperty(BATCHED_WRITER_MAX_RECORDS, maxRecords);
+        return this;
+    }
+
+    /**
+     * Get the max number of bytes of the records packed in an entry by a batched writer.
+     *
+     * @return the max number of bytes of the records of an entry written by a batched writer.
+     */
+    public int getBatchedWriterMaxBytes() {
+        return getInt(BATCHED_WRITER_MAX_BYTES, 64 * 1024);
+    }
+
+    /**
+     * Set the max number of bytes of the records packed in an entry by a batched writer. A larger record is
+     * written alone in its entry.
+     *
+     * @param maxBytes
+     *          the max number of bytes of the records of an entry written by a batched writer.
+     * @return client configuration.
+     */
+    public ClientConfiguration setBatchedWriterMaxBytes(int maxBytes) {
+        setProperty(BATCHED_WRITER_MAX_BYTES, maxBytes);
+        return this;
+    }
+
+    /**
+     * Get the max delay of a record in the batch of a batched writer before the batch is written.
+     *
+     * @return the max delay of a record in a batch, in milliseconds.
+     */
+    public long getBatchedWriterMaxDelayMillis() {
+        return getLong(BATCHED_WRITER_MAX_DELAY_MILLIS, 1);
+    }
+
+    /**
+     * Set the max delay of a record in the batch of a batched writer before the batch is written. With 0, the
+     * batches are written only once full, or flushed by the application.
+     *
+     * @param maxDelayMillis
+     *          the max delay of a record in a batch, in milliseconds.
+     * @return client configuration.
+     */
+    public ClientConfiguration setBatchedWriterMaxDelayMillis(long maxDelayMillis) {
+        setProperty(BATCHED_WRITER_MAX_DELAY_MILLIS, maxDelayMillis);
+        return this;
+    }
+
     /**
      * If reorder read sequence enabled or not.
      *
@@ -1170,6 +1613,56 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * If latency aware reads are enabled or not.
+     *
+     * @return true if latency aware reads are enabled, otherwise false.
+     * @see #setLatencyAwareReadEnabled(boolean)
+     */
+    public boolean isLatencyAwareReadEnabled() {
+        return getBoolean(LATENCY_AWARE_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable ordering the replicas of the reads by the latency of the bookies.
+     *
+     * <p>If this flag is enabled, the client keeps a moving average of the latency of the reads of each
+     * bookie and, after the read sequence of the placement policy, it sends the first read of an entry to
+     * one of its fastest replicas, taking the pending requests of the bookies into account. The replicas
+     * which recently failed still come last. It doesn't apply to sticky reads.
+     *
+     * @param enabled the flag to enable/disable latency aware reads.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLatencyAwareReadEnabled(boolean enabled) {
+        setProperty(LATENCY_AWARE_READ_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the decay time of the read latency of the bookies, in milliseconds.
+     *
+     * @return the decay time of the read latency of the bookies
+     * @see #setLatencyAwareReadDecayMillis(long)
+     */
+    public long getLatencyAwareReadDecayMillis() {
+        return getLong(LATENCY_AWARE_READ_DECAY_MILLIS, 10000);
+    }
+
+    /**
+     * Set the decay time of the read latency of the bookies, in milliseconds, for latency aware reads.
+     *
+     * <p>The older latencies of a bookie weigh exponentially less over this time, so a slow bookie is read
+     * from again once its latency decayed, or once it recovered.
+     *
+     * @param decayMillis the decay time of the read latency of the bookies
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLatencyAwareReadDecayMillis(long decayMillis) {
+        setProperty(LATENCY_AWARE_READ_DECAY_MILLIS, decayMillis);
+        return this;
+    }
+
     /**
      * If read operation should be sticky to a single bookie or not.
      *
@@ -1631,6 +2124,30 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return getString(CLIENT_ROLE, CLIENT_ROLE_STANDARD);
     }
 
+    /**
+     * Set whether the client connects to the replication endpoint of the bookies.
+     *
+     * <p>The bookies configured with a replication listener publish it as a separate endpoint, served
+     * by its own threads, so that the replication traffic doesn't compete with the regular clients.
+     * The client connects to the regular endpoint of the bookies that don't publish one.
+     *
+     * @param useReplicationEndpoint whether to connect to the replication endpoint of the bookies
+     * @return client configuration
+     */
+    public ClientConfiguration setUseReplicationEndpoint(boolean useReplicationEndpoint) {
+        setProperty(USE_REPLICATION_ENDPOINT, useReplicationEndpoint);
+        return this;
+    }
+
+    /**
+     * Get whether the client connects to the replication endpoint of the bookies.
+     *
+     * @return whether to connect to the replication endpoint of the bookies
+     */
+    public boolean getUseReplicationEndpoint() {
+        return getBoolean(USE_REPLICATION_ENDPOINT, false);
+    }
+
     /**
      * Get the keystore type for client. Default is JKS.
      *
@@ -107,6 +107,9 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String COMPACTION_RATE = "compactionRate";
     protected static final String COMPACTION_RATE_BY_ENTRIES = "compactionRateByEntries";
     protected static final String COMPACTION_RATE_BY_BYTES = "compactionRateByBytes";
+    protected static final String COMPACTION_PARALLELISM = "compactionParallelism";
+    protected static final String USE_COST_BASED_COMPACTION = "useCostBasedCompaction";
+    protected static final String COMPACTION_ZERO_COPY_ENABLED = "compactionZeroCopyEnabled";
 
     // Gc Parameters
     protected static final String GC_WAIT_TIME = "gcWaitTime";
@@ -118,6 +121,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String VERIFY_METADATA_ON_GC = "verifyMetadataOnGC";
     protected static final String GC_ENTRYLOGMETADATA_CACHE_ENABLED = "gcEntryLogMetadataCacheEnabled";
     protected static final String GC_ENTRYLOG_METADATA_CACHE_PATH = "gcEntryLogMetadataCachePath";
+    protected static final String GC_ENTRYLOG_METADATA_EXTRACTION_THREADS = "gcEntryLogMetadataExtractionThreads";
+    protected static final String GC_BULK_LEDGER_CHECKS_ENABLED = "gcBulkLedgerChecksEnabled";
     // Scrub Parameters
     protected static final String LOCAL_SCRUB_PERIOD = "localScrubInterval";
     protected static final String LOCAL_SCRUB_RATE_LIMIT = "localScrubRateLimit";
@@ -156,6 +161,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
     protected static final String MAX_READS_IN_PROGRESS_LIMIT = "maxReadsInProgressLimit";
+    protected static final String MAX_ADDS_IN_PROGRESS_PER_CHANNEL_LIMIT = "maxAddsInProgressPerChannelLimit";
+    protected static final String MAX_READS_IN_PROGRESS_PER_CHANNEL_LIMIT = "maxReadsInProgressPerChannelLimit";
     protected static final String CLOSE_CHANNEL_ON_RESPONSE_TIMEOUT = "closeChannelOnResponseTimeout";
     protected static final String WAIT_TIMEOUT_ON_RESPONSE_BACKPRESSURE = "waitTimeoutOnResponseBackpressureMs";
 
@@ -176,9 +183,13 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String SERVER_TCP_NODELAY = "serverTcpNoDelay";
     protected static final String SERVER_SOCK_KEEPALIVE = "serverSockKeepalive";
     protected static final String SERVER_SOCK_LINGER = "serverTcpLinger";
+    protected static final String SERVER_FLUSH_CONSOLIDATION_MAX_FLUSHES = "serverFlushConsolidationMaxFlushes";
     protected static final String SERVER_WRITEBUFFER_LOW_WATER_MARK = "serverWriteBufferLowWaterMark";
     protected static final String SERVER_WRITEBUFFER_HIGH_WATER_MARK = "serverWriteBufferHighWaterMark";
     protected static final String SERVER_NUM_IO_THREADS = "serverNumIOThreads";
+    protected static final String REPLICATION_SERVER_PORT = "replicationServerPort";
+    protected static final String REPLICATION_SERVER_NUM_IO_THREADS = "replicationServerNumIOThreads";
+    protected static final String REPLICATION_MAX_BANDWIDTH_BYTES_PER_SEC = "replicationMaxBandwidthBytesPerSec";
 
     // Zookeeper Parameters
     protected static final String ZK_RETRY_BACKOFF_START_MS = "zkRetryBackoffStartMs";
@@ -223,7 +234,10 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String MAX_PENDING_ADD_REQUESTS_PER_THREAD = "maxPendingAddRequestsPerThread";
     protected static final String NUM_LONG_POLL_WORKER_THREADS = "numLongPollWorkerThreads";
     protected static final String NUM_HIGH_PRIORITY_WORKER_THREADS = "numHighPriorityWorkerThreads";
+    protected static final String NUM_REPLICATION_WORKER_THREADS = "numReplicationWorkerThreads";
     protected static final String READ_WORKER_THREADS_THROTTLING_ENABLED = "readWorkerThreadsThrottlingEnabled";
+    protected static final String READ_FAIR_SCHEDULING_ENABLED = "readFairSchedulingEnabled";
+    protected static final String READ_FAIR_SCHEDULING_QUANTUM = "readFairSchedulingQuantum";
 
     // Long poll parameters
     protected static final String REQUEST_TIMER_TICK_DURATION_MILLISEC = "requestTimerTickDurationMs";
@@ -550,6 +564,60 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the number of threads used by the garbage collector to extract the metadata
+     * of the entry logs not yet in the entrylog metadata-map. Default is 1.
+     *
+     * @return number of threads extracting entry log metadata
+     */
+    public int getGcEntryLogMetadataExtractionThreads() {
+        return getInt(GC_ENTRYLOG_METADATA_EXTRACTION_THREADS, 1);
+    }
+
+    /**
+     * Set the number of threads used by the garbage collector to extract the metadata
+     * of the entry logs not yet in the entrylog metadata-map.
+     *
+     * <p>Extracting the metadata of an entry log without ledgers map requires scanning the
+     * whole entry log. Using several threads speeds up the first garbage collection after
+     * upgrading or losing the entrylog metadata-map. The scanning is throttled by the
+     * compaction rate.
+     *
+     * @param threads number of threads extracting entry log metadata
+     * @return server configuration
+     */
+    public ServerConfiguration setGcEntryLogMetadataExtractionThreads(int threads) {
+        this.setProperty(GC_ENTRYLOG_METADATA_EXTRACTION_THREADS, threads);
+        return this;
+    }
+
+    /**
+     * Get whether the garbage collector checks the ledgers in bulk. Default is false.
+     *
+     * @return whether bulk ledger checks are enabled
+     */
+    public boolean isGcBulkLedgerChecksEnabled() {
+        return getBoolean(GC_BULK_LEDGER_CHECKS_ENABLED, false);
+    }
+
+    /**
+     * Set whether the garbage collector checks the ledgers in bulk.
+     *
+     * <p>When enabled, the active ledgers of the bookie are snapshotted once per garbage collection
+     * in a compact sorted array, which is diffed against the ledger ranges of the metadata store and
+     * against the ledgers of the entry logs, instead of looking up the ledgers one by one. The metadata
+     * of the ledgers missing from the metadata store is double checked with concurrent reads when
+     * {@link #getVerifyMetadataOnGC()} is enabled, bounded by
+     * {@link #getGcOverreplicatedLedgerMaxConcurrentRequests()}.
+     *
+     * @param enabled whether bulk ledger checks are enabled
+     * @return server configuration
+     */
+    public ServerConfiguration setGcBulkLedgerChecksEnabled(boolean enabled) {
+        this.setProperty(GC_BULK_LEDGER_CHECKS_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get whether local scrub is enabled.
      *
@@ -1030,6 +1098,54 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get max number of adds in progress on a channel. 0 == unlimited.
+     *
+     * @return Max number of adds in progress on a channel.
+     */
+    public int getMaxAddsInProgressPerChannelLimit() {
+        return this.getInt(MAX_ADDS_IN_PROGRESS_PER_CHANNEL_LIMIT, 0);
+    }
+
+    /**
+     * Set max number of adds in progress on a channel. 0 == unlimited.
+     *
+     * <p>A channel over its limit stops being read, like when the bookie is over
+     * {@link #getMaxAddsInProgressLimit()}, so a single client can't take all the adds in progress.
+     *
+     * @param value
+     *          max number of adds in progress on a channel.
+     * @return server configuration.
+     */
+    public ServerConfiguration setMaxAddsInProgressPerChannelLimit(int value) {
+        this.setProperty(MAX_ADDS_IN_PROGRESS_PER_CHANNEL_LIMIT, value);
+        return this;
+    }
+
+    /**
+     * Get max number of reads in progress on a channel. 0 == unlimited.
+     *
+     * @return Max number of reads in progress on a channel.
+     */
+    public int getMaxReadsInProgressPerChannelLimit() {
+        return this.getInt(MAX_READS_IN_PROGRESS_PER_CHANNEL_LIMIT, 0);
+    }
+
+    /**
+     * Set max number of reads in progress on a channel. 0 == unlimited.
+     *
+     * <p>A channel over its limit stops being read, like when the bookie is over
+     * {@link #getMaxReadsInProgressLimit()}, so a single client can't take all the reads in progress.
+     *
+     * @param value
+     *          max number of reads in progress on a channel.
+     * @return server configuration.
+     */
+    public ServerConfiguration setMaxReadsInProgressPerChannelLimit(int value) {
+        this.setProperty(MAX_READS_IN_PROGRESS_PER_CHANNEL_LIMIT, value);
+        return this;
+    }
+
     /**
      * Configures action in case if server timed out sending response to the client.
      * true == close the channel and drop response
@@ -1491,6 +1607,78 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the port of the replication listener of the bookie.
+     *
+     * @return port of the replication listener, 0 when it is disabled
+     */
+    public int getReplicationServerPort() {
+        return getInt(REPLICATION_SERVER_PORT, 0);
+    }
+
+    /**
+     * Set the port of the replication listener of the bookie.
+     *
+     * <p>When enabled, the bookie accepts the connections of the replication clients, such as the
+     * AutoRecovery workers and the data integrity check, on a separate listener, published as the
+     * <i>bookie-replication</i> endpoint of the bookie. The connections accepted on it are served by
+     * their own IO threads and worker threads, and their bandwidth can be capped, so that
+     * re-replication doesn't compete with the traffic of the regular clients.
+     *
+     * @param port
+     *            port of the replication listener, 0 to disable it
+     * @return server configuration
+     */
+    public ServerConfiguration setReplicationServerPort(int port) {
+        setProperty(REPLICATION_SERVER_PORT, Integer.toString(port));
+        return this;
+    }
+
+    /**
+     * Get the number of IO threads of the replication listener.
+     *
+     * @return the number of IO threads of the replication listener
+     */
+    public int getReplicationServerNumIOThreads() {
+        return getInt(REPLICATION_SERVER_NUM_IO_THREADS, 1);
+    }
+
+    /**
+     * Set the number of IO threads of the replication listener.
+     *
+     * @see #getReplicationServerPort()
+     * @param numThreads number of IO threads used for the replication connections
+     * @return server configuration
+     */
+    public ServerConfiguration setReplicationServerNumIOThreads(int numThreads) {
+        setProperty(REPLICATION_SERVER_NUM_IO_THREADS, Integer.toString(numThreads));
+        return this;
+    }
+
+    /**
+     * Get the max bandwidth, in each direction, of the connections of the replication listener.
+     *
+     * @return max bandwidth in bytes per second, 0 when it is unlimited
+     */
+    public long getReplicationMaxBandwidthBytesPerSec() {
+        return getLong(REPLICATION_MAX_BANDWIDTH_BYTES_PER_SEC, 0L);
+    }
+
+    /**
+     * Set the max bandwidth, in each direction, of the connections of the replication listener.
+     *
+     * <p>The limit is shared by all the replication connections. Reads from the connections are
+     * suspended, and writes are delayed, when it is exceeded.
+     *
+     * @param bytesPerSec
+     *            max bandwidth in bytes per second, 0 for unlimited
+     * @return server configuration
+     */
+    public ServerConfiguration setReplicationMaxBandwidthBytesPerSec(long bytesPerSec) {
+        setProperty(REPLICATION_MAX_BANDWIDTH_BYTES_PER_SEC, Long.toString(bytesPerSec));
+        return this;
+    }
+
     /**
      * Timeout to drain the socket on close.
      *
@@ -1516,6 +1704,32 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the max number of response flushes consolidated into one flush of a channel.
+     *
+     * @return max number of flushes consolidated, 0 when flush consolidation is disabled
+     */
+    public int getServerFlushConsolidationMaxFlushes() {
+        return getInt(SERVER_FLUSH_CONSOLIDATION_MAX_FLUSHES, 0);
+    }
+
+    /**
+     * Set the max number of response flushes consolidated into one flush of a channel.
+     *
+     * <p>When enabled, the responses written to a channel while a read is in progress, or from the
+     * worker threads during the same event loop tick, are flushed together, reducing the number of
+     * write syscalls under load. The channel is flushed anyway once that many flushes were
+     * consolidated. The responses to high priority requests are still flushed right away.
+     *
+     * @param maxFlushes
+     *            max number of flushes consolidated, 0 to disable flush consolidation
+     * @return server configuration
+     */
+    public ServerConfiguration setServerFlushConsolidationMaxFlushes(int maxFlushes) {
+        setProperty(SERVER_FLUSH_CONSOLIDATION_MAX_FLUSHES, maxFlushes);
+        return this;
+    }
+
     /**
      * Get socket keepalive.
      *
@@ -1960,6 +2174,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getInt(NUM_HIGH_PRIORITY_WORKER_THREADS, 8);
     }
 
+    /**
+     * Set the number of threads that should be used for the requests received on the replication
+     * listener.
+     *
+     * @param numThreads
+     *          number of threads to handle the replication requests, 0 to handle them in the regular
+     *          thread pools
+     * @return server configuration
+     * @see #setReplicationServerPort(int)
+     */
+    public ServerConfiguration setNumReplicationWorkerThreads(int numThreads) {
+        setProperty(NUM_REPLICATION_WORKER_THREADS, numThreads);
+        return this;
+    }
+
+    /**
+     * Get the number of threads that should be used for the requests received on the replication
+     * listener.
+     *
+     * @return number of threads to handle the replication requests
+     */
+    public int getNumReplicationWorkerThreads() {
+        return getInt(NUM_REPLICATION_WORKER_THREADS, 4);
+    }
+
     /**
      * Use auto-throttling of the read-worker threads. This is done
      * to ensure the bookie is not using unlimited amount of memory
@@ -2035,6 +2274,56 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getInt(MAX_PENDING_READ_REQUESTS_PER_THREAD, 10000);
     }
 
+    /**
+     * Set whether the read requests are scheduled fairly across ledgers.
+     *
+     * <p>By default, the read requests of a ledger are always executed by the same read worker thread,
+     * so a ledger with a large backlog of reads delays the reads of all the ledgers mapped to the same
+     * thread. When enabled, each ledger gets its own queue, and the read worker threads take turns
+     * across the ledgers having pending reads, executing up to {@link #getReadFairSchedulingQuantum()}
+     * reads of a ledger per turn. The reads of a ledger are still executed in order, one at a time.
+     *
+     * @param enabled
+     *          whether to schedule the read requests fairly across ledgers
+     * @return server configuration
+     */
+    public ServerConfiguration setReadFairSchedulingEnabled(boolean enabled) {
+        setProperty(READ_FAIR_SCHEDULING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get whether the read requests are scheduled fairly across ledgers.
+     *
+     * @return whether to schedule the read requests fairly across ledgers
+     */
+    public boolean isReadFairSchedulingEnabled() {
+        return getBoolean(READ_FAIR_SCHEDULING_ENABLED, false);
+    }
+
+    /**
+     * Set the max number of read requests of a ledger executed in one turn, when the read requests are
+     * scheduled fairly across ledgers.
+     *
+     * @param quantum
+     *          max number of read requests of a ledger executed in one turn
+     * @return server configuration
+     */
+    public ServerConfiguration setReadFairSchedulingQuantum(int quantum) {
+        setProperty(READ_FAIR_SCHEDULING_QUANTUM, quantum);
+        return this;
+    }
+
+    /**
+     * Get the max number of read requests of a ledger executed in one turn, when the read requests are
+     * scheduled fairly across ledgers.
+     *
+     * @return max number of read requests of a ledger executed in one turn
+     */
+    public int getReadFairSchedulingQuantum() {
+        return getInt(READ_FAIR_SCHEDULING_QUANTUM, 4);
+    }
+
     /**
      * Set the max number of pending add requests for each add worker thread. After the quota is reached, new requests
      * will be failed immediately.
@@ -2878,6 +3167,87 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the number of entry logs that can be compacted concurrently. Default is 1.
+     *
+     * @return the number of entry logs compacted concurrently
+     */
+    public int getCompactionParallelism() {
+        return getInt(COMPACTION_PARALLELISM, 1);
+    }
+
+    /**
+     * Set the number of entry logs that can be compacted concurrently.
+     *
+     * <p>When it is greater than 1, the garbage collector compacts the candidate entry logs
+     * using a pool of this many threads. All the compactions share the rate limit configured
+     * by {@link #setCompactionRateByEntries(int)} or {@link #setCompactionRateByBytes(int)},
+     * and their index updates are grouped together. It is ignored when transactional
+     * compaction is used, since that relies on a single compaction log.
+     *
+     * @param parallelism number of entry logs compacted concurrently
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionParallelism(int parallelism) {
+        setProperty(COMPACTION_PARALLELISM, parallelism);
+        return this;
+    }
+
+    /**
+     * Get whether the entry logs to compact are selected by their compaction cost.
+     *
+     * @return use cost based compaction
+     */
+    public boolean getUseCostBasedCompaction() {
+        return getBoolean(USE_COST_BASED_COMPACTION, false);
+    }
+
+    /**
+     * Set whether the entry logs to compact are selected by their compaction cost.
+     *
+     * <p>When enabled, the entry logs below the compaction threshold are compacted starting from
+     * the ones reclaiming the most space per byte rewritten, giving priority to older entry logs.
+     * The compaction threshold is also lowered as the ledger disks usage goes from the disk usage
+     * warn threshold to the disk usage threshold, so that only the entry logs with the most
+     * garbage are rewritten when disks are almost full.
+     *
+     * @param useCostBasedCompaction whether to use cost based compaction
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setUseCostBasedCompaction(boolean useCostBasedCompaction) {
+        setProperty(USE_COST_BASED_COMPACTION, useCostBasedCompaction);
+        return this;
+    }
+
+    /**
+     * Get whether compaction transfers the live entries from file to file.
+     *
+     * @return true if zero copy compaction is enabled
+     */
+    public boolean isCompactionZeroCopyEnabled() {
+        return getBoolean(COMPACTION_ZERO_COPY_ENABLED, false);
+    }
+
+    /**
+     * Set whether compaction transfers the live entries from file to file.
+     *
+     * <p>When enabled, compaction only reads the header of the entries of the compacted entry log.
+     * Adjacent live entries are coalesced and appended to the current entry log with
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * without copying them through the bookie memory. It is ignored when transactional
+     * compaction is used.
+     *
+     * @param enabled whether zero copy compaction is enabled
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionZeroCopyEnabled(boolean enabled) {
+        setProperty(COMPACTION_ZERO_COPY_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Should we remove pages from page cache after force write.
      *
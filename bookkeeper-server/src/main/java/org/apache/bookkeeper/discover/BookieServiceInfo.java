@@ -40,6 +40,17 @@ public final class BookieServiceInfo {
      */
     public static final Supplier<BookieServiceInfo> NO_INFO = () -> EMPTY;
 
+    /**
+     * Id of the endpoint of the replication listener of a bookie.
+     */
+    public static final String REPLICATION_ENDPOINT_ID = "bookie-replication";
+
+    /**
+     * Protocol of the endpoint of the replication listener of a bookie. It's not <code>bookie-rpc</code>, so
+     * that only the replication clients resolve the bookies to it.
+     */
+    public static final String REPLICATION_ENDPOINT_PROTOCOL = "bookie-replication-rpc";
+
     private Map<String, String> properties;
     private List<Endpoint> endpoints;
 
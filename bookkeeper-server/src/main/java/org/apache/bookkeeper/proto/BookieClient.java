@@ -108,6 +108,21 @@ public interface BookieClient {
      */
     void readLac(BookieId address, long ledgerId, ReadLacCallback cb, Object ctx);
 
+    /**
+     * Read the last add confirmed of several ledgers from the bookie at {@code address}, with a single
+     * request if the batching of the reads is enabled, otherwise with a request for each ledger.
+     *
+     * @param address the address of the bookie
+     * @param ledgerIds the ledgers whose last add confirm we wish to know
+     * @param cb the callback notified for each ledger when the request completes
+     * @param ctx a context object passed to the callback on completion
+     */
+    default void readLacBatch(BookieId address, List<Long> ledgerIds, ReadLacCallback cb, Object ctx) {
+        for (long ledgerId : ledgerIds) {
+            readLac(address, ledgerId, cb, ctx);
+        }
+    }
+
     /**
      * Explicitly write the last add confirmed for ledger {@code ledgerId} to the bookie at
      * {@code address}.
@@ -123,6 +138,21 @@ public interface BookieClient {
     void writeLac(BookieId address, long ledgerId, byte[] masterKey,
                   long lac, ByteBufList toSend, WriteLacCallback cb, Object ctx);
 
+    /**
+     * Queue the last add confirmed of ledger {@code ledgerId} for the bookie at {@code address}, to be
+     * piggybacked on the next add sent to the bookie, or else sent along with the last add confirmed of other
+     * ledgers in a single request. The write is best effort, its failures are only logged.
+     *
+     * @param address the address of the bookie
+     * @param ledgerId the ledger whose last add confirm we wish to write
+     * @param masterKey the master key of the ledger
+     * @param lac the last add confirmed we wish to write
+     * @param toSend a buffer also containing the lac, along with a digest, left to the caller
+     */
+    default void queueLac(BookieId address, long ledgerId, byte[] masterKey, long lac, ByteBufList toSend) {
+        writeLac(address, ledgerId, masterKey, lac, toSend, (rc, lid, addr, ctx) -> { }, null);
+    }
+
     /**
      * Add an entry for ledger {@code ledgerId} on the bookie at address {@code address}.
      *
@@ -25,6 +25,7 @@ import static org.apache.bookkeeper.util.SafeRunnable.safeRun;
 
 import com.google.common.collect.Lists;
 import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.UnsafeByteOperations;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -36,8 +37,11 @@ import io.netty.util.Recycler.Handle;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
@@ -65,6 +69,7 @@ import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacRequest;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.tls.SecurityException;
@@ -81,14 +86,20 @@ import org.slf4j.LoggerFactory;
 public class BookieClientImpl implements BookieClient, PerChannelBookieClientFactory {
     static final Logger LOG = LoggerFactory.getLogger(BookieClientImpl.class);
 
+    private static final int MAX_PIGGYBACKED_LACS_PER_ADD = 100;
+    private static final int MAX_LACS_PER_BATCH = 1000;
+    private static final int MAX_LEDGERS_PER_READ_LAC_BATCH = 1000;
+
     private final OrderedExecutor executor;
     private final ScheduledExecutorService scheduler;
     private final ScheduledFuture<?> timeoutFuture;
+    private final ScheduledFuture<?> lacBatchFlushFuture;
 
     private final EventLoopGroup eventLoopGroup;
     private final ByteBufAllocator allocator;
     final ConcurrentHashMap<BookieId, PerChannelBookieClientPool> channels =
             new ConcurrentHashMap<BookieId, PerChannelBookieClientPool>();
+    private final ConcurrentHashMap<BookieId, LacUpdateQueue> lacUpdateQueues = new ConcurrentHashMap<>();
 
     private final ClientAuthProvider.Factory authProviderFactory;
     private final ExtensionRegistry registry;
@@ -96,6 +107,7 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
     private final ClientConfiguration conf;
     private final ClientConfiguration v3Conf;
     private final boolean useV3Enforced;
+    private final boolean readLacBatchingEnabled;
     private volatile boolean closed;
     private final ReentrantReadWriteLock closeLock;
     private final StatsLogger statsLogger;
@@ -112,6 +124,7 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         this.v3Conf = new ClientConfiguration(conf);
         this.v3Conf.setUseV2WireProtocol(false);
         this.useV3Enforced = conf.getUseV2WireProtocol();
+        this.readLacBatchingEnabled = conf.getReadLacBatchingEnabled();
         this.eventLoopGroup = eventLoopGroup;
         this.allocator = allocator;
         this.executor = executor;
@@ -137,6 +150,13 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         } else {
             this.timeoutFuture = null;
         }
+        if (conf.getExplicitLacBatchingEnabled()) {
+            long flushIntervalMillis = Math.max(conf.getExplicitLacBatchFlushIntervalMillis(), 1);
+            this.lacBatchFlushFuture = this.scheduler.scheduleAtFixedRate(safeRun(this::flushLacUpdates),
+                    flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.lacBatchFlushFuture = null;
+        }
     }
 
     private int getRc(int rc) {
@@ -282,6 +302,80 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }, ledgerId, useV3Enforced);
     }
 
+    @Override
+    public void queueLac(BookieId addr, long ledgerId, byte[] masterKey, long lac, ByteBufList toSend) {
+        if (lacBatchFlushFuture == null) {
+            BookieClient.super.queueLac(addr, ledgerId, masterKey, lac, toSend);
+            return;
+        }
+        WriteLacRequest lacUpdate = WriteLacRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setLac(lac)
+                .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey))
+                .setBody(UnsafeByteOperations.unsafeWrap(toSend.toArray()))
+                .build();
+        lacUpdateQueues.computeIfAbsent(addr, k -> new LacUpdateQueue()).add(lacUpdate);
+    }
+
+    /**
+     * Take the LACs queued for a bookie to piggyback them on an add.
+     */
+    private List<WriteLacRequest> drainPiggybackedLacs(BookieId addr) {
+        // the v2 protocol can't carry them, they are sent in batches with the v3 protocol
+        LacUpdateQueue queue = conf.getUseV2WireProtocol() ? null : lacUpdateQueues.get(addr);
+        return queue == null ? Collections.emptyList() : queue.drain(MAX_PIGGYBACKED_LACS_PER_ADD);
+    }
+
+    /**
+     * Get the callback of an add carrying LACs, which queues them again if the add fails.
+     */
+    private WriteCallback requeuePiggybackedLacsOnFailure(BookieId addr, List<WriteLacRequest> lacUpdates,
+                                                          WriteCallback cb) {
+        if (lacUpdates.isEmpty()) {
+            return cb;
+        }
+        return lacUpdateQueues.computeIfAbsent(addr, k -> new LacUpdateQueue()).requeueOnFailure(lacUpdates, cb);
+    }
+
+    /**
+     * Send the LACs which were not piggybacked on adds, in a batch for each bookie.
+     */
+    private void flushLacUpdates() {
+        for (Map.Entry<BookieId, LacUpdateQueue> entry : lacUpdateQueues.entrySet()) {
+            BookieId addr = entry.getKey();
+            LacUpdateQueue queue = entry.getValue();
+            while (!queue.isEmpty()) {
+                List<WriteLacRequest> lacUpdates = queue.drain(MAX_LACS_PER_BATCH);
+                if (lacUpdates.isEmpty()) {
+                    break;
+                }
+                writeLacBatch(addr, lacUpdates);
+            }
+        }
+    }
+
+    private void writeLacBatch(BookieId addr, List<WriteLacRequest> lacUpdates) {
+        final WriteLacCallback cb = (rc, ledgerId, bookieId, ctx) -> {
+            if (BKException.Code.OK != rc) {
+                LOG.warn("Failed to write the explicit LACs of {} ledgers to bookie {} : {}",
+                        lacUpdates.size(), addr, BKException.getMessage(rc));
+            }
+        };
+        final PerChannelBookieClientPool client = lookupClient(addr);
+        if (client == null) {
+            cb.writeLacComplete(getRc(BKException.Code.BookieHandleNotAvailableException),
+                    lacUpdates.get(0).getLedgerId(), addr, null);
+            return;
+        }
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                cb.writeLacComplete(rc, lacUpdates.get(0).getLedgerId(), addr, null);
+            } else {
+                pcbc.writeLacBatch(lacUpdates, cb, null);
+            }
+        }, lacUpdates.get(0).getLedgerId(), useV3Enforced);
+    }
+
     private void completeAdd(final int rc,
                              final long ledgerId,
                              final long entryId,
@@ -420,8 +514,10 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
             if (rc != BKException.Code.OK) {
                 bookieClient.completeAdd(rc, ledgerId, entryId, addr, cb, ctx);
             } else {
+                List<WriteLacRequest> lacUpdates = bookieClient.drainPiggybackedLacs(addr);
                 pcbc.addEntry(ledgerId, masterKey, entryId,
-                              toSend, cb, ctx, options, allowFastFail, writeFlags);
+                              toSend, bookieClient.requeuePiggybackedLacsOnFailure(addr, lacUpdates, cb),
+                              ctx, options, allowFastFail, writeFlags, lacUpdates);
             }
 
             toSend.release();
@@ -483,6 +579,41 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }, ledgerId, useV3Enforced);
     }
 
+    @Override
+    public void readLacBatch(final BookieId addr, final List<Long> ledgerIds, final ReadLacCallback cb,
+                             final Object ctx) {
+        if (!readLacBatchingEnabled) {
+            // the bookies which don't support the batches would misread them as requests of the v2 protocol
+            BookieClient.super.readLacBatch(addr, ledgerIds, cb, ctx);
+            return;
+        }
+        for (int i = 0; i < ledgerIds.size(); i += MAX_LEDGERS_PER_READ_LAC_BATCH) {
+            final List<Long> batch = new ArrayList<>(ledgerIds.subList(i,
+                    Math.min(i + MAX_LEDGERS_PER_READ_LAC_BATCH, ledgerIds.size())));
+            final long firstLedgerId = batch.get(0);
+            final PerChannelBookieClientPool client = lookupClient(addr);
+            if (client == null) {
+                int rc = getRc(BKException.Code.BookieHandleNotAvailableException);
+                batch.forEach(ledgerId -> cb.readLacComplete(rc, ledgerId, null, null, ctx));
+                continue;
+            }
+            client.obtain((rc, pcbc) -> {
+                if (rc != BKException.Code.OK) {
+                    try {
+                        executor.executeOrdered(firstLedgerId, safeRun(() -> {
+                            batch.forEach(ledgerId -> cb.readLacComplete(rc, ledgerId, null, null, ctx));
+                        }));
+                    } catch (RejectedExecutionException re) {
+                        int closedRc = getRc(BKException.Code.InterruptedException);
+                        batch.forEach(ledgerId -> cb.readLacComplete(closedRc, ledgerId, null, null, ctx));
+                    }
+                } else {
+                    pcbc.readLacBatch(batch, cb, ctx);
+                }
+            }, firstLedgerId, useV3Enforced);
+        }
+    }
+
     @Override
     public void readEntry(BookieId addr, long ledgerId, long entryId,
                           ReadEntryCallback cb, Object ctx, int flags) {
@@ -592,6 +723,9 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
             if (timeoutFuture != null) {
                 timeoutFuture.cancel(false);
             }
+            if (lacBatchFlushFuture != null) {
+                lacBatchFlushFuture.cancel(false);
+            }
         } finally {
             closeLock.writeLock().unlock();
         }
@@ -38,8 +38,6 @@ import io.netty.channel.DefaultEventLoopGroup;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.WriteBufferWaterMark;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.ChannelGroupFuture;
 import io.netty.channel.group.DefaultChannelGroup;
@@ -47,10 +45,11 @@ import io.netty.channel.local.LocalAddress;
 import io.netty.channel.local.LocalChannel;
 import io.netty.channel.local.LocalServerChannel;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.traffic.GlobalTrafficShapingHandler;
+import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -90,10 +89,17 @@ class BookieNettyServer {
 
     private static final Logger LOG = LoggerFactory.getLogger(BookieNettyServer.class);
 
+    private static final AttributeKey<Boolean> REPLICATION_CHANNEL = AttributeKey.valueOf("bookieReplicationChannel");
+
     final int maxFrameSize;
     final ServerConfiguration conf;
     final EventLoopGroup eventLoopGroup;
     final EventLoopGroup jvmEventLoopGroup;
+    // serves the replication listener, null when it is disabled
+    final EventLoopGroup replicationEventLoopGroup;
+    final GlobalTrafficShapingHandler replicationTrafficShaping;
+    // the replication listener, null when it is disabled or not bound yet
+    volatile Channel replicationListenChannel;
     RequestProcessor requestProcessor;
     final AtomicBoolean isRunning = new AtomicBoolean(false);
     final AtomicBoolean isClosed = new AtomicBoolean(false);
@@ -124,6 +130,18 @@ class BookieNettyServer {
             this.eventLoopGroup = null;
         }
 
+        if (!conf.isDisableServerSocketBind() && conf.getReplicationServerPort() > 0) {
+            this.replicationEventLoopGroup = EventLoopUtil.getReplicationEventLoopGroup(conf,
+                    new DefaultThreadFactory("bookie-replication-io"));
+            long maxBandwidth = conf.getReplicationMaxBandwidthBytesPerSec();
+            this.replicationTrafficShaping = maxBandwidth > 0
+                    ? new GlobalTrafficShapingHandler(replicationEventLoopGroup, maxBandwidth, maxBandwidth)
+                    : null;
+        } else {
+            this.replicationEventLoopGroup = null;
+            this.replicationTrafficShaping = null;
+        }
+
         if (conf.isEnableLocalTransport()) {
             jvmEventLoopGroup = new DefaultEventLoopGroup(conf.getServerNumIOThreads()) {
                 @Override
@@ -296,58 +314,77 @@ class BookieNettyServer {
         }
     }
 
-    private void listenOn(InetSocketAddress address, BookieSocketAddress bookieAddress) throws InterruptedException {
-        if (!conf.isDisableServerSocketBind()) {
-            ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.option(ChannelOption.ALLOCATOR, allocator);
-            bootstrap.childOption(ChannelOption.ALLOCATOR, allocator);
-            bootstrap.group(eventLoopGroup, eventLoopGroup);
-            bootstrap.childOption(ChannelOption.TCP_NODELAY, conf.getServerTcpNoDelay());
-            bootstrap.childOption(ChannelOption.SO_LINGER, conf.getServerSockLinger());
-            bootstrap.childOption(ChannelOption.RCVBUF_ALLOCATOR,
-                    new AdaptiveRecvByteBufAllocator(conf.getRecvByteBufAllocatorSizeMin(),
-                            conf.getRecvByteBufAllocatorSizeInitial(), conf.getRecvByteBufAllocatorSizeMax()));
-            bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
-                    conf.getServerWriteBufferLowWaterMark(), conf.getServerWriteBufferHighWaterMark()));
+    /**
+     * Check whether the channel was accepted by the replication listener.
+     */
+    static boolean isReplicationChannel(Channel channel) {
+        return channel.hasAttr(REPLICATION_CHANNEL) && channel.attr(REPLICATION_CHANNEL).get();
+    }
 
-            if (eventLoopGroup instanceof EpollEventLoopGroup) {
-                bootstrap.channel(EpollServerSocketChannel.class);
-            } else {
-                bootstrap.channel(NioServerSocketChannel.class);
-            }
+    private ServerBootstrap newServerBootstrap(EventLoopGroup group, boolean replication) {
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.option(ChannelOption.ALLOCATOR, allocator);
+        bootstrap.childOption(ChannelOption.ALLOCATOR, allocator);
+        bootstrap.group(group, group);
+        bootstrap.childOption(ChannelOption.TCP_NODELAY, conf.getServerTcpNoDelay());
+        bootstrap.childOption(ChannelOption.SO_LINGER, conf.getServerSockLinger());
+        bootstrap.childOption(ChannelOption.RCVBUF_ALLOCATOR,
+                new AdaptiveRecvByteBufAllocator(conf.getRecvByteBufAllocatorSizeMin(),
+                        conf.getRecvByteBufAllocatorSizeInitial(), conf.getRecvByteBufAllocatorSizeMax()));
+        bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                conf.getServerWriteBufferLowWaterMark(), conf.getServerWriteBufferHighWaterMark()));
+
+        bootstrap.channel(EventLoopUtil.getServerSocketChannelClass(group));
+
+        bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) throws Exception {
+                synchronized (suspensionLock) {
+                    while (suspended) {
+                        suspensionLock.wait();
+                    }
+                }
 
-            bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
-                @Override
-                protected void initChannel(SocketChannel ch) throws Exception {
-                    synchronized (suspensionLock) {
-                        while (suspended) {
-                            suspensionLock.wait();
-                        }
+                BookieSideConnectionPeerContextHandler contextHandler =
+                    new BookieSideConnectionPeerContextHandler();
+                ChannelPipeline pipeline = ch.pipeline();
+
+                if (replication) {
+                    ch.attr(REPLICATION_CHANNEL).set(true);
+                    if (replicationTrafficShaping != null) {
+                        pipeline.addLast("trafficShaping", replicationTrafficShaping);
                     }
+                }
 
-                    BookieSideConnectionPeerContextHandler contextHandler =
-                        new BookieSideConnectionPeerContextHandler();
-                    ChannelPipeline pipeline = ch.pipeline();
+                // For ByteBufList, skip the usual LengthFieldPrepender and have the encoder itself to add it
+                pipeline.addLast("bytebufList", ByteBufList.ENCODER_WITH_SIZE);
 
-                    // For ByteBufList, skip the usual LengthFieldPrepender and have the encoder itself to add it
-                    pipeline.addLast("bytebufList", ByteBufList.ENCODER_WITH_SIZE);
+                pipeline.addLast("lengthbaseddecoder", new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4));
+                pipeline.addLast("lengthprepender", new LengthFieldPrepender(4));
 
-                    pipeline.addLast("lengthbaseddecoder", new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4));
-                    pipeline.addLast("lengthprepender", new LengthFieldPrepender(4));
+                pipeline.addLast("bookieProtoDecoder", new BookieProtoEncoding.RequestDecoder(registry));
+                pipeline.addLast("bookieProtoEncoder", new BookieProtoEncoding.ResponseEncoder(registry));
+                pipeline.addLast("bookieAuthHandler", new AuthHandler.ServerSideHandler(
+                            contextHandler.getConnectionPeer(), authProviderFactory));
+                if (conf.getServerFlushConsolidationMaxFlushes() > 0) {
+                    pipeline.addLast(PriorityAwareFlushConsolidationHandler.NAME,
+                            new PriorityAwareFlushConsolidationHandler(conf.getServerFlushConsolidationMaxFlushes()));
+                }
 
-                    pipeline.addLast("bookieProtoDecoder", new BookieProtoEncoding.RequestDecoder(registry));
-                    pipeline.addLast("bookieProtoEncoder", new BookieProtoEncoding.ResponseEncoder(registry));
-                    pipeline.addLast("bookieAuthHandler", new AuthHandler.ServerSideHandler(
-                                contextHandler.getConnectionPeer(), authProviderFactory));
+                ChannelInboundHandler requestHandler = isRunning.get()
+                        ? new BookieRequestHandler(conf, requestProcessor, allChannels)
+                        : new RejectRequestHandler();
+                pipeline.addLast("bookieRequestHandler", requestHandler);
 
-                    ChannelInboundHandler requestHandler = isRunning.get()
-                            ? new BookieRequestHandler(conf, requestProcessor, allChannels)
-                            : new RejectRequestHandler();
-                    pipeline.addLast("bookieRequestHandler", requestHandler);
+                pipeline.addLast("contextHandler", contextHandler);
+            }
+        });
+        return bootstrap;
+    }
 
-                    pipeline.addLast("contextHandler", contextHandler);
-                }
-            });
+    private void listenOn(InetSocketAddress address, BookieSocketAddress bookieAddress) throws InterruptedException {
+        if (!conf.isDisableServerSocketBind()) {
+            ServerBootstrap bootstrap = newServerBootstrap(eventLoopGroup, false);
 
             // Bind and start to accept incoming connections
             LOG.info("Binding bookie-rpc endpoint to {}", address);
@@ -361,6 +398,13 @@ class BookieNettyServer {
                 }
             }
 
+            if (replicationEventLoopGroup != null) {
+                LOG.info("Binding bookie-replication endpoint to {}:{}", address.getAddress(),
+                        conf.getReplicationServerPort());
+                replicationListenChannel = newServerBootstrap(replicationEventLoopGroup, true)
+                        .bind(address.getAddress(), conf.getReplicationServerPort()).sync().channel();
+            }
+
         }
 
         if (conf.isEnableLocalTransport()) {
@@ -378,10 +422,8 @@ class BookieNettyServer {
 
             if (jvmEventLoopGroup instanceof DefaultEventLoopGroup) {
                 jvmBootstrap.channel(LocalServerChannel.class);
-            } else if (jvmEventLoopGroup instanceof EpollEventLoopGroup) {
-                jvmBootstrap.channel(EpollServerSocketChannel.class);
             } else {
-                jvmBootstrap.channel(NioServerSocketChannel.class);
+                jvmBootstrap.channel(EventLoopUtil.getServerSocketChannelClass(jvmEventLoopGroup));
             }
 
             jvmBootstrap.childHandler(new ChannelInitializer<LocalChannel>() {
@@ -433,6 +475,10 @@ class BookieNettyServer {
             return;
         }
 
+        // stop accepting the replication connections before closing the ones accepted already
+        if (replicationListenChannel != null) {
+            replicationListenChannel.close().awaitUninterruptibly();
+        }
         allChannels.close().awaitUninterruptibly();
 
         if (eventLoopGroup != null) {
@@ -443,6 +489,17 @@ class BookieNettyServer {
                 /// OK
             }
         }
+        if (replicationEventLoopGroup != null) {
+            if (replicationTrafficShaping != null) {
+                replicationTrafficShaping.release();
+            }
+            try {
+                replicationEventLoopGroup.shutdownGracefully(0, 10, TimeUnit.MILLISECONDS).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                /// OK
+            }
+        }
         if (jvmEventLoopGroup != null) {
             LocalBookiesRegistry.unregisterLocalBookieAddress(bookieAddress.toBookieId());
             jvmEventLoopGroup.shutdownGracefully();
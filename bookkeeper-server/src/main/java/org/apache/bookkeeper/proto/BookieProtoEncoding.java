@@ -20,10 +20,13 @@
  */
 package org.apache.bookkeeper.proto;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.ExtensionRegistry;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
+import com.google.protobuf.WireFormat;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -42,6 +45,7 @@ import java.security.NoSuchAlgorithmException;
 
 import org.apache.bookkeeper.proto.BookieProtocol.PacketHeader;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
 import org.apache.bookkeeper.proto.checksum.MacDigestManager;
 import org.apache.bookkeeper.util.ByteBufList;
@@ -54,6 +58,9 @@ import org.slf4j.LoggerFactory;
 public class BookieProtoEncoding {
     private static final Logger LOG = LoggerFactory.getLogger(BookieProtoEncoding.class);
 
+    // Below this size, copying the entry body costs less than writing it as a separate buffer
+    private static final int ZERO_COPY_MIN_BODY_SIZE = 1024;
+
     /**
      * An encoder/decoder interface for the Bookkeeper protocol.
      */
@@ -319,7 +326,7 @@ public class BookieProtoEncoding {
 
         @Override
         public Object decode(ByteBuf packet) throws Exception {
-            return BookkeeperProtocol.Request.parseFrom(new ByteBufInputStream(packet), extensionRegistry);
+            return BookkeeperProtocol.Request.parseFrom(newCodedInputStream(packet), extensionRegistry);
         }
 
         @Override
@@ -342,18 +349,138 @@ public class BookieProtoEncoding {
 
         @Override
         public Object decode(ByteBuf packet) throws Exception {
-            return BookkeeperProtocol.Response.parseFrom(new ByteBufInputStream(packet),
+            return BookkeeperProtocol.Response.parseFrom(newCodedInputStream(packet),
                                                          extensionRegistry);
         }
 
         @Override
         public Object encode(Object msg, ByteBufAllocator allocator) throws Exception {
             BookkeeperProtocol.Response response = (BookkeeperProtocol.Response) msg;
+            if (isZeroCopyReadResponse(response)) {
+                return serializeReadResponse(response, allocator);
+            }
             return serializeProtobuf(response, allocator);
         }
 
     }
 
+    /**
+     * Parse the packet directly from its memory, rather than through an InputStream, which would copy
+     * the packet in chunks into an intermediate buffer before parsing it.
+     */
+    private static CodedInputStream newCodedInputStream(ByteBuf packet) {
+        if (packet.nioBufferCount() == 1) {
+            // the parser doesn't alias the bytes fields to the packet, which is released after decoding
+            return CodedInputStream.newInstance(packet.nioBuffer());
+        } else {
+            return CodedInputStream.newInstance(new ByteBufInputStream(packet));
+        }
+    }
+
+    /**
+     * Whether to serialize a read response around its entry body, instead of copying it.
+     *
+     * <p>Only the responses made of the header, the status and a read response with a body of at least
+     * {@link #ZERO_COPY_MIN_BODY_SIZE} bytes qualify, which is checked by adding up the sizes of these
+     * fields, so that {@link #serializeReadResponse} writes exactly what the generated code would.
+     */
+    private static boolean isZeroCopyReadResponse(BookkeeperProtocol.Response response) {
+        if (!response.hasReadResponse()) {
+            return false;
+        }
+        ReadResponse readResponse = response.getReadResponse();
+        if (!readResponse.hasBody() || readResponse.getBody().size() < ZERO_COPY_MIN_BODY_SIZE) {
+            return false;
+        }
+        int readResponseSize = readResponse.getSerializedSize();
+        return readResponseSize == readResponseFieldsSize(readResponse) + readResponse.getBody().size()
+                + readResponseSuffixSize(readResponse)
+            && response.getSerializedSize() == responsePrefixSize(response)
+                + CodedOutputStream.computeUInt32SizeNoTag(readResponseSize) + readResponseSize;
+    }
+
+    /**
+     * Serialize a read response as a list of buffers, made of the fields before the entry body, the
+     * entry body, which isn't copied, and the fields after it.
+     */
+    private static ByteBufList serializeReadResponse(BookkeeperProtocol.Response response,
+                                                     ByteBufAllocator allocator) {
+        ReadResponse readResponse = response.getReadResponse();
+        ByteString body = readResponse.getBody();
+
+        int prefixSize = responsePrefixSize(response)
+                + CodedOutputStream.computeUInt32SizeNoTag(readResponse.getSerializedSize())
+                + readResponseFieldsSize(readResponse);
+        ByteBuf prefix = allocator.directBuffer(prefixSize, prefixSize);
+        int suffixSize = readResponseSuffixSize(readResponse);
+        ByteBuf suffix = suffixSize > 0 ? allocator.directBuffer(suffixSize, suffixSize) : null;
+        try {
+            CodedOutputStream out = CodedOutputStream.newInstance(prefix.nioBuffer(prefix.readerIndex(), prefixSize));
+            out.writeMessage(Response.HEADER_FIELD_NUMBER, response.getHeader());
+            out.writeEnum(Response.STATUS_FIELD_NUMBER, response.getStatus().getNumber());
+            out.writeTag(Response.READRESPONSE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(readResponse.getSerializedSize());
+            out.writeEnum(ReadResponse.STATUS_FIELD_NUMBER, readResponse.getStatus().getNumber());
+            out.writeInt64(ReadResponse.LEDGERID_FIELD_NUMBER, readResponse.getLedgerId());
+            out.writeInt64(ReadResponse.ENTRYID_FIELD_NUMBER, readResponse.getEntryId());
+            out.writeTag(ReadResponse.BODY_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(body.size());
+            out.checkNoSpaceLeft();
+            prefix.writerIndex(prefix.capacity());
+
+            if (suffix != null) {
+                out = CodedOutputStream.newInstance(suffix.nioBuffer(suffix.readerIndex(), suffixSize));
+                if (readResponse.hasMaxLAC()) {
+                    out.writeInt64(ReadResponse.MAXLAC_FIELD_NUMBER, readResponse.getMaxLAC());
+                }
+                if (readResponse.hasLacUpdateTimestamp()) {
+                    out.writeInt64(ReadResponse.LACUPDATETIMESTAMP_FIELD_NUMBER,
+                            readResponse.getLacUpdateTimestamp());
+                }
+                out.checkNoSpaceLeft();
+                suffix.writerIndex(suffix.capacity());
+            }
+        } catch (IOException e) {
+            // This is in-memory serialization, should not fail
+            prefix.release();
+            ReferenceCountUtil.release(suffix);
+            throw new RuntimeException(e);
+        }
+
+        ByteBufList serialized = ByteBufList.get(prefix, Unpooled.wrappedBuffer(body.asReadOnlyByteBuffer()));
+        if (suffix != null) {
+            serialized.add(suffix);
+        }
+        return serialized;
+    }
+
+    private static int responsePrefixSize(BookkeeperProtocol.Response response) {
+        return CodedOutputStream.computeMessageSize(Response.HEADER_FIELD_NUMBER, response.getHeader())
+            + CodedOutputStream.computeEnumSize(Response.STATUS_FIELD_NUMBER, response.getStatus().getNumber())
+            + CodedOutputStream.computeTagSize(Response.READRESPONSE_FIELD_NUMBER);
+    }
+
+    private static int readResponseFieldsSize(ReadResponse readResponse) {
+        return CodedOutputStream.computeEnumSize(ReadResponse.STATUS_FIELD_NUMBER,
+                    readResponse.getStatus().getNumber())
+            + CodedOutputStream.computeInt64Size(ReadResponse.LEDGERID_FIELD_NUMBER, readResponse.getLedgerId())
+            + CodedOutputStream.computeInt64Size(ReadResponse.ENTRYID_FIELD_NUMBER, readResponse.getEntryId())
+            + CodedOutputStream.computeTagSize(ReadResponse.BODY_FIELD_NUMBER)
+            + CodedOutputStream.computeUInt32SizeNoTag(readResponse.getBody().size());
+    }
+
+    private static int readResponseSuffixSize(ReadResponse readResponse) {
+        int size = 0;
+        if (readResponse.hasMaxLAC()) {
+            size += CodedOutputStream.computeInt64Size(ReadResponse.MAXLAC_FIELD_NUMBER, readResponse.getMaxLAC());
+        }
+        if (readResponse.hasLacUpdateTimestamp()) {
+            size += CodedOutputStream.computeInt64Size(ReadResponse.LACUPDATETIMESTAMP_FIELD_NUMBER,
+                    readResponse.getLacUpdateTimestamp());
+        }
+        return size;
+    }
+
     private static ByteBuf serializeProtobuf(MessageLite msg, ByteBufAllocator allocator) {
         int size = msg.getSerializedSize();
         // Protobuf serialization is the last step of the netty pipeline. We used to allocate
@@ -397,6 +397,8 @@ public interface BookieProtocol {
         int errorCode;
         long ledgerId;
         long entryId;
+        // not serialized, the flushes of the responses to high priority requests aren't delayed
+        boolean highPriority;
 
         protected void init(byte protocolVersion, byte opCode,
                            int errorCode, long ledgerId, long entryId) {
@@ -405,6 +407,7 @@ public interface BookieProtocol {
             this.errorCode = errorCode;
             this.ledgerId = ledgerId;
             this.entryId = entryId;
+            this.highPriority = false;
         }
 
         byte getProtocolVersion() {
@@ -427,6 +430,10 @@ public interface BookieProtocol {
             return errorCode;
         }
 
+        boolean isHighPriority() {
+            return highPriority;
+        }
+
         @Override
         public String toString() {
             return String.format("Op(%d)[Ledger:%d,Entry:%d,errorCode=%d]",
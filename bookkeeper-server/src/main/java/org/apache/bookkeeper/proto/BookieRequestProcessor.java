@@ -39,7 +39,6 @@ import io.netty.util.concurrent.GenericFutureListener;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -49,8 +48,8 @@ import lombok.Getter;
 import org.apache.bookkeeper.auth.AuthProviderFactoryFactory;
 import org.apache.bookkeeper.auth.AuthToken;
 import org.apache.bookkeeper.bookie.Bookie;
-import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.SafeRunnable;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.processor.RequestProcessor;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -87,6 +86,11 @@ public class BookieRequestProcessor implements RequestProcessor {
      */
     private final OrderedExecutor readThreadPool;
 
+    /**
+     * The scheduler of the read requests, when they are scheduled fairly across ledgers.
+     */
+    private final FairReadScheduler fairReadScheduler;
+
     /**
      * The threadpool used to execute all add entry requests issued to this server.
      */
@@ -102,12 +106,18 @@ public class BookieRequestProcessor implements RequestProcessor {
      * after they are done waiting.
      */
     private final OrderedExecutor longPollThreadPool;
+    private final LongPollReadBatcher longPollReadBatcher = new LongPollReadBatcher();
 
     /**
      * The threadpool used to execute high priority requests.
      */
     private final OrderedExecutor highPriorityThreadPool;
 
+    /**
+     * The threadpool used to execute the requests received on the replication listener.
+     */
+    private final OrderedExecutor replicationThreadPool;
+
     /**
      * The Timer used to time out requests for long polling.
      */
@@ -119,8 +129,9 @@ public class BookieRequestProcessor implements RequestProcessor {
 
     private final RequestStats requestStats;
 
-    final Semaphore addsSemaphore;
-    final Semaphore readsSemaphore;
+    // limit the requests in progress without blocking the event loops, null when unlimited
+    final RequestAdmissionController addsAdmission;
+    final RequestAdmissionController readsAdmission;
 
     // to temporary blacklist channels
     final Optional<Cache<Channel, Boolean>> blacklistedChannels;
@@ -143,6 +154,16 @@ public class BookieRequestProcessor implements RequestProcessor {
                 "BookieReadThreadPool",
                 serverCfg.getMaxPendingReadRequestPerThread(),
                 statsLogger);
+        if (serverCfg.isReadFairSchedulingEnabled() && readThreadPool != null) {
+            // the turns of the ledgers are executed by the read threads
+            int maxPendingPerThread = serverCfg.getMaxPendingReadRequestPerThread();
+            this.fairReadScheduler = new FairReadScheduler(
+                    readThreadPool,
+                    serverCfg.getReadFairSchedulingQuantum(),
+                    maxPendingPerThread > 0 ? maxPendingPerThread * serverCfg.getNumReadWorkerThreads() : 0);
+        } else {
+            this.fairReadScheduler = null;
+        }
         this.writeThreadPool = createExecutor(
                 this.serverCfg.getNumAddWorkerThreads(),
                 "BookieWriteThreadPool",
@@ -164,6 +185,12 @@ public class BookieRequestProcessor implements RequestProcessor {
                 this.serverCfg.getNumHighPriorityWorkerThreads(),
                 "BookieHighPriorityThread",
                 OrderedExecutor.NO_TASK_LIMIT, statsLogger);
+        this.replicationThreadPool = serverCfg.getReplicationServerPort() > 0
+                ? createExecutor(
+                        this.serverCfg.getNumReplicationWorkerThreads(),
+                        "BookieReplicationThread",
+                        OrderedExecutor.NO_TASK_LIMIT, statsLogger)
+                : null;
         this.shFactory = shFactory;
         if (shFactory != null) {
             shFactory.init(NodeType.Server, serverCfg, allocator);
@@ -198,57 +225,63 @@ public class BookieRequestProcessor implements RequestProcessor {
         this.requestStats = new RequestStats(statsLogger);
 
         int maxAdds = serverCfg.getMaxAddsInProgressLimit();
-        addsSemaphore = maxAdds > 0 ? new Semaphore(maxAdds, true) : null;
+        int maxAddsPerChannel = serverCfg.getMaxAddsInProgressPerChannelLimit();
+        addsAdmission = maxAdds > 0 || maxAddsPerChannel > 0
+                ? new RequestAdmissionController("add", maxAdds, maxAddsPerChannel,
+                        requestStats::blockAddRequest, requestStats::unblockAddRequest)
+                : null;
 
         int maxReads = serverCfg.getMaxReadsInProgressLimit();
-        readsSemaphore = maxReads > 0 ? new Semaphore(maxReads, true) : null;
-    }
-
-    protected void onAddRequestStart(Channel channel) {
-        if (addsSemaphore != null) {
-            if (!addsSemaphore.tryAcquire()) {
-                final long throttlingStartTimeNanos = MathUtils.nowInNano();
-                channel.config().setAutoRead(false);
-                LOG.info("Too many add requests in progress, disabling autoread on channel {}", channel);
-                requestStats.blockAddRequest();
-                addsSemaphore.acquireUninterruptibly();
-                channel.config().setAutoRead(true);
-                final long delayNanos = MathUtils.elapsedNanos(throttlingStartTimeNanos);
-                LOG.info("Re-enabled autoread on channel {} after AddRequest delay of {} nanos", channel, delayNanos);
-                requestStats.unblockAddRequest(delayNanos);
-            }
+        int maxReadsPerChannel = serverCfg.getMaxReadsInProgressPerChannelLimit();
+        readsAdmission = maxReads > 0 || maxReadsPerChannel > 0
+                ? new RequestAdmissionController("read", maxReads, maxReadsPerChannel,
+                        requestStats::blockReadRequest, requestStats::unblockReadRequest)
+                : null;
+    }
+
+    /**
+     * Start an add request once the limits of adds in progress, on the bookie and on the channel, allow
+     * it. The request may be started later, from the event loop of the channel.
+     */
+    protected void onAddRequestStart(Channel channel, Runnable request) {
+        if (addsAdmission != null) {
+            addsAdmission.admit(channel, () -> {
+                requestStats.trackAddRequest();
+                request.run();
+            });
+        } else {
+            requestStats.trackAddRequest();
+            request.run();
         }
-        requestStats.trackAddRequest();
     }
 
-    protected void onAddRequestFinish() {
+    protected void onAddRequestFinish(Channel channel) {
         requestStats.untrackAddRequest();
-        if (addsSemaphore != null) {
-            addsSemaphore.release();
-        }
-    }
-
-    protected void onReadRequestStart(Channel channel) {
-        if (readsSemaphore != null) {
-            if (!readsSemaphore.tryAcquire()) {
-                final long throttlingStartTimeNanos = MathUtils.nowInNano();
-                channel.config().setAutoRead(false);
-                LOG.info("Too many read requests in progress, disabling autoread on channel {}", channel);
-                requestStats.blockReadRequest();
-                readsSemaphore.acquireUninterruptibly();
-                channel.config().setAutoRead(true);
-                final long delayNanos = MathUtils.elapsedNanos(throttlingStartTimeNanos);
-                LOG.info("Re-enabled autoread on channel {} after ReadRequest delay of {} nanos", channel, delayNanos);
-                requestStats.unblockReadRequest(delayNanos);
-            }
+        if (addsAdmission != null) {
+            addsAdmission.release(channel);
         }
-        requestStats.trackReadRequest();
     }
 
-    protected void onReadRequestFinish() {
+    /**
+     * Start a read request once the limits of reads in progress, on the bookie and on the channel, allow
+     * it. The request may be started later, from the event loop of the channel.
+     */
+    protected void onReadRequestStart(Channel channel, Runnable request) {
+        if (readsAdmission != null) {
+            readsAdmission.admit(channel, () -> {
+                requestStats.trackReadRequest();
+                request.run();
+            });
+        } else {
+            requestStats.trackReadRequest();
+            request.run();
+        }
+    }
+
+    protected void onReadRequestFinish(Channel channel) {
         requestStats.untrackReadRequest();
-        if (readsSemaphore != null) {
-            readsSemaphore.release();
+        if (readsAdmission != null) {
+            readsAdmission.release(channel);
         }
     }
 
@@ -271,6 +304,7 @@ public class BookieRequestProcessor implements RequestProcessor {
             shutdownExecutor(longPollThreadPool);
         }
         shutdownExecutor(highPriorityThreadPool);
+        shutdownExecutor(replicationThreadPool);
         requestTimer.stop();
         LOG.info("Closed RequestProcessor");
     }
@@ -295,6 +329,25 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    /**
+     * Requests received on the replication listener are executed in their own thread pool, when there
+     * is one, so that they don't delay the requests of the regular clients.
+     */
+    private OrderedExecutor selectThreadPool(Channel c, OrderedExecutor threadPool) {
+        if (replicationThreadPool != null && BookieNettyServer.isReplicationChannel(c)) {
+            return replicationThreadPool;
+        }
+        return threadPool;
+    }
+
+    private void executeRegularRead(long ledgerId, SafeRunnable read) {
+        if (fairReadScheduler != null) {
+            fairReadScheduler.executeOrdered(ledgerId, read);
+        } else {
+            readThreadPool.executeOrdered(ledgerId, read);
+        }
+    }
+
     private void shutdownExecutor(OrderedExecutor service) {
         if (null != service) {
             service.shutdown();
@@ -337,9 +390,15 @@ public class BookieRequestProcessor implements RequestProcessor {
                     case WRITE_LAC:
                         processWriteLacRequestV3(r, c);
                         break;
+                    case WRITE_LAC_BATCH:
+                        processWriteLacBatchRequestV3(r, c);
+                        break;
                     case READ_LAC:
                         processReadLacRequestV3(r, c);
                         break;
+                    case READ_LAC_BATCH:
+                        processReadLacBatchRequestV3(r, c);
+                        break;
                     case GET_BOOKIE_INFO:
                         processGetBookieInfoRequestV3(r, c);
                         break;
@@ -406,6 +465,15 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processWriteLacBatchRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
+        WriteLacBatchProcessorV3 writeLacBatch = new WriteLacBatchProcessorV3(r, c, this);
+        if (null == writeThreadPool) {
+            writeLacBatch.run();
+        } else {
+            writeThreadPool.executeOrdered(r.getHeader().getTxnId(), writeLacBatch);
+        }
+    }
+
     private void processWriteLacRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         WriteLacProcessorV3 writeLac = new WriteLacProcessorV3(r, c, this);
         if (null == writeThreadPool) {
@@ -424,14 +492,27 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processReadLacBatchRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
+        ReadLacBatchProcessorV3 readLacBatch = new ReadLacBatchProcessorV3(r, c, this);
+        if (null == readThreadPool) {
+            readLacBatch.run();
+        } else {
+            readThreadPool.executeOrdered(r.getHeader().getTxnId(), readLacBatch);
+        }
+    }
+
     private void processAddRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         WriteEntryProcessorV3 write = new WriteEntryProcessorV3(r, c, this);
+        onAddRequestStart(c, () -> executeAddRequestV3(r, c, write));
+    }
 
+    private void executeAddRequestV3(final BookkeeperProtocol.Request r, final Channel c,
+                                     final WriteEntryProcessorV3 write) {
         final OrderedExecutor threadPool;
         if (RequestUtils.isHighPriority(r)) {
-            threadPool = highPriorityThreadPool;
+            threadPool = selectThreadPool(c, highPriorityThreadPool);
         } else {
-            threadPool = writeThreadPool;
+            threadPool = selectThreadPool(c, writeThreadPool);
         }
 
         if (null == threadPool) {
@@ -505,7 +586,7 @@ public class BookieRequestProcessor implements RequestProcessor {
             ExecutorService lpThread = longPollThreadPool.chooseThread(c);
 
             read = new LongPollReadEntryProcessorV3(r, c, this, fenceThread,
-                                                    lpThread, requestTimer);
+                                                    lpThread, longPollReadBatcher, requestTimer);
             threadPool = longPollThreadPool;
         } else {
             read = new ReadEntryProcessorV3(r, c, this, fenceThread);
@@ -513,20 +594,29 @@ public class BookieRequestProcessor implements RequestProcessor {
             // If it's a high priority read (fencing or as part of recovery process), we want to make sure it
             // gets executed as fast as possible, so bypass the normal readThreadPool
             // and execute in highPriorityThreadPool
-            boolean isHighPriority = RequestUtils.isHighPriority(r)
-                || hasFlag(r.getReadRequest(), BookkeeperProtocol.ReadRequest.Flag.FENCE_LEDGER);
-            if (isHighPriority) {
+            if (hasFlag(r.getReadRequest(), BookkeeperProtocol.ReadRequest.Flag.FENCE_LEDGER)) {
                 threadPool = highPriorityThreadPool;
+            } else if (RequestUtils.isHighPriority(r)) {
+                threadPool = selectThreadPool(c, highPriorityThreadPool);
             } else {
-                threadPool = readThreadPool;
+                threadPool = selectThreadPool(c, readThreadPool);
             }
         }
 
+        onReadRequestStart(c, () -> executeReadRequestV3(r, read, threadPool));
+    }
+
+    private void executeReadRequestV3(final BookkeeperProtocol.Request r, final ReadEntryProcessorV3 read,
+                                      final OrderedExecutor threadPool) {
         if (null == threadPool) {
             read.run();
         } else {
             try {
-                threadPool.executeOrdered(r.getReadRequest().getLedgerId(), read);
+                if (threadPool == readThreadPool && !RequestUtils.isLongPollReadRequest(r.getReadRequest())) {
+                    executeRegularRead(r.getReadRequest().getLedgerId(), read);
+                } else {
+                    threadPool.executeOrdered(r.getReadRequest().getLedgerId(), read);
+                }
             } catch (RejectedExecutionException e) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
@@ -625,9 +715,9 @@ public class BookieRequestProcessor implements RequestProcessor {
         // executed as fast as possible, so bypass the normal writeThreadPool and execute in highPriorityThreadPool
         final OrderedExecutor threadPool;
         if (r.isHighPriority()) {
-            threadPool = highPriorityThreadPool;
+            threadPool = selectThreadPool(c, highPriorityThreadPool);
         } else {
-            threadPool = writeThreadPool;
+            threadPool = selectThreadPool(c, writeThreadPool);
         }
 
         if (null == threadPool) {
@@ -659,17 +749,23 @@ public class BookieRequestProcessor implements RequestProcessor {
         // gets executed as fast as possible, so bypass the normal readThreadPool
         // and execute in highPriorityThreadPool
         final OrderedExecutor threadPool;
-        if (r.isHighPriority() || r.isFencing()) {
+        if (r.isFencing()) {
             threadPool = highPriorityThreadPool;
+        } else if (r.isHighPriority()) {
+            threadPool = selectThreadPool(c, highPriorityThreadPool);
         } else {
-            threadPool = readThreadPool;
+            threadPool = selectThreadPool(c, readThreadPool);
         }
 
         if (null == threadPool) {
             read.run();
         } else {
             try {
-                threadPool.executeOrdered(r.getLedgerId(), read);
+                if (threadPool == readThreadPool) {
+                    executeRegularRead(r.getLedgerId(), read);
+                } else {
+                    threadPool.executeOrdered(r.getLedgerId(), read);
+                }
             } catch (RejectedExecutionException e) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
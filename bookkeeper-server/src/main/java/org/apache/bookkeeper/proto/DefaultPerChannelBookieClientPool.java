@@ -22,6 +22,8 @@ package org.apache.bookkeeper.proto;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -38,16 +40,31 @@ import org.slf4j.LoggerFactory;
 /**
  *  Provide a simple round-robin style channel pool. We could improve it later to do more
  *  fantastic things.
+ *
+ *  <p>If the max number of channels per bookie is larger than the core size, the pool starts with
+ *  the core size channels, and periodically adds a channel while the channels in use are congested,
+ *  i.e. their write buffer is not writable or holds too many bytes, up to the max number of channels.
+ *  After some time without congestion, it stops using the last channel added, down to the core size,
+ *  and closes it once it stayed idle for a whole resize interval.
+ *  The key of a request still selects a single channel among the ones in use, so the requests of a
+ *  ledger keep being sent in order over the same channel, until the pool is resized.
  */
 class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
         GenericCallback<PerChannelBookieClient> {
 
     static final Logger LOG = LoggerFactory.getLogger(DefaultPerChannelBookieClientPool.class);
 
+    // a channel not writable for this fraction of the resize interval is congested
+    private static final double CONGESTED_UNWRITABLE_RATIO = 0.1;
+    // number of resize intervals without congestion before releasing a channel
+    private static final int SHRINK_AFTER_IDLE_INTERVALS = 10;
+
     final PerChannelBookieClientFactory factory;
     final BookieId address;
 
     final PerChannelBookieClient[] clients;
+    // with the v2 protocol, only the explicit LACs are sent over the channels enforcing the v3 protocol,
+    // which are small periodic requests, so these channels stay at the core size rather than being resized
     final PerChannelBookieClient[] clientsV3Enforced;
 
     final ClientConfiguration conf;
@@ -56,6 +73,19 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
     final AtomicInteger counter = new AtomicInteger(0);
     final AtomicLong errorCounter = new AtomicLong(0);
 
+    // number of channels in use, between the core size and clients.length
+    final int coreSize;
+    volatile int numActiveClients;
+    final long resizeIntervalNanos;
+    final long congestedPendingWriteBytes;
+    final AtomicLong nextResizeNanos;
+    // guarded by this
+    final long[] lastUnwritableTimeNanos;
+    // channels not in use anymore, waiting to stay idle for a resize interval before being closed
+    final boolean[] draining;
+    final long[] idleSinceNanos;
+    int numIdleIntervals = 0;
+
     DefaultPerChannelBookieClientPool(ClientConfiguration conf, PerChannelBookieClientFactory factory,
                                       BookieId address,
                                       int coreSize) throws SecurityException {
@@ -66,8 +96,10 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
 
         this.shFactory = SecurityProviderFactoryFactory.getSecurityProviderFactory(conf.getTLSProviderFactoryClass());
 
-        this.clients = new PerChannelBookieClient[coreSize];
-        for (int i = 0; i < coreSize; i++) {
+        // the channels above the core size connect when they are first used
+        int maxSize = Math.max(coreSize, conf.getMaxNumChannelsPerBookie());
+        this.clients = new PerChannelBookieClient[maxSize];
+        for (int i = 0; i < maxSize; i++) {
             this.clients[i] = factory.create(address, this, shFactory, false);
         }
 
@@ -79,6 +111,15 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
         } else {
             this.clientsV3Enforced = this.clients;
         }
+
+        this.coreSize = coreSize;
+        this.numActiveClients = coreSize;
+        this.resizeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(conf.getChannelPoolResizeIntervalMillis());
+        this.congestedPendingWriteBytes = conf.getClientWriteBufferLowWaterMark();
+        this.nextResizeNanos = new AtomicLong(MathUtils.nowInNano() + resizeIntervalNanos);
+        this.lastUnwritableTimeNanos = new long[maxSize];
+        this.draining = new boolean[maxSize];
+        this.idleSinceNanos = new long[maxSize];
     }
 
     @Override
@@ -88,8 +129,8 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
 
     @Override
     public void initialize() {
-        for (PerChannelBookieClient pcbc : this.clients) {
-            pcbc.connectIfNeededAndDoOp(this);
+        for (int i = 0; i < coreSize; i++) {
+            clients[i].connectIfNeededAndDoOp(this);
         }
     }
 
@@ -97,18 +138,74 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
         return getClient(key, false);
     }
 
-    private PerChannelBookieClient getClient(long key, PerChannelBookieClient[] pcbc) {
-        if (1 == pcbc.length) {
+    private PerChannelBookieClient getClient(long key, PerChannelBookieClient[] pcbc, int size) {
+        if (1 == size) {
             return pcbc[0];
         }
-        int idx = MathUtils.signSafeMod(key, pcbc.length);
+        int idx = MathUtils.signSafeMod(key, size);
         return pcbc[idx];
     }
     private PerChannelBookieClient getClient(long key, boolean forceUseV3) {
-        if (forceUseV3) {
-            return getClient(key, clientsV3Enforced);
+        if (clients.length > coreSize) {
+            maybeResize();
+        }
+        if (forceUseV3 && clients != clientsV3Enforced) {
+            return getClient(key, clientsV3Enforced, clientsV3Enforced.length);
+        }
+        return getClient(key, clients, numActiveClients);
+    }
+
+    private void maybeResize() {
+        long now = MathUtils.nowInNano();
+        long next = nextResizeNanos.get();
+        if (now - next >= 0 && nextResizeNanos.compareAndSet(next, now + resizeIntervalNanos)) {
+            resize(now, now - next + resizeIntervalNanos);
+        }
+    }
+
+    /**
+     * Adjust the number of channels in use to their congestion over the last interval.
+     */
+    @VisibleForTesting
+    synchronized void resize(long now, long intervalNanos) {
+        int numActive = numActiveClients;
+        boolean congested = false;
+        for (int i = 0; i < clients.length; i++) {
+            long unwritableTimeNanos = clients[i].getUnwritableTimeNanos();
+            long unwritableNanos = unwritableTimeNanos - lastUnwritableTimeNanos[i];
+            lastUnwritableTimeNanos[i] = unwritableTimeNanos;
+            if (i < numActive && (unwritableNanos > intervalNanos * CONGESTED_UNWRITABLE_RATIO
+                    || clients[i].getPendingWriteBytes() > congestedPendingWriteBytes)) {
+                congested = true;
+            }
+        }
+
+        if (congested) {
+            numIdleIntervals = 0;
+            if (numActive < clients.length) {
+                numActiveClients = numActive + 1;
+                LOG.info("Channels to bookie {} are congested, using {} channels", address, numActive + 1);
+            }
+        } else if (numActive > coreSize && ++numIdleIntervals >= SHRINK_AFTER_IDLE_INTERVALS) {
+            numIdleIntervals = 0;
+            numActiveClients = numActive - 1;
+            LOG.info("Channels to bookie {} are not congested anymore, using {} channels", address, numActive - 1);
+        }
+
+        // close the channels not in use anymore once they stayed idle for a whole interval, since the
+        // callers which picked them before the pool shrank may still be sending requests on them
+        for (int i = 0; i < clients.length; i++) {
+            PerChannelBookieClient client = clients[i];
+            if (i < numActiveClients || client.state != PerChannelBookieClient.ConnectionState.CONNECTED) {
+                draining[i] = false;
+            } else if (!draining[i] || client.getNumPendingCompletionRequests() > 0) {
+                draining[i] = true;
+                idleSinceNanos[i] = now;
+            } else if (now - idleSinceNanos[i] >= resizeIntervalNanos) {
+                draining[i] = false;
+                client.disconnect(false);
+            }
         }
-        return getClient(key, clients);
     }
 
     @Override
@@ -128,10 +225,12 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
 
     @Override
     public void checkTimeoutOnPendingOperations() {
-        for (int i = 0; i < clients.length; i++) {
-            clients[i].checkTimeoutOnPendingOperations();
-            if (clients != clientsV3Enforced) {
-                clientsV3Enforced[i].checkTimeoutOnPendingOperations();
+        for (PerChannelBookieClient pcbc : clients) {
+            pcbc.checkTimeoutOnPendingOperations();
+        }
+        if (clients != clientsV3Enforced) {
+            for (PerChannelBookieClient pcbc : clientsV3Enforced) {
+                pcbc.checkTimeoutOnPendingOperations();
             }
         }
     }
@@ -143,20 +242,24 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
 
     @Override
     public void disconnect(boolean wait) {
-        for (int i = 0; i < clients.length; i++) {
-            clients[i].disconnect();
-            if (clients != clientsV3Enforced) {
-                clientsV3Enforced[i].disconnect();
+        for (PerChannelBookieClient pcbc : clients) {
+            pcbc.disconnect();
+        }
+        if (clients != clientsV3Enforced) {
+            for (PerChannelBookieClient pcbc : clientsV3Enforced) {
+                pcbc.disconnect();
             }
         }
     }
 
     @Override
     public void close(boolean wait) {
-        for (int i = 0; i < clients.length; i++) {
-            clients[i].close(wait);
-            if (clients != clientsV3Enforced) {
-                clientsV3Enforced[i].close(wait);
+        for (PerChannelBookieClient pcbc : clients) {
+            pcbc.close(wait);
+        }
+        if (clients != clientsV3Enforced) {
+            for (PerChannelBookieClient pcbc : clientsV3Enforced) {
+                pcbc.close(wait);
             }
         }
     }
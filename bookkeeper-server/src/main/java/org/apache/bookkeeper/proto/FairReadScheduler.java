@@ -0,0 +1,193 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Execute read requests on the threads of an {@link OrderedExecutor}, taking turns across the ledgers
+ * having pending reads.
+ *
+ * <p>Each ledger has its own queue of requests. A ledger with pending requests is scheduled on any thread
+ * of the executor, rather than always on the thread its ledger id hashes to. In its turn, a ledger
+ * executes up to {@code quantum} requests and, if it has more of them, it is scheduled again behind the
+ * ledgers already waiting for their turn. A ledger with a large backlog of reads thus only gets its share
+ * of the threads, instead of delaying all the ledgers hashed to the same thread.
+ *
+ * <p>A ledger is scheduled at most once at a time, so its requests are still executed in order, one
+ * at a time.
+ */
+class FairReadScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FairReadScheduler.class);
+
+    private final OrderedExecutor executor;
+    private final int quantum;
+    private final int maxPendingRequests;
+
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+    private final ConcurrentHashMap<Long, LedgerQueue> ledgerQueues = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor executor running the turns of the ledgers, which the scheduler doesn't own
+     * @param quantum max number of requests of a ledger executed in one turn
+     * @param maxPendingRequests max number of requests waiting to be executed, or 0 for unlimited
+     */
+    FairReadScheduler(OrderedExecutor executor, int quantum, int maxPendingRequests) {
+        this.executor = executor;
+        this.quantum = Math.max(quantum, 1);
+        this.maxPendingRequests = maxPendingRequests;
+    }
+
+    /**
+     * Execute a read request after the pending requests of the same ledger.
+     *
+     * @throws RejectedExecutionException if there are too many pending requests, or if the executor
+     *         rejects the turn of the ledger
+     */
+    void executeOrdered(long ledgerId, Runnable request) {
+        int pending = pendingRequests.incrementAndGet();
+        if (maxPendingRequests > 0 && pending > maxPendingRequests) {
+            pendingRequests.decrementAndGet();
+            throw new RejectedExecutionException("Too many pending read requests");
+        }
+
+        Runnable task = executor.preserveMdc() ? new MdcPreservingRequest(request) : request;
+        try {
+            ledgerQueues.compute(ledgerId, (id, queue) -> {
+                if (queue == null) {
+                    queue = new LedgerQueue(id);
+                }
+                synchronized (queue) {
+                    queue.requests.add(task);
+                    if (!queue.scheduled) {
+                        // only a new queue isn't scheduled, so when the executor rejects its turn, the
+                        // exception leaves no queue behind
+                        executor.execute(queue);
+                        queue.scheduled = true;
+                    }
+                }
+                return queue;
+            });
+        } catch (RejectedExecutionException e) {
+            pendingRequests.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @VisibleForTesting
+    int getPendingRequests() {
+        return pendingRequests.get();
+    }
+
+    /**
+     * The pending requests of a ledger. It's also the task executing a turn of the ledger.
+     */
+    private class LedgerQueue implements Runnable {
+        final long ledgerId;
+        // guarded by this
+        final ArrayDeque<Runnable> requests = new ArrayDeque<>();
+        boolean scheduled = false;
+
+        LedgerQueue(long ledgerId) {
+            this.ledgerId = ledgerId;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                runTurn();
+
+                // drop the queue if it's empty, else schedule its next turn behind the other ledgers
+                LedgerQueue next = ledgerQueues.computeIfPresent(ledgerId, (id, queue) -> {
+                    synchronized (queue) {
+                        if (queue.requests.isEmpty()) {
+                            queue.scheduled = false;
+                            return null;
+                        }
+                        return queue;
+                    }
+                });
+                if (next == null) {
+                    return;
+                }
+                try {
+                    executor.execute(next);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // the executor is full or shutting down, the requests already accepted are executed anyway
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Executing the next turn of ledger {} in place: {}", ledgerId, e.getMessage());
+                    }
+                }
+            }
+        }
+
+        private void runTurn() {
+            for (int i = 0; i < quantum; i++) {
+                Runnable request;
+                synchronized (this) {
+                    request = requests.poll();
+                }
+                if (request == null) {
+                    break;
+                }
+                pendingRequests.decrementAndGet();
+                try {
+                    request.run();
+                } catch (Throwable t) {
+                    LOG.error("Error while executing read request of ledger {}", ledgerId, t);
+                }
+            }
+        }
+    }
+
+    private static class MdcPreservingRequest implements Runnable {
+        private final Runnable request;
+        private final Map<String, String> mdcContextMap;
+
+        MdcPreservingRequest(Runnable request) {
+            this.request = request;
+            this.mdcContextMap = MDC.getCopyOfContextMap();
+        }
+
+        @Override
+        public void run() {
+            if (mdcContextMap != null) {
+                MDC.setContextMap(mdcContextMap);
+            }
+            try {
+                request.run();
+            } finally {
+                MDC.clear();
+            }
+        }
+    }
+}
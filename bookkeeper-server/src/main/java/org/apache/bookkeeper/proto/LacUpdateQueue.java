@@ -0,0 +1,82 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacRequest;
+
+/**
+ * The explicit LACs queued for a bookie, to be piggybacked on the next adds sent to the bookie, or else sent in
+ * a batch. A ledger keeps only its highest LAC queued.
+ */
+class LacUpdateQueue {
+
+    private final ConcurrentHashMap<Long, WriteLacRequest> updates = new ConcurrentHashMap<>();
+
+    void add(WriteLacRequest update) {
+        updates.merge(update.getLedgerId(), update,
+                (current, next) -> next.getLac() > current.getLac() ? next : current);
+    }
+
+    boolean isEmpty() {
+        return updates.isEmpty();
+    }
+
+    /**
+     * Remove up to {@code max} LACs from the queue.
+     *
+     * @return the LACs removed
+     */
+    List<WriteLacRequest> drain(int max) {
+        if (updates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<WriteLacRequest> drained = new ArrayList<>(Math.min(updates.size(), max));
+        for (WriteLacRequest update : updates.values()) {
+            if (drained.size() >= max) {
+                break;
+            }
+            // a higher LAC queued concurrently stays in the queue
+            if (updates.remove(update.getLedgerId(), update)) {
+                drained.add(update);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Wrap the callback of an add carrying LACs drained from the queue, to queue them again if the add fails.
+     * They would be lost otherwise, while a LAC queued since then for the same ledger is kept if higher.
+     */
+    WriteCallback requeueOnFailure(List<WriteLacRequest> drained, WriteCallback cb) {
+        return (rc, ledgerId, entryId, addr, ctx) -> {
+            if (BKException.Code.OK != rc) {
+                drained.forEach(this::add);
+            }
+            cb.writeComplete(rc, ledgerId, entryId, addr, ctx);
+        };
+    }
+}
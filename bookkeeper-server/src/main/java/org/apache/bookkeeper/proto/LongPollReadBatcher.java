@@ -0,0 +1,149 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Execute the long poll reads woken up by LAC updates in batches, one batch per long poll thread.
+ *
+ * <p>A LAC update notifies all the long poll reads waiting on the ledger at once. Rather than
+ * submitting a task per read, the reads are queued to the batch of their thread, which is submitted
+ * once and executes all the reads queued in the meantime. Within a batch, the reads of the same
+ * entry share a single read from the ledger storage, and the responses are flushed once per channel,
+ * after all the reads of the batch.
+ */
+class LongPollReadBatcher {
+
+    private final ConcurrentHashMap<ExecutorService, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * Execute a long poll read in the next batch of its thread.
+     *
+     * @throws RejectedExecutionException if the thread is shut down
+     */
+    void execute(ExecutorService thread, LongPollReadEntryProcessorV3 read) {
+        batches.computeIfAbsent(thread, Batch::new).add(read);
+    }
+
+    /**
+     * The long poll reads queued to a thread. Its state, besides the queue, is only accessed by the thread.
+     */
+    static class Batch implements Runnable {
+        private final ExecutorService thread;
+        private final Queue<LongPollReadEntryProcessorV3> reads = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        // entries read by the batch, by ledger and entry id
+        private final Map<Long, Map<Long, ByteBuf>> entries = new HashMap<>();
+        private final Set<Channel> channelsToFlush = new LinkedHashSet<>();
+
+        Batch(ExecutorService thread) {
+            this.thread = thread;
+        }
+
+        void add(LongPollReadEntryProcessorV3 read) {
+            reads.add(read);
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    thread.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    reads.clear();
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            // the reads queued from now on are executed by the next batch
+            scheduled.set(false);
+            try {
+                LongPollReadEntryProcessorV3 read;
+                while ((read = reads.poll()) != null) {
+                    read.runInBatch(this);
+                }
+            } finally {
+                for (Channel channel : channelsToFlush) {
+                    channel.flush();
+                }
+                channelsToFlush.clear();
+
+                for (Map<Long, ByteBuf> ledgerEntries : entries.values()) {
+                    for (ByteBuf entry : ledgerEntries.values()) {
+                        entry.release();
+                    }
+                }
+                entries.clear();
+            }
+        }
+
+        /**
+         * Get an entry already read by the batch.
+         *
+         * @return the entry, to be released by the caller, or null if it was not read by the batch
+         */
+        ByteBuf getEntry(long ledgerId, long entryId) {
+            Map<Long, ByteBuf> ledgerEntries = entries.get(ledgerId);
+            ByteBuf entry = ledgerEntries != null ? ledgerEntries.get(entryId) : null;
+            return entry != null ? entry.retainedDuplicate() : null;
+        }
+
+        /**
+         * Keep an entry read by the batch for the other reads of the batch.
+         */
+        void putEntry(long ledgerId, long entryId, ByteBuf entry) {
+            ByteBuf previous = entries.computeIfAbsent(ledgerId, id -> new HashMap<>())
+                    .put(entryId, entry.retainedDuplicate());
+            if (previous != null) {
+                previous.release();
+            }
+        }
+
+        /**
+         * Write a response, to be flushed at the end of the batch.
+         */
+        ChannelFuture write(Channel channel, Object response) {
+            ChannelFuture future = channel.write(response);
+            if (channel.isWritable()) {
+                channelsToFlush.add(channel);
+            } else {
+                // don't hold more than the write buffer of the channel, the responses wait to be flushed
+                channelsToFlush.remove(channel);
+                channel.flush();
+            }
+            return future;
+        }
+    }
+}
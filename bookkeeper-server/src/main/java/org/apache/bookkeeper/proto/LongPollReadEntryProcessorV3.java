@@ -18,13 +18,14 @@
 package org.apache.bookkeeper.proto;
 
 import com.google.common.base.Stopwatch;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timeout;
 import java.io.IOException;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.bookie.Bookie;
@@ -49,24 +50,63 @@ class LongPollReadEntryProcessorV3 extends ReadEntryProcessorV3 implements Watch
 
     // long poll execution state
     private final ExecutorService longPollThreadPool;
+    private final LongPollReadBatcher longPollReadBatcher;
     private final HashedWheelTimer requestTimer;
     private Timeout expirationTimerTask = null;
-    private Future<?> deferredTask = null;
+    private boolean deferredReadScheduled = false;
     private boolean shouldReadEntry = false;
+    // batch executing the deferred read, only accessed by the long poll thread
+    private LongPollReadBatcher.Batch batch = null;
 
     LongPollReadEntryProcessorV3(Request request,
                                  Channel channel,
                                  BookieRequestProcessor requestProcessor,
                                  ExecutorService fenceThreadPool,
                                  ExecutorService longPollThreadPool,
+                                 LongPollReadBatcher longPollReadBatcher,
                                  HashedWheelTimer requestTimer) {
         super(request, channel, requestProcessor, fenceThreadPool);
         this.previousLAC = readRequest.getPreviousLAC();
         this.longPollThreadPool = longPollThreadPool;
+        this.longPollReadBatcher = longPollReadBatcher;
         this.requestTimer = requestTimer;
 
     }
 
+    /**
+     * Execute the deferred read, as part of a batch of long poll reads.
+     */
+    void runInBatch(LongPollReadBatcher.Batch batch) {
+        this.batch = batch;
+        try {
+            run();
+        } finally {
+            this.batch = null;
+        }
+    }
+
+    @Override
+    protected ByteBuf readEntryBody(long entryId) throws IOException, BookieException {
+        if (batch == null) {
+            return super.readEntryBody(entryId);
+        }
+        // the readers waiting on the same LAC read the same entry
+        ByteBuf entryBody = batch.getEntry(ledgerId, entryId);
+        if (entryBody == null) {
+            entryBody = super.readEntryBody(entryId);
+            batch.putEntry(ledgerId, entryId, entryBody);
+        }
+        return entryBody;
+    }
+
+    @Override
+    protected ChannelFuture writeResponse(Object response) {
+        if (batch == null) {
+            return super.writeResponse(response);
+        }
+        return batch.write(channel, response);
+    }
+
     @Override
     protected Long getPreviousLAC() {
         return previousLAC;
@@ -201,13 +241,14 @@ class LongPollReadEntryProcessorV3 extends ReadEntryProcessorV3 implements Watch
     }
 
     private synchronized void scheduleDeferredRead(boolean timeout) {
-        if (null == deferredTask) {
+        if (!deferredReadScheduled) {
             if (logger.isTraceEnabled()) {
                 logger.trace("Deferred Task, expired: {}, request: {}", timeout, request);
             }
             try {
                 shouldReadEntry = true;
-                deferredTask = longPollThreadPool.submit(this);
+                deferredReadScheduled = true;
+                longPollReadBatcher.execute(longPollThreadPool, this);
             } catch (RejectedExecutionException exc) {
                 // If the threadPool has been shutdown, simply drop the task
             }
@@ -20,9 +20,11 @@
  */
 package org.apache.bookkeeper.proto;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.util.ReferenceCountUtil;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
@@ -53,6 +55,15 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
     }
 
     protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger) {
+        sendResponse(code, response, statsLogger, null);
+    }
+
+    /**
+     * Send a response referencing the memory of a buffer, without copying it.
+     *
+     * @param responseBody buffer referenced by the response, released once the response is written or dropped
+     */
+    protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger, ByteBuf responseBody) {
         final long writeNanos = MathUtils.nowInNano();
 
         final long timeOut = requestProcessor.getWaitTimeoutOnBackpressureMillis();
@@ -82,15 +93,17 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
                 requestProcessor.getRequestStats().getChannelWriteStats()
                         .registerFailedEvent(MathUtils.elapsedNanos(writeNanos), TimeUnit.NANOSECONDS);
                 statsLogger.registerFailedEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
+                ReferenceCountUtil.release(responseBody);
                 return;
             } else {
                 requestProcessor.invalidateBlacklist(channel);
             }
         }
         if (channel.isActive()) {
-            channel.writeAndFlush(response).addListener(new ChannelFutureListener() {
+            writeResponse(response).addListener(new ChannelFutureListener() {
                 @Override
                 public void operationComplete(ChannelFuture future) throws Exception {
+                    ReferenceCountUtil.release(responseBody);
                     long writeElapsedNanos = MathUtils.elapsedNanos(writeNanos);
                     if (!future.isSuccess()) {
                         requestProcessor.getRequestStats().getChannelWriteStats()
@@ -109,16 +122,24 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
         } else {
             LOGGER.debug("Netty channel {} is inactive, "
                     + "hence bypassing netty channel writeAndFlush during sendResponse", channel);
+            ReferenceCountUtil.release(responseBody);
         }
     }
 
+    /**
+     * Write the response to the channel and flush it.
+     */
+    protected ChannelFuture writeResponse(Object response) {
+        return channel.writeAndFlush(response);
+    }
+
     protected boolean isVersionCompatible() {
         return this.request.getHeader().getVersion().equals(ProtocolVersion.VERSION_THREE);
     }
 
     /**
-     * Build a header with protocol version 3 and the operation type same as what was in the
-     * request.
+     * Build a header with protocol version 3 and the operation type, the txn id and the priority
+     * same as what was in the request.
      * @return
      */
     protected BKPacketHeader getHeader() {
@@ -126,6 +147,9 @@ public abstract class PacketProcessorBaseV3 extends SafeRunnable {
         header.setVersion(ProtocolVersion.VERSION_THREE);
         header.setOperation(request.getHeader().getOperation());
         header.setTxnId(request.getHeader().getTxnId());
+        if (request.getHeader().hasPriority()) {
+            header.setPriority(request.getHeader().getPriority());
+        }
         return header.build();
     }
 
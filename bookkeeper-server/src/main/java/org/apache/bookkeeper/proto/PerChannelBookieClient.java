@@ -36,18 +36,15 @@ import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultEventLoopGroup;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.WriteBufferWaterMark;
-import io.netty.channel.epoll.EpollChannelOption;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.local.LocalAddress;
 import io.netty.channel.local.LocalChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.channel.unix.Errors.NativeIoException;
 import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.DecoderException;
@@ -69,10 +66,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
@@ -80,7 +77,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.BiPredicate;
+import java.util.function.Predicate;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import lombok.SneakyThrows;
@@ -116,6 +113,7 @@ import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerRe
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacBatchRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadRequest;
@@ -123,6 +121,7 @@ import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacBatchRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacResponse;
 import org.apache.bookkeeper.stats.Counter;
@@ -135,11 +134,12 @@ import org.apache.bookkeeper.tls.SecurityHandlerFactory;
 import org.apache.bookkeeper.tls.SecurityHandlerFactory.NodeType;
 import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
 import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.util.EventLoopUtil;
 import org.apache.bookkeeper.util.MathUtils;
 import org.apache.bookkeeper.util.SafeRunnable;
 import org.apache.bookkeeper.util.StringUtils;
-import org.apache.bookkeeper.util.collections.ConcurrentOpenHashMap;
-import org.apache.bookkeeper.util.collections.SynchronizedHashMultiMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongPairMultiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -169,6 +169,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private static final int DEFAULT_HIGH_PRIORITY_VALUE = 100; // We may add finer grained priority later.
     private static final AtomicLong txnIdGenerator = new AtomicLong(0);
 
+    private static final long TIMEOUT_WHEEL_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int TIMEOUT_WHEEL_NUM_SLOTS = 1024;
+    private static final Predicate<CompletionValue> ANY_COMPLETION = completion -> true;
+
     final BookieId bookieId;
     final BookieAddressResolver bookieAddressResolver;
     final EventLoopGroup eventLoopGroup;
@@ -180,13 +184,22 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     final long getBookieInfoTimeoutNanos;
     final int startTLSTimeout;
 
-    private final ConcurrentOpenHashMap<CompletionKey, CompletionValue> completionObjects =
-            ConcurrentOpenHashMap.<CompletionKey, CompletionValue>newBuilder().build();
+    // In-flight V3 requests, by txnId
+    private final ConcurrentLongHashMap<CompletionValue> completionObjects =
+            ConcurrentLongHashMap.<CompletionValue>newBuilder().build();
+
+    // In-flight V2 requests, by ledgerId/entryId. There can be several requests in flight for the
+    // same ledgerId/entryId, for instance duplicated reads.
+    private final ConcurrentLongPairMultiMap<CompletionValue> v2AddCompletionObjects =
+            new ConcurrentLongPairMultiMap<>();
+    private final ConcurrentLongPairMultiMap<CompletionValue> v2ReadCompletionObjects =
+            new ConcurrentLongPairMultiMap<>();
+    private final ConcurrentLongPairMultiMap<CompletionValue> v2ReadLacCompletionObjects =
+            new ConcurrentLongPairMultiMap<>();
 
-    // Map that hold duplicated read requests. The idea is to only use this map (synchronized) when there is a duplicate
-    // read request for the same ledgerId/entryId
-    private final SynchronizedHashMultiMap<CompletionKey, CompletionValue> completionObjectsV2Conflicts =
-        new SynchronizedHashMultiMap<>();
+    // Deadlines of the in-flight requests
+    private final RequestTimeoutWheel timeoutWheel =
+            new RequestTimeoutWheel(TIMEOUT_WHEEL_TICK_NANOS, TIMEOUT_WHEEL_NUM_SLOTS, MathUtils.nowInNano());
 
     private final StatsLogger statsLogger;
     @StatsDoc(
@@ -342,6 +355,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private final ExtensionRegistry extRegistry;
     private final SecurityHandlerFactory shFactory;
     private volatile boolean isWritable = true;
+    // time spent with a non-writable channel, not counting the current period, if any
+    private final AtomicLong unwritableNanos = new AtomicLong(0);
+    private volatile long unwritableSinceNanos;
     private long lastBookieUnavailableLogTimestamp = 0;
 
     public PerChannelBookieClient(OrderedExecutor executor, EventLoopGroup eventLoopGroup,
@@ -520,7 +536,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     protected long getNumPendingCompletionRequests() {
-        return completionObjects.size();
+        return completionObjects.size() + v2AddCompletionObjects.size()
+                + v2ReadCompletionObjects.size() + v2ReadLacCompletionObjects.size();
     }
 
     protected ChannelFuture connect() {
@@ -540,18 +557,19 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         // Set up the ClientBootStrap so we can create a new Channel connection to the bookie.
         Bootstrap bootstrap = new Bootstrap();
         bootstrap.group(eventLoopGroup);
-        if (eventLoopGroup instanceof EpollEventLoopGroup) {
-            bootstrap.channel(EpollSocketChannel.class);
-            try {
-                // For Epoll channels, configure the TCP user timeout.
-                bootstrap.option(EpollChannelOption.TCP_USER_TIMEOUT, conf.getTcpUserTimeoutMillis());
-            } catch (NoSuchElementException e) {
-                // Property not set, so keeping default value.
-            }
-        } else if (eventLoopGroup instanceof DefaultEventLoopGroup) {
+        if (eventLoopGroup instanceof DefaultEventLoopGroup) {
             bootstrap.channel(LocalChannel.class);
         } else {
-            bootstrap.channel(NioSocketChannel.class);
+            bootstrap.channel(EventLoopUtil.getClientSocketChannelClass(eventLoopGroup));
+            ChannelOption<Integer> tcpUserTimeout = EventLoopUtil.getTcpUserTimeoutOption(eventLoopGroup);
+            if (tcpUserTimeout != null) {
+                try {
+                    // Configure the TCP user timeout, if the transport supports it.
+                    bootstrap.option(tcpUserTimeout, conf.getTcpUserTimeoutMillis());
+                } catch (NoSuchElementException e) {
+                    // Property not set, so keeping default value.
+                }
+            }
         }
 
         bootstrap.option(ChannelOption.ALLOCATOR, this.allocator);
@@ -592,6 +610,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     new BookieProtoEncoding.ResponseDecoder(extRegistry, useV2WireProtocol, shFactory != null));
                 pipeline.addLast("authHandler", new AuthHandler.ClientSideHandler(authProviderFactory, txnIdGenerator,
                             connectionPeer, useV2WireProtocol));
+                if (conf.getClientFlushConsolidationMaxFlushes() > 0) {
+                    pipeline.addLast(PriorityAwareFlushConsolidationHandler.NAME,
+                            new PriorityAwareFlushConsolidationHandler(conf.getClientFlushConsolidationMaxFlushes()));
+                }
                 pipeline.addLast("mainhandler", PerChannelBookieClient.this);
             }
         });
@@ -621,9 +643,39 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     public void setWritable(boolean val) {
+        if (isWritable != val) {
+            if (val) {
+                unwritableNanos.addAndGet(MathUtils.elapsedNanos(unwritableSinceNanos));
+            } else {
+                unwritableSinceNanos = MathUtils.nowInNano();
+            }
+        }
         isWritable = val;
     }
 
+    /**
+     * Get the total time the channel was not writable, because of the requests queued in its write buffer.
+     */
+    long getUnwritableTimeNanos() {
+        long nanos = unwritableNanos.get();
+        if (!isWritable) {
+            nanos += MathUtils.elapsedNanos(unwritableSinceNanos);
+        }
+        return nanos;
+    }
+
+    /**
+     * Get the number of bytes of the requests queued in the channel, not written to the socket yet.
+     */
+    long getPendingWriteBytes() {
+        Channel c = channel;
+        if (c == null) {
+            return 0;
+        }
+        ChannelOutboundBuffer outboundBuffer = c.unsafe().outboundBuffer();
+        return outboundBuffer != null ? outboundBuffer.totalPendingWriteBytes() : 0;
+    }
+
     private void makeWritable() {
         setWritable(true);
     }
@@ -678,7 +730,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final CompletionKey completionKey = new V3CompletionKey(txnId,
                                                                 OperationType.WRITE_LAC);
         // writeLac is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new WriteLacCompletion(completionKey, cb,
                                                      ctx, lac));
 
@@ -708,6 +760,29 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, writeLacRequest);
     }
 
+    /**
+     * Send the explicit LACs of several ledgers in a single request, answered as a write of the LAC of the first
+     * ledger.
+     */
+    void writeLacBatch(final List<WriteLacRequest> lacUpdates, WriteLacCallback cb, Object ctx) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId,
+                                                                OperationType.WRITE_LAC_BATCH);
+        putCompletionKeyValue(completionKey,
+                              new WriteLacCompletion(completionKey, cb,
+                                                     ctx, lacUpdates.get(0).getLedgerId()));
+
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.WRITE_LAC_BATCH)
+                .setTxnId(txnId);
+        final Request writeLacBatchRequest = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setWriteLacBatchRequest(WriteLacBatchRequest.newBuilder().addAllLacUpdates(lacUpdates))
+                .build();
+        writeAndFlush(channel, completionKey, writeLacBatchRequest);
+    }
+
     void forceLedger(final long ledgerId, ForceLedgerCallback cb, Object ctx) {
         if (useV2WireProtocol) {
                 LOG.error("force is not allowed with v2 protocol");
@@ -720,7 +795,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final CompletionKey completionKey = new V3CompletionKey(txnId,
                                                                 OperationType.FORCE_LEDGER);
         // force is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new ForceLedgerCompletion(completionKey, cb,
                                                      ctx, ledgerId));
 
@@ -759,9 +834,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      *          allowFastFail flag
      * @param writeFlags
      *          WriteFlags
+     * @param lacUpdates
+     *          explicit LACs of other ledgers to piggyback on the add, with the v3 protocol
      */
     void addEntry(final long ledgerId, byte[] masterKey, final long entryId, ByteBufList toSend, WriteCallback cb,
-                  Object ctx, final int options, boolean allowFastFail, final EnumSet<WriteFlag> writeFlags) {
+                  Object ctx, final int options, boolean allowFastFail, final EnumSet<WriteFlag> writeFlags,
+                  final List<WriteLacRequest> lacUpdates) {
         Object request = null;
         CompletionKey completionKey = null;
         if (useV2WireProtocol) {
@@ -814,6 +892,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 addBuilder.setWriteFlags(WriteFlag.getWriteFlagsValue(writeFlags));
             }
 
+            if (!lacUpdates.isEmpty()) {
+                addBuilder.addAllLacUpdates(lacUpdates);
+            }
+
             request = withRequestContext(Request.newBuilder())
                     .setHeader(headerBuilder)
                     .setAddRequest(addBuilder)
@@ -865,10 +947,30 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, request);
     }
 
+    /**
+     * Read the LACs of several ledgers in a single request, the callback being called for each ledger.
+     */
+    void readLacBatch(final List<Long> ledgerIds, ReadLacCallback cb, Object ctx) {
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.READ_LAC_BATCH);
+        putCompletionKeyValue(completionKey,
+                              new ReadLacBatchCompletion(completionKey, cb, ctx, ledgerIds));
+
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.READ_LAC_BATCH)
+                .setTxnId(txnId);
+        final Request readLacBatchRequest = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setReadLacBatchRequest(ReadLacBatchRequest.newBuilder().addAllLedgerIds(ledgerIds))
+                .build();
+        writeAndFlush(channel, completionKey, readLacBatchRequest);
+    }
+
     public void getListOfEntriesOfLedger(final long ledgerId, GetListOfEntriesOfLedgerCallback cb) {
         final long txnId = getTxnId();
         final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
-        completionObjects.put(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
+        putCompletionKeyValue(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
 
         // Build the request.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
@@ -994,7 +1096,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     public void getBookieInfo(final long requested, GetBookieInfoCallback cb, Object ctx) {
         final long txnId = getTxnId();
         final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.GET_BOOKIE_INFO);
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new GetBookieInfoCompletion(
                                       completionKey, cb, ctx));
 
@@ -1015,14 +1117,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, getBookieInfoRequest);
     }
 
-    private static final BiPredicate<CompletionKey, CompletionValue> timeoutCheck = (key, value) -> {
-        return value.maybeTimeout();
-    };
-
     public void checkTimeoutOnPendingOperations() {
-        int timedOutOperations = completionObjects.removeIf(timeoutCheck);
-
-        timedOutOperations += completionObjectsV2Conflicts.removeIf(timeoutCheck);
+        int timedOutOperations = timeoutWheel.expire(MathUtils.nowInNano(), this::timeoutCompletion);
 
         if (timedOutOperations > 0) {
             LOG.info("Timed-out {} operations to channel {} for {}",
@@ -1126,7 +1222,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final boolean isChannelWritable = channel.isWritable();
         if (isWritable != isChannelWritable) {
             // isWritable is volatile so simple "isWritable = channel.isWritable()" would be slower
-            isWritable = isChannelWritable;
+            setWritable(isChannelWritable);
         }
 
         if (allowFastFail && !isWritable) {
@@ -1143,7 +1239,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             ChannelPromise promise = channel.newPromise().addListener(future -> {
                 if (future.isSuccess()) {
                     nettyOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                    CompletionValue completion = completionObjects.get(key);
+                    CompletionValue completion = peekCompletionValue(key);
                     if (completion != null) {
                         completion.setOutstanding();
                     }
@@ -1163,12 +1259,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = removeCompletionValue(key);
         if (completion != null) {
             completion.errorOut();
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut());
         }
     }
 
@@ -1176,12 +1269,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = removeCompletionValue(key);
         if (completion != null) {
             completion.errorOut(rc);
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut(rc));
         }
     }
 
@@ -1210,13 +1300,24 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     void errorOutOutstandingEntries(int rc) {
-        Optional<CompletionKey> multikey = completionObjectsV2Conflicts.getAnyKey();
-        while (multikey.isPresent()) {
-            multikey.ifPresent(k -> errorOut(k, rc));
-            multikey = completionObjectsV2Conflicts.getAnyKey();
+        List<CompletionValue> outstanding = new ArrayList<>();
+        for (long txnId : completionObjects.keys()) {
+            CompletionValue completion = completionObjects.remove(txnId);
+            if (completion != null) {
+                outstanding.add(completion);
+            }
         }
-        for (CompletionKey key : completionObjects.keys()) {
-            errorOut(key, rc);
+        ConcurrentLongPairMultiMap.LongPairObjectPredicate<CompletionValue> removeAll = (ledgerId, entryId, c) -> {
+            outstanding.add(c);
+            return true;
+        };
+        v2AddCompletionObjects.removeIf(removeAll);
+        v2ReadCompletionObjects.removeIf(removeAll);
+        v2ReadLacCompletionObjects.removeIf(removeAll);
+
+        for (CompletionValue completion : outstanding) {
+            timeoutWheel.remove(completion);
+            completion.errorOut(rc);
         }
     }
 
@@ -1338,9 +1439,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         OperationType operationType = getOperationType(response.getOpCode());
         StatusCode status = getStatusCodeFromErrorCode(response.errorCode);
 
-        CompletionKey key = acquireV2Key(response.ledgerId, response.entryId, operationType);
-        CompletionValue completionValue = getCompletionValue(key);
-        key.release();
+        CompletionValue completionValue = removeV2CompletionValue(operationType, response.ledgerId, response.entryId);
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1455,8 +1554,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private void readV3Response(final Response response) {
         final BKPacketHeader header = response.getHeader();
 
-        final CompletionKey key = newCompletionKey(header.getTxnId(), header.getOperation());
-        final CompletionValue completionValue = completionObjects.get(key);
+        final CompletionValue completionValue = completionObjects.remove(header.getTxnId());
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1465,6 +1563,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         + header.getOperation() + " and txnId : " + header.getTxnId());
             }
         } else {
+            // off the wheel before the completion is handled and recycled, it may then be tracked again
+            timeoutWheel.remove(completionValue);
             long orderingKey = completionValue.ledgerId;
             executor.executeOrdered(orderingKey, new SafeRunnable() {
                 @Override
@@ -1481,8 +1581,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 }
             });
         }
-
-        completionObjects.remove(key);
     }
 
     void initTLSHandshake() {
@@ -1567,7 +1665,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     // visible for testing
-    abstract class CompletionValue {
+    abstract class CompletionValue extends RequestTimeoutWheel.Entry {
         private final OpStatsLogger opLogger;
         private final OpStatsLogger timeoutOpLogger;
         private final String operationName;
@@ -1577,6 +1675,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         protected long entryId;
         protected long startTime;
 
+        // key of the request in the completion maps
+        private OperationType operationType;
+        private boolean v2Request;
+        private long completionKey1;
+        private long completionKey2;
+
         public CompletionValue(String operationName,
                                Object ctx,
                                long ledgerId, long entryId,
@@ -1609,13 +1713,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         }
 
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= readEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return readEntryTimeoutNanos;
+        }
+
+        boolean isTimedOut() {
+            return MathUtils.elapsedNanos(startTime) >= timeoutNanos();
         }
 
         void timeout() {
@@ -1842,6 +1945,75 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    class ReadLacBatchCompletion extends CompletionValue {
+        final CompletionKey key;
+        final ReadLacCallback cb;
+        final List<Long> ledgerIds;
+
+        public ReadLacBatchCompletion(final CompletionKey key,
+                                      final ReadLacCallback originalCallback,
+                                      final Object ctx, final List<Long> ledgerIds) {
+            super("ReadLACBatch", ctx, ledgerIds.get(0), BookieProtocol.LAST_ADD_CONFIRMED,
+                  readLacOpLogger, readLacTimeoutOpLogger);
+            this.key = key;
+            this.ledgerIds = ledgerIds;
+            this.cb = originalCallback;
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> completeAll(rc));
+        }
+
+        private void completeAll(int rc) {
+            logOpResult(rc);
+            for (long ledgerId : ledgerIds) {
+                cb.readLacComplete(rc, ledgerId, null, null, ctx);
+            }
+            key.release();
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            if (response.getStatus() != StatusCode.EOK) {
+                if (LOG.isDebugEnabled()) {
+                    logResponse(response.getStatus(), "ledgers", ledgerIds.size());
+                }
+                completeAll(convertStatus(response.getStatus(), BKException.Code.ReadException));
+                return;
+            }
+            logOpResult(BKException.Code.OK);
+            Set<Long> unanswered = new HashSet<>(ledgerIds);
+            for (ReadLacResponse readLacResponse : response.getReadLacBatchResponse().getReadLacResponsesList()) {
+                if (!unanswered.remove(readLacResponse.getLedgerId())) {
+                    // not asked for, or already answered
+                    continue;
+                }
+                ByteBuf lacBuffer = Unpooled.EMPTY_BUFFER;
+                ByteBuf lastEntryBuffer = Unpooled.EMPTY_BUFFER;
+                if (readLacResponse.hasLacBody()) {
+                    lacBuffer = Unpooled.wrappedBuffer(readLacResponse.getLacBody().asReadOnlyByteBuffer());
+                }
+                if (readLacResponse.hasLastEntryBody()) {
+                    lastEntryBuffer = Unpooled.wrappedBuffer(
+                            readLacResponse.getLastEntryBody().asReadOnlyByteBuffer());
+                }
+                int rc = convertStatus(readLacResponse.getStatus(), BKException.Code.ReadException);
+                cb.readLacComplete(rc, readLacResponse.getLedgerId(), lacBuffer.slice(), lastEntryBuffer.slice(),
+                        ctx);
+            }
+            for (long ledgerId : unanswered) {
+                cb.readLacComplete(BKException.Code.ReadException, ledgerId, null, null, ctx);
+            }
+            key.release();
+        }
+    }
+
     // visible for testing
     class ReadCompletion extends CompletionValue {
         final ReadEntryCallback cb;
@@ -2016,13 +2188,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= getBookieInfoTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return getBookieInfoTimeoutNanos;
         }
 
         @Override
@@ -2162,13 +2329,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= addEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return addEntryTimeoutNanos;
         }
 
         @Override
@@ -2217,11 +2379,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
-    // visable for testing
-    CompletionKey newCompletionKey(long txnId, OperationType operationType) {
-        return new V3CompletionKey(txnId, operationType);
-    }
-
     class V3CompletionKey extends CompletionKey {
 
         public V3CompletionKey(long txnId, OperationType operationType) {
@@ -2296,22 +2453,90 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     private void putCompletionKeyValue(CompletionKey key, CompletionValue value) {
-        CompletionValue existingValue = completionObjects.putIfAbsent(key, value);
-        if (existingValue != null) { // will only happen for V2 keys, as V3 have unique txnid
-            // There's a pending read request on same ledger/entry. Use the multimap to track all of them
-            completionObjectsV2Conflicts.put(key, value);
+        value.operationType = key.operationType;
+        if (key instanceof V2CompletionKey) {
+            V2CompletionKey v2Key = (V2CompletionKey) key;
+            value.v2Request = true;
+            value.completionKey1 = v2Key.ledgerId;
+            value.completionKey2 = v2Key.entryId;
+        } else {
+            value.v2Request = false;
+            value.completionKey1 = key.txnId;
+        }
+        // track the deadline before publishing the request, so that its response removes it from the wheel
+        timeoutWheel.add(value, value.startTime + value.timeoutNanos());
+        if (value.v2Request) {
+            getV2CompletionObjects(value.operationType).put(value.completionKey1, value.completionKey2, value);
+        } else {
+            completionObjects.put(value.completionKey1, value);
+        }
+    }
+
+    private CompletionValue peekCompletionValue(CompletionKey key) {
+        if (key instanceof V2CompletionKey) {
+            V2CompletionKey v2Key = (V2CompletionKey) key;
+            return getV2CompletionObjects(v2Key.operationType).get(v2Key.ledgerId, v2Key.entryId, ANY_COMPLETION);
+        } else {
+            return completionObjects.get(key.txnId);
         }
     }
 
-    private CompletionValue getCompletionValue(CompletionKey key) {
-        CompletionValue completionValue = completionObjects.remove(key);
-        if (completionValue == null) {
-            // If there's no completion object here, try in the multimap
-            completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
+    private CompletionValue removeCompletionValue(CompletionKey key) {
+        if (key instanceof V2CompletionKey) {
+            V2CompletionKey v2Key = (V2CompletionKey) key;
+            return removeV2CompletionValue(v2Key.operationType, v2Key.ledgerId, v2Key.entryId);
+        }
+        CompletionValue completionValue = completionObjects.remove(key.txnId);
+        if (completionValue != null) {
+            timeoutWheel.remove(completionValue);
+        }
+        return completionValue;
+    }
+
+    private CompletionValue removeV2CompletionValue(OperationType operationType, long ledgerId, long entryId) {
+        CompletionValue completionValue = getV2CompletionObjects(operationType).remove(ledgerId, entryId);
+        if (completionValue != null) {
+            timeoutWheel.remove(completionValue);
         }
         return completionValue;
     }
 
+    private ConcurrentLongPairMultiMap<CompletionValue> getV2CompletionObjects(OperationType operationType) {
+        switch (operationType) {
+            case ADD_ENTRY:
+                return v2AddCompletionObjects;
+            case READ_ENTRY:
+                return v2ReadCompletionObjects;
+            case READ_LAC:
+                return v2ReadLacCompletionObjects;
+            default:
+                throw new IllegalArgumentException("Unsupported V2 operation " + operationType);
+        }
+    }
+
+    /**
+     * Time out a request whose deadline passed, unless it completed in the meantime.
+     */
+    private boolean timeoutCompletion(RequestTimeoutWheel.Entry entry) {
+        final CompletionValue completionValue = (CompletionValue) entry;
+        // The completion may have completed, and even been recycled for another request, since it
+        // was expired from the wheel. Only time it out if it is still in flight under the same key.
+        final long key1 = completionValue.completionKey1;
+        final long key2 = completionValue.completionKey2;
+        final OperationType operationType = completionValue.operationType;
+        final boolean removed;
+        if (completionValue.v2Request) {
+            removed = null != getV2CompletionObjects(operationType).remove(key1, key2,
+                    c -> c == completionValue && c.isTimedOut());
+        } else {
+            removed = completionValue.isTimedOut() && completionObjects.remove(key1, completionValue);
+        }
+        if (removed) {
+            completionValue.timeout();
+        }
+        return removed;
+    }
+
     private long getTxnId() {
         return txnIdGenerator.incrementAndGet();
     }
@@ -2545,7 +2770,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         assert state == ConnectionState.CONNECTING;
         final long txnId = getTxnId();
         final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.START_TLS);
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new StartTLSCompletion(completionKey));
         BookkeeperProtocol.Request.Builder h = withRequestContext(BookkeeperProtocol.Request.newBuilder());
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
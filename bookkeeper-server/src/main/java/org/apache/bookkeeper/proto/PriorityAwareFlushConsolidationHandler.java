@@ -0,0 +1,80 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.flush.FlushConsolidationHandler;
+
+/**
+ * Consolidate the flushes of the requests or responses written on a channel.
+ *
+ * <p>The flushes issued while a read is in progress on the channel are delayed until the read is
+ * complete, and the flushes issued from other threads are merged into a single flush run by the
+ * event loop, so that the messages written in the same event loop tick go out with one syscall.
+ * The channel is flushed anyway once {@code explicitFlushAfterFlushes} flushes were merged.
+ *
+ * <p>High priority requests, such as the ones of ledger recovery, and the responses to them are flushed
+ * right away. The v3 responses carry the priority of their request in their header, while the v2 ones
+ * keep it in memory only.
+ */
+class PriorityAwareFlushConsolidationHandler extends FlushConsolidationHandler {
+
+    static final String NAME = "flushConsolidation";
+
+    // only accessed from the event loop
+    private boolean highPriorityWritten = false;
+
+    PriorityAwareFlushConsolidationHandler(int explicitFlushAfterFlushes) {
+        super(explicitFlushAfterFlushes, true);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (isHighPriority(msg)) {
+            highPriorityWritten = true;
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (highPriorityWritten) {
+            highPriorityWritten = false;
+            ctx.flush();
+        } else {
+            super.flush(ctx);
+        }
+    }
+
+    static boolean isHighPriority(Object msg) {
+        if (msg instanceof BookieProtocol.Request) {
+            return ((BookieProtocol.Request) msg).isHighPriority();
+        } else if (msg instanceof BookkeeperProtocol.Request) {
+            return RequestUtils.isHighPriority((BookkeeperProtocol.Request) msg);
+        } else if (msg instanceof BookieProtocol.Response) {
+            return ((BookieProtocol.Response) msg).isHighPriority();
+        } else if (msg instanceof BookkeeperProtocol.Response) {
+            return ((BookkeeperProtocol.Response) msg).getHeader().getPriority() > 0;
+        }
+        return false;
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.bookkeeper.proto;
 
 import com.google.common.base.Stopwatch;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.util.ReferenceCountUtil;
@@ -47,6 +48,8 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
     private final ExecutorService fenceThreadPool;
 
     private CompletableFuture<Boolean> fenceResult = null;
+    // entry body wrapped by the read response to send
+    private ByteBuf responseBody = null;
 
     protected final ReadRequest readRequest;
     protected final long ledgerId;
@@ -61,7 +64,6 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                                 BookieRequestProcessor requestProcessor,
                                 ExecutorService fenceThreadPool) {
         super(request, channel, requestProcessor);
-        requestProcessor.onReadRequestStart(channel);
 
         this.readRequest = request.getReadRequest();
         this.ledgerId = readRequest.getLedgerId();
@@ -170,13 +172,13 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                                      boolean readLACPiggyBack,
                                      Stopwatch startTimeSw)
         throws IOException, BookieException {
-        ByteBuf entryBody = requestProcessor.getBookie().readEntry(ledgerId, entryId);
+        ByteBuf entryBody = readEntryBody(entryId);
         if (null != fenceResult) {
             handleReadResultForFenceRead(entryBody, readResponseBuilder, entryId, startTimeSw);
             return null;
         } else {
             try {
-                readResponseBuilder.setBody(ByteString.copyFrom(entryBody.nioBuffer()));
+                readResponseBuilder.setBody(UnsafeByteOperations.unsafeWrap(entryBody.nioBuffer()));
                 if (readLACPiggyBack) {
                     readResponseBuilder.setEntryId(entryId);
                 } else {
@@ -185,13 +187,26 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                 }
                 registerSuccessfulEvent(readStats, startTimeSw);
                 readResponseBuilder.setStatus(StatusCode.EOK);
-                return readResponseBuilder.build();
+                ReadResponse readResponse = readResponseBuilder.build();
+                // the response wraps the entry body, which is released once the response is written
+                responseBody = entryBody;
+                entryBody = null;
+                return readResponse;
             } finally {
                 ReferenceCountUtil.release(entryBody);
             }
         }
     }
 
+    /**
+     * Read the body of an entry of the ledger from the bookie.
+     *
+     * @return the entry body, to be released by the caller
+     */
+    protected ByteBuf readEntryBody(long entryId) throws IOException, BookieException {
+        return requestProcessor.getBookie().readEntry(ledgerId, entryId);
+    }
+
     protected ReadResponse getReadResponse() {
         final Stopwatch startTimeSw = Stopwatch.createStarted();
 
@@ -316,10 +331,13 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                 .setHeader(getHeader())
                 .setStatus(readResponse.getStatus())
                 .setReadResponse(readResponse);
+        ByteBuf body = responseBody;
+        responseBody = null;
         sendResponse(response.getStatus(),
                      response.build(),
-                     reqStats);
-        requestProcessor.onReadRequestFinish();
+                     reqStats,
+                     body);
+        requestProcessor.onReadRequestFinish(channel);
     }
 
     //
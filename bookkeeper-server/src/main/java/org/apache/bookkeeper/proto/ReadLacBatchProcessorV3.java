@@ -0,0 +1,69 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.Channel;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacBatchRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacBatchResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read processor for v3 messages reading the last add confirmed of several ledgers. Each ledger is read as
+ * with a {@link ReadLacProcessorV3}, and gets its own status in the response.
+ */
+class ReadLacBatchProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadLacBatchProcessorV3.class);
+
+    public ReadLacBatchProcessorV3(Request request, Channel channel,
+                                   BookieRequestProcessor requestProcessor) {
+        super(request, channel, requestProcessor);
+    }
+
+    @Override
+    public void safeRun() {
+        Response.Builder response = Response.newBuilder().setHeader(getHeader());
+        if (!isVersionCompatible()) {
+            response.setStatus(StatusCode.EBADVERSION);
+        } else {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Received ReadLacBatch request: {}", RequestUtils.toSafeString(request));
+            }
+            ReadLacBatchRequest readLacBatchRequest = request.getReadLacBatchRequest();
+            ReadLacBatchResponse.Builder readLacBatchResponse = ReadLacBatchResponse.newBuilder();
+            for (int i = 0; i < readLacBatchRequest.getLedgerIdsCount(); i++) {
+                readLacBatchResponse.addReadLacResponses(
+                        ReadLacProcessorV3.readLac(requestProcessor, readLacBatchRequest.getLedgerIds(i)));
+            }
+            response.setStatus(StatusCode.EOK).setReadLacBatchResponse(readLacBatchResponse);
+        }
+        sendResponse(response.getStatus(), response.build(),
+                requestProcessor.getRequestStats().getReadLacBatchRequestStats());
+    }
+
+    @Override
+    public String toString() {
+        return RequestUtils.toSafeString(request);
+    }
+}
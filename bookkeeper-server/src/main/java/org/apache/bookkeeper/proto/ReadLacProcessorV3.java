@@ -53,18 +53,27 @@ class ReadLacProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
 
     // Returns null if there is no exception thrown
     private ReadLacResponse getReadLacResponse() {
-        final long startTimeNanos = MathUtils.nowInNano();
         ReadLacRequest readLacRequest = request.getReadLacRequest();
         long ledgerId = readLacRequest.getLedgerId();
 
-        final ReadLacResponse.Builder readLacResponse = ReadLacResponse.newBuilder().setLedgerId(ledgerId);
-
         if (!isVersionCompatible()) {
-            readLacResponse.setStatus(StatusCode.EBADVERSION);
-            return readLacResponse.build();
+            return ReadLacResponse.newBuilder()
+                    .setLedgerId(ledgerId)
+                    .setStatus(StatusCode.EBADVERSION)
+                    .build();
         }
 
         logger.debug("Received ReadLac request: {}", request);
+        return readLac(requestProcessor, ledgerId);
+    }
+
+    /**
+     * Read the explicit LAC and the last entry of a ledger.
+     */
+    static ReadLacResponse readLac(BookieRequestProcessor requestProcessor, long ledgerId) {
+        final long startTimeNanos = MathUtils.nowInNano();
+        final ReadLacResponse.Builder readLacResponse = ReadLacResponse.newBuilder().setLedgerId(ledgerId);
+
         StatusCode status = StatusCode.EOK;
         ByteBuf lastEntry = null;
         ByteBuf lac = null;
@@ -0,0 +1,185 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.Channel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongConsumer;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limit the number of requests of one kind in progress on the bookie, and on each of its channels,
+ * without blocking the threads submitting them.
+ *
+ * <p>Each request in progress holds a global permit and a credit of its channel. When either runs
+ * out, the requests are parked in the queue of their channel and autoread is disabled on the channel,
+ * so that no more requests are read from it. A finishing request returns its permit and its credit,
+ * and the permit goes to the next parked request of the channels having credits left, taken in turns,
+ * so that a channel with many parked requests doesn't delay the requests of the other channels behind
+ * all of them. The parked request is then started on the event loop of its channel. Autoread is
+ * re-enabled on a channel once none of its requests are parked anymore. The other channels served by
+ * the same event loop keep being processed in the meantime.
+ */
+class RequestAdmissionController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestAdmissionController.class);
+
+    private final String requestType;
+    private final int maxInProgress;
+    private final int maxInProgressPerChannel;
+    private final Runnable onChannelThrottled;
+    private final LongConsumer onChannelUnthrottled;
+
+    // guarded by this
+    private int inProgress = 0;
+    // the channels with requests in progress or parked
+    private final Map<Channel, ChannelCredits> channels = new HashMap<>();
+    // the channels with parked requests and credits left, in the order they get the next permits
+    private final ArrayDeque<ChannelCredits> channelsTurns = new ArrayDeque<>();
+
+    /**
+     * @param requestType type of the requests, used for logging
+     * @param maxInProgress max number of requests in progress, or 0 for unlimited
+     * @param maxInProgressPerChannel max number of requests in progress per channel, or 0 for unlimited
+     * @param onChannelThrottled called when a channel gets throttled
+     * @param onChannelUnthrottled called with the time spent throttled, in nanos, when a channel is
+     *                             not throttled anymore
+     */
+    RequestAdmissionController(String requestType,
+                               int maxInProgress,
+                               int maxInProgressPerChannel,
+                               Runnable onChannelThrottled,
+                               LongConsumer onChannelUnthrottled) {
+        this.requestType = requestType;
+        this.maxInProgress = maxInProgress > 0 ? maxInProgress : Integer.MAX_VALUE;
+        this.maxInProgressPerChannel = maxInProgressPerChannel > 0 ? maxInProgressPerChannel : Integer.MAX_VALUE;
+        this.onChannelThrottled = onChannelThrottled;
+        this.onChannelUnthrottled = onChannelUnthrottled;
+    }
+
+    /**
+     * Start the request right away if the limits allow it, else park it until a permit and a credit of
+     * its channel are released.
+     *
+     * @param channel channel the request was received on
+     * @param request starts processing the request, it must eventually lead to {@link #release(Channel)}
+     */
+    void admit(Channel channel, Runnable request) {
+        boolean throttleChannel = false;
+        synchronized (this) {
+            ChannelCredits credits = channels.computeIfAbsent(channel, ChannelCredits::new);
+            // the requests already parked on the channel go first, to keep its requests in order
+            if (credits.parkedRequests.isEmpty() && inProgress < maxInProgress
+                    && credits.inProgress < maxInProgressPerChannel) {
+                inProgress++;
+                credits.inProgress++;
+            } else {
+                if (credits.parkedRequests.isEmpty()) {
+                    credits.throttlingStartTimeNanos = MathUtils.nowInNano();
+                    throttleChannel = true;
+                    // else it gets its turns back when one of its requests finishes
+                    if (credits.inProgress < maxInProgressPerChannel) {
+                        channelsTurns.add(credits);
+                    }
+                }
+                credits.parkedRequests.add(request);
+                request = null;
+            }
+        }
+
+        if (throttleChannel) {
+            channel.config().setAutoRead(false);
+            LOG.info("Too many {} requests in progress, disabling autoread on channel {}", requestType, channel);
+            onChannelThrottled.run();
+        }
+        if (request != null) {
+            request.run();
+        }
+    }
+
+    /**
+     * Release the permit and the credit of a finished request.
+     *
+     * @param channel channel the request was received on
+     */
+    void release(Channel channel) {
+        ChannelCredits next;
+        Runnable request;
+        long throttledNanos = -1L;
+        synchronized (this) {
+            inProgress--;
+            ChannelCredits credits = channels.get(channel);
+            if (credits != null) {
+                credits.inProgress--;
+                if (credits.inProgress == maxInProgressPerChannel - 1 && !credits.parkedRequests.isEmpty()) {
+                    // the channel was out of credits
+                    channelsTurns.add(credits);
+                } else if (credits.inProgress == 0 && credits.parkedRequests.isEmpty()) {
+                    channels.remove(channel);
+                }
+            }
+
+            next = channelsTurns.poll();
+            if (next == null) {
+                return;
+            }
+            // the permit is handed over to the next parked request of the channel
+            inProgress++;
+            next.inProgress++;
+            request = next.parkedRequests.poll();
+            if (next.parkedRequests.isEmpty()) {
+                throttledNanos = MathUtils.elapsedNanos(next.throttlingStartTimeNanos);
+            } else if (next.inProgress < maxInProgressPerChannel) {
+                channelsTurns.add(next);
+            }
+        }
+
+        // start the request before re-enabling autoread, to process it before the next ones of the channel
+        try {
+            next.channel.eventLoop().execute(request);
+        } catch (RejectedExecutionException e) {
+            // the event loop is shutting down
+            request.run();
+        }
+        if (throttledNanos >= 0) {
+            next.channel.config().setAutoRead(true);
+            LOG.info("Re-enabled autoread on channel {} after {} request delay of {} nanos",
+                    next.channel, requestType, throttledNanos);
+            onChannelUnthrottled.accept(throttledNanos);
+        }
+    }
+
+    private static class ChannelCredits {
+        final Channel channel;
+        int inProgress = 0;
+        long throttlingStartTimeNanos;
+        final ArrayDeque<Runnable> parkedRequests = new ArrayDeque<>();
+
+        ChannelCredits(Channel channel) {
+            this.channel = channel;
+        }
+    }
+}
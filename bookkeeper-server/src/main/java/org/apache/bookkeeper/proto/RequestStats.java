@@ -48,6 +48,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_REJE
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_SCHEDULING_DELAY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAC;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAC_BATCH_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAC_REQUEST;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_LAST_ENTRY_NOENTRY_ERROR;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.SERVER_SCOPE;
@@ -201,6 +202,11 @@ public class RequestStats {
         parent = READ_LAC_REQUEST
     )
     final OpStatsLogger readLacStats;
+    @StatsDoc(
+        name = READ_LAC_BATCH_REQUEST,
+        help = "request stats of ReadLacBatch on a bookie, the ledgers of which are counted in " + READ_LAC
+    )
+    final OpStatsLogger readLacBatchRequestStats;
     @StatsDoc(
         name = GET_BOOKIE_INFO_REQUEST,
         help = "request stats of GetBookieInfo on a bookie"
@@ -218,12 +224,12 @@ public class RequestStats {
     final OpStatsLogger channelWriteStats;
     @StatsDoc(
         name = ADD_ENTRY_BLOCKED,
-        help = "operation stats of AddEntry blocked on a bookie"
+        help = "time channels spent with autoread disabled because of too many AddEntry in progress on a bookie"
     )
     final OpStatsLogger addEntryBlockedStats;
     @StatsDoc(
         name = READ_ENTRY_BLOCKED,
-        help = "operation stats of ReadEntry blocked on a bookie"
+        help = "time channels spent with autoread disabled because of too many ReadEntry in progress on a bookie"
     )
     final OpStatsLogger readEntryBlockedStats;
     @StatsDoc(
@@ -260,6 +266,7 @@ public class RequestStats {
         this.writeLacRequestStats = statsLogger.getOpStatsLogger(WRITE_LAC_REQUEST);
         this.readLacStats = statsLogger.getOpStatsLogger(READ_LAC);
         this.readLacRequestStats = statsLogger.getOpStatsLogger(READ_LAC_REQUEST);
+        this.readLacBatchRequestStats = statsLogger.getOpStatsLogger(READ_LAC_BATCH_REQUEST);
         this.getBookieInfoStats = statsLogger.getOpStatsLogger(GET_BOOKIE_INFO);
         this.getBookieInfoRequestStats = statsLogger.getOpStatsLogger(GET_BOOKIE_INFO_REQUEST);
         this.channelWriteStats = statsLogger.getOpStatsLogger(CHANNEL_WRITE);
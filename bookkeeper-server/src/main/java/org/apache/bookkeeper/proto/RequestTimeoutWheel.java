@@ -0,0 +1,160 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Hashed timing wheel tracking the deadlines of in-flight requests.
+ *
+ * <p>The requests are linked, through the fields of {@link Entry}, in the slot of the tick of their
+ * deadline, so adding and removing a request doesn't allocate, and expiring the requests only goes
+ * through the slots of the ticks elapsed since the last expiration, instead of all the requests.
+ * Requests whose deadline is more than a wheel rotation away stay in their slot until then.
+ */
+class RequestTimeoutWheel {
+
+    /**
+     * A request tracked by the wheel.
+     */
+    abstract static class Entry {
+        // guarded by the lock of the slot
+        private Entry prev;
+        private Entry next;
+        private int slot = -1;
+        private long deadlineNanos;
+    }
+
+    private static final int NUM_LOCKS = 16;
+
+    private final long tickNanos;
+    private final Entry[] heads;
+    private final Object[] locks;
+    private final int mask;
+
+    // all the ticks up to this one have been expired
+    private volatile long lastExpiredTick;
+
+    RequestTimeoutWheel(long tickNanos, int numSlots, long nowNanos) {
+        this.tickNanos = tickNanos;
+        int slots = Integer.highestOneBit(Math.max(numSlots, NUM_LOCKS) - 1) << 1;
+        this.heads = new Entry[slots];
+        this.mask = slots - 1;
+        this.locks = new Object[NUM_LOCKS];
+        for (int i = 0; i < NUM_LOCKS; i++) {
+            locks[i] = new Object();
+        }
+        this.lastExpiredTick = Math.floorDiv(nowNanos, tickNanos);
+    }
+
+    /**
+     * Track a request until it is removed or expired.
+     */
+    void add(Entry entry, long deadlineNanos) {
+        // round up, so that a request is never expired before its deadline
+        long tick = Math.max(Math.floorDiv(deadlineNanos + tickNanos - 1, tickNanos), lastExpiredTick + 1);
+        int slot = (int) (tick & mask);
+        synchronized (locks[slot % NUM_LOCKS]) {
+            entry.deadlineNanos = deadlineNanos;
+            entry.slot = slot;
+            entry.prev = null;
+            entry.next = heads[slot];
+            if (entry.next != null) {
+                entry.next.prev = entry;
+            }
+            heads[slot] = entry;
+        }
+    }
+
+    /**
+     * Stop tracking a request, if it is still tracked.
+     */
+    void remove(Entry entry) {
+        int slot = entry.slot;
+        if (slot < 0) {
+            return;
+        }
+        synchronized (locks[slot % NUM_LOCKS]) {
+            // the entry may have been expired or moved to another slot in the meantime
+            if (entry.slot == slot) {
+                unlink(entry);
+            }
+        }
+    }
+
+    /**
+     * Stop tracking the requests whose deadline has passed, and hand them to the given handler.
+     *
+     * <p>It must be called by a single thread at a time.
+     *
+     * @return number of expired requests for which the handler returned true
+     */
+    int expire(long nowNanos, Predicate<Entry> onExpired) {
+        long nowTick = Math.floorDiv(nowNanos, tickNanos);
+        long fromTick = lastExpiredTick + 1;
+        if (nowTick < fromTick) {
+            return 0;
+        }
+        // a full rotation goes through all the slots
+        long toTick = Math.min(nowTick, fromTick + mask);
+
+        List<Entry> expired = new ArrayList<>();
+        for (long tick = fromTick; tick <= toTick; tick++) {
+            int slot = (int) (tick & mask);
+            synchronized (locks[slot % NUM_LOCKS]) {
+                Entry entry = heads[slot];
+                while (entry != null) {
+                    Entry next = entry.next;
+                    if (entry.deadlineNanos <= nowNanos) {
+                        unlink(entry);
+                        expired.add(entry);
+                    }
+                    entry = next;
+                }
+            }
+        }
+        lastExpiredTick = nowTick;
+
+        int handled = 0;
+        for (Entry entry : expired) {
+            if (onExpired.test(entry)) {
+                handled++;
+            }
+        }
+        return handled;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            heads[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.slot = -1;
+    }
+}
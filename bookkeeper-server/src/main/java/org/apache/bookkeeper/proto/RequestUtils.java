@@ -67,6 +67,9 @@ class RequestUtils {
             if (addRequest.hasWriteFlags()) {
                 stringHelper.add("writeFlags", addRequest.getWriteFlags());
             }
+            if (addRequest.getLacUpdatesCount() > 0) {
+                stringHelper.add("lacUpdates", addRequest.getLacUpdatesCount());
+            }
             return stringHelper.toString();
         } else if (request.hasReadRequest()) {
             BookkeeperProtocol.ReadRequest readRequest = request.getReadRequest();
@@ -89,6 +92,14 @@ class RequestUtils {
             stringHelper.add("ledgerId", writeLacRequest.getLedgerId());
             stringHelper.add("lac", writeLacRequest.getLac());
             return stringHelper.toString();
+        } else if (request.hasWriteLacBatchRequest()) {
+            includeHeaderFields(stringHelper, header);
+            stringHelper.add("lacUpdates", request.getWriteLacBatchRequest().getLacUpdatesCount());
+            return stringHelper.toString();
+        } else if (request.hasReadLacBatchRequest()) {
+            includeHeaderFields(stringHelper, header);
+            stringHelper.add("ledgerIds", request.getReadLacBatchRequest().getLedgerIdsCount());
+            return stringHelper.toString();
         } else if (request.hasForceLedgerRequest()) {
             BookkeeperProtocol.ForceLedgerRequest forceLedgerRequest = request.getForceLedgerRequest();
             includeHeaderFields(stringHelper, header);
@@ -24,23 +24,31 @@ import io.netty.buffer.ByteBuf;
 
 class ResponseBuilder {
     static BookieProtocol.Response buildErrorResponse(int errorCode, BookieProtocol.Request r) {
+        BookieProtocol.Response response;
         if (r.getOpCode() == BookieProtocol.ADDENTRY) {
-            return BookieProtocol.AddResponse.create(r.getProtocolVersion(), errorCode,
+            response = BookieProtocol.AddResponse.create(r.getProtocolVersion(), errorCode,
                                                   r.getLedgerId(), r.getEntryId());
         } else {
             assert(r.getOpCode() == BookieProtocol.READENTRY);
-            return new BookieProtocol.ReadResponse(r.getProtocolVersion(), errorCode,
+            response = new BookieProtocol.ReadResponse(r.getProtocolVersion(), errorCode,
                                                    r.getLedgerId(), r.getEntryId());
         }
+        return withPriority(response, r);
     }
 
     static BookieProtocol.Response buildAddResponse(BookieProtocol.Request r) {
-        return BookieProtocol.AddResponse.create(r.getProtocolVersion(), BookieProtocol.EOK, r.getLedgerId(),
-                                              r.getEntryId());
+        return withPriority(BookieProtocol.AddResponse.create(r.getProtocolVersion(), BookieProtocol.EOK,
+                r.getLedgerId(), r.getEntryId()), r);
     }
 
     static BookieProtocol.Response buildReadResponse(ByteBuf data, BookieProtocol.Request r) {
-        return new BookieProtocol.ReadResponse(r.getProtocolVersion(), BookieProtocol.EOK,
-                r.getLedgerId(), r.getEntryId(), data);
+        return withPriority(new BookieProtocol.ReadResponse(r.getProtocolVersion(), BookieProtocol.EOK,
+                r.getLedgerId(), r.getEntryId(), data), r);
+    }
+
+    private static BookieProtocol.Response withPriority(BookieProtocol.Response response,
+                                                        BookieProtocol.Request r) {
+        response.highPriority = r.isHighPriority();
+        return response;
     }
 }
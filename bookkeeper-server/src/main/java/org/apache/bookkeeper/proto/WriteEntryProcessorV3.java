@@ -48,7 +48,6 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
     public WriteEntryProcessorV3(Request request, Channel channel,
                                  BookieRequestProcessor requestProcessor) {
         super(request, channel, requestProcessor);
-        requestProcessor.onAddRequestStart(channel);
     }
 
     // Returns null if there is no exception thrown
@@ -108,6 +107,9 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
                 sendResponse(status, resp, requestProcessor.getRequestStats().getAddRequestStats());
             }
         };
+        if (addRequest.getLacUpdatesCount() > 0) {
+            WriteLacBatchProcessorV3.setPiggybackedLacs(requestProcessor, channel, addRequest.getLacUpdatesList());
+        }
         final EnumSet<WriteFlag> writeFlags;
         if (addRequest.hasWriteFlags()) {
             writeFlags = WriteFlag.getWriteFlags(addRequest.getWriteFlags());
@@ -179,7 +181,7 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
     @Override
     protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger) {
         super.sendResponse(code, response, statsLogger);
-        requestProcessor.onAddRequestFinish();
+        requestProcessor.onAddRequestFinish(channel);
     }
 
     /**
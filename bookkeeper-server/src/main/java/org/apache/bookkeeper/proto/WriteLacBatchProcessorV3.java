@@ -0,0 +1,195 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacResponse;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes the explicit LACs of several ledgers sent in a single request. The response is sent once the LACs of
+ * all the ledgers are journaled, with the status of the first one which failed.
+ */
+class WriteLacBatchProcessorV3 extends PacketProcessorBaseV3 implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteLacBatchProcessorV3.class);
+
+    // the explicit LACs piggybacked on the adds are not answered
+    private static final WriteCallback PIGGYBACKED_LAC_CALLBACK = new WriteCallback() {
+        @Override
+        public void writeComplete(int rc, long ledgerId, long entryId, BookieId addr, Object ctx) {
+            if (BookieProtocol.EOK != rc && logger.isDebugEnabled()) {
+                logger.debug("Failed to journal the piggybacked lac of ledger {} : {}", ledgerId, rc);
+            }
+        }
+    };
+
+    public WriteLacBatchProcessorV3(Request request, Channel channel,
+                                    BookieRequestProcessor requestProcessor) {
+        super(request, channel, requestProcessor);
+    }
+
+    /**
+     * Set the explicit LACs piggybacked on an add, without answering them.
+     */
+    static void setPiggybackedLacs(BookieRequestProcessor requestProcessor, Channel channel,
+                                   List<WriteLacRequest> lacUpdates) {
+        if (requestProcessor.getBookie().isReadOnly()) {
+            return;
+        }
+        for (WriteLacRequest lacUpdate : lacUpdates) {
+            StatusCode status = setExplicitLac(requestProcessor, channel, lacUpdate, PIGGYBACKED_LAC_CALLBACK);
+            if (status != StatusCode.EOK && logger.isDebugEnabled()) {
+                logger.debug("Failed to set the piggybacked lac {} of ledger {} : {}",
+                        lacUpdate.getLac(), lacUpdate.getLedgerId(), status);
+            }
+        }
+    }
+
+    /**
+     * Set the explicit LAC of a ledger.
+     *
+     * @return EOK if the LAC is being journaled, the callback being called once done, or the status of the failure
+     */
+    private static StatusCode setExplicitLac(BookieRequestProcessor requestProcessor, Channel channel,
+                                             WriteLacRequest lacUpdate, WriteCallback cb) {
+        long lac = lacUpdate.getLac();
+        long ledgerId = lacUpdate.getLedgerId();
+        try {
+            requestProcessor.getBookie().setExplicitLac(
+                    Unpooled.wrappedBuffer(lacUpdate.getBody().asReadOnlyByteBuffer()), cb, channel,
+                    lacUpdate.getMasterKey().toByteArray());
+            return StatusCode.EOK;
+        } catch (IOException e) {
+            logger.error("Error saving lac {} for ledger:{}", lac, ledgerId, e);
+            return StatusCode.EIO;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while saving lac {} for ledger:{}", lac, ledgerId, e);
+            return StatusCode.EIO;
+        } catch (BookieException e) {
+            logger.error("Unauthorized access to ledger:{} while adding lac:{}", ledgerId, lac, e);
+            return StatusCode.EUA;
+        } catch (Throwable t) {
+            logger.error("Unexpected exception while writing lac {} for ledger:{}", lac, ledgerId, t);
+            // some bad request which cause unexpected exception
+            return StatusCode.EBADREQ;
+        }
+    }
+
+    @Override
+    public void safeRun() {
+        final long startTimeNanos = MathUtils.nowInNano();
+        List<WriteLacRequest> lacUpdates = request.getWriteLacBatchRequest().getLacUpdatesList();
+        long firstLedgerId = lacUpdates.isEmpty() ? -1L : lacUpdates.get(0).getLedgerId();
+
+        if (!isVersionCompatible()) {
+            sendWriteLacResponse(firstLedgerId, StatusCode.EBADVERSION, startTimeNanos);
+            return;
+        }
+        if (requestProcessor.getBookie().isReadOnly()) {
+            logger.warn("BookieServer is running as readonly mode, so rejecting the request from the client!");
+            sendWriteLacResponse(firstLedgerId, StatusCode.EREADONLY, startTimeNanos);
+            return;
+        }
+
+        // one count for each ledger, and one for the loop submitting them
+        final AtomicInteger pending = new AtomicInteger(lacUpdates.size() + 1);
+        final StatusCode[] firstFailure = new StatusCode[1];
+        WriteCallback cb = new WriteCallback() {
+            @Override
+            public void writeComplete(int rc, long ledgerId, long entryId, BookieId addr, Object ctx) {
+                if (BookieProtocol.EOK != rc) {
+                    recordFailure(rc == BookieProtocol.EIO ? StatusCode.EIO : StatusCode.EUA);
+                }
+                complete();
+            }
+
+            private void recordFailure(StatusCode status) {
+                synchronized (firstFailure) {
+                    if (firstFailure[0] == null) {
+                        firstFailure[0] = status;
+                    }
+                }
+            }
+
+            private void complete() {
+                if (pending.decrementAndGet() == 0) {
+                    StatusCode status;
+                    synchronized (firstFailure) {
+                        status = firstFailure[0] == null ? StatusCode.EOK : firstFailure[0];
+                    }
+                    sendWriteLacResponse(firstLedgerId, status, startTimeNanos);
+                }
+            }
+        };
+        for (WriteLacRequest lacUpdate : lacUpdates) {
+            StatusCode status = setExplicitLac(requestProcessor, channel, lacUpdate, cb);
+            if (status != StatusCode.EOK) {
+                cb.writeComplete(status == StatusCode.EIO ? BookieProtocol.EIO : BookieProtocol.EUA,
+                        lacUpdate.getLedgerId(), BookieProtocol.LAST_ADD_CONFIRMED, null, null);
+            }
+        }
+        cb.writeComplete(BookieProtocol.EOK, firstLedgerId, BookieProtocol.LAST_ADD_CONFIRMED, null, null);
+    }
+
+    private void sendWriteLacResponse(long ledgerId, StatusCode status, long startTimeNanos) {
+        if (StatusCode.EOK == status) {
+            requestProcessor.getRequestStats().getWriteLacStats()
+                .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        } else {
+            requestProcessor.getRequestStats().getWriteLacStats()
+                .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+        WriteLacResponse.Builder writeLacResponse = WriteLacResponse.newBuilder()
+                .setLedgerId(ledgerId)
+                .setStatus(status);
+        Response resp = Response.newBuilder()
+                .setHeader(getHeader())
+                .setStatus(status)
+                .setWriteLacResponse(writeLacResponse)
+                .build();
+        sendResponse(status, resp, requestProcessor.getRequestStats().getWriteLacRequestStats());
+    }
+
+    /**
+     * this toString method filters out body and masterKey from the output.
+     * masterKey contains the password of the ledger and body is customer data,
+     * so it is not appropriate to have these in logs or system output.
+     */
+    @Override
+    public String toString() {
+        return RequestUtils.toSafeString(request);
+    }
+}
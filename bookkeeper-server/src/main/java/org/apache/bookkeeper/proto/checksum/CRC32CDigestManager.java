@@ -57,9 +57,20 @@ class CRC32CDigestManager extends DigestManager {
 
     @Override
     void populateValueAndReset(ByteBuf buf) {
+        buf.writeInt(resetAndGetIntValue());
+    }
+
+    @Override
+    boolean digestMatches(ByteBuf dataReceived, int digestOffset) {
+        // compare the int value, without writing the digest to a buffer
+        return resetAndGetIntValue() == dataReceived.getInt(digestOffset);
+    }
+
+    private static int resetAndGetIntValue() {
         MutableInt current = currentCrc.get();
-        buf.writeInt(current.intValue());
+        int crc = current.intValue();
         current.setValue(0);
+        return crc;
     }
 
     @Override
@@ -68,4 +79,11 @@ class CRC32CDigestManager extends DigestManager {
         final int lastCrc = current.intValue();
         current.setValue(Crc32cIntChecksum.resumeChecksum(lastCrc, data));
     }
+
+    @Override
+    void update(ByteBuf data, int offset, int len) {
+        MutableInt current = currentCrc.get();
+        final int lastCrc = current.intValue();
+        current.setValue(Crc32cIntChecksum.resumeChecksum(lastCrc, data, offset, len));
+    }
 }
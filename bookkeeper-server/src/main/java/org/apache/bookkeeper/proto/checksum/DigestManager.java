@@ -58,6 +58,13 @@ public abstract class DigestManager {
 
     abstract void update(ByteBuf buffer);
 
+    /**
+     * Update the digest with a range of a buffer, whatever its reader index.
+     */
+    void update(ByteBuf buffer, int offset, int len) {
+        update(buffer.slice(offset, len));
+    }
+
     abstract void populateValueAndReset(ByteBuf buffer);
 
     final int macCodeLength;
@@ -170,21 +177,14 @@ public abstract class DigestManager {
                     this.getClass().getName(), dataReceived.readableBytes());
             throw new BKDigestMatchException();
         }
-        update(dataReceived.slice(0, METADATA_LENGTH));
+        update(dataReceived, 0, METADATA_LENGTH);
 
         int offset = METADATA_LENGTH + macCodeLength;
-        update(dataReceived.slice(offset, dataReceived.readableBytes() - offset));
+        update(dataReceived, offset, dataReceived.readableBytes() - offset);
 
-        ByteBuf digest = allocator.buffer(macCodeLength);
-        populateValueAndReset(digest);
-
-        try {
-            if (digest.compareTo(dataReceived.slice(METADATA_LENGTH, macCodeLength)) != 0) {
-                logger.error("Mac mismatch for ledger-id: " + ledgerId + ", entry-id: " + entryId);
-                throw new BKDigestMatchException();
-            }
-        } finally {
-            digest.release();
+        if (!digestMatches(dataReceived, METADATA_LENGTH)) {
+            logger.error("Mac mismatch for ledger-id: " + ledgerId + ", entry-id: " + entryId);
+            throw new BKDigestMatchException();
         }
 
         long actualLedgerId = dataReceived.readLong();
@@ -204,6 +204,19 @@ public abstract class DigestManager {
 
     }
 
+    /**
+     * Compare the digest computed so far with the one of the data received, resetting it.
+     */
+    boolean digestMatches(ByteBuf dataReceived, int digestOffset) {
+        ByteBuf digest = allocator.buffer(macCodeLength);
+        try {
+            populateValueAndReset(digest);
+            return digest.compareTo(dataReceived.slice(digestOffset, macCodeLength)) == 0;
+        } finally {
+            digest.release();
+        }
+    }
+
     public long verifyDigestAndReturnLac(ByteBuf dataReceived) throws BKDigestMatchException{
         if ((LAC_METADATA_LENGTH + macCodeLength) > dataReceived.readableBytes()) {
             logger.error("Data received is smaller than the minimum for this digest type."
@@ -213,18 +226,11 @@ public abstract class DigestManager {
             throw new BKDigestMatchException();
         }
 
-        update(dataReceived.slice(0, LAC_METADATA_LENGTH));
+        update(dataReceived, 0, LAC_METADATA_LENGTH);
 
-        ByteBuf digest = allocator.buffer(macCodeLength);
-        try {
-            populateValueAndReset(digest);
-
-            if (digest.compareTo(dataReceived.slice(LAC_METADATA_LENGTH, macCodeLength)) != 0) {
-                logger.error("Mac mismatch for ledger-id LAC: " + ledgerId);
-                throw new BKDigestMatchException();
-            }
-        } finally {
-            digest.release();
+        if (!digestMatches(dataReceived, LAC_METADATA_LENGTH)) {
+            logger.error("Mac mismatch for ledger-id LAC: " + ledgerId);
+            throw new BKDigestMatchException();
         }
 
         long actualLedgerId = dataReceived.readLong();
@@ -289,6 +289,7 @@ public class Auditor implements AutoCloseable {
             throws InterruptedException, IOException {
         ClientConfiguration clientConfiguration = new ClientConfiguration(conf);
         clientConfiguration.setClientRole(ClientConfiguration.CLIENT_ROLE_SYSTEM);
+        clientConfiguration.setUseReplicationEndpoint(true);
         try {
             return BookKeeper.forConfig(clientConfiguration).statsLogger(statsLogger).build();
         } catch (BKException e) {
@@ -382,6 +382,7 @@ public class Main {
             StatsLogger clientStats = bookieStats.scope(CLIENT_SCOPE);
             ClientConfiguration clientConfiguration = new ClientConfiguration(conf.getServerConf());
             clientConfiguration.setClientRole(ClientConfiguration.CLIENT_ROLE_SYSTEM);
+            clientConfiguration.setUseReplicationEndpoint(true);
             BookKeeper bkc = BookKeeper.forConfig(clientConfiguration).statsLogger(clientStats).build();
             serverBuilder.addComponent(new AutoCloseableLifecycleComponent("bkc", bkc));
 
@@ -28,6 +28,7 @@ import org.apache.bookkeeper.bookie.UncleanShutdownDetection;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorWithOomHandler;
 import org.apache.bookkeeper.common.component.ComponentInfoPublisher;
 import org.apache.bookkeeper.common.component.ComponentInfoPublisher.EndpointInfo;
+import org.apache.bookkeeper.discover.BookieServiceInfo;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.proto.BookieServer;
 import org.apache.bookkeeper.server.component.ServerLifecycleComponent;
@@ -115,6 +116,14 @@ public class BookieService extends ServerLifecycleComponent {
                     "bookie-rpc", null, extensions);
             componentInfoPublisher.publishEndpoint(endpoint);
 
+            int replicationPort = conf.getServerConf().getReplicationServerPort();
+            if (replicationPort > 0) {
+                componentInfoPublisher.publishEndpoint(new EndpointInfo(BookieServiceInfo.REPLICATION_ENDPOINT_ID,
+                        replicationPort,
+                        localAddress.getHostName(),
+                        BookieServiceInfo.REPLICATION_ENDPOINT_PROTOCOL, null, extensions));
+            }
+
         } catch (UnknownHostException err) {
             log.error("Cannot compute local address", err);
         }
@@ -17,10 +17,18 @@
  */
 package org.apache.bookkeeper.util;
 
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SelectStrategy;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
 
 import java.util.concurrent.ThreadFactory;
 
@@ -39,20 +47,84 @@ import org.apache.commons.lang.SystemUtils;
 @Slf4j
 @UtilityClass
 public class EventLoopUtil {
+
+    // The io_uring transport is incubating in Netty and shipped separately, so it's loaded only if it's
+    // on the classpath
+    private static final String IO_URING_CLASS = "io.netty.incubator.channel.uring.IOUring";
+    private static final String IO_URING_EVENT_LOOP_GROUP_CLASS =
+            "io.netty.incubator.channel.uring.IOUringEventLoopGroup";
+    private static final String IO_URING_SERVER_SOCKET_CHANNEL_CLASS =
+            "io.netty.incubator.channel.uring.IOUringServerSocketChannel";
+    private static final String IO_URING_SOCKET_CHANNEL_CLASS =
+            "io.netty.incubator.channel.uring.IOUringSocketChannel";
+
     public static EventLoopGroup getClientEventLoopGroup(ClientConfiguration conf, ThreadFactory threadFactory) {
-        return getEventLoopGroup(threadFactory, conf.getNumIOThreads(), conf.isBusyWaitEnabled());
+        return getEventLoopGroup(threadFactory, conf.getNumIOThreads(), conf.isBusyWaitEnabled(),
+                conf.isIoUringEnabled());
     }
 
     public static EventLoopGroup getServerEventLoopGroup(ServerConfiguration conf, ThreadFactory threadFactory) {
-        return getEventLoopGroup(threadFactory, conf.getServerNumIOThreads(), conf.isBusyWaitEnabled());
+        return getEventLoopGroup(threadFactory, conf.getServerNumIOThreads(), conf.isBusyWaitEnabled(),
+                conf.isIoUringEnabled());
+    }
+
+    public static EventLoopGroup getReplicationEventLoopGroup(ServerConfiguration conf, ThreadFactory threadFactory) {
+        return getEventLoopGroup(threadFactory, conf.getReplicationServerNumIOThreads(), conf.isBusyWaitEnabled(),
+                conf.isIoUringEnabled());
+    }
+
+    /**
+     * Get the class of the server socket channels to use with the given event loop group.
+     */
+    public static Class<? extends ServerChannel> getServerSocketChannelClass(EventLoopGroup eventLoopGroup) {
+        if (eventLoopGroup instanceof EpollEventLoopGroup) {
+            return EpollServerSocketChannel.class;
+        } else if (isIoUringEventLoopGroup(eventLoopGroup)) {
+            return loadChannelClass(IO_URING_SERVER_SOCKET_CHANNEL_CLASS, ServerChannel.class);
+        } else {
+            return NioServerSocketChannel.class;
+        }
+    }
+
+    /**
+     * Get the class of the client socket channels to use with the given event loop group.
+     */
+    public static Class<? extends Channel> getClientSocketChannelClass(EventLoopGroup eventLoopGroup) {
+        if (eventLoopGroup instanceof EpollEventLoopGroup) {
+            return EpollSocketChannel.class;
+        } else if (isIoUringEventLoopGroup(eventLoopGroup)) {
+            return loadChannelClass(IO_URING_SOCKET_CHANNEL_CLASS, Channel.class);
+        } else {
+            return NioSocketChannel.class;
+        }
+    }
+
+    /**
+     * Get the option of the TCP user timeout of the client socket channels of the given event loop group.
+     *
+     * @return the option, or null if the transport of the event loop group doesn't support it
+     */
+    public static ChannelOption<Integer> getTcpUserTimeoutOption(EventLoopGroup eventLoopGroup) {
+        return eventLoopGroup instanceof EpollEventLoopGroup ? EpollChannelOption.TCP_USER_TIMEOUT : null;
+    }
+
+    public static boolean isIoUringEventLoopGroup(EventLoopGroup eventLoopGroup) {
+        return eventLoopGroup != null && IO_URING_EVENT_LOOP_GROUP_CLASS.equals(eventLoopGroup.getClass().getName());
     }
 
     private static EventLoopGroup getEventLoopGroup(ThreadFactory threadFactory,
-            int numThreads, boolean enableBusyWait) {
+            int numThreads, boolean enableBusyWait, boolean enableIoUring) {
         if (!SystemUtils.IS_OS_LINUX) {
             return new NioEventLoopGroup(numThreads, threadFactory);
         }
 
+        if (enableIoUring) {
+            EventLoopGroup eventLoopGroup = getIoUringEventLoopGroup(threadFactory, numThreads);
+            if (eventLoopGroup != null) {
+                return eventLoopGroup;
+            }
+        }
+
         try {
             if (!enableBusyWait) {
                 // Regular Epoll based event loop
@@ -82,4 +154,36 @@ public class EventLoopUtil {
             return new NioEventLoopGroup(numThreads, threadFactory);
         }
     }
+
+    private static EventLoopGroup getIoUringEventLoopGroup(ThreadFactory threadFactory, int numThreads) {
+        try {
+            ClassLoader classLoader = EventLoopUtil.class.getClassLoader();
+            Class<?> ioUring = Class.forName(IO_URING_CLASS, true, classLoader);
+            if (!(Boolean) ioUring.getMethod("isAvailable").invoke(null)) {
+                Throwable cause = (Throwable) ioUring.getMethod("unavailabilityCause").invoke(null);
+                log.warn("Netty io_uring transport is not available, falling back to epoll: {}",
+                        cause != null ? cause.getMessage() : null);
+                return null;
+            }
+
+            return (EventLoopGroup) Class.forName(IO_URING_EVENT_LOOP_GROUP_CLASS, true, classLoader)
+                    .getConstructor(int.class, ThreadFactory.class)
+                    .newInstance(numThreads, threadFactory);
+        } catch (ClassNotFoundException e) {
+            log.warn("Netty io_uring transport is not on the classpath, falling back to epoll");
+            return null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Could not use Netty io_uring event loop, falling back to epoll: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static <T> Class<? extends T> loadChannelClass(String className, Class<T> channelType) {
+        try {
+            return Class.forName(className, true, EventLoopUtil.class.getClassLoader()).asSubclass(channelType);
+        } catch (ClassNotFoundException e) {
+            // the event loop group of the same transport was loaded already
+            throw new IllegalStateException("Could not load channel class " + className, e);
+        }
+    }
 }
@@ -0,0 +1,328 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent multi-map from a pair of longs to Objects.
+ *
+ * <p>(long,long) --&gt; [Object]
+ *
+ * <p>Several values can be stored for the same key, each in its own bucket. Since it's an open hash
+ * map with linear probing, no node allocations are required to store the keys and values, and no
+ * boxing is required.
+ *
+ * @param <V>
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentLongPairMultiMap<V> {
+
+    private static final Object EmptyValue = null;
+    private static final Object DeletedValue = new Object();
+
+    private static final int DefaultExpectedItems = 256;
+    private static final int DefaultConcurrencyLevel = 16;
+
+    private static final float MapFillFactor = 0.66f;
+
+    /**
+     * Predicate specialization for (long, long, V) types.
+     *
+     * @param <V>
+     */
+    public interface LongPairObjectPredicate<V> {
+        boolean test(long key1, long key2, V value);
+    }
+
+    /**
+     * An entry processor.
+     */
+    public interface EntryProcessor<V> {
+        void accept(long key1, long key2, V value);
+    }
+
+    private final Section<V>[] sections;
+
+    public ConcurrentLongPairMultiMap() {
+        this(DefaultExpectedItems, DefaultConcurrencyLevel);
+    }
+
+    public ConcurrentLongPairMultiMap(int expectedItems, int concurrencyLevel) {
+        checkArgument(expectedItems > 0);
+        checkArgument(concurrencyLevel > 0);
+        checkArgument(expectedItems >= concurrencyLevel);
+
+        int numSections = concurrencyLevel;
+        int perSectionExpectedItems = expectedItems / numSections;
+        int perSectionCapacity = (int) (perSectionExpectedItems / MapFillFactor);
+        this.sections = (Section<V>[]) new Section[numSections];
+
+        for (int i = 0; i < numSections; i++) {
+            sections[i] = new Section<>(perSectionCapacity);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Section<V> s : sections) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Section<V> s : sections) {
+            if (s.size != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add a value for the key, regardless of the values already stored for it.
+     */
+    public void put(long key1, long key2, V value) {
+        checkNotNull(value);
+        long h = hash(key1, key2);
+        getSection(h).put(key1, key2, value, (int) h);
+    }
+
+    /**
+     * Get a value stored for the key and accepted by the filter, if any.
+     */
+    public V get(long key1, long key2, Predicate<V> filter) {
+        long h = hash(key1, key2);
+        return getSection(h).get(key1, key2, filter, (int) h, false);
+    }
+
+    /**
+     * Remove a value stored for the key, if any.
+     */
+    public V remove(long key1, long key2) {
+        return remove(key1, key2, value -> true);
+    }
+
+    /**
+     * Remove a value stored for the key and accepted by the filter, if any. The filter is evaluated
+     * while holding the lock of the section of the key.
+     */
+    public V remove(long key1, long key2, Predicate<V> filter) {
+        long h = hash(key1, key2);
+        return getSection(h).get(key1, key2, filter, (int) h, true);
+    }
+
+    public int removeIf(LongPairObjectPredicate<V> predicate) {
+        checkNotNull(predicate);
+
+        int removedCount = 0;
+        for (Section<V> s : sections) {
+            removedCount += s.removeIf(predicate);
+        }
+        return removedCount;
+    }
+
+    public void forEach(EntryProcessor<V> processor) {
+        for (Section<V> s : sections) {
+            s.forEach(processor);
+        }
+    }
+
+    private Section<V> getSection(long hash) {
+        // Use 32 msb out of long to get the section
+        final int sectionIdx = (int) (hash >>> 32) & (sections.length - 1);
+        return sections[sectionIdx];
+    }
+
+    // A section is a portion of the hash map that is covered by a single lock
+    @SuppressWarnings("serial")
+    private static final class Section<V> extends StampedLock {
+        // Keys are stored in pairs: key1, key2
+        private long[] keys;
+        private V[] values;
+
+        private int capacity;
+        private volatile int size;
+        private int usedBuckets;
+        private int resizeThreshold;
+
+        Section(int capacity) {
+            this.capacity = alignToPowerOfTwo(Math.max(capacity, 2));
+            this.keys = new long[2 * this.capacity];
+            this.values = (V[]) new Object[this.capacity];
+            this.size = 0;
+            this.usedBuckets = 0;
+            this.resizeThreshold = (int) (this.capacity * MapFillFactor);
+        }
+
+        V get(long key1, long key2, Predicate<V> filter, int keyHash, boolean remove) {
+            long stamp = remove ? writeLock() : readLock();
+            try {
+                int bucket = signSafeMod(keyHash, capacity);
+                while (true) {
+                    V storedValue = values[bucket];
+                    if (storedValue == EmptyValue) {
+                        // Not found
+                        return null;
+                    } else if (storedValue != DeletedValue
+                            && keys[2 * bucket] == key1
+                            && keys[2 * bucket + 1] == key2
+                            && filter.test(storedValue)) {
+                        if (remove) {
+                            removeBucket(bucket);
+                        }
+                        return storedValue;
+                    }
+                    bucket = signSafeMod(bucket + 1, capacity);
+                }
+            } finally {
+                unlock(stamp);
+            }
+        }
+
+        void put(long key1, long key2, V value, int keyHash) {
+            long stamp = writeLock();
+            try {
+                int bucket = signSafeMod(keyHash, capacity);
+                while (values[bucket] != EmptyValue && values[bucket] != DeletedValue) {
+                    bucket = signSafeMod(bucket + 1, capacity);
+                }
+                if (values[bucket] == EmptyValue) {
+                    ++usedBuckets;
+                }
+                keys[2 * bucket] = key1;
+                keys[2 * bucket + 1] = key2;
+                values[bucket] = value;
+                ++size;
+
+                if (usedBuckets > resizeThreshold) {
+                    rehash(alignToPowerOfTwo(2 * capacity));
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        int removeIf(LongPairObjectPredicate<V> filter) {
+            long stamp = writeLock();
+
+            int removedCount = 0;
+            try {
+                // Go through all the buckets for this section
+                for (int bucket = 0; bucket < capacity; bucket++) {
+                    V storedValue = values[bucket];
+                    if (storedValue != EmptyValue && storedValue != DeletedValue
+                            && filter.test(keys[2 * bucket], keys[2 * bucket + 1], storedValue)) {
+                        removeBucket(bucket);
+                        ++removedCount;
+                    }
+                }
+                return removedCount;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void forEach(EntryProcessor<V> processor) {
+            long stamp = readLock();
+            try {
+                for (int bucket = 0; bucket < capacity; bucket++) {
+                    V storedValue = values[bucket];
+                    if (storedValue != EmptyValue && storedValue != DeletedValue) {
+                        processor.accept(keys[2 * bucket], keys[2 * bucket + 1], storedValue);
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        private void removeBucket(int bucket) {
+            --size;
+            if (values[signSafeMod(bucket + 1, capacity)] == EmptyValue) {
+                values[bucket] = (V) EmptyValue;
+                --usedBuckets;
+
+                // Cleanup all the buckets that were in `DeletedValue` state before this one
+                int lastBucket = signSafeMod(bucket - 1, capacity);
+                while (values[lastBucket] == DeletedValue) {
+                    values[lastBucket] = (V) EmptyValue;
+                    --usedBuckets;
+                    lastBucket = signSafeMod(lastBucket - 1, capacity);
+                }
+            } else {
+                values[bucket] = (V) DeletedValue;
+            }
+        }
+
+        private void rehash(int newCapacity) {
+            long[] newKeys = new long[2 * newCapacity];
+            V[] newValues = (V[]) new Object[newCapacity];
+
+            for (int i = 0; i < capacity; i++) {
+                V storedValue = values[i];
+                if (storedValue != EmptyValue && storedValue != DeletedValue) {
+                    long key1 = keys[2 * i];
+                    long key2 = keys[2 * i + 1];
+                    int bucket = signSafeMod(hash(key1, key2), newCapacity);
+                    while (newValues[bucket] != EmptyValue) {
+                        bucket = signSafeMod(bucket + 1, newCapacity);
+                    }
+                    newKeys[2 * bucket] = key1;
+                    newKeys[2 * bucket + 1] = key2;
+                    newValues[bucket] = storedValue;
+                }
+            }
+
+            keys = newKeys;
+            values = newValues;
+            capacity = newCapacity;
+            usedBuckets = size;
+            resizeThreshold = (int) (capacity * MapFillFactor);
+        }
+    }
+
+    private static final long HashMixer = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+
+    static final long hash(long key1, long key2) {
+        long hash = key1 * HashMixer;
+        hash ^= hash >>> R;
+        hash *= HashMixer;
+        hash += 31 + (key2 * HashMixer);
+        hash ^= hash >>> R;
+        hash *= HashMixer;
+        return hash;
+    }
+
+    static final int signSafeMod(long n, int max) {
+        return (int) n & (max - 1);
+    }
+
+    private static int alignToPowerOfTwo(int n) {
+        return (int) Math.pow(2, 32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+}
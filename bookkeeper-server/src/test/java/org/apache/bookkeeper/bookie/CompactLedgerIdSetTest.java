@@ -0,0 +1,107 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Test the snapshot of the ledger ids of a bookie.
+ */
+public class CompactLedgerIdSetTest {
+
+    private static long[] inRange(CompactLedgerIdSet set, long start, long end) {
+        List<Long> ledgers = new ArrayList<>();
+        set.forEachInRange(start, end, ledgers::add);
+        return ledgers.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long[] all(CompactLedgerIdSet set) {
+        List<Long> ledgers = new ArrayList<>();
+        set.iterator().forEachRemaining((long ledgerId) -> ledgers.add(ledgerId));
+        return ledgers.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Test
+    public void testSortedAndDeduplicated() {
+        CompactLedgerIdSet set = CompactLedgerIdSet.copyOf(Arrays.asList(5L, 1L, 9L, 5L, 3L, 1L, Long.MAX_VALUE));
+        assertEquals(5, set.size());
+        assertArrayEquals(new long[] { 1L, 3L, 5L, 9L, Long.MAX_VALUE }, all(set));
+        assertTrue(set.contains(9L));
+        assertFalse(set.contains(4L));
+        assertFalse(set.contains(0L));
+    }
+
+    @Test
+    public void testGrow() {
+        List<Long> ledgers = new ArrayList<>();
+        for (long ledgerId = 0; ledgerId < 5000; ledgerId++) {
+            ledgers.add(ledgerId * 2);
+        }
+        CompactLedgerIdSet set = CompactLedgerIdSet.copyOf(ledgers);
+        assertEquals(5000, set.size());
+        assertTrue(set.contains(9998L));
+        assertFalse(set.contains(9999L));
+        assertEquals(5000, all(set).length);
+    }
+
+    @Test
+    public void testEmpty() {
+        CompactLedgerIdSet set = CompactLedgerIdSet.copyOf(Collections.emptyList());
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0L));
+        assertArrayEquals(new long[0], all(set));
+        assertArrayEquals(new long[0], inRange(set, 0L, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRange() {
+        CompactLedgerIdSet set = CompactLedgerIdSet.copyOf(Arrays.asList(1L, 3L, 5L, 7L, 9L));
+        // both bounds inclusive
+        assertArrayEquals(new long[] { 3L, 5L, 7L }, inRange(set, 3L, 7L));
+        assertArrayEquals(new long[] { 3L, 5L }, inRange(set, 2L, 6L));
+        assertArrayEquals(new long[] { 1L, 3L, 5L, 7L, 9L }, inRange(set, 0L, Long.MAX_VALUE));
+        assertArrayEquals(new long[0], inRange(set, 10L, Long.MAX_VALUE));
+        assertArrayEquals(new long[0], inRange(set, 6L, 6L));
+        assertArrayEquals(new long[] { 9L }, inRange(set, 9L, 9L));
+    }
+
+    @Test
+    public void testWithout() {
+        CompactLedgerIdSet set = CompactLedgerIdSet.copyOf(Arrays.asList(1L, 3L, 5L, 7L));
+        assertTrue(set == set.without(Collections.emptySet()));
+        CompactLedgerIdSet remaining = set.without(new HashSet<>(Arrays.asList(3L, 7L, 8L)));
+        assertArrayEquals(new long[] { 1L, 5L }, all(remaining));
+        assertEquals(2, remaining.size());
+        assertFalse(remaining.contains(7L));
+        // the snapshot itself is left unchanged
+        assertArrayEquals(new long[] { 1L, 3L, 5L, 7L }, all(set));
+    }
+}
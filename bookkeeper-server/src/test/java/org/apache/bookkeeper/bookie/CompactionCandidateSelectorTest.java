@@ -0,0 +1,138 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the selection of the entry logs to compact by their benefit/cost ratio.
+ */
+public class CompactionCandidateSelectorTest {
+
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private LedgerDirsManager ledgerDirsManager;
+    private CompactionCandidateSelector selector;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setLedgerDirNames(new String[] { tmpDir.getRoot().getAbsolutePath() });
+        conf.setDiskUsageWarnThreshold(0.90f);
+        conf.setDiskUsageThreshold(0.95f);
+        ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+        selector = new CompactionCandidateSelector(conf, ledgerDirsManager);
+    }
+
+    private static EntryLogMetadata newMetadata(long entryLogId, long liveBytes, long totalBytes) {
+        EntryLogMetadata meta = new EntryLogMetadata(entryLogId);
+        meta.addLedgerSize(1L, liveBytes);
+        meta.addLedgerSize(2L, totalBytes - liveBytes);
+        meta.removeLedgerIf(ledgerId -> ledgerId == 2L);
+        return meta;
+    }
+
+    private List<Long> select(EntryLogMetadataMap map, double threshold, long lastEntryLogId) throws Exception {
+        List<Long> selected = new ArrayList<>();
+        for (EntryLogMetadata meta : selector.selectCandidates(map, threshold, lastEntryLogId)) {
+            selected.add(meta.getEntryLogId());
+        }
+        return selected;
+    }
+
+    private void setDiskUsage(float usage) {
+        File dir = ledgerDirsManager.getAllLedgerDirs().get(0);
+        ledgerDirsManager.getDiskUsages().put(dir, usage);
+    }
+
+    @Test
+    public void testSelectByBenefitOverCost() throws Exception {
+        EntryLogMetadataMap map = new InMemoryEntryLogMetadataMap();
+        // same age, the emptier first
+        map.put(10, newMetadata(10, 40, 100));
+        map.put(11, newMetadata(11, 10, 100));
+        // above the threshold
+        map.put(12, newMetadata(12, 60, 100));
+        // older, so colder
+        map.put(2, newMetadata(2, 40, 100));
+        assertEquals(Arrays.asList(2L, 11L, 10L), select(map, 0.5, 20));
+
+        // nothing below the threshold
+        assertEquals(Arrays.asList(), select(map, 0.05, 20));
+    }
+
+    @Test
+    public void testCostBenefit() {
+        // the age is at least one entry log
+        assertEquals(1.0, CompactionCandidateSelector.costBenefit(newMetadata(5, 0, 100), 5), 1e-9);
+        assertEquals((1 - 0.5) * 10 / (1 + 0.5),
+                CompactionCandidateSelector.costBenefit(newMetadata(5, 50, 100), 15), 1e-9);
+        assertTrue(CompactionCandidateSelector.costBenefit(newMetadata(5, 10, 100), 15)
+                > CompactionCandidateSelector.costBenefit(newMetadata(5, 20, 100), 15));
+    }
+
+    @Test
+    public void testThresholdTightenedWithDiskPressure() {
+        setDiskUsage(0.5f);
+        assertEquals(0.0, selector.getDiskPressure(), 1e-6);
+        assertEquals(0.8, selector.adjustThreshold(0.8), 1e-6);
+
+        // half way between the warn threshold and the disk usage threshold
+        setDiskUsage(0.925f);
+        assertEquals(0.5, selector.getDiskPressure(), 1e-3);
+        assertEquals(0.8 * 0.75, selector.adjustThreshold(0.8), 1e-3);
+
+        // down to the min ratio of the threshold once the disks are full
+        setDiskUsage(0.99f);
+        assertEquals(1.0, selector.getDiskPressure(), 1e-6);
+        assertEquals(0.8 * CompactionCandidateSelector.MIN_THRESHOLD_RATIO, selector.adjustThreshold(0.8), 1e-6);
+    }
+
+    @Test
+    public void testUsageHistogram() {
+        assertEquals(0, CompactionCandidateSelector.bucketIndex(0.0));
+        assertEquals(4, CompactionCandidateSelector.bucketIndex(0.45));
+        assertEquals(CompactionCandidateSelector.NUM_BUCKETS - 1, CompactionCandidateSelector.bucketIndex(1.0));
+
+        long[] counts = new long[CompactionCandidateSelector.NUM_BUCKETS];
+        long[] remainingBytes = new long[CompactionCandidateSelector.NUM_BUCKETS];
+        counts[4] = 3;
+        remainingBytes[4] = 1000;
+        selector.updateHistogram(counts, remainingBytes);
+        assertEquals(3, selector.getEntryLogCount(4));
+        assertEquals(1000, selector.getEntryLogRemainingBytes(4));
+        assertEquals(0, selector.getEntryLogCount(5));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the compaction of entry logs, the entries being copied one by one or transferred in runs.
+ */
+public class EntryLogCompactorTest {
+
+    private static final long LIVE_LEDGER_1 = 1L;
+    private static final long LIVE_LEDGER_2 = 2L;
+    private static final long DELETED_LEDGER = 3L;
+
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    // the entries written, by ledger and entry id
+    private final Map<Long, Map<Long, byte[]>> written = new HashMap<>();
+    private long srcEntryLogId = -1L;
+
+    private ServerConfiguration newConf(boolean zeroCopy, boolean entryLogPerLedger) throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setLedgerDirNames(new String[] { tmpDir.getRoot().getAbsolutePath() });
+        conf.setCompactionZeroCopyEnabled(zeroCopy);
+        conf.setEntryLogPerLedgerEnabled(entryLogPerLedger);
+        return conf;
+    }
+
+    private static EntryLogger newEntryLogger(ServerConfiguration conf) throws Exception {
+        File current = BookieImpl.getCurrentDirectory(conf.getLedgerDirs()[0]);
+        current.mkdirs();
+        return new EntryLogger(conf, new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold())));
+    }
+
+    private void addEntry(EntryLogger entryLogger, long ledgerId, long entryId, int payloadLength) throws Exception {
+        byte[] payload = new byte[payloadLength];
+        Arrays.fill(payload, (byte) (ledgerId * 31 + entryId));
+        ByteBuf entry = Unpooled.buffer(16 + payloadLength);
+        entry.writeLong(ledgerId).writeLong(entryId).writeBytes(payload);
+        byte[] content = ByteBufUtil.getBytes(entry);
+        long location = entryLogger.addEntry(ledgerId, entry, false);
+        long entryLogId = location >> 32;
+        assertTrue(srcEntryLogId == -1L || srcEntryLogId == entryLogId);
+        srcEntryLogId = entryLogId;
+        written.computeIfAbsent(ledgerId, k -> new HashMap<>()).put(entryId, content);
+    }
+
+    /**
+     * Write an entry log whose live entries form runs of several ledgers, cut by the entries of a deleted ledger,
+     * and by the max length of a run.
+     */
+    private void writeEntryLog() throws Exception {
+        EntryLogger entryLogger = newEntryLogger(newConf(false, false));
+        long[] nextEntryId = new long[4];
+        // interleaved, with gaps of one or several entries of the deleted ledger
+        long[] pattern = { LIVE_LEDGER_1, LIVE_LEDGER_2, LIVE_LEDGER_1, DELETED_LEDGER, LIVE_LEDGER_2,
+                DELETED_LEDGER, DELETED_LEDGER, LIVE_LEDGER_1, LIVE_LEDGER_1, LIVE_LEDGER_2 };
+        for (int i = 0; i < 200; i++) {
+            long ledgerId = pattern[i % pattern.length];
+            addEntry(entryLogger, ledgerId, nextEntryId[(int) ledgerId]++, 10 + i % 97);
+        }
+        // runs longer than the max bytes of a transfer
+        for (int i = 0; i < 20; i++) {
+            addEntry(entryLogger, LIVE_LEDGER_1, nextEntryId[(int) LIVE_LEDGER_1]++, 1024 * 1024 - 7 * i);
+        }
+        for (int i = 0; i < 3; i++) {
+            addEntry(entryLogger, LIVE_LEDGER_2, nextEntryId[(int) LIVE_LEDGER_2]++,
+                    EntryLogCompactor.MAX_TRANSFER_RUN_BYTES / 2 - 100);
+        }
+        addEntry(entryLogger, DELETED_LEDGER, nextEntryId[(int) DELETED_LEDGER]++, 100);
+        // the last entry of the entry log, left alone
+        addEntry(entryLogger, LIVE_LEDGER_2, nextEntryId[(int) LIVE_LEDGER_2]++, 5);
+        entryLogger.shutdown();
+    }
+
+    /**
+     * A ledger storage recording the locations updated by the compaction.
+     */
+    @SuppressWarnings("unchecked")
+    private static CompactableLedgerStorage recordingStorage(Map<Long, Map<Long, Long>> locations) {
+        return (CompactableLedgerStorage) Proxy.newProxyInstance(EntryLogCompactorTest.class.getClassLoader(),
+                new Class<?>[] { CompactableLedgerStorage.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "updateEntriesLocations":
+                        for (EntryLocation location : (Iterable<EntryLocation>) args[0]) {
+                            Long previous = locations.computeIfAbsent(location.getLedger(), k -> new HashMap<>())
+                                    .put(location.getEntry(), location.getLocation());
+                            assertNull(previous);
+                        }
+                        return null;
+                    case "flushEntriesLocationsIndex":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private void compactAndReadBack(boolean zeroCopy, boolean entryLogPerLedger) throws Exception {
+        writeEntryLog();
+
+        ServerConfiguration conf = newConf(zeroCopy, entryLogPerLedger);
+        EntryLogger entryLogger = newEntryLogger(conf);
+        try {
+            EntryLogMetadata meta = entryLogger.getEntryLogMetadata(srcEntryLogId);
+            meta.removeLedgerIf(ledgerId -> ledgerId == DELETED_LEDGER);
+            Map<Long, Map<Long, Long>> locations = new HashMap<>();
+            List<Long> removed = new ArrayList<>();
+            EntryLogCompactor compactor = new EntryLogCompactor(conf, entryLogger, recordingStorage(locations),
+                    removed::add);
+            assertTrue(compactor.compact(meta));
+            assertEquals(Arrays.asList(srcEntryLogId), removed);
+
+            // every entry of the live ledgers is read back from its new location, and only those
+            assertEquals(new HashSet<>(Arrays.asList(LIVE_LEDGER_1, LIVE_LEDGER_2)), locations.keySet());
+            Map<Long, Set<Long>> ledgersPerEntryLog = new HashMap<>();
+            for (long ledgerId : locations.keySet()) {
+                assertEquals(written.get(ledgerId).keySet(), locations.get(ledgerId).keySet());
+                for (Map.Entry<Long, Long> location : locations.get(ledgerId).entrySet()) {
+                    long entryLogId = location.getValue() >> 32;
+                    assertNotEquals(srcEntryLogId, entryLogId);
+                    ledgersPerEntryLog.computeIfAbsent(entryLogId, k -> new HashSet<>()).add(ledgerId);
+                    ByteBuf entry = entryLogger.readEntry(ledgerId, location.getKey(), location.getValue());
+                    try {
+                        assertTrue("Entry " + location.getKey() + " of ledger " + ledgerId,
+                                Arrays.equals(written.get(ledgerId).get(location.getKey()),
+                                        ByteBufUtil.getBytes(entry)));
+                    } finally {
+                        entry.release();
+                    }
+                }
+            }
+            if (entryLogPerLedger) {
+                // the runs don't span several ledgers
+                for (Set<Long> ledgers : ledgersPerEntryLog.values()) {
+                    assertEquals(1, ledgers.size());
+                }
+                assertEquals(2, ledgersPerEntryLog.size());
+            } else {
+                assertFalse(ledgersPerEntryLog.isEmpty());
+            }
+        } finally {
+            entryLogger.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testCompactByCopy() throws Exception {
+        compactAndReadBack(false, false);
+    }
+
+    @Test(timeout = 60000)
+    public void testCompactByTransfer() throws Exception {
+        compactAndReadBack(true, false);
+    }
+
+    @Test(timeout = 60000)
+    public void testCompactByTransferWithEntryLogPerLedger() throws Exception {
+        compactAndReadBack(true, true);
+    }
+}
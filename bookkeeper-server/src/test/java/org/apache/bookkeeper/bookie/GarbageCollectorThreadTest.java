@@ -0,0 +1,274 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.bookkeeper.bookie.BookieException.EntryLogMetadataMapException;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the compaction of the entry logs below the threshold, one at a time or concurrently.
+ */
+public class GarbageCollectorThreadTest {
+
+    private static final long DELETED_LEDGER = 100L;
+    private static final double THRESHOLD = 0.5;
+
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    // the live entries of each entry log, by ledger
+    private final Map<Long, Map<Long, Integer>> liveEntries = new HashMap<>();
+    // the locations updated by the compactions, by ledger and entry id
+    private final Map<Long, Map<Long, Long>> locations = new ConcurrentHashMap<>();
+    private final Set<Long> removedEntryLogs = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private EntryLogger entryLogger;
+    private GarbageCollectorThread gcThread;
+
+    private ServerConfiguration newConf() {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setLedgerDirNames(new String[] { tmpDir.getRoot().getAbsolutePath() });
+        conf.setAllowLoopback(true);
+        return conf;
+    }
+
+    private static LedgerDirsManager newDirsManager(ServerConfiguration conf) throws Exception {
+        File current = BookieImpl.getCurrentDirectory(conf.getLedgerDirs()[0]);
+        current.mkdirs();
+        return new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+    }
+
+    /**
+     * Write an entry log with the given number of entries of a live ledger, and of a ledger deleted since.
+     */
+    private long writeEntryLog(ServerConfiguration conf, long liveLedger, int numLive, int numDeleted)
+            throws Exception {
+        EntryLogger writer = new EntryLogger(conf, newDirsManager(conf));
+        long entryLogId = -1L;
+        for (int i = 0; i < numLive + numDeleted; i++) {
+            long ledgerId = i < numLive ? liveLedger : DELETED_LEDGER;
+            ByteBuf entry = Unpooled.buffer(1024);
+            entry.writeLong(ledgerId).writeLong(i).writeZero(1024 - 16);
+            entryLogId = writer.addEntry(ledgerId, entry, false) >> 32;
+        }
+        writer.shutdown();
+        liveEntries.computeIfAbsent(entryLogId, k -> new HashMap<>()).put(liveLedger, numLive);
+        return entryLogId;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompactableLedgerStorage recordingStorage() {
+        return (CompactableLedgerStorage) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { CompactableLedgerStorage.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getEntryLogger":
+                        return entryLogger;
+                    case "ledgerExists":
+                        return (long) args[0] != DELETED_LEDGER;
+                    case "updateEntriesLocations":
+                        for (EntryLocation location : (Iterable<EntryLocation>) args[0]) {
+                            locations.computeIfAbsent(location.getLedger(), k -> new ConcurrentHashMap<>())
+                                    .put(location.getEntry(), location.getLocation());
+                        }
+                        return null;
+                    case "flushEntriesLocationsIndex":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private void newGcThread(ServerConfiguration conf) throws Exception {
+        LedgerDirsManager dirsManager = newDirsManager(conf);
+        entryLogger = new EntryLogger(conf, dirsManager);
+        gcThread = new GarbageCollectorThread(conf, null, dirsManager, recordingStorage(),
+                NullStatsLogger.INSTANCE) {
+            @Override
+            protected void removeEntryLog(long entryLogId) throws EntryLogMetadataMapException {
+                removedEntryLogs.add(entryLogId);
+                super.removeEntryLog(entryLogId);
+            }
+        };
+    }
+
+    /**
+     * Write entry logs with a usage of 10%, 30%, 90% and 20%, the last one being written to.
+     */
+    private List<Long> setup(int compactionParallelism) throws Exception {
+        return setup(compactionParallelism, false);
+    }
+
+    private List<Long> setup(int compactionParallelism, boolean costBased) throws Exception {
+        ServerConfiguration conf = newConf();
+        conf.setUseCostBasedCompaction(costBased);
+        List<Long> entryLogIds = Arrays.asList(
+                writeEntryLog(conf, 1L, 1, 9),
+                writeEntryLog(conf, 2L, 3, 7),
+                writeEntryLog(conf, 3L, 9, 1),
+                writeEntryLog(conf, 4L, 2, 8));
+
+        conf.setCompactionParallelism(compactionParallelism);
+        newGcThread(conf);
+        for (long entryLogId : entryLogIds) {
+            EntryLogMetadata meta = entryLogger.getEntryLogMetadata(entryLogId);
+            meta.removeLedgerIf(ledgerId -> ledgerId == DELETED_LEDGER);
+            gcThread.getEntryLogMetaMap().put(entryLogId, meta);
+        }
+        return entryLogIds;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (gcThread != null) {
+            gcThread.shutdown();
+        }
+        if (entryLogger != null) {
+            entryLogger.shutdown();
+        }
+    }
+
+    private void compactBelowThreshold(int compactionParallelism, boolean costBased) throws Exception {
+        List<Long> entryLogIds = setup(compactionParallelism, costBased);
+        gcThread.doCompactEntryLogs(THRESHOLD, 0);
+
+        Set<Long> compacted = new HashSet<>(Arrays.asList(entryLogIds.get(0), entryLogIds.get(1),
+                entryLogIds.get(3)));
+        assertEquals(compacted, removedEntryLogs);
+        assertTrue(gcThread.getEntryLogMetaMap().containsKey(entryLogIds.get(2)));
+        assertEquals(1, gcThread.getEntryLogMetaMap().size());
+
+        // the live entries of the compacted entry logs were moved, and only those
+        Map<Long, Integer> moved = new HashMap<>();
+        for (long entryLogId : compacted) {
+            moved.putAll(liveEntries.get(entryLogId));
+        }
+        assertEquals(moved.keySet(), locations.keySet());
+        for (Map.Entry<Long, Integer> ledger : moved.entrySet()) {
+            assertEquals((int) ledger.getValue(), locations.get(ledger.getKey()).size());
+            for (long location : locations.get(ledger.getKey()).values()) {
+                assertFalse(entryLogIds.contains(location >> 32));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testCompactOneAtATime() throws Exception {
+        compactBelowThreshold(1, false);
+    }
+
+    @Test(timeout = 60000)
+    public void testCompactConcurrently() throws Exception {
+        compactBelowThreshold(4, false);
+    }
+
+    @Test(timeout = 60000)
+    public void testCostBasedCompaction() throws Exception {
+        compactBelowThreshold(1, true);
+    }
+
+    @Test(timeout = 60000)
+    public void testCostBasedCompactionConcurrently() throws Exception {
+        compactBelowThreshold(4, true);
+    }
+
+    @Test(timeout = 60000)
+    public void testNoCompactionOnceStopped() throws Exception {
+        setup(4);
+        gcThread.running = false;
+        gcThread.doCompactEntryLogs(THRESHOLD, 0);
+        gcThread.running = true;
+
+        assertTrue(removedEntryLogs.isEmpty());
+        assertTrue(locations.isEmpty());
+        assertEquals(4, gcThread.getEntryLogMetaMap().size());
+    }
+
+    private void extractMetadata(int extractionThreads) throws Exception {
+        ServerConfiguration conf = newConf();
+        long known = writeEntryLog(conf, 1L, 5, 5);
+        long deleted = writeEntryLog(conf, 2L, 0, 10);
+        long partlyDeleted = writeEntryLog(conf, 3L, 4, 6);
+        long live = writeEntryLog(conf, 4L, 10, 0);
+
+        conf.setGcEntryLogMetadataExtractionThreads(extractionThreads);
+        newGcThread(conf);
+        // already known, from a previous run
+        EntryLogMetadata knownMeta = new EntryLogMetadata(known);
+        knownMeta.addLedgerSize(1L, 1);
+        gcThread.getEntryLogMetaMap().put(known, knownMeta);
+
+        gcThread.extractMetaFromEntryLogs();
+        assertTrue(gcThread.scannedLogId > live);
+
+        Map<Long, Map<Long, Long>> ledgers = new HashMap<>();
+        gcThread.getEntryLogMetaMap().forEach((entryLogId, meta) -> {
+            Map<Long, Long> sizes = new HashMap<>();
+            meta.getLedgersMap().forEach(sizes::put);
+            ledgers.put(entryLogId, sizes);
+        });
+        // the known entry log isn't read again, and the one of a deleted ledger is garbage collected
+        assertEquals(new HashSet<>(Arrays.asList(known, partlyDeleted, live)), ledgers.keySet());
+        assertEquals(Collections.singletonMap(1L, 1L), ledgers.get(known));
+        assertEquals(Collections.singleton(3L), ledgers.get(partlyDeleted).keySet());
+        assertEquals(Collections.singleton(4L), ledgers.get(live).keySet());
+        assertFalse(entryLogger.logExists(deleted));
+        assertTrue(entryLogger.logExists(partlyDeleted));
+
+        // the entry logs already scanned aren't looked at again
+        gcThread.getEntryLogMetaMap().remove(live);
+        gcThread.extractMetaFromEntryLogs();
+        assertFalse(gcThread.getEntryLogMetaMap().containsKey(live));
+    }
+
+    @Test(timeout = 60000)
+    public void testExtractMetadataSerially() throws Exception {
+        extractMetadata(1);
+    }
+
+    @Test(timeout = 60000)
+    public void testExtractMetadataConcurrently() throws Exception {
+        extractMetadata(4);
+    }
+}
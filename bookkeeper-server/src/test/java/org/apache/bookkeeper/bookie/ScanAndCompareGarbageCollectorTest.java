@@ -0,0 +1,178 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRange;
+import org.apache.bookkeeper.meta.LedgerManager.LedgerRangeIterator;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.Test;
+
+/**
+ * Test the ledgers deleted by the garbage collection, comparing the ledgers of the bookie with the metadata.
+ */
+public class ScanAndCompareGarbageCollectorTest {
+
+    private static final BookieId SELF = BookieId.parse("bookie-self:3181");
+    private static final BookieId OTHER = BookieId.parse("bookie-other:3181");
+
+    // the ledgers of the bookie
+    private static final List<Long> BOOKIE_LEDGERS = Arrays.asList(
+            1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 100L, 150L, 200L, 1000L, 5000L, Long.MAX_VALUE - 1);
+
+    // the ranges of ledgers in the metadata, ledgers of the bookie being before, between and after the ranges
+    private static final List<List<Long>> METADATA_RANGES = Arrays.asList(
+            Arrays.asList(2L, 3L, 5L),
+            Arrays.asList(8L, 10L, 11L),
+            Arrays.asList(150L, 160L),
+            Arrays.asList(999L, 5000L));
+
+    private static ServerConfiguration newConf(boolean bulk, boolean verifyMetadata) {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setBookieId(SELF.toString());
+        conf.setGcBulkLedgerChecksEnabled(bulk);
+        conf.setVerifyMetadataOnGc(verifyMetadata);
+        // the over-replicated ledgers are checked through the metadata store
+        conf.setGcOverreplicatedLedgerWaitTime(0, TimeUnit.MILLISECONDS);
+        return conf;
+    }
+
+    private static CompactableLedgerStorage storage(List<Long> ledgers) {
+        return (CompactableLedgerStorage) Proxy.newProxyInstance(
+                ScanAndCompareGarbageCollectorTest.class.getClassLoader(),
+                new Class<?>[] { CompactableLedgerStorage.class }, (proxy, method, args) -> {
+                    if ("getActiveLedgersInRange".equals(method.getName())) {
+                        return ledgers;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static LedgerMetadata metadata(long ledgerId, BookieId... ensemble) {
+        return LedgerMetadataBuilder.create().withId(ledgerId)
+                .withEnsembleSize(ensemble.length).withWriteQuorumSize(ensemble.length)
+                .withAckQuorumSize(ensemble.length)
+                .withPassword(new byte[0]).withDigestType(DigestType.CRC32C)
+                .newEnsembleEntry(0L, Arrays.asList(ensemble)).build();
+    }
+
+    /**
+     * A ledger manager listing the ledgers in ranges, and reading the metadata of the ledgers missing from them.
+     */
+    private static LedgerManager ledgerManager(List<List<Long>> ranges, Map<Long, Object> missingLedgers) {
+        return (LedgerManager) Proxy.newProxyInstance(ScanAndCompareGarbageCollectorTest.class.getClassLoader(),
+                new Class<?>[] { LedgerManager.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getLedgerRanges":
+                        Iterator<List<Long>> iterator = ranges.iterator();
+                        return new LedgerRangeIterator() {
+                            @Override
+                            public boolean hasNext() {
+                                return iterator.hasNext();
+                            }
+
+                            @Override
+                            public LedgerRange next() {
+                                return new LedgerRange(new TreeSet<>(iterator.next()));
+                            }
+                        };
+                    case "readLedgerMetadata":
+                        Object result = missingLedgers.getOrDefault((Long) args[0],
+                                BKException.Code.NoSuchLedgerExistsOnMetadataServerException);
+                        if (result instanceof LedgerMetadata) {
+                            return FutureUtils.value(new Versioned<>((LedgerMetadata) result, new LongVersion(1)));
+                        }
+                        return FutureUtils.exception(BKException.create((Integer) result));
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Set<Long> gc(boolean bulk, boolean verifyMetadata, Map<Long, Object> missingLedgers)
+            throws Exception {
+        ScanAndCompareGarbageCollector gc = new ScanAndCompareGarbageCollector(
+                ledgerManager(METADATA_RANGES, missingLedgers), storage(BOOKIE_LEDGERS),
+                newConf(bulk, verifyMetadata), NullStatsLogger.INSTANCE);
+        Set<Long> cleaned = Collections.synchronizedSet(new HashSet<>());
+        gc.gc(ledgerId -> assertTrue(cleaned.add(ledgerId)));
+        assertEquals(BOOKIE_LEDGERS.size(), gc.getNumActiveLedgers());
+        return new TreeSet<>(cleaned);
+    }
+
+    @Test
+    public void testCleanLedgersMissingInMetadata() throws Exception {
+        Set<Long> expected = new TreeSet<>(Arrays.asList(1L, 4L, 6L, 7L, 9L, 100L, 200L, 1000L, Long.MAX_VALUE - 1));
+        assertEquals(expected, gc(false, false, Collections.emptyMap()));
+        assertEquals(expected, gc(true, false, Collections.emptyMap()));
+    }
+
+    @Test
+    public void testVerifyMetadataOfMissingLedgers() throws Exception {
+        Map<Long, Object> missingLedgers = new HashMap<>();
+        // created since the ledgers were listed, on this bookie
+        missingLedgers.put(4L, metadata(4L, OTHER, SELF));
+        // no longer on this bookie
+        missingLedgers.put(6L, metadata(6L, OTHER));
+        // the metadata store failed
+        missingLedgers.put(100L, BKException.Code.MetaStoreException);
+        missingLedgers.put(1000L, BKException.Code.ZKException);
+
+        Set<Long> expected = new TreeSet<>(Arrays.asList(1L, 6L, 7L, 9L, 200L, Long.MAX_VALUE - 1));
+        assertEquals(expected, gc(false, true, missingLedgers));
+        assertEquals(expected, gc(true, true, missingLedgers));
+    }
+
+    @Test
+    public void testNoLedgerInMetadata() throws Exception {
+        ScanAndCompareGarbageCollector gc = new ScanAndCompareGarbageCollector(
+                ledgerManager(Collections.emptyList(), Collections.emptyMap()), storage(BOOKIE_LEDGERS),
+                newConf(true, false), NullStatsLogger.INSTANCE);
+        List<Long> cleaned = new ArrayList<>();
+        gc.gc(cleaned::add);
+        assertEquals(BOOKIE_LEDGERS, cleaned);
+    }
+}
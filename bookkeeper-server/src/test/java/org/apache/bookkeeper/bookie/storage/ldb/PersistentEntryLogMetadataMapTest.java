@@ -0,0 +1,146 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.apache.bookkeeper.util.BookKeeperConstants.METADATA_CACHE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.bookkeeper.bookie.BookieException.EntryLogMetadataMapException;
+import org.apache.bookkeeper.bookie.EntryLogMetadata;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for {@link PersistentEntryLogMetadataMap}.
+ */
+public class PersistentEntryLogMetadataMapTest {
+
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private static EntryLogMetadata newMetadata(long entryLogId, int numLedgers) {
+        EntryLogMetadata meta = new EntryLogMetadata(entryLogId);
+        for (int i = 0; i < numLedgers; i++) {
+            meta.addLedgerSize(entryLogId * 1000 + i, 100 + i);
+        }
+        return meta;
+    }
+
+    private static String describe(EntryLogMetadata meta) {
+        Map<Long, Long> ledgers = new TreeMap<>();
+        meta.getLedgersMap().forEach(ledgers::put);
+        return meta.getEntryLogId() + ":" + meta.getTotalSize() + ":" + meta.getRemainingSize() + ":" + ledgers;
+    }
+
+    private static Map<Long, String> readAll(PersistentEntryLogMetadataMap map) throws Exception {
+        Map<Long, String> read = new HashMap<>();
+        map.forEach((entryLogId, meta) -> read.put(entryLogId, describe(meta)));
+        return read;
+    }
+
+    @Test
+    public void testForEachReadsEachRecord() throws Exception {
+        String path = tmpDir.getRoot().getAbsolutePath();
+        Map<Long, String> expected = new HashMap<>();
+        try (PersistentEntryLogMetadataMap map = new PersistentEntryLogMetadataMap(path, new ServerConfiguration())) {
+            // a record followed by smaller ones, which must not be read as the larger one
+            for (long entryLogId = 1; entryLogId <= 4; entryLogId++) {
+                EntryLogMetadata meta = newMetadata(entryLogId, entryLogId == 1 ? 100 : (int) entryLogId);
+                map.put(entryLogId, meta);
+                expected.put(entryLogId, describe(meta));
+            }
+            assertEquals(expected, readAll(map));
+            // the same again, with the stream of the thread already used
+            assertEquals(expected, readAll(map));
+        }
+    }
+
+    @Test
+    public void testForEachAfterUnreadableRecord() throws Exception {
+        String path = tmpDir.getRoot().getAbsolutePath();
+        ServerConfiguration conf = new ServerConfiguration();
+        EntryLogMetadata meta = newMetadata(2, 1);
+        try (PersistentEntryLogMetadataMap map = new PersistentEntryLogMetadataMap(path, conf)) {
+            map.put(2, meta);
+        }
+        // a record of an unknown serialization version, larger than the other one
+        KeyValueStorage db = KeyValueStorageRocksDB.factory.newKeyValueStorage(path, METADATA_CACHE,
+                DbConfigType.Default, conf);
+        try {
+            byte[] key = new byte[Long.BYTES];
+            ArrayUtil.setLong(key, 0, 1L);
+            byte[] value = new byte[4096];
+            value[0] = (byte) 0xff;
+            db.put(key, value);
+        } finally {
+            db.close();
+        }
+
+        try (PersistentEntryLogMetadataMap map = new PersistentEntryLogMetadataMap(path, conf)) {
+            try {
+                readAll(map);
+                fail("Should fail to read the record of an unknown version");
+            } catch (EntryLogMetadataMapException e) {
+                // ok
+            }
+
+            // the records read next on the same thread are not read from what is left of the unreadable one
+            map.remove(1);
+            assertEquals(Collections.singletonMap(2L, describe(meta)), readAll(map));
+        }
+    }
+
+    @Test
+    public void testPutAndRemove() throws Exception {
+        String path = tmpDir.getRoot().getAbsolutePath();
+        EntryLogMetadata meta1 = newMetadata(1, 5);
+        EntryLogMetadata meta2 = newMetadata(2, 3);
+        try (PersistentEntryLogMetadataMap map = new PersistentEntryLogMetadataMap(path, new ServerConfiguration())) {
+            map.put(1, meta1);
+            map.put(2, meta2);
+            assertTrue(map.containsKey(1));
+            assertTrue(map.containsKey(2));
+            assertFalse(map.containsKey(3));
+            assertEquals(2, map.size());
+
+            map.remove(1);
+            assertFalse(map.containsKey(1));
+            assertEquals(1, map.size());
+        }
+
+        // kept across restarts
+        try (PersistentEntryLogMetadataMap map = new PersistentEntryLogMetadataMap(path, new ServerConfiguration())) {
+            Map<Long, String> expected = new HashMap<>();
+            expected.put(2L, describe(meta2));
+            assertEquals(expected, readAll(map));
+        }
+    }
+}
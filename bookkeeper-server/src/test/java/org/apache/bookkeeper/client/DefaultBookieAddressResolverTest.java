@@ -0,0 +1,88 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.discover.BookieServiceInfo;
+import org.apache.bookkeeper.discover.RegistrationClient;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.versioning.Version;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the resolution of the bookies to their regular or replication endpoint.
+ */
+public class DefaultBookieAddressResolverTest {
+
+    private static final BookieId WITH_REPLICATION = BookieId.parse("bookie-1");
+    private static final BookieId WITHOUT_REPLICATION = BookieId.parse("bookie-2");
+
+    private final Map<BookieId, BookieServiceInfo> infos = new HashMap<>();
+    private final RegistrationClient registrationClient = (RegistrationClient) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { RegistrationClient.class }, (proxy, method, args) -> {
+                if ("getBookieServiceInfo".equals(method.getName())) {
+                    return CompletableFuture.completedFuture(new Versioned<>(infos.get(args[0]), Version.NEW));
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    private static BookieServiceInfo.Endpoint endpoint(String id, int port, String protocol) {
+        return new BookieServiceInfo.Endpoint(id, port, "localhost", protocol, Collections.emptyList(),
+                Collections.emptyList());
+    }
+
+    @Before
+    public void setUp() {
+        List<BookieServiceInfo.Endpoint> endpoints = new ArrayList<>();
+        endpoints.add(endpoint(BookieServiceInfo.REPLICATION_ENDPOINT_ID, 3182,
+                BookieServiceInfo.REPLICATION_ENDPOINT_PROTOCOL));
+        endpoints.add(endpoint("bookie", 3181, "bookie-rpc"));
+        infos.put(WITH_REPLICATION, new BookieServiceInfo(Collections.emptyMap(), endpoints));
+        infos.put(WITHOUT_REPLICATION, new BookieServiceInfo(Collections.emptyMap(),
+                Collections.singletonList(endpoint("bookie", 4181, "bookie-rpc"))));
+    }
+
+    @Test
+    public void testRegularClientsIgnoreTheReplicationEndpoint() {
+        DefaultBookieAddressResolver resolver = new DefaultBookieAddressResolver(registrationClient);
+        assertEquals(new BookieSocketAddress("localhost", 3181), resolver.resolve(WITH_REPLICATION));
+        assertEquals(new BookieSocketAddress("localhost", 4181), resolver.resolve(WITHOUT_REPLICATION));
+    }
+
+    @Test
+    public void testReplicationClients() {
+        DefaultBookieAddressResolver resolver = new DefaultBookieAddressResolver(registrationClient, true);
+        assertEquals(new BookieSocketAddress("localhost", 3182), resolver.resolve(WITH_REPLICATION));
+        // the bookies without a replication listener are reached on their regular endpoint
+        assertEquals(new BookieSocketAddress("localhost", 4181), resolver.resolve(WITHOUT_REPLICATION));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import org.apache.bookkeeper.client.api.CompressionType;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+/**
+ * Test the compression of the entries of compressed ledgers.
+ */
+public class EntryCompressorTest {
+
+    private static final BookKeeperClientStats STATS = BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE);
+
+    private static LedgerMetadata metadata(String compression) {
+        LedgerMetadataBuilder builder = LedgerMetadataBuilder.create().withId(1L)
+                .withEnsembleSize(1).withWriteQuorumSize(1).withAckQuorumSize(1)
+                .withPassword(new byte[0]).withDigestType(DigestType.CRC32C)
+                .newEnsembleEntry(0L, Collections.singletonList(BookieId.parse("127.0.0.1:3181")));
+        if (compression != null) {
+            builder.withCustomMetadata(Collections.singletonMap(CompressionType.CUSTOM_METADATA_KEY,
+                    compression.getBytes(StandardCharsets.UTF_8)));
+        }
+        return builder.build();
+    }
+
+    private static EntryCompressor compressor(CompressionType compressionType) {
+        return EntryCompressor.forLedger(1L, metadata(compressionType.name()), ByteBufAllocator.DEFAULT, STATS);
+    }
+
+    private static byte[] compressible(int length) {
+        byte[] data = new byte[length];
+        byte[] pattern = "some text which repeats, ".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < length; i++) {
+            data[i] = pattern[i % pattern.length];
+        }
+        return data;
+    }
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] compress(EntryCompressor compressor, byte[] data) {
+        ByteBuf entry = compressor.compress(Unpooled.wrappedBuffer(data));
+        try {
+            return ByteBufUtil.getBytes(entry);
+        } finally {
+            entry.release();
+        }
+    }
+
+    private static byte[] decompress(EntryCompressor compressor, byte[] entry) throws IOException {
+        ByteBuf buf = Unpooled.wrappedBuffer(entry);
+        ByteBuf decompressed = compressor.decompress(buf);
+        try {
+            return ByteBufUtil.getBytes(decompressed);
+        } finally {
+            if (decompressed != buf) {
+                decompressed.release();
+            }
+            buf.release();
+        }
+    }
+
+    private static void assertCorrupt(EntryCompressor compressor, byte[] entry) {
+        try {
+            decompress(compressor, entry);
+            fail("should have failed to decompress a corrupt entry");
+        } catch (IOException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testNotCompressedLedger() {
+        assertNull(EntryCompressor.forLedger(1L, metadata(null), ByteBufAllocator.DEFAULT, STATS));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (CompressionType compressionType : CompressionType.values()) {
+            EntryCompressor compressor = compressor(compressionType);
+            // larger than a snappy block, so several blocks
+            for (int length : new int[] { 0, 1, 63, 64, 1000, 100 * 1024 }) {
+                for (byte[] data : new byte[][] { compressible(length), random(length) }) {
+                    byte[] entry = compress(compressor, data);
+                    assertArrayEquals(compressionType + " of " + length + " bytes",
+                            data, decompress(compressor, entry));
+                    // stored as is at worst
+                    assertTrue(entry.length <= data.length + 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompressed() throws Exception {
+        for (CompressionType compressionType : new CompressionType[] { CompressionType.SNAPPY,
+                CompressionType.DEFLATE }) {
+            byte[] data = compressible(10 * 1024);
+            byte[] entry = compress(compressor(compressionType), data);
+            assertTrue(compressionType + " compressed to " + entry.length + " bytes", entry.length < data.length / 2);
+            // the small entries and the ones which don't compress are stored as is
+            assertEquals(64, compress(compressor(compressionType), compressible(63)).length);
+            assertEquals(1001, compress(compressor(compressionType), random(1000)).length);
+        }
+        assertEquals(10 * 1024 + 1, compress(compressor(CompressionType.NONE), compressible(10 * 1024)).length);
+    }
+
+    @Test
+    public void testUnknownCompression() throws Exception {
+        // the entries added are not compressed, but the compressed ones can still be read
+        EntryCompressor compressor = EntryCompressor.forLedger(1L, metadata("ZSTD"), ByteBufAllocator.DEFAULT,
+                STATS);
+        byte[] data = compressible(1000);
+        assertEquals(1001, compress(compressor, data).length);
+        assertArrayEquals(data, decompress(compressor, compress(compressor(CompressionType.SNAPPY), data)));
+    }
+
+    @Test
+    public void testCorruptEntry() throws Exception {
+        EntryCompressor compressor = compressor(CompressionType.SNAPPY);
+        // empty, unknown compression, truncated header, invalid length
+        assertCorrupt(compressor, new byte[0]);
+        assertCorrupt(compressor, new byte[] { 9, 0, 0, 0, 1, 0 });
+        assertCorrupt(compressor, new byte[] { 1, 0, 0 });
+        assertCorrupt(compressor, new byte[] { 2, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0 });
+
+        byte[] data = compressible(100 * 1024);
+        for (CompressionType compressionType : new CompressionType[] { CompressionType.SNAPPY,
+                CompressionType.DEFLATE }) {
+            byte[] entry = compress(compressor(compressionType), data);
+            // truncated
+            assertCorrupt(compressor, Arrays.copyOf(entry, entry.length / 2));
+            assertCorrupt(compressor, Arrays.copyOf(entry, entry.length - 1));
+            // the length before compression doesn't match
+            byte[] wrongLength = entry.clone();
+            wrongLength[4]++;
+            assertCorrupt(compressor, wrongLength);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Test opening many ledgers at once, with and without the batched reads of the LACs.
+ */
+@RunWith(Parameterized.class)
+public class LedgerBatchOpenTest {
+
+    private static final byte[] PASSWORD = "password".getBytes();
+    private static final int NUM_LEDGERS = 20;
+
+    @Parameters(name = "readLacBatching={0}")
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(new Object[][] { { true }, { false } });
+    }
+
+    private final boolean readLacBatchingEnabled;
+
+    private static LocalBookKeeper cluster;
+    private static String metadataServiceUri;
+    private static org.apache.bookkeeper.client.api.BookKeeper writer;
+
+    private org.apache.bookkeeper.client.api.BookKeeper reader;
+    private final List<Long> ledgerIds = new ArrayList<>();
+    private final List<WriteHandle> openWriters = new ArrayList<>();
+
+    public LedgerBatchOpenTest(boolean readLacBatchingEnabled) {
+        this.readLacBatchingEnabled = readLacBatchingEnabled;
+    }
+
+    @BeforeClass
+    public static void setUpCluster() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setJournalRemovePagesFromCache(false);
+        cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(), 3, true, conf);
+        cluster.start();
+        metadataServiceUri = conf.getMetadataServiceUri();
+        writer = org.apache.bookkeeper.client.api.BookKeeper.newBuilder(
+                new ClientConfiguration().setMetadataServiceUri(metadataServiceUri)).build();
+    }
+
+    @AfterClass
+    public static void tearDownCluster() throws Exception {
+        if (writer != null) {
+            writer.close();
+        }
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        reader = org.apache.bookkeeper.client.api.BookKeeper.newBuilder(
+                new ClientConfiguration().setMetadataServiceUri(metadataServiceUri)
+                        .setReadLacBatchingEnabled(readLacBatchingEnabled)).build();
+
+        // the ledger i has i entries, and every third ledger is closed
+        for (int i = 0; i < NUM_LEDGERS; i++) {
+            WriteHandle wh = writer.newCreateLedgerOp().withEnsembleSize(3).withWriteQuorumSize(2)
+                    .withAckQuorumSize(2).withPassword(PASSWORD).execute().get();
+            for (int j = 0; j < i; j++) {
+                wh.append(("entry-" + j).getBytes());
+            }
+            if (i % 3 == 0) {
+                wh.close();
+            } else {
+                openWriters.add(wh);
+            }
+            ledgerIds.add(wh.getId());
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (WriteHandle wh : openWriters) {
+            wh.closeAsync();
+        }
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testOpenWithoutRecovery() throws Exception {
+        Map<Long, ReadHandle> handles = reader.newOpenLedgersOp().withLedgerIds(ledgerIds)
+                .withPassword(PASSWORD).execute().get();
+        assertEquals(NUM_LEDGERS, handles.size());
+        for (int i = 0; i < NUM_LEDGERS; i++) {
+            ReadHandle rh = handles.get(ledgerIds.get(i));
+            if (i % 3 == 0) {
+                assertTrue(rh.isClosed());
+                assertEquals(i - 1, rh.getLastAddConfirmed());
+            } else {
+                // the last entry carries the LAC of the entry before it
+                assertFalse(rh.isClosed());
+                assertEquals(Math.max(i - 2, -1), rh.getLastAddConfirmed());
+            }
+            if (rh.getLastAddConfirmed() >= 0) {
+                assertEquals("entry-0", new String(rh.read(0, 0).getEntry(0).getEntryBytes()));
+            }
+        }
+        for (ReadHandle rh : handles.values()) {
+            rh.close();
+        }
+        for (WriteHandle wh : openWriters) {
+            assertFalse(wh.isClosed());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testOpenWithRecovery() throws Exception {
+        Map<Long, ReadHandle> handles = reader.newOpenLedgersOp().withLedgerIds(ledgerIds).withRecovery(true)
+                .withPassword(PASSWORD).execute().get();
+        assertEquals(NUM_LEDGERS, handles.size());
+        for (int i = 0; i < NUM_LEDGERS; i++) {
+            ReadHandle rh = handles.get(ledgerIds.get(i));
+            assertTrue(rh.isClosed());
+            assertEquals(i - 1, rh.getLastAddConfirmed());
+            rh.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testOpenNoLedgers() throws Exception {
+        assertTrue(reader.newOpenLedgersOp().withLedgerIds(Collections.emptyList()).execute().get().isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void testMissingLedgerFailsTheBatch() throws Exception {
+        List<Long> ids = new ArrayList<>(ledgerIds);
+        ids.add(Collections.max(ledgerIds) + 1000);
+        try {
+            reader.newOpenLedgersOp().withLedgerIds(ids).withPassword(PASSWORD).execute().get();
+            fail("The batch should fail on the missing ledger");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BKException.BKNoSuchLedgerExistsOnMetadataServerException);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testWrongPasswordFailsTheBatch() throws Exception {
+        try {
+            reader.newOpenLedgersOp().withLedgerIds(ledgerIds).withPassword("wrong".getBytes()).execute().get();
+            fail("The batch should fail on the wrong password");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BKException.BKUnauthorizedAccessException);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.BatchedWriter;
+import org.apache.bookkeeper.client.api.LedgerRecord;
+import org.apache.bookkeeper.client.api.RecordPosition;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test writing records in batches with a {@link BatchedWriter}, and reading them back.
+ */
+public class LedgerBatchedWriterTest {
+
+    private static final byte[] PASSWORD = "password".getBytes();
+
+    private static LocalBookKeeper cluster;
+    private static org.apache.bookkeeper.client.api.BookKeeper bk;
+
+    @BeforeClass
+    public static void setUpCluster() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setJournalRemovePagesFromCache(false);
+        cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(), 3, true, conf);
+        cluster.start();
+        bk = org.apache.bookkeeper.client.api.BookKeeper.newBuilder(
+                new ClientConfiguration().setMetadataServiceUri(conf.getMetadataServiceUri())
+                        .setBatchedWriterMaxRecords(4)
+                        .setBatchedWriterMaxBytes(64)
+                        .setBatchedWriterMaxDelayMillis(200)).build();
+    }
+
+    @AfterClass
+    public static void tearDownCluster() throws Exception {
+        if (bk != null) {
+            bk.close();
+        }
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    private static WriteHandle createLedger(boolean recordBatches) throws Exception {
+        return bk.newCreateLedgerOp().withEnsembleSize(3).withWriteQuorumSize(2).withAckQuorumSize(2)
+                .withPassword(PASSWORD).withRecordBatches(recordBatches).execute().get();
+    }
+
+    private static byte[] record(int i, int length) {
+        byte[] record = new byte[length];
+        byte[] prefix = ("record-" + i).getBytes();
+        System.arraycopy(prefix, 0, record, 0, Math.min(prefix.length, length));
+        return record;
+    }
+
+    private static void assertRecords(List<byte[]> expected, List<RecordPosition> positions,
+                                      List<LedgerRecord> records) {
+        try {
+            assertEquals(expected.size(), records.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(positions.get(i), records.get(i).getPosition());
+                assertArrayEquals(expected.get(i), records.get(i).getRecordBytes());
+            }
+        } finally {
+            records.forEach(LedgerRecord::close);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testBatchByNumberOfRecords() throws Exception {
+        try (WriteHandle wh = createLedger(true)) {
+            BatchedWriter writer = wh.newBatchedWriter();
+            List<byte[]> written = new ArrayList<>();
+            List<CompletableFuture<RecordPosition>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                written.add(record(i, 10));
+                futures.add(writer.writeAsync(written.get(i)));
+            }
+            writer.close();
+
+            // 4 records per entry, the last 2 flushed on close
+            List<RecordPosition> positions = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                positions.add(futures.get(i).get());
+                assertEquals(new RecordPosition(i / 4, i % 4), positions.get(i));
+            }
+            assertEquals(2L, wh.getLastAddConfirmed());
+            assertRecords(written, positions, wh.readRecordsAsync(0, 2).get());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testBatchByBytes() throws Exception {
+        try (WriteHandle wh = createLedger(true)) {
+            BatchedWriter writer = wh.newBatchedWriter();
+            List<byte[]> written = new ArrayList<>();
+            List<CompletableFuture<RecordPosition>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                written.add(record(i, 30));
+                futures.add(writer.writeAsync(written.get(i)));
+            }
+            // an empty record fits in the last batch
+            written.add(new byte[0]);
+            futures.add(writer.writeAsync(written.get(6)));
+            writer.flushAsync().get();
+
+            // a third record of 30 bytes would go over the 64 bytes of a batch
+            List<RecordPosition> positions = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                positions.add(futures.get(i).get());
+                assertEquals(new RecordPosition(i / 2, i % 2), positions.get(i));
+            }
+            positions.add(futures.get(6).get());
+            assertEquals(new RecordPosition(2, 2), positions.get(6));
+            assertRecords(written, positions, wh.readRecordsAsync(0, wh.getLastAddConfirmed()).get());
+            writer.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testBatchByDelay() throws Exception {
+        try (WriteHandle wh = createLedger(true)) {
+            BatchedWriter writer = wh.newBatchedWriter();
+            // neither full nor flushed, the batch is written once its first record has waited for the max delay
+            assertEquals(new RecordPosition(0, 0), writer.writeAsync(record(0, 10)).get(10, TimeUnit.SECONDS));
+            writer.close();
+
+            try {
+                writer.writeAsync(record(1, 10)).get();
+                fail("should have failed once the writer is closed");
+            } catch (ExecutionException e) {
+                assertEquals(BKException.BKIllegalOpException.class, e.getCause().getClass());
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testUnmarkedLedger() throws Exception {
+        try (WriteHandle wh = createLedger(false)) {
+            try {
+                wh.newBatchedWriter();
+                fail("should have failed on a ledger not created to hold batches of records");
+            } catch (IllegalStateException e) {
+                // ok
+            }
+
+            // an entry which looks like a batch of records is not unpacked
+            ByteBuf lengths = Unpooled.buffer();
+            RecordBatchFormat.writeVarInt(lengths, 3);
+            ByteBuf header = Unpooled.buffer();
+            RecordBatchFormat.writeHeader(header, 1, lengths);
+            byte[] data = new byte[header.readableBytes() + 3];
+            header.readBytes(data, 0, header.readableBytes());
+            wh.append(data);
+
+            List<LedgerRecord> records = wh.readRecordsAsync(0, 0).get();
+            assertRecords(Collections.singletonList(data), Collections.singletonList(new RecordPosition(0, 0)),
+                    records);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testPlainEntryInMarkedLedger() throws Exception {
+        try (WriteHandle wh = createLedger(true)) {
+            wh.append("not a batch".getBytes());
+            try {
+                wh.readRecordsAsync(0, 0).get();
+                fail("should have failed to unpack an entry which is not a batch");
+            } catch (ExecutionException e) {
+                assertEquals(BKException.BKUnexpectedConditionException.class, e.getCause().getClass());
+            }
+        }
+    }
+}
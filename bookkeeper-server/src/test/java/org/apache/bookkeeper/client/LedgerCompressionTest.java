@@ -0,0 +1,152 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.bookkeeper.client.api.CompressionType;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.client.api.WriteAdvHandle;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the compression of the entries of ledgers against a cluster.
+ */
+public class LedgerCompressionTest {
+
+    private static final byte[] PASSWORD = "password".getBytes();
+    private static final int NUM_ENTRIES = 10;
+
+    private static LocalBookKeeper cluster;
+    private static BookKeeper bk;
+
+    @BeforeClass
+    public static void setUpCluster() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setJournalRemovePagesFromCache(false);
+        cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(), 3, true, conf);
+        cluster.start();
+        bk = new BookKeeper(new ClientConfiguration().setMetadataServiceUri(conf.getMetadataServiceUri()));
+    }
+
+    @AfterClass
+    public static void tearDownCluster() throws Exception {
+        if (bk != null) {
+            bk.close();
+        }
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    private static byte[] entryData(int i) {
+        StringBuilder data = new StringBuilder();
+        while (data.length() < 4096) {
+            data.append("entry-").append(i).append(' ');
+        }
+        return data.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read back the entries of a closed ledger, then read them as stored by the bookies once the compression is
+     * removed from the metadata.
+     */
+    private static void assertCompressed(long ledgerId, CompressionType compressionType, byte storedType)
+            throws Exception {
+        try (ReadHandle rh = bk.newOpenLedgerOp().withLedgerId(ledgerId).withPassword(PASSWORD).execute().get();
+             LedgerEntries entries = rh.read(0, NUM_ENTRIES - 1)) {
+            assertEquals(compressionType.name(), new String(
+                    rh.getLedgerMetadata().getCustomMetadata().get(CompressionType.CUSTOM_METADATA_KEY),
+                    StandardCharsets.UTF_8));
+            for (LedgerEntry entry : entries) {
+                assertArrayEquals(entryData((int) entry.getEntryId()), entry.getEntryBytes());
+            }
+        }
+
+        Versioned<org.apache.bookkeeper.client.api.LedgerMetadata> metadata =
+                bk.getLedgerManager().readLedgerMetadata(ledgerId).get();
+        Map<String, byte[]> customMetadata = new HashMap<>(metadata.getValue().getCustomMetadata());
+        customMetadata.remove(CompressionType.CUSTOM_METADATA_KEY);
+        bk.getLedgerManager().writeLedgerMetadata(ledgerId,
+                LedgerMetadataBuilder.from(metadata.getValue()).withCustomMetadata(customMetadata).build(),
+                metadata.getVersion()).get();
+
+        try (ReadHandle rh = bk.newOpenLedgerOp().withLedgerId(ledgerId).withPassword(PASSWORD).execute().get();
+             LedgerEntries entries = rh.read(0, NUM_ENTRIES - 1)) {
+            for (LedgerEntry entry : entries) {
+                byte[] stored = entry.getEntryBytes();
+                assertEquals(storedType, stored[0]);
+                assertTrue("Entry of " + stored.length + " bytes", stored.length < entryData(0).length / 2);
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testCompressedLedger() throws Exception {
+        long ledgerId;
+        try (WriteHandle wh = bk.newCreateLedgerOp().withEnsembleSize(3).withWriteQuorumSize(2)
+                .withAckQuorumSize(2).withPassword(PASSWORD).withCompressionType(CompressionType.DEFLATE)
+                .execute().get()) {
+            ledgerId = wh.getId();
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                wh.append(entryData(i));
+            }
+            // the length of the ledger is the length of the entries before compression
+            assertEquals(NUM_ENTRIES * (long) entryData(0).length, wh.getLength());
+        }
+        // stored after a byte telling how they are compressed
+        assertCompressed(ledgerId, CompressionType.DEFLATE, (byte) 2);
+    }
+
+    @Test(timeout = 60000)
+    public void testCompressedAdvLedger() throws Exception {
+        long ledgerId;
+        // the custom metadata is kept along with the compression
+        try (WriteAdvHandle wh = bk.newCreateLedgerOp().withEnsembleSize(3).withWriteQuorumSize(2)
+                .withAckQuorumSize(2).withPassword(PASSWORD).withCompressionType(CompressionType.SNAPPY)
+                .withCustomMetadata(Collections.singletonMap("application", "test".getBytes()))
+                .makeAdv().execute().get()) {
+            ledgerId = wh.getId();
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                wh.write(i, entryData(i));
+            }
+            assertArrayEquals("test".getBytes(), wh.getLedgerMetadata().getCustomMetadata().get("application"));
+        }
+        assertCompressed(ledgerId, CompressionType.SNAPPY, (byte) 1);
+    }
+}
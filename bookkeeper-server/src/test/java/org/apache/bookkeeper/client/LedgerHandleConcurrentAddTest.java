@@ -0,0 +1,194 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the adds of many threads to a ledger, racing the close and the ensemble changes of the ledger.
+ */
+public class LedgerHandleConcurrentAddTest {
+
+    private static final byte[] PASSWORD = "password".getBytes();
+    private static final int NUM_THREADS = 4;
+    private static final int NUM_ADDS_PER_THREAD = 250;
+    private static final int NUM_ADDS = NUM_THREADS * NUM_ADDS_PER_THREAD;
+
+    private LocalBookKeeper cluster;
+    private String metadataServiceUri;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setJournalRemovePagesFromCache(false);
+        cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(), 3, true, conf);
+        cluster.start();
+        metadataServiceUri = conf.getMetadataServiceUri();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    /**
+     * The adds of some threads to a ledger, and their results.
+     */
+    private static class Adds {
+        final Map<Long, String> added = new ConcurrentHashMap<>();
+        final Map<Integer, AtomicInteger> failures = new ConcurrentHashMap<>();
+        final CountDownLatch numAcked;
+        final CountDownLatch numCompleted = new CountDownLatch(NUM_ADDS);
+
+        Adds(int numAcked) {
+            this.numAcked = new CountDownLatch(numAcked);
+        }
+
+        void start(LedgerHandle lh) {
+            CountDownLatch startGate = new CountDownLatch(1);
+            for (int t = 0; t < NUM_THREADS; t++) {
+                final int thread = t;
+                new Thread(() -> {
+                    try {
+                        startGate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < NUM_ADDS_PER_THREAD; i++) {
+                        // payloads of different lengths, so a wrong ledger length fails the digest of the reads
+                        String payload = "thread-" + thread + "-entry-" + i;
+                        lh.asyncAddEntry(payload.getBytes(), (rc, handle, entryId, ctx) -> {
+                            if (BKException.Code.OK == rc) {
+                                added.put(entryId, payload);
+                                numAcked.countDown();
+                            } else {
+                                failures.computeIfAbsent(rc, code -> new AtomicInteger()).incrementAndGet();
+                            }
+                            numCompleted.countDown();
+                        }, null);
+                    }
+                }, "adder-" + t).start();
+            }
+            startGate.countDown();
+        }
+
+        long length() {
+            return added.values().stream().mapToLong(payload -> payload.length()).sum();
+        }
+    }
+
+    private void assertEntries(long ledgerId, Adds adds) throws Exception {
+        try (BookKeeper reader = new BookKeeper(new ClientConfiguration().setMetadataServiceUri(metadataServiceUri));
+             LedgerHandle lh = reader.openLedger(ledgerId, DigestType.CRC32, PASSWORD)) {
+            LedgerMetadata metadata = lh.getLedgerMetadata();
+            assertTrue(metadata.isClosed());
+            // the acknowledged entries have contiguous ids, and are all the entries of the ledger
+            assertEquals(adds.added.size() - 1, metadata.getLastEntryId());
+            assertEquals(adds.length(), metadata.getLength());
+            if (adds.added.isEmpty()) {
+                return;
+            }
+            List<LedgerEntry> entries = Collections.list(lh.readEntries(0, metadata.getLastEntryId()));
+            assertEquals(adds.added.size(), entries.size());
+            for (LedgerEntry entry : entries) {
+                assertEquals(adds.added.get(entry.getEntryId()), new String(entry.getEntry()));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testAddsRacingClose() throws Exception {
+        try (BookKeeper writer = new BookKeeper(new ClientConfiguration().setMetadataServiceUri(metadataServiceUri))) {
+            LedgerHandle lh = writer.createLedger(3, 3, 2, DigestType.CRC32, PASSWORD);
+            Adds adds = new Adds(NUM_ADDS / 10);
+            adds.start(lh);
+
+            // close the ledger while the adds are still being submitted and acknowledged
+            assertTrue(adds.numAcked.await(30, TimeUnit.SECONDS));
+            lh.close();
+            assertTrue(adds.numCompleted.await(30, TimeUnit.SECONDS));
+
+            // the adds pending or submitted after the close fail, and are not part of the closed ledger
+            assertEquals(lh.getLastAddConfirmed(), lh.getLastAddPushed());
+            assertEquals(adds.added.size() - 1, lh.getLastAddConfirmed());
+            assertEquals(adds.length(), lh.getLength());
+            int numFailed = 0;
+            for (Map.Entry<Integer, AtomicInteger> failure : adds.failures.entrySet()) {
+                assertEquals(BKException.Code.LedgerClosedException, (int) failure.getKey());
+                numFailed += failure.getValue().get();
+            }
+            assertEquals(NUM_ADDS, adds.added.size() + numFailed);
+            assertEntries(lh.getId(), adds);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testAddsRacingEnsembleChange() throws Exception {
+        // a spare bookie to replace one of the ensemble
+        cluster.addBookie();
+        try (BookKeeper writer = new BookKeeper(new ClientConfiguration().setMetadataServiceUri(metadataServiceUri))) {
+            LedgerHandle lh = writer.createLedger(3, 3, 3, DigestType.CRC32, PASSWORD);
+            List<BookieId> ensemble = lh.getLedgerMetadata().getAllEnsembles().get(0L);
+            Adds adds = new Adds(NUM_ADDS / 10);
+            adds.start(lh);
+
+            // replace a bookie, as on a write failure, while the adds are still being submitted and acknowledged
+            assertTrue(adds.numAcked.await(30, TimeUnit.SECONDS));
+            writer.getClientCtx().getMainWorkerPool().executeOrdered(lh.getId(),
+                    () -> lh.handleBookieFailure(Collections.singletonMap(0, ensemble.get(0))));
+            assertTrue(adds.numCompleted.await(30, TimeUnit.SECONDS));
+
+            // the ensemble change doesn't lose, reorder or fail any add
+            assertEquals(Collections.emptyMap(), adds.failures);
+            assertEquals(NUM_ADDS, adds.added.size());
+            assertEquals(NUM_ADDS - 1, lh.getLastAddPushed());
+            assertEquals(adds.length(), lh.getLength());
+            assertEquals(1, lh.numEnsembleChanges.get());
+            assertEquals(2, lh.getLedgerMetadata().getAllEnsembles().size());
+            lh.close();
+            assertEquals(NUM_ADDS - 1, lh.getLastAddConfirmed());
+            assertEntries(lh.getId(), adds);
+        }
+    }
+}
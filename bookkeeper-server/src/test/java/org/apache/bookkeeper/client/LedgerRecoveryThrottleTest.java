@@ -0,0 +1,113 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the recovery of ledgers by a client with the default write throttling.
+ */
+public class LedgerRecoveryThrottleTest {
+
+    private static final byte[] PASSWORD = "password".getBytes();
+    private static final int NUM_ENTRIES = 100;
+
+    private LocalBookKeeper cluster;
+    private String metadataServiceUri;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setJournalRemovePagesFromCache(false);
+        cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(), 3, true, conf);
+        cluster.start();
+        metadataServiceUri = conf.getMetadataServiceUri();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testRecoverManyUnconfirmedEntries() throws Exception {
+        // the writer sends all the entries before the first ack, so the bookies know of no LastAddConfirmed
+        ClientConfiguration writerConf = new ClientConfiguration()
+                .setMetadataServiceUri(metadataServiceUri)
+                .setThrottleValue(0);
+        ClientConfiguration readerConf = new ClientConfiguration()
+                .setMetadataServiceUri(metadataServiceUri);
+        assertTrue(readerConf.getThrottleValue() > 0);
+
+        try (BookKeeper writer = new BookKeeper(writerConf);
+             BookKeeper reader = new BookKeeper(readerConf)) {
+            LedgerHandle lh = writer.createLedger(3, 3, 2, DigestType.CRC32, PASSWORD);
+            CountDownLatch latch = new CountDownLatch(NUM_ENTRIES);
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                lh.asyncAddEntry(("entry-" + i).getBytes(), (rc, handle, entryId, ctx) -> latch.countDown(), null);
+            }
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+
+            ReadOnlyLedgerHandle recovering = new ReadOnlyLedgerHandle(reader.getClientCtx(), lh.getId(),
+                    reader.getLedgerManager().readLedgerMetadata(lh.getId()).get(), DigestType.CRC32, PASSWORD,
+                    false);
+            // use up the rate of the handle, so the adds of the recovery would have to wait for their admission
+            CompletableFuture<Void> lastAdmission = null;
+            for (int i = 0; i < readerConf.getThrottleValue(); i++) {
+                lastAdmission = recovering.writeThrottle.acquire(0);
+            }
+            assertFalse(lastAdmission.isDone());
+
+            CompletableFuture<Void> recovered = new CompletableFuture<>();
+            recovering.recover((rc, result) -> {
+                if (BKException.Code.OK == rc) {
+                    recovered.complete(null);
+                } else {
+                    recovered.completeExceptionally(BKException.create(rc));
+                }
+            });
+            recovered.get();
+
+            assertTrue(recovering.isClosed());
+            assertEquals(NUM_ENTRIES - 1, recovering.getLastAddConfirmed());
+            assertEquals("entry-" + (NUM_ENTRIES - 1), new String(
+                    recovering.readEntries(NUM_ENTRIES - 1, NUM_ENTRIES - 1).nextElement().getEntry()));
+            recovering.close();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.Unpooled;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the recovery of ledgers reading a window of batches at the same time.
+ */
+public class LedgerRecoveryWindowTest {
+
+    private static final byte[] PASSWORD = "password".getBytes();
+    private static final int WINDOW_SIZE = 4;
+    private static final int BATCH_SIZE = 3;
+
+    private LocalBookKeeper cluster;
+    private String metadataServiceUri;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setJournalRemovePagesFromCache(false);
+        cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(), 3, true, conf);
+        cluster.start();
+        metadataServiceUri = conf.getMetadataServiceUri();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    private ClientConfiguration readerConf() {
+        ClientConfiguration conf = new ClientConfiguration()
+                .setMetadataServiceUri(metadataServiceUri);
+        conf.setRecoveryReadWindowSize(WINDOW_SIZE);
+        conf.setRecoveryReadBatchSize(BATCH_SIZE);
+        return conf;
+    }
+
+    /**
+     * Recover a ledger, recording the entries read by the recovery.
+     */
+    private static ReadOnlyLedgerHandle recover(BookKeeper reader, long ledgerId, Queue<LedgerEntry> readEntries,
+                                                AtomicInteger numEntriesRead) throws Exception {
+        ReadOnlyLedgerHandle recovering = new ReadOnlyLedgerHandle(reader.getClientCtx(), ledgerId,
+                reader.getLedgerManager().readLedgerMetadata(ledgerId).get(), DigestType.CRC32, PASSWORD, false);
+        CompletableFuture<Void> recovered = new CompletableFuture<>();
+        recovering.recover((rc, result) -> {
+            if (BKException.Code.OK == rc) {
+                recovered.complete(null);
+            } else {
+                recovered.completeExceptionally(BKException.create(rc));
+            }
+        }, (rc, lh, entry, ctx) -> {
+            if (BKException.Code.OK == rc) {
+                numEntriesRead.incrementAndGet();
+                readEntries.add(entry);
+            }
+        }, false);
+        recovered.get();
+        return recovering;
+    }
+
+    @Test(timeout = 60000)
+    public void testRecoverWithReadWindow() throws Exception {
+        final int numEntries = 100;
+        // the writer sends all the entries before the first ack, so the bookies know of no LastAddConfirmed
+        ClientConfiguration writerConf = new ClientConfiguration()
+                .setMetadataServiceUri(metadataServiceUri)
+                .setThrottleValue(0);
+
+        try (BookKeeper writer = new BookKeeper(writerConf);
+             BookKeeper reader = new BookKeeper(readerConf())) {
+            LedgerHandle lh = writer.createLedger(3, 3, 2, DigestType.CRC32, PASSWORD);
+            CountDownLatch latch = new CountDownLatch(numEntries);
+            for (int i = 0; i < numEntries; i++) {
+                lh.asyncAddEntry(("entry-" + i).getBytes(), (rc, handle, entryId, ctx) -> latch.countDown(), null);
+            }
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+
+            Queue<LedgerEntry> readEntries = new ConcurrentLinkedQueue<>();
+            AtomicInteger numEntriesRead = new AtomicInteger();
+            ReadOnlyLedgerHandle recovering = recover(reader, lh.getId(), readEntries, numEntriesRead);
+
+            assertTrue(recovering.isClosed());
+            assertEquals(numEntries - 1, recovering.getLastAddConfirmed());
+            assertTrue(numEntriesRead.get() >= numEntries);
+            // the entries added back have been consumed, and no other entry is left unreleased
+            for (LedgerEntry entry : readEntries) {
+                assertNull("entry " + entry.getEntryId() + " not released", entry.data);
+            }
+            List<LedgerEntry> entries = Collections.list(recovering.readEntries(0, numEntries - 1));
+            assertEquals(numEntries, entries.size());
+            for (int i = 0; i < numEntries; i++) {
+                assertEquals("entry-" + i, new String(entries.get(i).getEntry()));
+            }
+            recovering.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testRecoverWithGapReleasesEntriesPastTheGap() throws Exception {
+        final int numEntries = 10;
+        final int gap = numEntries;
+        final int numEntriesPastGap = 2 * WINDOW_SIZE * BATCH_SIZE;
+        ClientConfiguration writerConf = new ClientConfiguration()
+                .setMetadataServiceUri(metadataServiceUri);
+
+        try (BookKeeper writer = new BookKeeper(writerConf);
+             BookKeeper reader = new BookKeeper(readerConf())) {
+            LedgerHandle lh = writer.createLedger(3, 3, 3, DigestType.CRC32, PASSWORD);
+            for (int i = 0; i < numEntries; i++) {
+                lh.addEntry(("entry-" + i).getBytes());
+            }
+
+            // write the entries after the gap directly to the bookies, so they are never acknowledged to a writer
+            List<BookieId> ensemble = lh.getLedgerMetadata().getAllEnsembles().get(0L);
+            CountDownLatch written = new CountDownLatch(ensemble.size() * numEntriesPastGap);
+            AtomicInteger writeRc = new AtomicInteger(BKException.Code.OK);
+            for (long entryId = gap + 1; entryId <= gap + numEntriesPastGap; entryId++) {
+                byte[] data = ("entry-" + entryId).getBytes();
+                for (BookieId bookie : ensemble) {
+                    writer.getBookieClient().addEntry(bookie, lh.getId(), lh.ledgerKey, entryId,
+                            lh.macManager.computeDigestAndPackageForSending(entryId, numEntries - 1,
+                                    lh.getLength() + data.length, Unpooled.wrappedBuffer(data)),
+                            (rc, ledgerId, eid, addr, ctx) -> {
+                                if (BKException.Code.OK != rc) {
+                                    writeRc.set(rc);
+                                }
+                                written.countDown();
+                            }, null, BookieProtocol.FLAG_NONE, false, EnumSet.noneOf(WriteFlag.class));
+                }
+            }
+            assertTrue(written.await(30, TimeUnit.SECONDS));
+            assertEquals(BKException.Code.OK, writeRc.get());
+
+            Queue<LedgerEntry> readEntries = new ConcurrentLinkedQueue<>();
+            AtomicInteger numEntriesRead = new AtomicInteger();
+            ReadOnlyLedgerHandle recovering = recover(reader, lh.getId(), readEntries, numEntriesRead);
+
+            // the recovery stops at the gap
+            assertTrue(recovering.isClosed());
+            assertEquals(numEntries - 1, recovering.getLastAddConfirmed());
+            // the batches of the window read past the gap, and the entries they read are released
+            assertTrue(readEntries.stream().anyMatch(entry -> entry.getEntryId() > gap));
+            for (LedgerEntry entry : readEntries) {
+                assertNull("entry " + entry.getEntryId() + " not released", entry.data);
+            }
+            recovering.close();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.client.api.StreamReader;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test reading the entries of ledgers with a {@link StreamReader}.
+ */
+public class LedgerStreamReaderTest {
+
+    private static final byte[] PASSWORD = "password".getBytes();
+
+    private static LocalBookKeeper cluster;
+    private static org.apache.bookkeeper.client.api.BookKeeper writer;
+    private static org.apache.bookkeeper.client.api.BookKeeper reader;
+
+    @BeforeClass
+    public static void setUpCluster() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setJournalRemovePagesFromCache(false);
+        cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(), 3, true, conf);
+        cluster.start();
+        writer = org.apache.bookkeeper.client.api.BookKeeper.newBuilder(
+                new ClientConfiguration().setMetadataServiceUri(conf.getMetadataServiceUri())).build();
+        // a small window, so that the reads ahead are split in many batches
+        reader = org.apache.bookkeeper.client.api.BookKeeper.newBuilder(
+                new ClientConfiguration().setMetadataServiceUri(conf.getMetadataServiceUri())
+                        .setStreamReaderMaxOutstandingEntries(7)
+                        .setStreamReaderMaxOutstandingBytes(1024)
+                        .setStreamReaderLongPollTimeoutMillis(500)).build();
+    }
+
+    @AfterClass
+    public static void tearDownCluster() throws Exception {
+        if (reader != null) {
+            reader.close();
+        }
+        if (writer != null) {
+            writer.close();
+        }
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    private static WriteHandle createLedger(int numEntries) throws Exception {
+        WriteHandle wh = writer.newCreateLedgerOp().withEnsembleSize(3).withWriteQuorumSize(2)
+                .withAckQuorumSize(2).withPassword(PASSWORD).execute().get();
+        for (int i = 0; i < numEntries; i++) {
+            wh.append(entryData(i));
+        }
+        return wh;
+    }
+
+    private static byte[] entryData(int i) {
+        // entries of different sizes, to vary the bytes read ahead
+        StringBuilder data = new StringBuilder("entry-").append(i);
+        for (int j = 0; j < i % 10; j++) {
+            data.append("-padding");
+        }
+        return data.toString().getBytes();
+    }
+
+    private static void assertEntry(LedgerEntry entry, long ledgerId, int entryId) {
+        try {
+            assertEquals(ledgerId, entry.getLedgerId());
+            assertEquals(entryId, entry.getEntryId());
+            assertEquals(new String(entryData(entryId)), new String(entry.getEntryBytes()));
+        } finally {
+            entry.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testReadInOrder() throws Exception {
+        WriteHandle wh = createLedger(100);
+        wh.close();
+        try (ReadHandle rh = reader.newOpenLedgerOp().withLedgerId(wh.getId()).withPassword(PASSWORD)
+                .withRecovery(false).execute().get();
+             StreamReader stream = rh.newStreamReader(10)) {
+            // several reads outstanding at a time complete in order
+            List<CompletableFuture<LedgerEntry>> futures = new ArrayList<>();
+            for (int i = 10; i < 100; i++) {
+                futures.add(stream.readNextAsync());
+            }
+            assertEquals(100, stream.getNextEntryId());
+            for (int i = 10; i < 100; i++) {
+                assertEntry(futures.get(i - 10).get(), wh.getId(), i);
+            }
+            // the end of the closed ledger
+            assertNull(stream.readNext());
+            assertNull(stream.readNext());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testReadAcrossLastAddConfirmed() throws Exception {
+        WriteHandle wh = createLedger(5);
+        try (ReadHandle rh = reader.newOpenLedgerOp().withLedgerId(wh.getId()).withPassword(PASSWORD)
+                .withRecovery(false).execute().get();
+             StreamReader stream = rh.newStreamReader(0)) {
+            for (int i = 0; i < 4; i++) {
+                assertEntry(stream.readNext(), wh.getId(), i);
+            }
+            // past the LastAddConfirmed known by the reader, the next entries are waited for
+            CompletableFuture<LedgerEntry> waiting = stream.readNextAsync();
+            List<CompletableFuture<LedgerEntry>> next = new ArrayList<>();
+            for (int i = 5; i < 20; i++) {
+                next.add(stream.readNextAsync());
+            }
+            for (int i = 5; i < 20; i++) {
+                wh.append(entryData(i));
+            }
+            assertEntry(waiting.get(), wh.getId(), 4);
+            // the entries written while the reader waits for them, the last one once the ledger is closed
+            for (int i = 5; i < 19; i++) {
+                assertEntry(next.get(i - 5).get(), wh.getId(), i);
+            }
+            wh.close();
+            assertEntry(next.get(14).get(), wh.getId(), 19);
+            assertNull(stream.readNext());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testClose() throws Exception {
+        WriteHandle wh = createLedger(50);
+        try (ReadHandle rh = reader.newOpenLedgerOp().withLedgerId(wh.getId()).withPassword(PASSWORD)
+                .withRecovery(false).execute().get()) {
+            StreamReader stream = rh.newStreamReader(0);
+            assertEntry(stream.readNext(), wh.getId(), 0);
+            // waiting for an entry which is not written yet
+            CompletableFuture<LedgerEntry> tail = null;
+            for (int i = 1; i <= 50; i++) {
+                tail = stream.readNextAsync();
+            }
+            stream.close();
+            try {
+                tail.get(10, TimeUnit.SECONDS);
+                fail("should have failed once the reader is closed");
+            } catch (ExecutionException e) {
+                assertEquals(BKException.BKIllegalOpException.class, e.getCause().getClass());
+            }
+            try {
+                stream.readNext();
+                fail("should have failed once the reader is closed");
+            } catch (BKException e) {
+                assertEquals(BKException.Code.IllegalOpException, e.getCode());
+            }
+            // closing again is a no-op
+            stream.close();
+
+            // the entries read ahead aren't lost for the other readers, up to the LastAddConfirmed of the writer
+            try (StreamReader other = rh.newStreamReader(1)) {
+                for (int i = 1; i < 49; i++) {
+                    assertEntry(other.readNext(), wh.getId(), i);
+                }
+                assertFalse(other.readNextAsync().isDone());
+            }
+        } finally {
+            wh.close();
+        }
+    }
+}
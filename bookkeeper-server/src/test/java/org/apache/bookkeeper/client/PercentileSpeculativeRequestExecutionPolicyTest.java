@@ -0,0 +1,203 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.PercentileSpeculativeRequestExecutionPolicy.MAX_PERMITS;
+import static org.apache.bookkeeper.client.PercentileSpeculativeRequestExecutionPolicy.MIN_WINDOW_SAMPLES;
+import static org.apache.bookkeeper.client.PercentileSpeculativeRequestExecutionPolicy.PERMIT;
+import static org.apache.bookkeeper.client.PercentileSpeculativeRequestExecutionPolicy.WINDOW_NANOS;
+import static org.apache.bookkeeper.client.PercentileSpeculativeRequestExecutionPolicy.bucketIndex;
+import static org.apache.bookkeeper.client.PercentileSpeculativeRequestExecutionPolicy.bucketUpperBound;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.Futures;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the speculative requests issued at a percentile of the latency.
+ */
+public class PercentileSpeculativeRequestExecutionPolicyTest {
+
+    private static final int FIRST_TIMEOUT = 50;
+    private static final int MAX_TIMEOUT = 500;
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private static PercentileSpeculativeRequestExecutionPolicy newPolicy(double percentile, double maxRatio) {
+        return new PercentileSpeculativeRequestExecutionPolicy(FIRST_TIMEOUT, MAX_TIMEOUT, 2, percentile, maxRatio);
+    }
+
+    @Test
+    public void testBuckets() {
+        assertEquals(0, bucketIndex(0));
+        assertEquals(0, bucketIndex(1));
+        int previousIndex = 0;
+        for (long micros = 1; micros < TimeUnit.SECONDS.toMicros(100); micros += 1 + micros / 7) {
+            int index = bucketIndex(micros);
+            assertTrue("bucket of " + micros + " before the one of a lower latency", index >= previousIndex);
+            long upperBound = bucketUpperBound(index);
+            // the buckets are a quarter of a power of two wide
+            assertTrue("bucket " + index + " below " + micros, micros <= upperBound);
+            assertTrue("bucket " + index + " too wide for " + micros, upperBound <= micros + micros / 4 + 1);
+            previousIndex = index;
+        }
+        // the highest latencies all count in the last bucket
+        assertEquals(bucketIndex(Long.MAX_VALUE), bucketIndex(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void testTimeoutAtPercentile() {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(95, 0.1);
+        assertEquals(FIRST_TIMEOUT, policy.getFirstSpeculativeRequestTimeout());
+
+        long nowNanos = MathUtils.nowInNano();
+        for (int millis = 1; millis <= 100; millis++) {
+            policy.recordResponseLatency(TimeUnit.MILLISECONDS.toNanos(millis), nowNanos);
+        }
+        // the timeout changes only at the end of the window
+        assertEquals(FIRST_TIMEOUT, policy.getFirstSpeculativeRequestTimeout());
+        policy.recordResponseLatency(TimeUnit.MILLISECONDS.toNanos(1), nowNanos + WINDOW_NANOS);
+
+        // the 96th of the 101 latencies is 95ms, rounded up to the end of its bucket
+        int timeout = policy.getFirstSpeculativeRequestTimeout();
+        assertTrue("timeout " + timeout, timeout > 95 && timeout <= 95 + 95 / 4 + 1);
+    }
+
+    @Test
+    public void testTimeoutCappedByMaxTimeout() {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(50, 0.1);
+        long nowNanos = MathUtils.nowInNano();
+        for (int i = 0; i < MIN_WINDOW_SAMPLES; i++) {
+            policy.recordResponseLatency(TimeUnit.SECONDS.toNanos(2), nowNanos);
+        }
+        policy.recordResponseLatency(TimeUnit.SECONDS.toNanos(2), nowNanos + WINDOW_NANOS);
+        assertEquals(MAX_TIMEOUT, policy.getFirstSpeculativeRequestTimeout());
+    }
+
+    @Test
+    public void testWindowWithTooFewLatencies() {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(50, 0.1);
+        long nowNanos = MathUtils.nowInNano();
+        for (int i = 0; i < MIN_WINDOW_SAMPLES - 2; i++) {
+            policy.recordResponseLatency(TimeUnit.MILLISECONDS.toNanos(200), nowNanos);
+        }
+        policy.recordResponseLatency(TimeUnit.MILLISECONDS.toNanos(200), nowNanos + WINDOW_NANOS);
+        assertEquals(FIRST_TIMEOUT, policy.getFirstSpeculativeRequestTimeout());
+
+        // the latencies of the window are dropped, and don't count in the next window
+        policy.recordResponseLatency(TimeUnit.MILLISECONDS.toNanos(200), nowNanos + WINDOW_NANOS);
+        policy.recordResponseLatency(TimeUnit.MILLISECONDS.toNanos(200), nowNanos + 2 * WINDOW_NANOS);
+        assertEquals(FIRST_TIMEOUT, policy.getFirstSpeculativeRequestTimeout());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        newPolicy(0, 0.1);
+    }
+
+    @Test
+    public void testPermits() {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(95, 0.1);
+        // a burst of speculative requests is allowed
+        for (long i = 0; i < MAX_PERMITS / PERMIT; i++) {
+            assertTrue(policy.tryAcquireSpeculativeRequest());
+        }
+        assertFalse(policy.tryAcquireSpeculativeRequest());
+
+        // a speculative request not issued gives its permit back
+        policy.releaseSpeculativeRequest();
+        assertTrue(policy.tryAcquireSpeculativeRequest());
+        assertFalse(policy.tryAcquireSpeculativeRequest());
+
+        // each request earns a tenth of a permit
+        for (int i = 0; i < 9; i++) {
+            policy.initiateSpeculativeRequest(scheduler, () -> Futures.immediateFuture(false)).cancel(false);
+        }
+        assertFalse(policy.tryAcquireSpeculativeRequest());
+        policy.initiateSpeculativeRequest(scheduler, () -> Futures.immediateFuture(false)).cancel(false);
+        assertTrue(policy.tryAcquireSpeculativeRequest());
+        assertFalse(policy.tryAcquireSpeculativeRequest());
+    }
+
+    @Test
+    public void testPermitsNeverExceedTheBurst() {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(95, 0.1);
+        for (int i = 0; i < 100; i++) {
+            policy.releaseSpeculativeRequest();
+        }
+        for (long i = 0; i < MAX_PERMITS / PERMIT; i++) {
+            assertTrue(policy.tryAcquireSpeculativeRequest());
+        }
+        assertFalse(policy.tryAcquireSpeculativeRequest());
+    }
+
+    @Test(timeout = 10000)
+    public void testSpeculativeRequestsSkippedWithoutPermit() throws Exception {
+        PercentileSpeculativeRequestExecutionPolicy policy = newPolicy(95, 0.1);
+        while (policy.tryAcquireSpeculativeRequest()) {
+            // use up the permits
+        }
+        policy.releaseSpeculativeRequest();
+
+        // the first request is issued with the only permit, which is given back as it issues no other
+        AtomicInteger numIssued = new AtomicInteger();
+        CountDownLatch issued = new CountDownLatch(1);
+        policy.initiateSpeculativeRequest(scheduler, () -> {
+            numIssued.incrementAndGet();
+            issued.countDown();
+            return Futures.immediateFuture(false);
+        });
+        assertTrue(issued.await(5, TimeUnit.SECONDS));
+        // the permit is given back once the callback of the request runs on the scheduler thread
+        scheduler.submit(() -> { }).get();
+        assertTrue(policy.tryAcquireSpeculativeRequest());
+
+        // without a permit, the speculative request is skipped
+        CountDownLatch skipped = new CountDownLatch(1);
+        policy.initiateSpeculativeRequest(scheduler, () -> {
+            numIssued.incrementAndGet();
+            return Futures.immediateFuture(false);
+        });
+        scheduler.schedule(skipped::countDown, 2 * FIRST_TIMEOUT, TimeUnit.MILLISECONDS);
+        assertTrue(skipped.await(5, TimeUnit.SECONDS));
+        assertEquals(1, numIssued.get());
+    }
+}
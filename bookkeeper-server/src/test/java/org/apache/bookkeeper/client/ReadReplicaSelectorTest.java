@@ -0,0 +1,161 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.RoundRobinDistributionSchedule.writeSetFromValues;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.util.MathUtils;
+import org.junit.Test;
+
+/**
+ * Test the ordering of the replicas of the reads by the latency of the bookies.
+ */
+public class ReadReplicaSelectorTest {
+
+    private static final long DECAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final List<BookieId> ensemble = Arrays.asList(
+            BookieId.parse("bookie0:3181"), BookieId.parse("bookie1:3181"),
+            BookieId.parse("bookie2:3181"), BookieId.parse("bookie3:3181"));
+    private final Map<BookieId, Long> failures = new HashMap<>();
+    private final Map<BookieId, Long> pendingRequests = new HashMap<>();
+    private final BookiesHealthInfo healthInfo = new BookiesHealthInfo() {
+        @Override
+        public long getBookieFailureHistory(BookieId bookie) {
+            return failures.getOrDefault(bookie, -1L);
+        }
+
+        @Override
+        public long getBookiePendingRequests(BookieId bookie) {
+            return pendingRequests.getOrDefault(bookie, 0L);
+        }
+    };
+    private final ReadReplicaSelector selector = new ReadReplicaSelector(DECAY_MILLIS);
+
+    private DistributionSchedule.WriteSet reorder(Integer... replicas) {
+        return selector.reorderReadSequence(ensemble, healthInfo, writeSetFromValues(replicas));
+    }
+
+    private static List<Integer> toList(DistributionSchedule.WriteSet writeSet) {
+        Integer[] replicas = new Integer[writeSet.size()];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = writeSet.get(i);
+        }
+        writeSet.recycle();
+        return Arrays.asList(replicas);
+    }
+
+    @Test
+    public void testPlacementOrderWithoutLatencies() {
+        assertEquals(Arrays.asList(1, 0), toList(reorder(1, 0)));
+        assertEquals(Arrays.asList(2), toList(reorder(2)));
+    }
+
+    @Test
+    public void testFasterBookieFirst() {
+        selector.recordReadLatency(ensemble.get(0), TimeUnit.MILLISECONDS.toNanos(100));
+        selector.recordReadLatency(ensemble.get(1), TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(Arrays.asList(1, 0), toList(reorder(0, 1)));
+
+        // the pending requests make a bookie busier
+        pendingRequests.put(ensemble.get(1), 1000L);
+        assertEquals(Arrays.asList(0, 1), toList(reorder(0, 1)));
+    }
+
+    @Test
+    public void testSlowReadsCountRightAway() {
+        selector.recordReadLatency(ensemble.get(0), TimeUnit.MILLISECONDS.toNanos(1));
+        selector.recordReadLatency(ensemble.get(1), TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(Arrays.asList(0, 1), toList(reorder(0, 1)));
+
+        selector.recordReadLatency(ensemble.get(0), TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(Arrays.asList(1, 0), toList(reorder(0, 1)));
+    }
+
+    @Test
+    public void testFailedBookiesLast() {
+        selector.recordReadLatency(ensemble.get(0), TimeUnit.MILLISECONDS.toNanos(1));
+        selector.recordReadLatency(ensemble.get(1), TimeUnit.MILLISECONDS.toNanos(100));
+        failures.put(ensemble.get(0), 1L);
+        failures.put(ensemble.get(2), 1L);
+        assertEquals(Arrays.asList(1, 2, 0), toList(reorder(2, 0, 1)));
+
+        // all failed, in the order of the placement policy
+        failures.put(ensemble.get(1), 1L);
+        assertEquals(Arrays.asList(2, 0, 1), toList(reorder(2, 0, 1)));
+    }
+
+    @Test
+    public void testNeverFirstToTheSlowest() {
+        selector.recordReadLatency(ensemble.get(0), TimeUnit.MILLISECONDS.toNanos(1));
+        selector.recordReadLatency(ensemble.get(1), TimeUnit.MILLISECONDS.toNanos(2));
+        selector.recordReadLatency(ensemble.get(2), TimeUnit.MILLISECONDS.toNanos(100));
+
+        Set<Integer> firsts = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            List<Integer> replicas = toList(reorder(2, 1, 0));
+            assertNotEquals(Integer.valueOf(2), replicas.get(0));
+            // the others by cost
+            assertEquals(Integer.valueOf(2), replicas.get(2));
+            firsts.add(replicas.get(0));
+        }
+        // the reads are spread over the fast replicas
+        assertEquals(new HashSet<>(Arrays.asList(0, 1)), firsts);
+    }
+
+    @Test
+    public void testPruneStaleLatencies() {
+        selector.recordReadLatency(ensemble.get(0), TimeUnit.MILLISECONDS.toNanos(1));
+        selector.recordReadLatency(ensemble.get(1), TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(2, selector.getNumLatencies());
+
+        long now = MathUtils.nowInNano();
+        selector.prune(bookie -> false, now);
+        assertEquals(2, selector.getNumLatencies());
+        selector.prune(bookie -> false, now + TimeUnit.MILLISECONDS.toNanos(DECAY_MILLIS));
+        assertEquals(2, selector.getNumLatencies());
+
+        selector.prune(bookie -> false,
+                now + TimeUnit.MILLISECONDS.toNanos(DECAY_MILLIS) * (ReadReplicaSelector.STALE_AFTER_DECAYS + 1));
+        assertEquals(0, selector.getNumLatencies());
+    }
+
+    @Test
+    public void testPruneBookiesWhichLeftTheCluster() {
+        selector.recordReadLatency(ensemble.get(0), TimeUnit.MILLISECONDS.toNanos(100));
+        selector.recordReadLatency(ensemble.get(1), TimeUnit.MILLISECONDS.toNanos(1));
+        selector.prune(bookie -> bookie.equals(ensemble.get(0)));
+        assertEquals(1, selector.getNumLatencies());
+
+        // bookie0 is unknown again
+        assertEquals(Arrays.asList(0, 1), toList(reorder(0, 1)));
+    }
+}
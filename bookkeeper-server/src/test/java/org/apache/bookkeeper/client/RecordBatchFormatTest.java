@@ -0,0 +1,125 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.bookkeeper.client.api.LedgerRecord;
+import org.apache.bookkeeper.client.api.RecordPosition;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.junit.Test;
+
+/**
+ * Test the format of the entries packing several records.
+ */
+public class RecordBatchFormatTest {
+
+    private static LedgerEntryImpl pack(long entryId, List<byte[]> records) {
+        ByteBuf lengths = Unpooled.buffer();
+        ByteBuf payload = Unpooled.buffer();
+        for (byte[] record : records) {
+            RecordBatchFormat.writeVarInt(lengths, record.length);
+            payload.writeBytes(record);
+        }
+        ByteBuf entry = Unpooled.buffer();
+        RecordBatchFormat.writeHeader(entry, records.size(), lengths);
+        entry.writeBytes(payload);
+        return LedgerEntryImpl.create(1L, entryId, entry.readableBytes(), entry);
+    }
+
+    private static LedgerEntryImpl plain(byte[] data) {
+        return LedgerEntryImpl.create(1L, 0L, data.length, Unpooled.wrappedBuffer(data));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        List<byte[]> records = new ArrayList<>();
+        // lengths taking one to three bytes in the index
+        for (int length : new int[] { 0, 1, 127, 128, 300, 16383, 16384, 20000 }) {
+            byte[] record = new byte[length];
+            ThreadLocalRandom.current().nextBytes(record);
+            records.add(record);
+        }
+        LedgerEntryImpl entry = pack(5L, records);
+
+        List<LedgerRecord> unpacked = new ArrayList<>();
+        assertTrue(RecordBatchFormat.unpack(entry, unpacked));
+        assertEquals(records.size(), unpacked.size());
+        for (int i = 0; i < records.size(); i++) {
+            LedgerRecord record = unpacked.get(i);
+            assertEquals(new RecordPosition(5L, i), record.getPosition());
+            assertEquals(records.get(i).length, record.getLength());
+            assertArrayEquals(records.get(i), record.getRecordBytes());
+        }
+
+        // the records hold references to the buffer of the entry
+        ByteBuf buffer = entry.getEntryBuffer();
+        entry.close();
+        assertEquals(records.size(), buffer.refCnt());
+        unpacked.forEach(LedgerRecord::close);
+        assertEquals(0, buffer.refCnt());
+    }
+
+    @Test
+    public void testSingleRecord() {
+        LedgerEntryImpl entry = plain("plain entry".getBytes());
+        List<LedgerRecord> records = new ArrayList<>();
+        RecordBatchFormat.addSingleRecord(entry, records);
+        assertEquals(1, records.size());
+        assertEquals(new RecordPosition(0L, 0), records.get(0).getPosition());
+        assertArrayEquals("plain entry".getBytes(), records.get(0).getRecordBytes());
+        records.get(0).close();
+        entry.close();
+    }
+
+    @Test
+    public void testNotBatch() {
+        List<LedgerRecord> records = new ArrayList<>();
+        assertFalse(RecordBatchFormat.unpack(plain("plain entry".getBytes()), records));
+        assertFalse(RecordBatchFormat.unpack(plain(new byte[0]), records));
+
+        // the magic, with an index which doesn't account for the bytes of the entry
+        ByteBuf data = Unpooled.buffer();
+        data.writeInt(RecordBatchFormat.MAGIC);
+        RecordBatchFormat.writeVarInt(data, 2);
+        RecordBatchFormat.writeVarInt(data, 3);
+        RecordBatchFormat.writeVarInt(data, 3);
+        data.writeBytes("abcde".getBytes());
+        assertFalse(RecordBatchFormat.unpack(LedgerEntryImpl.create(1L, 0L, data.readableBytes(), data), records));
+
+        // a truncated index
+        ByteBuf truncated = Unpooled.buffer();
+        truncated.writeInt(RecordBatchFormat.MAGIC);
+        RecordBatchFormat.writeVarInt(truncated, 1);
+        truncated.writeByte(0x80);
+        assertFalse(RecordBatchFormat.unpack(
+                LedgerEntryImpl.create(1L, 0L, truncated.readableBytes(), truncated), records));
+        assertTrue(records.isEmpty());
+    }
+}
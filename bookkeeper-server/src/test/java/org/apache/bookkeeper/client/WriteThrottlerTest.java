@@ -0,0 +1,183 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the admission of the adds by the WriteThrottler.
+ */
+public class WriteThrottlerTest {
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private WriteThrottler newThrottler(int entriesPerSecond, long maxOutstandingAddBytes, int maxDelayedAdds) {
+        return new WriteThrottler(entriesPerSecond, maxOutstandingAddBytes, maxDelayedAdds, scheduler,
+                NullStatsLogger.INSTANCE.getOpStatsLogger("throttle-wait"));
+    }
+
+    @Test
+    public void testDisabled() {
+        assertFalse(newThrottler(0, 0, 0).isEnabled());
+        assertTrue(newThrottler(1, 0, 0).isEnabled());
+        assertTrue(newThrottler(0, 1, 0).isEnabled());
+        assertFalse(newThrottler(1, 0, 0).isLimitingBytes());
+        assertTrue(newThrottler(0, 1, 0).isLimitingBytes());
+    }
+
+    @Test
+    public void testRate() throws Exception {
+        WriteThrottler.LedgerThrottle throttle = newThrottler(100, 0, 0).newLedgerThrottle(1L);
+        long startNanos = System.nanoTime();
+        // the first add is admitted right away, the next ones every 10 millis
+        assertTrue(throttle.acquire(10).isDone());
+        CompletableFuture<Void> second = throttle.acquire(10);
+        assertFalse(second.isDone());
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 48; i++) {
+            last = throttle.acquire(10);
+        }
+        assertFalse(last.isDone());
+        last.get(10, TimeUnit.SECONDS);
+        assertTrue(second.isDone());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertTrue("50 adds admitted in " + elapsedMillis + " ms", elapsedMillis >= 450);
+    }
+
+    @Test
+    public void testByteLimit() throws Exception {
+        WriteThrottler throttler = newThrottler(0, 100, 0);
+        WriteThrottler.LedgerThrottle throttle1 = throttler.newLedgerThrottle(1L);
+        WriteThrottler.LedgerThrottle throttle2 = throttler.newLedgerThrottle(2L);
+
+        // the bytes are shared by the ledger handles, and the last add admitted may go over the limit
+        assertTrue(throttle1.acquire(60).isDone());
+        assertTrue(throttle2.acquire(60).isDone());
+        CompletableFuture<Void> over = throttle1.acquire(10);
+        // an add waits behind the add of its handle waiting for bytes
+        CompletableFuture<Void> behind = throttle1.acquire(10);
+        Thread.sleep(100);
+        assertFalse(over.isDone());
+        assertFalse(behind.isDone());
+
+        throttler.releaseBytes(10);
+        Thread.sleep(100);
+        assertFalse(over.isDone());
+
+        throttler.releaseBytes(50);
+        over.get(10, TimeUnit.SECONDS);
+        behind.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testAdmittedInOrder() throws Exception {
+        WriteThrottler.LedgerThrottle throttle = newThrottler(1000, 0, 0).newLedgerThrottle(1L);
+        List<Integer> admitted = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int add = i;
+            futures.add(throttle.acquire(1).thenRun(() -> admitted.add(add)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(200, admitted.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, (int) admitted.get(i));
+        }
+    }
+
+    @Test
+    public void testMaxDelayedAddsBlocksCaller() throws Exception {
+        WriteThrottler.LedgerThrottle throttle = newThrottler(10, 0, 2).newLedgerThrottle(1L);
+        assertTrue(throttle.acquire(1).isDone());
+        CompletableFuture<Void> first = throttle.acquire(1);
+        throttle.acquire(1);
+
+        // the queue is full, the caller waits for the first delayed add to be admitted after 100 millis
+        long startNanos = System.nanoTime();
+        CompletableFuture<Void> blocked = throttle.acquire(1);
+        long blockedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertTrue(first.isDone());
+        assertFalse(blocked.isDone());
+        assertTrue("blocked for " + blockedMillis + " ms", blockedMillis >= 50);
+        blocked.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testMaxDelayedAddsRejectsWithByteLimit() throws Exception {
+        WriteThrottler throttler = newThrottler(0, 10, 1);
+        WriteThrottler.LedgerThrottle throttle = throttler.newLedgerThrottle(1L);
+        assertTrue(throttle.acquire(10).isDone());
+        assertTrue(throttle.acquire(10).isDone());
+        CompletableFuture<Void> delayed = throttle.acquire(10);
+        try {
+            throttle.acquire(10);
+            fail("should have been rejected");
+        } catch (BKException.BKTooManyRequestsException e) {
+            // ok
+        }
+
+        throttler.releaseBytes(20);
+        delayed.get(10, TimeUnit.SECONDS);
+        // there is room again once the delayed add is admitted
+        CompletableFuture<Void> next = throttle.acquire(10);
+        throttler.releaseBytes(10);
+        next.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        WriteThrottler.LedgerThrottle throttle = newThrottler(1, 0, 0).newLedgerThrottle(1L);
+        assertTrue(throttle.acquire(1).isDone());
+        scheduler.shutdownNow();
+        try {
+            throttle.acquire(1);
+            fail("should have been rejected");
+        } catch (BKException.BKInterruptedException e) {
+            // ok
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.processor.RequestProcessor;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.Test;
+
+/**
+ * Test the listeners of the bookie for the regular and the replication traffic.
+ */
+public class BookieNettyServerTest {
+
+    private static final RequestProcessor NOOP_PROCESSOR = new RequestProcessor() {
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void processRequest(Object r, Channel channel) {
+        }
+    };
+
+    private static ServerConfiguration newConf(int replicationPort) {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setBookiePort(PortManager.nextFreePort());
+        conf.setReplicationServerPort(replicationPort);
+        return conf;
+    }
+
+    private static List<Boolean> acceptedChannels(BookieNettyServer server, int expected) throws Exception {
+        while (server.allChannels.size() < expected) {
+            Thread.sleep(10);
+        }
+        List<Boolean> replication = new ArrayList<>();
+        for (Channel channel : server.allChannels) {
+            replication.add(BookieNettyServer.isReplicationChannel(channel));
+        }
+        replication.sort(Boolean::compare);
+        return replication;
+    }
+
+    @Test(timeout = 60000)
+    public void testReplicationListener() throws Exception {
+        int replicationPort = PortManager.nextFreePort();
+        ServerConfiguration conf = newConf(replicationPort);
+        BookieNettyServer server = new BookieNettyServer(conf, NOOP_PROCESSOR, UnpooledByteBufAllocator.DEFAULT);
+        server.start();
+        Channel replicationListener = server.replicationListenChannel;
+        assertNotNull(replicationListener);
+        try (Socket regular = new Socket("127.0.0.1", conf.getBookiePort());
+             Socket replication = new Socket("127.0.0.1", replicationPort)) {
+            // only the connections of the replication listener are tagged
+            List<Boolean> expected = new ArrayList<>();
+            expected.add(false);
+            expected.add(true);
+            assertEquals(expected, acceptedChannels(server, 2));
+        } finally {
+            server.shutdown();
+        }
+
+        // the replication listener is closed, and its port released
+        assertFalse(replicationListener.isOpen());
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", replicationPort));
+            fail("Should not connect to the replication listener once the bookie is shut down");
+        } catch (ConnectException e) {
+            // ok
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testReplicationListenerDisabled() throws Exception {
+        ServerConfiguration conf = newConf(0);
+        BookieNettyServer server = new BookieNettyServer(conf, NOOP_PROCESSOR, UnpooledByteBufAllocator.DEFAULT);
+        server.start();
+        try {
+            assertNull(server.replicationListenChannel);
+            assertNull(server.replicationEventLoopGroup);
+            try (Socket regular = new Socket("127.0.0.1", conf.getBookiePort())) {
+                List<Boolean> expected = new ArrayList<>();
+                expected.add(false);
+                assertEquals(expected, acceptedChannels(server, 1));
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+}
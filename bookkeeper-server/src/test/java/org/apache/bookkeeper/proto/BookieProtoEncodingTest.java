@@ -0,0 +1,239 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.UnsafeByteOperations;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.Random;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.junit.Test;
+
+/**
+ * Test that the V3 read responses serialized around their entry body are identical to the generated
+ * serialization.
+ */
+public class BookieProtoEncodingTest {
+
+    private final ByteBufAllocator allocator = UnpooledByteBufAllocator.DEFAULT;
+    private final BookieProtoEncoding.ResponseEnDecoderV3 codec =
+            new BookieProtoEncoding.ResponseEnDecoderV3(ExtensionRegistry.newInstance());
+
+    private static ByteBuf entry(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return Unpooled.directBuffer(size).writeBytes(bytes);
+    }
+
+    private static BKPacketHeader header(boolean highPriority) {
+        BKPacketHeader.Builder header = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.READ_ENTRY)
+                .setTxnId(123456789L);
+        if (highPriority) {
+            header.setPriority(1);
+        }
+        return header.build();
+    }
+
+    private static Response response(BKPacketHeader header, ReadResponse readResponse) {
+        return Response.newBuilder()
+                .setHeader(header)
+                .setStatus(readResponse.getStatus())
+                .setReadResponse(readResponse)
+                .build();
+    }
+
+    /**
+     * Encode the response and check that the bytes written are the generated serialization, and whether
+     * the body was written without being copied.
+     */
+    private void assertEncodedAsGenerated(Response response, boolean zeroCopy) throws Exception {
+        Object encoded = codec.encode(response, allocator);
+        byte[] bytes;
+        if (encoded instanceof ByteBufList) {
+            ByteBufList list = (ByteBufList) encoded;
+            bytes = new byte[list.readableBytes()];
+            list.getBytes(bytes);
+            list.release();
+        } else {
+            ByteBuf buf = (ByteBuf) encoded;
+            bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            buf.release();
+        }
+        assertEquals(zeroCopy, encoded instanceof ByteBufList);
+        assertArrayEquals(response.toByteArray(), bytes);
+
+        Response decoded = (Response) codec.decode(Unpooled.wrappedBuffer(bytes));
+        assertEquals(response, decoded);
+    }
+
+    @Test
+    public void testReadResponse() throws Exception {
+        ByteBuf entry = entry(4096);
+        try {
+            ReadResponse readResponse = ReadResponse.newBuilder()
+                    .setStatus(StatusCode.EOK)
+                    .setLedgerId(1L)
+                    .setEntryId(2L)
+                    .setBody(UnsafeByteOperations.unsafeWrap(entry.nioBuffer()))
+                    .setMaxLAC(2L)
+                    .build();
+            assertEncodedAsGenerated(response(header(false), readResponse), true);
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testPiggybackedLacReadResponse() throws Exception {
+        ByteBuf entry = entry(1024);
+        try {
+            // without the trailing fields, but with the timestamp of the last LAC update
+            ReadResponse readResponse = ReadResponse.newBuilder()
+                    .setStatus(StatusCode.EOK)
+                    .setLedgerId(Long.MAX_VALUE)
+                    .setEntryId(-1L)
+                    .setBody(UnsafeByteOperations.unsafeWrap(entry.nioBuffer()))
+                    .build();
+            assertEncodedAsGenerated(response(header(false), readResponse), true);
+
+            readResponse = readResponse.toBuilder()
+                    .setMaxLAC(1000L)
+                    .setLacUpdateTimestamp(System.currentTimeMillis())
+                    .build();
+            assertEncodedAsGenerated(response(header(false), readResponse), true);
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testFenceReadResponse() throws Exception {
+        ByteBuf entry = entry(2000);
+        try {
+            // the fence reads are high priority, and their body is copied
+            ReadResponse readResponse = ReadResponse.newBuilder()
+                    .setStatus(StatusCode.EOK)
+                    .setLedgerId(3L)
+                    .setEntryId(4L)
+                    .setBody(ByteString.copyFrom(entry.nioBuffer()))
+                    .build();
+            assertEncodedAsGenerated(response(header(true), readResponse), true);
+
+            // a failed fence has no body
+            readResponse = ReadResponse.newBuilder()
+                    .setStatus(StatusCode.EIO)
+                    .setLedgerId(3L)
+                    .setEntryId(4L)
+                    .build();
+            assertEncodedAsGenerated(response(header(true), readResponse), false);
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testErrorStatus() throws Exception {
+        ByteBuf entry = entry(1500);
+        try {
+            // the error codes take several bytes
+            for (StatusCode status : new StatusCode[] {StatusCode.ENOENTRY, StatusCode.EFENCED,
+                    StatusCode.ETOOMANYREQUESTS}) {
+                ReadResponse readResponse = ReadResponse.newBuilder()
+                        .setStatus(status)
+                        .setLedgerId(5L)
+                        .setEntryId(6L)
+                        .setBody(UnsafeByteOperations.unsafeWrap(entry.nioBuffer()))
+                        .setMaxLAC(5L)
+                        .build();
+                Response response = Response.newBuilder()
+                        .setHeader(header(true))
+                        .setStatus(StatusCode.EUA)
+                        .setReadResponse(readResponse)
+                        .build();
+                assertEncodedAsGenerated(response, true);
+
+                readResponse = readResponse.toBuilder().clearBody().clearMaxLAC().build();
+                assertEncodedAsGenerated(response(header(false), readResponse), false);
+            }
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testSmallBodyIsCopied() throws Exception {
+        ByteBuf entry = entry(100);
+        try {
+            ReadResponse readResponse = ReadResponse.newBuilder()
+                    .setStatus(StatusCode.EOK)
+                    .setLedgerId(7L)
+                    .setEntryId(8L)
+                    .setBody(UnsafeByteOperations.unsafeWrap(entry.nioBuffer()))
+                    .build();
+            assertEncodedAsGenerated(response(header(false), readResponse), false);
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Test
+    public void testBodyNotCopied() throws Exception {
+        ByteBuf entry = entry(4096);
+        try {
+            ReadResponse readResponse = ReadResponse.newBuilder()
+                    .setStatus(StatusCode.EOK)
+                    .setLedgerId(1L)
+                    .setEntryId(2L)
+                    .setBody(UnsafeByteOperations.unsafeWrap(entry.nioBuffer()))
+                    .build();
+            ByteBufList encoded = (ByteBufList) codec.encode(response(header(false), readResponse), allocator);
+            try {
+                // the body buffer shares the memory of the entry
+                ByteBuf body = encoded.getBuffer(1);
+                assertEquals(entry.readableBytes(), body.readableBytes());
+                assertTrue(body.nioBuffer().isDirect());
+                entry.setByte(0, entry.getByte(0) + 1);
+                assertEquals(entry.getByte(0), body.getByte(body.readerIndex()));
+            } finally {
+                encoded.release();
+            }
+        } finally {
+            entry.release();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.tls.SecurityException;
+import org.junit.Test;
+
+/**
+ * Test the resizing of the channels per bookie with their congestion.
+ */
+public class DefaultPerChannelBookieClientPoolTest {
+
+    private static final BookieId BOOKIE = BookieId.parse("127.0.0.1:3181");
+    private static final long INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(INTERVAL_MILLIS);
+    private static final int LOW_WATER_MARK = 1024;
+
+    /**
+     * A channel which doesn't connect, with the congestion and the pending requests set by the test.
+     */
+    private static class FakeClient extends PerChannelBookieClient {
+        final boolean forceUseV3;
+        long unwritableTimeNanos = 0;
+        long pendingWriteBytes = 0;
+        long pendingRequests = 0;
+        int numDisconnects = 0;
+
+        FakeClient(ClientConfiguration conf, boolean forceUseV3) throws SecurityException {
+            super(conf, null, null, BOOKIE, NullStatsLogger.INSTANCE, null, null, null, null);
+            this.forceUseV3 = forceUseV3;
+        }
+
+        @Override
+        long getUnwritableTimeNanos() {
+            return unwritableTimeNanos;
+        }
+
+        @Override
+        long getPendingWriteBytes() {
+            return pendingWriteBytes;
+        }
+
+        @Override
+        protected long getNumPendingCompletionRequests() {
+            return pendingRequests;
+        }
+
+        @Override
+        void connectIfNeededAndDoOp(BookkeeperInternalCallbacks.GenericCallback<PerChannelBookieClient> op) {
+            state = ConnectionState.CONNECTED;
+            op.operationComplete(BKException.Code.OK, this);
+        }
+
+        @Override
+        public void disconnect(boolean wait) {
+            state = ConnectionState.DISCONNECTED;
+            numDisconnects++;
+        }
+    }
+
+    private final List<FakeClient> created = new ArrayList<>();
+
+    private DefaultPerChannelBookieClientPool newPool(int coreSize, int maxSize, boolean useV2) throws Exception {
+        ClientConfiguration conf = new ClientConfiguration()
+                .setMaxNumChannelsPerBookie(maxSize)
+                // long enough for the test to resize the pool itself
+                .setChannelPoolResizeIntervalMillis(INTERVAL_MILLIS)
+                .setClientWriteBufferLowWaterMark(LOW_WATER_MARK)
+                .setUseV2WireProtocol(useV2);
+        DefaultPerChannelBookieClientPool pool = new DefaultPerChannelBookieClientPool(conf,
+                (address, pcbcPool, shFactory, forceUseV3) -> {
+                    FakeClient client = new FakeClient(conf, forceUseV3);
+                    created.add(client);
+                    return client;
+                }, BOOKIE, coreSize);
+        pool.initialize();
+        return pool;
+    }
+
+    private static FakeClient client(DefaultPerChannelBookieClientPool pool, int index) {
+        return (FakeClient) pool.clients[index];
+    }
+
+    private static Set<PerChannelBookieClient> obtainAll(DefaultPerChannelBookieClientPool pool, boolean forceUseV3) {
+        Set<PerChannelBookieClient> obtained = new HashSet<>();
+        for (long key = 0; key < 100; key++) {
+            pool.obtain((rc, pcbc) -> obtained.add(pcbc), key, forceUseV3);
+        }
+        return obtained;
+    }
+
+    @Test
+    public void testGrowWhileCongested() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(1, 3, false);
+        assertEquals(3, pool.clients.length);
+        assertEquals(1, pool.numActiveClients);
+        assertEquals(1, obtainAll(pool, false).size());
+
+        long now = 0;
+        // too many bytes waiting to be written
+        client(pool, 0).pendingWriteBytes = LOW_WATER_MARK + 1;
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(2, pool.numActiveClients);
+        assertEquals(2, obtainAll(pool, false).size());
+
+        // not writable for a large part of the interval
+        client(pool, 0).pendingWriteBytes = 0;
+        client(pool, 1).unwritableTimeNanos = INTERVAL_NANOS / 2;
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(3, pool.numActiveClients);
+
+        // up to the max number of channels
+        client(pool, 2).pendingWriteBytes = LOW_WATER_MARK + 1;
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(3, pool.numActiveClients);
+        assertEquals(3, obtainAll(pool, false).size());
+    }
+
+    @Test
+    public void testNotCongested() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(1, 3, false);
+
+        long now = 0;
+        client(pool, 0).unwritableTimeNanos = INTERVAL_NANOS;
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(2, pool.numActiveClients);
+
+        // only the time not writable during the last interval counts, and briefly not writable isn't congested
+        client(pool, 0).unwritableTimeNanos += INTERVAL_NANOS / 100;
+        client(pool, 0).pendingWriteBytes = LOW_WATER_MARK;
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(2, pool.numActiveClients);
+
+        // the channels not in use don't count
+        client(pool, 2).pendingWriteBytes = LOW_WATER_MARK + 1;
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(2, pool.numActiveClients);
+    }
+
+    @Test
+    public void testShrinkAndDrainBeforeClosing() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(1, 2, false);
+
+        long now = 0;
+        client(pool, 0).pendingWriteBytes = LOW_WATER_MARK + 1;
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        client(pool, 0).pendingWriteBytes = 0;
+        assertEquals(2, pool.numActiveClients);
+        obtainAll(pool, false);
+        FakeClient released = client(pool, 1);
+        assertSame(PerChannelBookieClient.ConnectionState.CONNECTED, released.state);
+
+        // shrinks after some intervals without congestion
+        for (int i = 0; i < 9; i++) {
+            pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+            assertEquals(2, pool.numActiveClients);
+        }
+        released.pendingRequests = 3;
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(1, pool.numActiveClients);
+        assertEquals(1, obtainAll(pool, false).size());
+
+        // the released channel isn't closed while it still has requests in progress
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(0, released.numDisconnects);
+
+        // nor before it stayed idle for a whole interval since requests were last seen in progress
+        released.pendingRequests = 0;
+        pool.resize(now += INTERVAL_NANOS / 2, INTERVAL_NANOS / 2);
+        assertEquals(0, released.numDisconnects);
+        pool.resize(now += INTERVAL_NANOS / 2, INTERVAL_NANOS / 2);
+        assertEquals(1, released.numDisconnects);
+        assertEquals(0, client(pool, 0).numDisconnects);
+
+        // once disconnected, it's left alone
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(1, released.numDisconnects);
+
+        // and it connects again when the pool grows back
+        client(pool, 0).pendingWriteBytes = LOW_WATER_MARK + 1;
+        pool.resize(now += INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(2, obtainAll(pool, false).size());
+        assertSame(PerChannelBookieClient.ConnectionState.CONNECTED, released.state);
+    }
+
+    @Test
+    public void testV3EnforcedChannelsStayAtCoreSize() throws Exception {
+        DefaultPerChannelBookieClientPool pool = newPool(2, 4, true);
+        assertEquals(4, pool.clients.length);
+        assertEquals(2, pool.clientsV3Enforced.length);
+        for (PerChannelBookieClient client : pool.clientsV3Enforced) {
+            assertTrue(((FakeClient) client).forceUseV3);
+        }
+        for (PerChannelBookieClient client : pool.clients) {
+            assertFalse(((FakeClient) client).forceUseV3);
+        }
+
+        client(pool, 0).pendingWriteBytes = LOW_WATER_MARK + 1;
+        pool.resize(INTERVAL_NANOS, INTERVAL_NANOS);
+        pool.resize(2 * INTERVAL_NANOS, INTERVAL_NANOS);
+        assertEquals(4, pool.numActiveClients);
+        assertEquals(4, obtainAll(pool, false).size());
+
+        Set<PerChannelBookieClient> v3Clients = obtainAll(pool, true);
+        assertEquals(2, v3Clients.size());
+        for (PerChannelBookieClient client : v3Clients) {
+            assertTrue(((FakeClient) client).forceUseV3);
+        }
+        assertEquals(6, created.size());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the explicit LACs batched for each bookie, piggybacked on the adds or sent in a batch.
+ */
+public class ExplicitLacBatchingTest {
+
+    private static final byte[] PASSWORD = "password".getBytes();
+    private static final int NUM_ENTRIES = 5;
+
+    private static LocalBookKeeper cluster;
+    private static BookKeeper piggybackingWriter;
+    private static BookKeeper batchingWriter;
+    private static BookKeeper reader;
+
+    @BeforeClass
+    public static void setUpCluster() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setJournalRemovePagesFromCache(false);
+        cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(), 3, true, conf);
+        cluster.start();
+        // the LACs are only piggybacked on the adds, the batches being sent much later than the test lasts
+        piggybackingWriter = new BookKeeper(new ClientConfiguration()
+                .setMetadataServiceUri(conf.getMetadataServiceUri())
+                .setExplictLacInterval(100)
+                .setExplicitLacBatchingEnabled(true)
+                .setExplicitLacBatchFlushIntervalMillis(600000));
+        batchingWriter = new BookKeeper(new ClientConfiguration()
+                .setMetadataServiceUri(conf.getMetadataServiceUri())
+                .setExplictLacInterval(100)
+                .setExplicitLacBatchingEnabled(true)
+                .setExplicitLacBatchFlushIntervalMillis(50));
+        reader = new BookKeeper(new ClientConfiguration().setMetadataServiceUri(conf.getMetadataServiceUri()));
+    }
+
+    @AfterClass
+    public static void tearDownCluster() throws Exception {
+        for (BookKeeper bk : new BookKeeper[] { reader, batchingWriter, piggybackingWriter }) {
+            if (bk != null) {
+                bk.close();
+            }
+        }
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    private static LedgerHandle createLedger(BookKeeper bk) throws Exception {
+        // on all the bookies, so that the adds of a ledger carry the LACs of the others
+        return bk.createLedger(3, 3, 3, DigestType.CRC32, PASSWORD);
+    }
+
+    private static void waitForExplicitLac(LedgerHandle readHandle, long lac, LedgerHandle otherLedger)
+            throws Exception {
+        while (readHandle.readExplicitLastConfirmed() < lac) {
+            if (otherLedger != null) {
+                otherLedger.addEntry("other".getBytes());
+            }
+            Thread.sleep(50);
+        }
+        assertEquals(lac, readHandle.readExplicitLastConfirmed());
+    }
+
+    @Test(timeout = 60000)
+    public void testPiggybackedOnAdds() throws Exception {
+        LedgerHandle idle = createLedger(piggybackingWriter);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            idle.addEntry(("entry-" + i).getBytes());
+        }
+        LedgerHandle readHandle = reader.openLedgerNoRecovery(idle.getId(), DigestType.CRC32, PASSWORD);
+
+        // the LAC of the last entry is queued, not sent on its own
+        Thread.sleep(1000);
+        assertEquals(NUM_ENTRIES - 2, readHandle.readExplicitLastConfirmed());
+
+        // it is carried by the adds of another ledger
+        LedgerHandle active = createLedger(piggybackingWriter);
+        waitForExplicitLac(readHandle, NUM_ENTRIES - 1, active);
+        active.close();
+        idle.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testSentInBatch() throws Exception {
+        LedgerHandle[] idle = new LedgerHandle[3];
+        for (int l = 0; l < idle.length; l++) {
+            idle[l] = createLedger(batchingWriter);
+            for (int i = 0; i <= l + 1; i++) {
+                idle[l].addEntry(("entry-" + i).getBytes());
+            }
+        }
+        // the LACs of the idle ledgers are sent in batches, without any add
+        for (int l = 0; l < idle.length; l++) {
+            LedgerHandle readHandle = reader.openLedgerNoRecovery(idle[l].getId(), DigestType.CRC32, PASSWORD);
+            waitForExplicitLac(readHandle, l + 1, null);
+            idle[l].close();
+        }
+    }
+}
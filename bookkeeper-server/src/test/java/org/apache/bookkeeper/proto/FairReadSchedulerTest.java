@@ -0,0 +1,242 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the scheduling of the read requests fairly across ledgers.
+ */
+public class FairReadSchedulerTest {
+
+    private OrderedExecutor executor;
+
+    private OrderedExecutor newExecutor(int numThreads, int maxTasksInQueue) {
+        executor = OrderedExecutor.newBuilder()
+                .name("FairReadSchedulerTest")
+                .numThreads(numThreads)
+                .maxTasksInQueue(maxTasksInQueue)
+                .build();
+        return executor;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static CountDownLatch blockThread(OrderedExecutor executor) throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.executeOrdered(0L, () -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private List<String> scheduleTwoLedgers(int quantum) throws Exception {
+        OrderedExecutor executor = newExecutor(1, 0);
+        FairReadScheduler scheduler = new FairReadScheduler(executor, quantum, 0);
+        CountDownLatch release = blockThread(executor);
+
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(8);
+        for (long ledgerId = 1; ledgerId <= 2; ledgerId++) {
+            for (int i = 0; i < 4; i++) {
+                String name = ledgerId + "-" + i;
+                scheduler.executeOrdered(ledgerId, () -> {
+                    executed.add(name);
+                    done.countDown();
+                });
+            }
+        }
+        assertEquals(8, scheduler.getPendingRequests());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getPendingRequests());
+        return executed;
+    }
+
+    @Test(timeout = 60000)
+    public void testTakeTurnsAcrossLedgers() throws Exception {
+        assertEquals(Arrays.asList("1-0", "2-0", "1-1", "2-1", "1-2", "2-2", "1-3", "2-3"),
+                scheduleTwoLedgers(1));
+    }
+
+    @Test(timeout = 60000)
+    public void testQuantum() throws Exception {
+        assertEquals(Arrays.asList("1-0", "1-1", "2-0", "2-1", "1-2", "1-3", "2-2", "2-3"),
+                scheduleTwoLedgers(2));
+    }
+
+    @Test(timeout = 60000)
+    public void testKeepOrderOfLedger() throws Exception {
+        OrderedExecutor executor = newExecutor(4, 0);
+        FairReadScheduler scheduler = new FairReadScheduler(executor, 2, 0);
+
+        int numLedgers = 8;
+        int numRequests = 1000;
+        ConcurrentHashMap<Long, List<Integer>> executed = new ConcurrentHashMap<>();
+        ConcurrentHashMap<Long, AtomicBoolean> running = new ConcurrentHashMap<>();
+        AtomicBoolean concurrentRequests = new AtomicBoolean(false);
+        for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+            executed.put(ledgerId, Collections.synchronizedList(new ArrayList<>()));
+            running.put(ledgerId, new AtomicBoolean(false));
+        }
+
+        CountDownLatch done = new CountDownLatch(numLedgers * numRequests);
+        for (int i = 0; i < numRequests; i++) {
+            for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+                long id = ledgerId;
+                int request = i;
+                scheduler.executeOrdered(ledgerId, () -> {
+                    if (!running.get(id).compareAndSet(false, true)) {
+                        concurrentRequests.set(true);
+                    }
+                    executed.get(id).add(request);
+                    running.get(id).set(false);
+                    done.countDown();
+                });
+            }
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        assertFalse(concurrentRequests.get());
+        for (List<Integer> requests : executed.values()) {
+            assertEquals(numRequests, requests.size());
+            for (int i = 0; i < numRequests; i++) {
+                assertEquals(i, (int) requests.get(i));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testRejectTooManyPendingRequests() throws Exception {
+        OrderedExecutor executor = newExecutor(1, 0);
+        FairReadScheduler scheduler = new FairReadScheduler(executor, 1, 2);
+        CountDownLatch release = blockThread(executor);
+
+        CountDownLatch done = new CountDownLatch(2);
+        scheduler.executeOrdered(1L, done::countDown);
+        scheduler.executeOrdered(2L, done::countDown);
+        try {
+            scheduler.executeOrdered(3L, () -> {});
+            fail("Should reject the requests over the limit");
+        } catch (RejectedExecutionException e) {
+            // ok
+        }
+        assertEquals(2, scheduler.getPendingRequests());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getPendingRequests());
+    }
+
+    @Test(timeout = 60000)
+    public void testExecutorRejection() throws Exception {
+        // a single slot in the queue of the thread, taken by a plain task
+        OrderedExecutor executor = newExecutor(1, 1);
+        FairReadScheduler scheduler = new FairReadScheduler(executor, 1, 1);
+        CountDownLatch release = blockThread(executor);
+        CountDownLatch queued = new CountDownLatch(1);
+        executor.executeOrdered(0L, queued::countDown);
+
+        try {
+            scheduler.executeOrdered(1L, () -> {});
+            fail("Should reject the request when the executor is full");
+        } catch (RejectedExecutionException e) {
+            // ok
+        }
+        // the rejected request isn't charged to the pending requests
+        assertEquals(0, scheduler.getPendingRequests());
+
+        // so it doesn't count against the limit once the executor has room again
+        release.countDown();
+        assertTrue(queued.await(10, TimeUnit.SECONDS));
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.executeOrdered(1L, done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getPendingRequests());
+    }
+
+    @Test(timeout = 60000)
+    public void testExecuteAcceptedRequestsWhenNextTurnIsRejected() throws Exception {
+        OrderedExecutor executor = newExecutor(1, 1);
+        FairReadScheduler scheduler = new FairReadScheduler(executor, 1, 0);
+
+        List<Object> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.executeOrdered(1L, () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.add(0);
+        });
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < 3; i++) {
+            int request = i;
+            scheduler.executeOrdered(1L, () -> executed.add(request));
+        }
+
+        // a plain task takes the single slot in the queue of the thread, so the next turns of the ledger
+        // can't be queued and are executed in place
+        CountDownLatch done = new CountDownLatch(1);
+        executor.executeOrdered(0L, () -> {
+            executed.add("plain");
+            done.countDown();
+        });
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(0, 1, 2, "plain"), executed);
+        assertEquals(0, scheduler.getPendingRequests());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.WriteLacRequest;
+import org.junit.Test;
+
+/**
+ * Test the queue of the explicit LACs to send to a bookie.
+ */
+public class LacUpdateQueueTest {
+
+    private static WriteLacRequest lacUpdate(long ledgerId, long lac) {
+        return WriteLacRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setLac(lac)
+                .setMasterKey(ByteString.EMPTY)
+                .setBody(ByteString.EMPTY)
+                .build();
+    }
+
+    private static long lacOf(List<WriteLacRequest> lacUpdates, long ledgerId) {
+        for (WriteLacRequest lacUpdate : lacUpdates) {
+            if (lacUpdate.getLedgerId() == ledgerId) {
+                return lacUpdate.getLac();
+            }
+        }
+        return -1L;
+    }
+
+    @Test
+    public void testKeepHighestLac() {
+        LacUpdateQueue queue = new LacUpdateQueue();
+        queue.add(lacUpdate(1L, 5L));
+        queue.add(lacUpdate(1L, 7L));
+        queue.add(lacUpdate(1L, 6L));
+        queue.add(lacUpdate(2L, 3L));
+
+        List<WriteLacRequest> drained = queue.drain(10);
+        assertEquals(2, drained.size());
+        assertEquals(7L, lacOf(drained, 1L));
+        assertEquals(3L, lacOf(drained, 2L));
+        assertTrue(queue.isEmpty());
+        assertEquals(Collections.emptyList(), queue.drain(10));
+    }
+
+    @Test
+    public void testDrainUpToMax() {
+        LacUpdateQueue queue = new LacUpdateQueue();
+        for (long ledgerId = 0; ledgerId < 10; ledgerId++) {
+            queue.add(lacUpdate(ledgerId, ledgerId));
+        }
+        assertEquals(4, queue.drain(4).size());
+        assertEquals(4, queue.drain(4).size());
+        assertEquals(2, queue.drain(4).size());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testRequeueOnFailure() {
+        LacUpdateQueue queue = new LacUpdateQueue();
+        queue.add(lacUpdate(1L, 5L));
+        queue.add(lacUpdate(2L, 5L));
+        List<WriteLacRequest> drained = queue.drain(10);
+        AtomicInteger completions = new AtomicInteger();
+        WriteCallback cb = (rc, ledgerId, entryId, addr, ctx) -> completions.incrementAndGet();
+
+        // the LACs carried by an add which succeeds are not queued again
+        queue.requeueOnFailure(drained, cb).writeComplete(BKException.Code.OK, 3L, 0L, null, null);
+        assertEquals(1, completions.get());
+        assertTrue(queue.isEmpty());
+
+        // a LAC queued since then is kept if it is higher
+        queue.add(lacUpdate(1L, 6L));
+        queue.add(lacUpdate(2L, 4L));
+        queue.requeueOnFailure(drained, cb).writeComplete(BKException.Code.BookieHandleNotAvailableException,
+                3L, 0L, null, null);
+        assertEquals(2, completions.get());
+        List<WriteLacRequest> requeued = queue.drain(10);
+        assertEquals(2, requeued.size());
+        assertEquals(6L, lacOf(requeued, 1L));
+        assertEquals(5L, lacOf(requeued, 2L));
+
+        queue.requeueOnFailure(Arrays.asList(lacUpdate(3L, 1L)), cb).writeComplete(
+                BKException.Code.TimeoutException, 3L, 0L, null, null);
+        assertEquals(Arrays.asList(lacUpdate(3L, 1L)), queue.drain(10));
+    }
+}
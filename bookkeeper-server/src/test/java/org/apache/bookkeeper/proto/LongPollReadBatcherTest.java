@@ -0,0 +1,200 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.LocalBookKeeper;
+import org.apache.bookkeeper.util.PortManager;
+import org.junit.Test;
+
+/**
+ * Test the batches of the long poll reads woken up by a LAC update.
+ */
+public class LongPollReadBatcherTest {
+
+    private static final byte[] PASSWORD = "password".getBytes();
+
+    /**
+     * Count the flushes of a channel.
+     */
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+        final AtomicInteger numFlushes = new AtomicInteger();
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            numFlushes.incrementAndGet();
+            super.flush(ctx);
+        }
+    }
+
+    @Test
+    public void testEntrySharedByTheReadsOfABatch() {
+        LongPollReadBatcher.Batch batch = new LongPollReadBatcher.Batch(null);
+        assertNull(batch.getEntry(1L, 0L));
+
+        ByteBuf entry = Unpooled.copiedBuffer("entry", StandardCharsets.UTF_8);
+        batch.putEntry(1L, 0L, entry);
+        // the reader of the entry releases it once sent, the batch keeps its own reference
+        entry.release();
+        assertEquals(1, entry.refCnt());
+
+        ByteBuf shared = batch.getEntry(1L, 0L);
+        assertNotNull(shared);
+        assertEquals("entry", shared.toString(StandardCharsets.UTF_8));
+        assertNull(batch.getEntry(1L, 1L));
+        assertNull(batch.getEntry(2L, 0L));
+        shared.release();
+        assertEquals(1, entry.refCnt());
+
+        // the entries are released at the end of the batch, and not shared with the next batch
+        batch.run();
+        assertEquals(0, entry.refCnt());
+        assertNull(batch.getEntry(1L, 0L));
+    }
+
+    @Test
+    public void testResponsesFlushedOncePerChannel() {
+        FlushCounter flushes1 = new FlushCounter();
+        FlushCounter flushes2 = new FlushCounter();
+        EmbeddedChannel channel1 = new EmbeddedChannel(flushes1);
+        EmbeddedChannel channel2 = new EmbeddedChannel(flushes2);
+        LongPollReadBatcher.Batch batch = new LongPollReadBatcher.Batch(null);
+
+        for (int i = 0; i < 3; i++) {
+            batch.write(channel1, "response-1-" + i);
+            batch.write(channel2, "response-2-" + i);
+        }
+        // the responses wait for the end of the batch
+        assertEquals(0, flushes1.numFlushes.get());
+        assertNull(channel1.readOutbound());
+
+        batch.run();
+        assertEquals(1, flushes1.numFlushes.get());
+        assertEquals(1, flushes2.numFlushes.get());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("response-1-" + i, channel1.readOutbound());
+            assertEquals("response-2-" + i, channel2.readOutbound());
+        }
+
+        // a batch without response to a channel doesn't flush it
+        batch.run();
+        assertEquals(1, flushes1.numFlushes.get());
+        channel1.finishAndReleaseAll();
+        channel2.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testResponsesFlushedWhenTheChannelIsFull() {
+        FlushCounter flushes = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(flushes);
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(1024, 2048));
+        LongPollReadBatcher.Batch batch = new LongPollReadBatcher.Batch(null);
+
+        batch.write(channel, Unpooled.wrappedBuffer(new byte[4]));
+        assertEquals(0, flushes.numFlushes.get());
+        // the write buffer is full, the responses are flushed rather than held until the end of the batch
+        batch.write(channel, Unpooled.wrappedBuffer(new byte[4096]));
+        assertEquals(1, flushes.numFlushes.get());
+        assertTrue(channel.isWritable());
+
+        batch.run();
+        assertEquals(1, flushes.numFlushes.get());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test(timeout = 120000)
+    public void testTailingReadersWokenUpByLacUpdates() throws Exception {
+        final int numReaders = 20;
+        final int numEntries = 5;
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setJournalRemovePagesFromCache(false);
+        try (LocalBookKeeper cluster = LocalBookKeeper.getLocalBookies("127.0.0.1", PortManager.nextFreePort(),
+                3, true, conf)) {
+            cluster.start();
+            ClientConfiguration clientConf = new ClientConfiguration()
+                    .setMetadataServiceUri(conf.getMetadataServiceUri());
+            try (BookKeeper writer = new BookKeeper(clientConf);
+                 BookKeeper reader = new BookKeeper(clientConf)) {
+                LedgerHandle lh = writer.createLedger(3, 3, 3, DigestType.CRC32, PASSWORD);
+                lh.addEntry("entry-0".getBytes());
+
+                // the readers share the channels of their client to the bookies
+                List<LedgerHandle> readers = new ArrayList<>();
+                for (int i = 0; i < numReaders; i++) {
+                    readers.add(reader.openLedgerNoRecovery(lh.getId(), DigestType.CRC32, PASSWORD));
+                }
+
+                for (int entryId = 0; entryId < numEntries; entryId++) {
+                    final long expectedEntryId = entryId;
+                    CountDownLatch read = new CountDownLatch(numReaders);
+                    AtomicInteger numFailures = new AtomicInteger();
+                    for (LedgerHandle readHandle : readers) {
+                        // all the readers wait for the entry, which isn't confirmed yet
+                        assertTrue(readHandle.getLastAddConfirmed() < entryId);
+                        readHandle.asyncReadLastConfirmedAndEntry(entryId, 30000, false,
+                                (rc, lastConfirmed, entry, ctx) -> {
+                                    if (BKException.Code.OK != rc || entry == null
+                                            || entry.getEntryId() != expectedEntryId
+                                            || lastConfirmed < expectedEntryId
+                                            || !("entry-" + expectedEntryId).equals(new String(entry.getEntry()))) {
+                                        numFailures.incrementAndGet();
+                                    }
+                                    read.countDown();
+                                }, null);
+                    }
+
+                    // the next add piggybacks the LAC confirming the entry, and wakes up all the readers
+                    lh.addEntry(("entry-" + (entryId + 1)).getBytes());
+                    assertTrue(read.await(30, TimeUnit.SECONDS));
+                    assertEquals(0, numFailures.get());
+                }
+
+                for (LedgerHandle readHandle : readers) {
+                    readHandle.close();
+                }
+                lh.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.junit.Test;
+
+/**
+ * Test the flush consolidation of the requests and responses written on a channel.
+ */
+public class PriorityAwareFlushConsolidationHandlerTest {
+
+    private static BookieProtocol.ReadRequest readRequestV2(short flags) {
+        return new BookieProtocol.ReadRequest(BookieProtocol.CURRENT_PROTOCOL_VERSION, 1L, 2L, flags, null);
+    }
+
+    private static BookieProtocol.ParsedAddRequest addRequestV2(short flags) {
+        return BookieProtocol.ParsedAddRequest.create(
+                BookieProtocol.CURRENT_PROTOCOL_VERSION, 1L, 2L, flags, null, Unpooled.EMPTY_BUFFER);
+    }
+
+    private static BKPacketHeader header(int priority) {
+        BKPacketHeader.Builder header = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.READ_ENTRY)
+                .setTxnId(1L);
+        if (priority > 0) {
+            header.setPriority(priority);
+        }
+        return header.build();
+    }
+
+    private static BookkeeperProtocol.Response responseV3(int priority) {
+        return BookkeeperProtocol.Response.newBuilder()
+                .setHeader(header(priority))
+                .setStatus(StatusCode.EOK)
+                .build();
+    }
+
+    private static EmbeddedChannel newChannel(int maxFlushes) {
+        return new EmbeddedChannel(new PriorityAwareFlushConsolidationHandler(maxFlushes));
+    }
+
+    @Test
+    public void testMatchHighPriorityMessages() {
+        assertTrue(PriorityAwareFlushConsolidationHandler.isHighPriority(
+                readRequestV2(BookieProtocol.FLAG_HIGH_PRIORITY)));
+        assertFalse(PriorityAwareFlushConsolidationHandler.isHighPriority(
+                readRequestV2(BookieProtocol.FLAG_NONE)));
+
+        assertTrue(PriorityAwareFlushConsolidationHandler.isHighPriority(
+                BookkeeperProtocol.Request.newBuilder().setHeader(header(1)).build()));
+        assertFalse(PriorityAwareFlushConsolidationHandler.isHighPriority(
+                BookkeeperProtocol.Request.newBuilder().setHeader(header(0)).build()));
+
+        assertTrue(PriorityAwareFlushConsolidationHandler.isHighPriority(responseV3(1)));
+        assertFalse(PriorityAwareFlushConsolidationHandler.isHighPriority(responseV3(0)));
+
+        assertFalse(PriorityAwareFlushConsolidationHandler.isHighPriority(new Object()));
+    }
+
+    @Test
+    public void testV2ResponsesKeepThePriorityOfTheirRequest() {
+        BookieProtocol.ReadRequest highPriority = readRequestV2(BookieProtocol.FLAG_HIGH_PRIORITY);
+        BookieProtocol.ReadRequest lowPriority = readRequestV2(BookieProtocol.FLAG_NONE);
+
+        assertTrue(PriorityAwareFlushConsolidationHandler.isHighPriority(
+                ResponseBuilder.buildErrorResponse(BookieProtocol.ENOENTRY, highPriority)));
+        assertFalse(PriorityAwareFlushConsolidationHandler.isHighPriority(
+                ResponseBuilder.buildErrorResponse(BookieProtocol.ENOENTRY, lowPriority)));
+
+        // the add responses are recycled
+        BookieProtocol.Response response =
+                ResponseBuilder.buildAddResponse(addRequestV2(BookieProtocol.FLAG_HIGH_PRIORITY));
+        assertTrue(PriorityAwareFlushConsolidationHandler.isHighPriority(response));
+        response.recycle();
+        response = ResponseBuilder.buildAddResponse(addRequestV2(BookieProtocol.FLAG_NONE));
+        assertFalse(PriorityAwareFlushConsolidationHandler.isHighPriority(response));
+        response.recycle();
+    }
+
+    @Test
+    public void testConsolidateLowPriorityFlushes() {
+        EmbeddedChannel channel = newChannel(3);
+
+        // the embedded channel runs the pending tasks on write, so write everything before flushing
+        Object first = responseV3(0);
+        Object second = responseV3(0);
+        channel.write(first);
+        channel.write(second);
+        channel.pipeline().flush();
+        channel.pipeline().flush();
+        assertNull(channel.readOutbound());
+
+        // the consolidated flush is run by the event loop
+        channel.runPendingTasks();
+        assertSame(first, channel.readOutbound());
+        assertSame(second, channel.readOutbound());
+        assertNull(channel.readOutbound());
+
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushAfterMaxFlushes() {
+        EmbeddedChannel channel = newChannel(3);
+
+        for (int i = 0; i < 3; i++) {
+            channel.write(responseV3(0));
+        }
+        channel.pipeline().flush();
+        channel.pipeline().flush();
+        assertNull(channel.readOutbound());
+        channel.pipeline().flush();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(channel.readOutbound() instanceof BookkeeperProtocol.Response);
+        }
+        assertNull(channel.readOutbound());
+
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushHighPriorityRightAway() {
+        EmbeddedChannel channel = newChannel(100);
+
+        // flushes the pending messages along with the high priority one
+        Object lowPriority = responseV3(0);
+        Object highPriority = responseV3(1);
+        channel.write(lowPriority);
+        channel.write(highPriority);
+        channel.pipeline().flush();
+        assertSame(lowPriority, channel.readOutbound());
+        assertSame(highPriority, channel.readOutbound());
+
+        // the next flush is consolidated again
+        Object next = readRequestV2(BookieProtocol.FLAG_NONE);
+        channel.write(next);
+        channel.pipeline().flush();
+        assertNull(channel.readOutbound());
+        channel.runPendingTasks();
+        assertSame(next, channel.readOutbound());
+
+        // so are the flushes of the v2 responses to low priority requests
+        Object response = ResponseBuilder.buildErrorResponse(BookieProtocol.ENOENTRY,
+                readRequestV2(BookieProtocol.FLAG_NONE));
+        channel.write(response);
+        channel.pipeline().flush();
+        assertNull(channel.readOutbound());
+
+        Object highPriorityResponse = ResponseBuilder.buildErrorResponse(BookieProtocol.ENOENTRY,
+                readRequestV2(BookieProtocol.FLAG_HIGH_PRIORITY));
+        channel.write(highPriorityResponse);
+        channel.pipeline().flush();
+        assertSame(response, channel.readOutbound());
+        assertSame(highPriorityResponse, channel.readOutbound());
+
+        assertEquals(0, channel.outboundMessages().size());
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Test the limits of the requests in progress on the bookie and on each channel.
+ */
+public class RequestAdmissionControllerTest {
+
+    private final List<String> started = new ArrayList<>();
+    private final AtomicInteger throttledChannels = new AtomicInteger();
+    private final AtomicInteger unthrottledChannels = new AtomicInteger();
+
+    private RequestAdmissionController newController(int maxInProgress, int maxInProgressPerChannel) {
+        return new RequestAdmissionController("test", maxInProgress, maxInProgressPerChannel,
+                throttledChannels::incrementAndGet, nanos -> unthrottledChannels.incrementAndGet());
+    }
+
+    private void admit(RequestAdmissionController controller, EmbeddedChannel channel, String request) {
+        controller.admit(channel, () -> started.add(request));
+    }
+
+    @Test
+    public void testGlobalLimit() {
+        RequestAdmissionController controller = newController(2, 0);
+        EmbeddedChannel channel = new EmbeddedChannel();
+
+        admit(controller, channel, "r1");
+        admit(controller, channel, "r2");
+        assertTrue(channel.config().isAutoRead());
+        admit(controller, channel, "r3");
+        assertEquals(Arrays.asList("r1", "r2"), started);
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(1, throttledChannels.get());
+
+        // the parked request is started on the event loop of its channel
+        controller.release(channel);
+        channel.runPendingTasks();
+        assertEquals(Arrays.asList("r1", "r2", "r3"), started);
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(1, unthrottledChannels.get());
+
+        controller.release(channel);
+        controller.release(channel);
+        admit(controller, channel, "r4");
+        admit(controller, channel, "r5");
+        assertEquals(Arrays.asList("r1", "r2", "r3", "r4", "r5"), started);
+    }
+
+    @Test
+    public void testChannelLimit() {
+        RequestAdmissionController controller = newController(10, 1);
+        EmbeddedChannel hot = new EmbeddedChannel();
+        EmbeddedChannel other = new EmbeddedChannel();
+
+        admit(controller, hot, "h1");
+        admit(controller, hot, "h2");
+        assertFalse(hot.config().isAutoRead());
+
+        // a channel out of credits doesn't hold back the others
+        admit(controller, other, "o1");
+        assertTrue(other.config().isAutoRead());
+        assertEquals(Arrays.asList("h1", "o1"), started);
+
+        // nor does it get their credits
+        controller.release(other);
+        hot.runPendingTasks();
+        assertEquals(Arrays.asList("h1", "o1"), started);
+        assertFalse(hot.config().isAutoRead());
+
+        controller.release(hot);
+        hot.runPendingTasks();
+        assertEquals(Arrays.asList("h1", "o1", "h2"), started);
+        assertTrue(hot.config().isAutoRead());
+        assertEquals(1, throttledChannels.get());
+        assertEquals(1, unthrottledChannels.get());
+    }
+
+    @Test
+    public void testChannelsTakeTurns() {
+        RequestAdmissionController controller = newController(1, 0);
+        EmbeddedChannel hot = new EmbeddedChannel();
+        EmbeddedChannel other = new EmbeddedChannel();
+
+        admit(controller, hot, "h1");
+        admit(controller, hot, "h2");
+        admit(controller, hot, "h3");
+        admit(controller, other, "o1");
+        assertEquals(Arrays.asList("h1"), started);
+
+        controller.release(hot);
+        hot.runPendingTasks();
+        other.runPendingTasks();
+        // the other channel gets the next permit, rather than waiting for all the parked requests of the hot one
+        controller.release(hot);
+        hot.runPendingTasks();
+        other.runPendingTasks();
+        assertEquals(Arrays.asList("h1", "h2", "o1"), started);
+        assertTrue(other.config().isAutoRead());
+        assertFalse(hot.config().isAutoRead());
+
+        controller.release(other);
+        hot.runPendingTasks();
+        assertEquals(Arrays.asList("h1", "h2", "o1", "h3"), started);
+        assertTrue(hot.config().isAutoRead());
+    }
+
+    @Test
+    public void testBothLimits() {
+        RequestAdmissionController controller = newController(2, 1);
+        EmbeddedChannel first = new EmbeddedChannel();
+        EmbeddedChannel second = new EmbeddedChannel();
+        EmbeddedChannel third = new EmbeddedChannel();
+
+        admit(controller, first, "f1");
+        admit(controller, first, "f2");
+        admit(controller, second, "s1");
+        admit(controller, third, "t1");
+        assertEquals(Arrays.asList("f1", "s1"), started);
+
+        // the channel out of credits is skipped, the permit goes to the one waiting for the bookie limit
+        controller.release(second);
+        first.runPendingTasks();
+        third.runPendingTasks();
+        assertEquals(Arrays.asList("f1", "s1", "t1"), started);
+        assertTrue(third.config().isAutoRead());
+
+        controller.release(first);
+        first.runPendingTasks();
+        assertEquals(Arrays.asList("f1", "s1", "t1", "f2"), started);
+        assertTrue(first.config().isAutoRead());
+    }
+}
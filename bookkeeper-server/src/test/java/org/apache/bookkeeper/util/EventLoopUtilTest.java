@@ -0,0 +1,99 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.commons.lang.SystemUtils;
+import org.junit.Test;
+
+/**
+ * Test the selection of the transport of the event loops.
+ */
+public class EventLoopUtilTest {
+
+    private static void assertEpollOrNio(EventLoopGroup eventLoopGroup) {
+        try {
+            assertFalse(EventLoopUtil.isIoUringEventLoopGroup(eventLoopGroup));
+            if (SystemUtils.IS_OS_LINUX && Epoll.isAvailable()) {
+                assertTrue(eventLoopGroup instanceof EpollEventLoopGroup);
+                assertSame(EpollSocketChannel.class, EventLoopUtil.getClientSocketChannelClass(eventLoopGroup));
+                assertSame(EpollServerSocketChannel.class, EventLoopUtil.getServerSocketChannelClass(eventLoopGroup));
+                assertSame(EpollChannelOption.TCP_USER_TIMEOUT, EventLoopUtil.getTcpUserTimeoutOption(eventLoopGroup));
+            } else {
+                assertTrue(eventLoopGroup instanceof NioEventLoopGroup);
+                assertSame(NioSocketChannel.class, EventLoopUtil.getClientSocketChannelClass(eventLoopGroup));
+                assertSame(NioServerSocketChannel.class, EventLoopUtil.getServerSocketChannelClass(eventLoopGroup));
+                assertNull(EventLoopUtil.getTcpUserTimeoutOption(eventLoopGroup));
+            }
+        } finally {
+            eventLoopGroup.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testDefaultTransport() {
+        assertEpollOrNio(EventLoopUtil.getClientEventLoopGroup(new ClientConfiguration().setNumIOThreads(1),
+                new DefaultThreadFactory("test-client-io")));
+        assertEpollOrNio(EventLoopUtil.getServerEventLoopGroup(new ServerConfiguration().setServerNumIOThreads(1),
+                new DefaultThreadFactory("test-server-io")));
+    }
+
+    @Test
+    public void testFallbackWithoutIoUring() {
+        // the io_uring transport isn't on the classpath of the tests
+        assertEpollOrNio(EventLoopUtil.getClientEventLoopGroup(
+                new ClientConfiguration().setNumIOThreads(1).setIoUringEnabled(true),
+                new DefaultThreadFactory("test-client-io")));
+        assertEpollOrNio(EventLoopUtil.getServerEventLoopGroup(
+                new ServerConfiguration().setServerNumIOThreads(1).setIoUringEnabled(true),
+                new DefaultThreadFactory("test-server-io")));
+    }
+
+    @Test
+    public void testNioTransport() {
+        EventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+        try {
+            assertFalse(EventLoopUtil.isIoUringEventLoopGroup(eventLoopGroup));
+            assertEquals(NioSocketChannel.class, EventLoopUtil.getClientSocketChannelClass(eventLoopGroup));
+            assertEquals(NioServerSocketChannel.class, EventLoopUtil.getServerSocketChannelClass(eventLoopGroup));
+            assertNull(EventLoopUtil.getTcpUserTimeoutOption(eventLoopGroup));
+        } finally {
+            eventLoopGroup.shutdownGracefully();
+        }
+    }
+}
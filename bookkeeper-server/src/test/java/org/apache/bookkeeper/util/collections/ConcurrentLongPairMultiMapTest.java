@@ -0,0 +1,233 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Test the ConcurrentLongPairMultiMap.
+ */
+public class ConcurrentLongPairMultiMapTest {
+
+    @Test
+    public void testConstructor() {
+        try {
+            new ConcurrentLongPairMultiMap<String>(0, 1);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            new ConcurrentLongPairMultiMap<String>(16, 0);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            new ConcurrentLongPairMultiMap<String>(4, 8);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentLongPairMultiMap<String> map = new ConcurrentLongPairMultiMap<>(16, 1);
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1, 1, v -> true));
+        assertNull(map.remove(1, 1));
+
+        map.put(1, 1, "one");
+        map.put(1, 2, "two");
+        map.put(2, 1, "three");
+        assertFalse(map.isEmpty());
+        assertEquals(3, map.size());
+
+        assertEquals("one", map.get(1, 1, v -> true));
+        assertEquals("two", map.get(1, 2, v -> true));
+        assertEquals("three", map.get(2, 1, v -> true));
+        assertNull(map.get(2, 2, v -> true));
+        assertNull(map.get(1, 1, "two"::equals));
+
+        assertEquals("two", map.remove(1, 2));
+        assertNull(map.get(1, 2, v -> true));
+        assertNull(map.remove(1, 2));
+        assertEquals(2, map.size());
+
+        assertEquals("one", map.remove(1, 1));
+        assertEquals("three", map.remove(2, 1));
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.size());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPutNullValue() {
+        new ConcurrentLongPairMultiMap<String>().put(1, 1, null);
+    }
+
+    @Test
+    public void testMultipleValuesPerKey() {
+        ConcurrentLongPairMultiMap<String> map = new ConcurrentLongPairMultiMap<>(16, 1);
+        map.put(1, 1, "a");
+        map.put(1, 1, "b");
+        map.put(1, 1, "a");
+        map.put(1, 2, "c");
+        assertEquals(4, map.size());
+
+        assertEquals("b", map.get(1, 1, "b"::equals));
+        assertNull(map.get(1, 1, "c"::equals));
+
+        // the same value can be stored several times for a key
+        assertEquals("a", map.remove(1, 1, "a"::equals));
+        assertEquals("a", map.get(1, 1, "a"::equals));
+        assertEquals("a", map.remove(1, 1, "a"::equals));
+        assertNull(map.remove(1, 1, "a"::equals));
+        assertEquals(2, map.size());
+
+        assertEquals("b", map.remove(1, 1));
+        assertNull(map.remove(1, 1));
+        assertEquals("c", map.get(1, 2, v -> true));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testRemoveIfAndForEach() {
+        ConcurrentLongPairMultiMap<Long> map = new ConcurrentLongPairMultiMap<>(16, 4);
+        for (long i = 0; i < 10; i++) {
+            map.put(i % 3, i, i);
+            map.put(i % 3, i, i + 100);
+        }
+        assertEquals(20, map.size());
+
+        assertEquals(8, map.removeIf((key1, key2, value) -> key1 == 0));
+        assertEquals(12, map.size());
+
+        Set<Long> values = new HashSet<>();
+        map.forEach((key1, key2, value) -> {
+            assertTrue(key1 != 0);
+            assertEquals(key2, value % 100);
+            assertTrue(values.add(value));
+        });
+        assertEquals(12, values.size());
+    }
+
+    @Test
+    public void testRehash() {
+        ConcurrentLongPairMultiMap<Long> map = new ConcurrentLongPairMultiMap<>(2, 1);
+        int n = 1000;
+        for (long i = 0; i < n; i++) {
+            map.put(i, -i, i);
+            map.put(i, -i, i + n);
+        }
+        assertEquals(2 * n, map.size());
+
+        for (long i = 0; i < n; i++) {
+            long value = i;
+            assertEquals(Long.valueOf(i), map.get(i, -i, v -> v == value));
+            assertEquals(Long.valueOf(i + n), map.get(i, -i, v -> v == value + n));
+        }
+    }
+
+    @Test
+    public void testReuseRemovedBuckets() {
+        ConcurrentLongPairMultiMap<Long> map = new ConcurrentLongPairMultiMap<>(16, 1);
+        // the removed values leave deleted buckets behind, which must not fill up the map
+        for (int round = 0; round < 100; round++) {
+            for (long i = 0; i < 10; i++) {
+                map.put(round, i, i);
+            }
+            for (long i = 0; i < 10; i++) {
+                assertEquals(Long.valueOf(i), map.remove(round, i));
+            }
+            assertTrue(map.isEmpty());
+        }
+    }
+
+    @Test
+    public void testConcurrentPutRemoveWithRehash() throws Exception {
+        // a single small section to rehash it many times while the threads use it
+        ConcurrentLongPairMultiMap<Long> map = new ConcurrentLongPairMultiMap<>(2, 1);
+        int numThreads = 8;
+        int numKeys = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(numThreads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                long thread = t;
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    // each thread puts two values per key, and removes one of them for half the keys
+                    for (long i = 0; i < numKeys; i++) {
+                        map.put(thread, i, i);
+                        map.put(thread, i, -i - 1);
+                        if (i % 2 == 0) {
+                            long value = i;
+                            assertEquals(Long.valueOf(i), map.remove(thread, i, v -> v == value));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(numThreads * (numKeys + numKeys / 2), map.size());
+        for (long t = 0; t < numThreads; t++) {
+            for (long i = 0; i < numKeys; i++) {
+                long value = i;
+                Long stored = map.get(t, i, v -> v == value);
+                if (i % 2 == 0) {
+                    assertNull(stored);
+                } else {
+                    assertEquals(Long.valueOf(i), stored);
+                }
+                assertEquals(Long.valueOf(-i - 1), map.get(t, i, v -> v == -value - 1));
+            }
+        }
+
+        List<Long> values = new ArrayList<>();
+        map.forEach((key1, key2, value) -> values.add(value));
+        assertEquals(map.size(), values.size());
+    }
+}
@@ -25,6 +25,7 @@ import com.scurrilous.circe.IncrementalIntHash;
 import com.scurrilous.circe.crc.Sse42Crc32C;
 import com.scurrilous.circe.crc.StandardCrcProvider;
 import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,8 +59,15 @@ public class Crc32cIntChecksum {
         } else if (payload.hasArray()) {
             return CRC32C_HASH.calculate(payload.array(), payload.arrayOffset() + payload.readerIndex(),
                 payload.readableBytes());
-        } else {
+        } else if (payload.nioBufferCount() <= 1) {
             return CRC32C_HASH.calculate(payload.nioBuffer());
+        } else {
+            ByteBuffer[] buffers = payload.nioBuffers();
+            int checksum = CRC32C_HASH.calculate(buffers[0]);
+            for (int i = 1; i < buffers.length; i++) {
+                checksum = CRC32C_HASH.resume(checksum, buffers[i]);
+            }
+            return checksum;
         }
     }
 
@@ -72,14 +80,35 @@ public class Crc32cIntChecksum {
      * @return
      */
     public static int resumeChecksum(int previousChecksum, ByteBuf payload) {
+        return resumeChecksum(previousChecksum, payload, payload.readerIndex(), payload.readableBytes());
+    }
+
+    /**
+     * Computes incremental checksum with input previousChecksum and a range of the input payload, whatever its
+     * reader index.
+     *
+     * <p>A composite payload is checksummed over the nio buffers of its components, rather than over a copy of
+     * its bytes merged into a single buffer.
+     *
+     * @param previousChecksum : previously computed checksum
+     * @param payload
+     * @param offset : index of the first byte of the range
+     * @param len : length of the range
+     * @return
+     */
+    public static int resumeChecksum(int previousChecksum, ByteBuf payload, int offset, int len) {
         if (payload.hasMemoryAddress() && (CRC32C_HASH instanceof Sse42Crc32C)) {
-            return CRC32C_HASH.resume(previousChecksum, payload.memoryAddress() + payload.readerIndex(),
-                payload.readableBytes());
+            return CRC32C_HASH.resume(previousChecksum, payload.memoryAddress() + offset, len);
         } else if (payload.hasArray()) {
-            return CRC32C_HASH.resume(previousChecksum, payload.array(), payload.arrayOffset() + payload.readerIndex(),
-                payload.readableBytes());
+            return CRC32C_HASH.resume(previousChecksum, payload.array(), payload.arrayOffset() + offset, len);
+        } else if (payload.nioBufferCount() <= 1) {
+            return CRC32C_HASH.resume(previousChecksum, payload.nioBuffer(offset, len));
         } else {
-            return CRC32C_HASH.resume(previousChecksum, payload.nioBuffer());
+            int checksum = previousChecksum;
+            for (ByteBuffer buffer : payload.nioBuffers(offset, len)) {
+                checksum = CRC32C_HASH.resume(checksum, buffer);
+            }
+            return checksum;
         }
     }
 
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.scurrilous.circe.checksum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test that the CRC32C of a payload doesn't depend on the layout of its buffer.
+ */
+public class Crc32cIntChecksumTest {
+
+    private static final int[] COMPONENT_SIZES = {1, 100, 7, 4096, 33};
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * A composite buffer of direct components, which has neither a memory address nor an array, so its checksum
+     * is computed over its nio buffers.
+     */
+    private static CompositeByteBuf composite(byte[] bytes) {
+        CompositeByteBuf composite = Unpooled.compositeBuffer(COMPONENT_SIZES.length);
+        int offset = 0;
+        for (int size : COMPONENT_SIZES) {
+            ByteBuf component = Unpooled.directBuffer(size);
+            component.writeBytes(bytes, offset, size);
+            composite.addComponent(true, component);
+            offset += size;
+        }
+        return composite;
+    }
+
+    private static int totalSize() {
+        int size = 0;
+        for (int componentSize : COMPONENT_SIZES) {
+            size += componentSize;
+        }
+        return size;
+    }
+
+    @Test
+    public void testKnownValue() {
+        ByteBuf payload = Unpooled.wrappedBuffer("123456789".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(0xe3069283, Crc32cIntChecksum.computeChecksum(payload));
+    }
+
+    @Test
+    public void testCompositeBuffer() {
+        byte[] bytes = randomBytes(totalSize());
+        CompositeByteBuf composite = composite(bytes);
+        try {
+            assertFalse(composite.hasMemoryAddress());
+            assertFalse(composite.hasArray());
+            assertTrue(composite.nioBufferCount() > 1);
+
+            int expected = Crc32cIntChecksum.computeChecksum(Unpooled.wrappedBuffer(bytes));
+            assertEquals(expected, Crc32cIntChecksum.computeChecksum(composite));
+            assertEquals(expected, Crc32cIntChecksum.resumeChecksum(0, composite));
+
+            // only the readable bytes are checksummed
+            composite.readerIndex(5);
+            assertEquals(Crc32cIntChecksum.computeChecksum(Unpooled.wrappedBuffer(bytes, 5, bytes.length - 5)),
+                    Crc32cIntChecksum.computeChecksum(composite));
+        } finally {
+            composite.release();
+        }
+    }
+
+    @Test
+    public void testResumeChecksumOverRange() {
+        byte[] bytes = randomBytes(totalSize());
+        byte[] prefix = randomBytes(17);
+        int previousChecksum = Crc32cIntChecksum.computeChecksum(Unpooled.wrappedBuffer(prefix));
+
+        CompositeByteBuf composite = composite(bytes);
+        ByteBuf direct = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+        ByteBuf heap = Unpooled.wrappedBuffer(bytes);
+        try {
+            // the ranges start and end within components, across several of them, and don't depend on the reader
+            // index of the payload
+            composite.readerIndex(3);
+            direct.readerIndex(3);
+            heap.readerIndex(3);
+            int[][] ranges = {{0, bytes.length}, {50, 60}, {0, 1}, {101, 7}, {90, 4100}, {bytes.length - 40, 40}};
+            for (int[] range : ranges) {
+                int offset = range[0];
+                int len = range[1];
+                ByteBuf flat = Unpooled.buffer(prefix.length + len)
+                        .writeBytes(prefix)
+                        .writeBytes(bytes, offset, len);
+                int expected = Crc32cIntChecksum.computeChecksum(flat);
+
+                assertEquals(expected, Crc32cIntChecksum.resumeChecksum(previousChecksum, composite, offset, len));
+                assertEquals(expected, Crc32cIntChecksum.resumeChecksum(previousChecksum, direct, offset, len));
+                assertEquals(expected, Crc32cIntChecksum.resumeChecksum(previousChecksum, heap, offset, len));
+            }
+            assertEquals(3, composite.readerIndex());
+        } finally {
+            composite.release();
+            direct.release();
+        }
+    }
+}
@@ -20,6 +20,8 @@ package org.apache.bookkeeper.proto;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.UnsafeByteOperations;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
@@ -31,11 +33,15 @@ import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.proto.BookieProtoEncoding.EnDecoder;
 import org.apache.bookkeeper.proto.BookieProtoEncoding.RequestEnDeCoderPreV3;
 import org.apache.bookkeeper.proto.BookieProtoEncoding.RequestEnDecoderV3;
+import org.apache.bookkeeper.proto.BookieProtoEncoding.ResponseEnDecoderV3;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
 import org.apache.bookkeeper.util.ByteBufList;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -65,6 +71,10 @@ public class ProtocolBenchmark {
     short flags;
     EnDecoder reqEnDeV2;
     EnDecoder reqEnDeV3;
+    EnDecoder resEnDeV3;
+    ByteBuf addRequestV3;
+    Response readResponseV3;
+    ByteBuf readResponseV3Packet;
 
     @Setup
     public void prepare() {
@@ -78,7 +88,39 @@ public class ProtocolBenchmark {
 
         // prepare the encoder
         this.reqEnDeV2 = new RequestEnDeCoderPreV3(null);
-        this.reqEnDeV3 = new RequestEnDecoderV3(null);
+        this.reqEnDeV3 = new RequestEnDecoderV3(ExtensionRegistry.newInstance());
+        this.resEnDeV3 = new ResponseEnDecoderV3(ExtensionRegistry.newInstance());
+
+        // prepare the packets to decode, as read from the network
+        Request addRequest = Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.ADD_ENTRY)
+                        .setTxnId(0L))
+                .setAddRequest(AddRequest.newBuilder()
+                        .setLedgerId(ledgerId)
+                        .setEntryId(entryId)
+                        .setMasterKey(ByteString.copyFrom(masterKey))
+                        .setBody(ByteString.copyFrom(data)))
+                .build();
+        this.addRequestV3 = Unpooled.directBuffer().writeBytes(addRequest.toByteArray());
+
+        // the bookie wraps the entry read from the storage in the read response
+        ByteBuf readEntry = Unpooled.directBuffer(size).writeBytes(data);
+        this.readResponseV3 = Response.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.READ_ENTRY)
+                        .setTxnId(0L))
+                .setStatus(StatusCode.EOK)
+                .setReadResponse(ReadResponse.newBuilder()
+                        .setStatus(StatusCode.EOK)
+                        .setLedgerId(ledgerId)
+                        .setEntryId(entryId)
+                        .setMaxLAC(entryId)
+                        .setBody(UnsafeByteOperations.unsafeWrap(readEntry.nioBuffer())))
+                .build();
+        this.readResponseV3Packet = Unpooled.directBuffer().writeBytes(readResponseV3.toByteArray());
     }
 
 
@@ -196,4 +238,20 @@ public class ProtocolBenchmark {
         Object res = this.reqEnDeV3.encode(request, ByteBufAllocator.DEFAULT);
         ReferenceCountUtil.release(res);
     }
+
+    @Benchmark
+    public Object testDecodeAddEntryV3() throws Exception {
+        return this.reqEnDeV3.decode(addRequestV3.duplicate());
+    }
+
+    @Benchmark
+    public void testReadEntryResponseV3() throws Exception {
+        Object res = this.resEnDeV3.encode(readResponseV3, ByteBufAllocator.DEFAULT);
+        ReferenceCountUtil.release(res);
+    }
+
+    @Benchmark
+    public Object testDecodeReadEntryResponseV3() throws Exception {
+        return this.resEnDeV3.decode(readResponseV3Packet.duplicate());
+    }
 }
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.incubator.channel.uring.IOUring;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.EventLoopUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarking the request throughput of the Netty transports over loopback.
+ *
+ * <p>Each invocation sends a batch of length prefixed requests, which are echoed back by the server,
+ * and waits for all the responses. The epoll and io_uring transports fail to set up where they are not
+ * available, rather than falling back to another transport.
+ */
+@BenchmarkMode({Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"nio", "epoll", "io_uring"})
+    String transport;
+
+    @Param({"100", "1000", "10000"})
+    int size;
+
+    EventLoopGroup serverGroup;
+    EventLoopGroup clientGroup;
+    Channel clientChannel;
+    ByteBuf request;
+    volatile ResponseCounter responseCounter;
+
+    @Setup
+    public void prepare() throws Exception {
+        if ("io_uring".equals(transport) && !IOUring.isAvailable()) {
+            throw new IllegalStateException("Netty io_uring transport is not available",
+                    IOUring.unavailabilityCause());
+        }
+        serverGroup = newEventLoopGroup("server-io");
+        clientGroup = newEventLoopGroup("client-io");
+
+        ServerBootstrap serverBootstrap = new ServerBootstrap()
+                .group(serverGroup, serverGroup)
+                .channel(EventLoopUtil.getServerSocketChannelClass(serverGroup))
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast("lengthbaseddecoder",
+                                new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
+                        ch.pipeline().addLast("lengthprepender", new LengthFieldPrepender(4));
+                        ch.pipeline().addLast("echo", new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ctx.write(msg, ctx.voidPromise());
+                            }
+
+                            @Override
+                            public void channelReadComplete(ChannelHandlerContext ctx) {
+                                ctx.flush();
+                            }
+                        });
+                    }
+                });
+        Channel serverChannel = serverBootstrap.bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+
+        Bootstrap clientBootstrap = new Bootstrap()
+                .group(clientGroup)
+                .channel(EventLoopUtil.getClientSocketChannelClass(clientGroup))
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast("lengthbaseddecoder",
+                                new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
+                        ch.pipeline().addLast("lengthprepender", new LengthFieldPrepender(4));
+                        ch.pipeline().addLast("responses", new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                ReferenceCountUtil.release(msg);
+                                responseCounter.onResponse();
+                            }
+                        });
+                    }
+                });
+        clientChannel = clientBootstrap.connect(serverChannel.localAddress()).sync().channel();
+
+        byte[] data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        request = Unpooled.directBuffer(size).writeBytes(data);
+    }
+
+    private EventLoopGroup newEventLoopGroup(String name) {
+        ThreadFactory threadFactory = new DefaultThreadFactory(name);
+        if ("nio".equals(transport)) {
+            return new NioEventLoopGroup(1, threadFactory);
+        }
+        ServerConfiguration conf = new ServerConfiguration()
+                .setServerNumIOThreads(1)
+                .setIoUringEnabled("io_uring".equals(transport));
+        EventLoopGroup eventLoopGroup = EventLoopUtil.getServerEventLoopGroup(conf, threadFactory);
+        boolean isExpectedTransport = "io_uring".equals(transport)
+                ? EventLoopUtil.isIoUringEventLoopGroup(eventLoopGroup)
+                : eventLoopGroup instanceof EpollEventLoopGroup;
+        if (!isExpectedTransport) {
+            eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+            throw new IllegalStateException("Netty " + transport + " transport is not available, got "
+                    + eventLoopGroup.getClass().getSimpleName());
+        }
+        return eventLoopGroup;
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        clientChannel.close().sync();
+        clientGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        serverGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        request.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void testRequestResponse() throws Exception {
+        ResponseCounter counter = new ResponseCounter(BATCH_SIZE);
+        responseCounter = counter;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            clientChannel.write(request.retainedDuplicate(), clientChannel.voidPromise());
+        }
+        clientChannel.flush();
+        counter.done.get(30, TimeUnit.SECONDS);
+    }
+
+    private static class ResponseCounter {
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        // only accessed from the client event loop
+        int pending;
+
+        ResponseCounter(int pending) {
+            this.pending = pending;
+        }
+
+        void onResponse() {
+            if (--pending == 0) {
+                done.complete(null);
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat.DigestType;
+import org.apache.bookkeeper.util.ByteBufList;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -75,6 +76,8 @@ public class DigestTypeBenchmark {
         CRC32_C,
     }
 
+    static final long ENTRY_ID = 1;
+
     static byte[] randomBytes(int sz) {
         byte[] b = new byte[sz];
         ThreadLocalRandom.current().nextBytes(b);
@@ -104,6 +107,9 @@ public class DigestTypeBenchmark {
 
         public ByteBuf digestBuf;
 
+        // the entry packaged with its digest, as received from a bookie
+        public ByteBuf receivedBuffer;
+
         @Setup(Level.Trial)
         public void doSetup() throws Exception {
             final byte[] password = "password".getBytes(StandardCharsets.UTF_8);
@@ -131,10 +137,25 @@ public class DigestTypeBenchmark {
             if (!arrayBackedBuffer.hasArray() || notArrayBackedBuffer.hasArray()) {
                 throw new IllegalStateException("buffers in invalid state");
             }
+
+            ByteBuf data = getByteBuff(bufferType);
+            ByteBufList packaged = getDigestManager(digest).computeDigestAndPackageForSending(
+                    ENTRY_ID, ENTRY_ID - 1, data.readableBytes(), data.retainedDuplicate());
+            if (bufferType == BufferType.NOT_ARRAY_BACKED) {
+                CompositeByteBuf composite = new CompositeByteBuf(ByteBufAllocator.DEFAULT, true, packaged.size());
+                for (int i = 0; i < packaged.size(); i++) {
+                    composite.addComponent(true, packaged.getBuffer(i).retain());
+                }
+                receivedBuffer = composite;
+            } else {
+                receivedBuffer = ByteBufList.coalesce(packaged);
+            }
+            packaged.release();
         }
 
         @TearDown(Level.Trial)
         public void doTearDown() {
+            receivedBuffer.release();
         }
 
         public ByteBuf getByteBuff(BufferType bType) {
@@ -179,4 +200,32 @@ public class DigestTypeBenchmark {
         dm.populateValueAndReset(state.digestBuf);
     }
 
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 12, timeUnit = TimeUnit.SECONDS)
+    @Threads(2)
+    @Fork(value = 1, warmups = 1)
+    public void computeDigestAndPackage(MyState state) {
+        final ByteBuf buff = state.getByteBuff(state.bufferType);
+        final DigestManager dm = state.getDigestManager(state.digest);
+        ByteBufList packaged = dm.computeDigestAndPackageForSending(ENTRY_ID, ENTRY_ID - 1, buff.readableBytes(),
+                buff.retainedDuplicate());
+        packaged.release();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 12, timeUnit = TimeUnit.SECONDS)
+    @Threads(2)
+    @Fork(value = 1, warmups = 1)
+    public ByteBuf verifyDigest(MyState state) throws Exception {
+        final DigestManager dm = state.getDigestManager(state.digest);
+        // verify a duplicate, so the reader index of the received buffer is left as is
+        return dm.verifyDigestAndReturnData(ENTRY_ID, state.receivedBuffer.duplicate());
+    }
+
 }